@@ -1,6 +1,9 @@
 # Amazon ADM is a compileOnly dependency; suppress missing-class warnings when the app omits it.
 -dontwarn com.amazon.**
 
+# OkHttp is a compileOnly dependency, only used when the app opts in through OneSignalOkHttp.
+-dontwarn okhttp3.**
+
 # ServiceRegistrationReflection.resolve matches constructors via genericParameterTypes
 # (e.g. List<IBackgroundService>). Keep Signature so R8 cannot strip that metadata.
 -keepattributes Signature
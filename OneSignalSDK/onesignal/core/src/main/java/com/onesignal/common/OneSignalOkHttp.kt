@@ -0,0 +1,19 @@
+package com.onesignal.common
+
+import com.onesignal.core.internal.http.impl.HttpTransportSettings
+import okhttp3.OkHttpClient
+
+/**
+ * Opt-in for apps that already bundle OkHttp (4.x) to have the OneSignal SDK send its network
+ * requests through their [OkHttpClient] instead of the platform's `HttpURLConnection`. The
+ * SDK derives its own clients from [client] with `newBuilder()`, so it shares the app's
+ * connection pool and dispatcher and gets HTTP/2 multiplexing where the server supports it.
+ *
+ * Must be called before `OneSignal.initWithContext`.
+ */
+object OneSignalOkHttp {
+    @JvmStatic
+    fun useClient(client: OkHttpClient) {
+        HttpTransportSettings.okHttpClient = client
+    }
+}
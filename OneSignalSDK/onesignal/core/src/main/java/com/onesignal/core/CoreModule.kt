@@ -9,13 +9,16 @@ import com.onesignal.core.internal.backend.IParamsBackendService
 import com.onesignal.core.internal.backend.impl.FeatureFlagsBackendService
 import com.onesignal.core.internal.backend.impl.ParamsBackendService
 import com.onesignal.core.internal.background.IBackgroundManager
+import com.onesignal.core.internal.background.IBackgroundService
 import com.onesignal.core.internal.background.impl.BackgroundManager
 import com.onesignal.core.internal.config.ConfigModelStore
 import com.onesignal.core.internal.config.impl.ConfigModelStoreListener
 import com.onesignal.core.internal.config.impl.FeatureFlagsRefreshService
 import com.onesignal.core.internal.config.impl.IdentityVerificationService
 import com.onesignal.core.internal.database.IDatabaseProvider
+import com.onesignal.core.internal.database.impl.DatabaseMaintenanceService
 import com.onesignal.core.internal.database.impl.DatabaseProvider
+import com.onesignal.core.internal.database.impl.DatabaseWriteFlusher
 import com.onesignal.core.internal.device.IDeviceService
 import com.onesignal.core.internal.device.IInstallIdService
 import com.onesignal.core.internal.device.impl.DeviceService
@@ -25,7 +28,10 @@ import com.onesignal.core.internal.features.IFeatureManager
 import com.onesignal.core.internal.http.IHttpClient
 import com.onesignal.core.internal.http.impl.HttpClient
 import com.onesignal.core.internal.http.impl.HttpConnectionFactory
+import com.onesignal.core.internal.http.impl.HttpConnectionPrewarmer
+import com.onesignal.core.internal.http.impl.HttpTransportSettings
 import com.onesignal.core.internal.http.impl.IHttpConnectionFactory
+import com.onesignal.core.internal.http.impl.IHttpTransport
 import com.onesignal.core.internal.language.ILanguageContext
 import com.onesignal.core.internal.language.impl.LanguageContext
 import com.onesignal.core.internal.operations.IOperationRepo
@@ -55,7 +61,11 @@ internal class CoreModule : IModule {
             .provides<IPreferencesService>()
             .provides<IStartableService>()
         builder.register<HttpConnectionFactory>().provides<IHttpConnectionFactory>()
+        builder.register { HttpTransportSettings.createTransport(it) }.provides<IHttpTransport>()
         builder.register<HttpClient>().provides<IHttpClient>()
+        builder.register<HttpConnectionPrewarmer>()
+            .provides<HttpConnectionPrewarmer>()
+            .provides<IStartableService>()
         // Reuse the process-wide instance shared with ActivityLifecycleInitializer (so the activity
         // lifecycle observed before SDK init is visible) when the startup initializer ran; otherwise
         // create a fresh instance for this init.
@@ -64,6 +74,7 @@ internal class CoreModule : IModule {
         builder.register<DeviceService>().provides<IDeviceService>()
         builder.register<Time>().provides<ITime>()
         builder.register<DatabaseProvider>().provides<IDatabaseProvider>()
+        builder.register<DatabaseWriteFlusher>().provides<IStartableService>()
         builder.register<InstallIdService>().provides<IInstallIdService>()
 
         // Params (Config)
@@ -97,6 +108,7 @@ internal class CoreModule : IModule {
         builder.register<BackgroundManager>()
             .provides<IBackgroundManager>()
             .provides<IStartableService>()
+        builder.register<DatabaseMaintenanceService>().provides<IBackgroundService>()
 
         // Purchase Tracking
         builder.register<TrackGooglePurchase>().provides<IStartableService>()
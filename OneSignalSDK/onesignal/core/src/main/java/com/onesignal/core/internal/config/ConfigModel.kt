@@ -219,6 +219,35 @@ class ConfigModel : Model() {
             setLongProperty(::backgroundFetchNotificationPermissionInterval.name, value)
         }
 
+    /**
+     * The minimum number of milliseconds between runs of the database maintenance.
+     */
+    var dbMaintenanceInterval: Long
+        get() = getLongProperty(::dbMaintenanceInterval.name) { 86_400_000 }
+        set(value) {
+            setLongProperty(::dbMaintenanceInterval.name, value)
+        }
+
+    /**
+     * The maximum number of opened or dismissed notifications kept in the database, the oldest
+     * are removed first. Notifications still displayed are never removed.
+     */
+    var dbNotificationRowCap: Int
+        get() = getIntProperty(::dbNotificationRowCap.name) { 1_000 }
+        set(value) {
+            setIntProperty(::dbNotificationRowCap.name, value)
+        }
+
+    /**
+     * The maximum number of unique outcomes already sent kept in the database, the oldest are
+     * removed first. Outcome events waiting to be sent are never removed.
+     */
+    var dbOutcomeRowCap: Int
+        get() = getIntProperty(::dbOutcomeRowCap.name) { 1_000 }
+        set(value) {
+            setIntProperty(::dbOutcomeRowCap.name, value)
+        }
+
     /**
      * The google project number for GMS devices.
      */
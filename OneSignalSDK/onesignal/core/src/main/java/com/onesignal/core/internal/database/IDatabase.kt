@@ -1,6 +1,7 @@
 package com.onesignal.core.internal.database
 
 import android.content.ContentValues
+import android.database.SQLException
 
 /**
  * Allows for the abstract CRUD operations of an underlying database. This is a light abstraction
@@ -37,6 +38,33 @@ interface IDatabase {
         action: (ICursor) -> Unit,
     )
 
+    /**
+     * Run a query that returns a single value, i.e. `SELECT COUNT(*) ...` or a single column
+     * `SELECT ... LIMIT 1`. The statement is compiled once per distinct [sql] and reused, so
+     * [sql] should only vary by its `?` parameters, never by values concatenated into it.
+     *
+     * @param sql The SQL, returning one column.
+     * @param bindArgs The values bound to the `?` parameters in [sql], in order.
+     *
+     * @return The value of the first column of the first row, or `null` when there is no row.
+     * A `NULL` value is returned as 0.
+     */
+    fun longForQuery(
+        sql: String,
+        bindArgs: Array<String>? = null,
+    ): Long?
+
+    /**
+     * Run a query that returns a single text value, see [longForQuery].
+     *
+     * @return The value of the first column of the first row, or `null` when there is no row or
+     * the value is `NULL`.
+     */
+    fun stringForQuery(
+        sql: String,
+        bindArgs: Array<String>? = null,
+    ): String?
+
     /**
      * Insert a new record into the database as specified. If the insert fails, it will fail silently.
      *
@@ -102,4 +130,70 @@ interface IDatabase {
         whereClause: String?,
         whereArgs: Array<String>?,
     )
+
+    /**
+     * Run [block] as a single transaction, so the writes it makes are committed together, with
+     * one journal sync, rather than each in its own implicit transaction.
+     *
+     * The operations [block] performs through the provided [IDatabase] join the transaction. It
+     * is committed when [block] returns normally and rolled back when it throws, the exception is
+     * then rethrown. [insert], [update] and [delete] report their own failures by logging, one of
+     * them failing inside [block] rolls back the whole transaction as well, reported by throwing
+     * a [SQLException] once [block] returns.
+     *
+     * @param block The work to run within the transaction.
+     *
+     * @return The value returned by [block].
+     *
+     * @throws SQLException The transaction was rolled back, or could not be committed.
+     */
+    @Throws(SQLException::class)
+    fun <T> runInTransaction(block: (IDatabase) -> T): T
+
+    /**
+     * Queue a write the caller does not need to wait for. Queued writes are committed together,
+     * in one transaction, shortly after they are queued, when the app is backgrounded, or before
+     * any other operation on the database runs, so a later query always sees them. Operations
+     * within a [runInTransaction] block do not commit them, they are committed before the block
+     * runs and are never part of its transaction.
+     *
+     * When a queued write fails, the writes committed with it are committed again one at a time,
+     * so only the failed write is lost.
+     *
+     * @param table The table [block] writes to.
+     * @param key Identifies the row(s) [block] writes. A write queued with the same [table] and
+     * [key] replaces this one if it has not been committed yet, only the latest runs. Provide
+     * `null` when every write must run.
+     * @param block The write, run on the provided [IDatabase] within a transaction.
+     */
+    fun enqueueWrite(
+        table: String,
+        key: String? = null,
+        block: (IDatabase) -> Unit,
+    )
+
+    /**
+     * Commit every queued write now, see [enqueueWrite].
+     */
+    fun flushWrites()
+
+    /**
+     * Execute a statement that is not covered by the other operations, i.e. a `PRAGMA`, `ANALYZE`
+     * or `VACUUM`, stepping it until it completes. Any rows it returns are discarded. Unlike the
+     * other operations a failure is thrown, not logged.
+     *
+     * @param sql The statement to execute.
+     */
+    fun execSQL(sql: String)
+
+    /**
+     * Execute a statement as [execSQL] does, unless the database is busy: another operation is
+     * running or waiting to, or writes are queued. For a long statement such as `VACUUM`, which
+     * would hold up every other operation until it completes.
+     *
+     * @param sql The statement to execute.
+     *
+     * @return Whether the statement was executed.
+     */
+    fun execSQLIfIdle(sql: String): Boolean
 }
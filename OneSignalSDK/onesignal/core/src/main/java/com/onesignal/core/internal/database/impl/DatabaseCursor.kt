@@ -3,25 +3,31 @@ package com.onesignal.core.internal.database.impl
 import android.database.Cursor
 import com.onesignal.core.internal.database.ICursor
 
+/**
+ * An [ICursor] over an Android [Cursor]. Column indexes are resolved once per cursor rather
+ * than on every field of every row, [Cursor.getColumnIndex] is a linear scan of the names.
+ */
 internal class DatabaseCursor(
     private val _cursor: Cursor,
 ) : ICursor {
+    private val columnIndexes = HashMap<String, Int>()
+
     override val count: Int get() = _cursor.count
 
     override fun moveToFirst(): Boolean = _cursor.moveToFirst()
 
     override fun moveToNext(): Boolean = _cursor.moveToNext()
 
-    override fun getString(column: String): String = _cursor.getString(_cursor.getColumnIndex(column))
+    override fun getString(column: String): String = _cursor.getString(columnIndex(column))
 
-    override fun getFloat(column: String): Float = _cursor.getFloat(_cursor.getColumnIndex(column))
+    override fun getFloat(column: String): Float = _cursor.getFloat(columnIndex(column))
 
-    override fun getLong(column: String): Long = _cursor.getLong(_cursor.getColumnIndex(column))
+    override fun getLong(column: String): Long = _cursor.getLong(columnIndex(column))
 
-    override fun getInt(column: String): Int = _cursor.getInt(_cursor.getColumnIndex(column))
+    override fun getInt(column: String): Int = _cursor.getInt(columnIndex(column))
 
     override fun getOptString(column: String): String? {
-        val idx = _cursor.getColumnIndex(column)
+        val idx = columnIndex(column)
         if (_cursor.isNull(idx)) {
             return null
         }
@@ -30,7 +36,7 @@ internal class DatabaseCursor(
     }
 
     override fun getOptFloat(column: String): Float? {
-        val idx = _cursor.getColumnIndex(column)
+        val idx = columnIndex(column)
         if (_cursor.isNull(idx)) {
             return null
         }
@@ -39,7 +45,7 @@ internal class DatabaseCursor(
     }
 
     override fun getOptLong(column: String): Long? {
-        val idx = _cursor.getColumnIndex(column)
+        val idx = columnIndex(column)
         if (_cursor.isNull(idx)) {
             return null
         }
@@ -48,11 +54,13 @@ internal class DatabaseCursor(
     }
 
     override fun getOptInt(column: String): Int? {
-        val idx = _cursor.getColumnIndex(column)
+        val idx = columnIndex(column)
         if (_cursor.isNull(idx)) {
             return null
         }
 
         return _cursor.getInt(idx)
     }
+
+    private fun columnIndex(column: String): Int = columnIndexes.getOrPut(column) { _cursor.getColumnIndex(column) }
 }
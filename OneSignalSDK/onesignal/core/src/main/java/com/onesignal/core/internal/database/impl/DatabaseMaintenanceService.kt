@@ -0,0 +1,164 @@
+package com.onesignal.core.internal.database.impl
+
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.database.SQLException
+import android.os.BatteryManager
+import android.os.Build
+import android.os.PowerManager
+import android.provider.BaseColumns
+import com.onesignal.core.internal.application.IApplicationService
+import com.onesignal.core.internal.background.IBackgroundService
+import com.onesignal.core.internal.config.ConfigModelStore
+import com.onesignal.core.internal.database.IDatabase
+import com.onesignal.core.internal.database.IDatabaseProvider
+import com.onesignal.core.internal.preferences.IPreferencesService
+import com.onesignal.core.internal.preferences.PreferenceOneSignalKeys
+import com.onesignal.core.internal.preferences.PreferenceStores
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.session.internal.outcomes.impl.CachedUniqueOutcomeTable
+
+/**
+ * The size of the database before and after a maintenance run, in bytes.
+ */
+internal data class DatabaseMaintenanceReport(
+    val sizeBefore: Long,
+    val sizeAfter: Long,
+)
+
+/**
+ * Keeps `OneSignal.db` small, at most once per `dbMaintenanceInterval` and only while the
+ * device is charging or not in use, as part of the SDK's background run:
+ * - Caps the rows that are safe to lose: opened and dismissed notifications, and unique
+ *   outcomes already sent. Outcomes waiting to be sent and in app message state are left
+ *   alone. Notifications past their 7 day lifetime are removed by the notification repository.
+ * - Returns the freed pages to the file system with an incremental vacuum. A database created
+ *   before maintenance existed first takes a full VACUUM, only while nothing else is using it.
+ * - Refreshes the statistics the query planner uses to pick indexes.
+ */
+internal class DatabaseMaintenanceService(
+    private val _applicationService: IApplicationService,
+    private val _databaseProvider: IDatabaseProvider,
+    private val _preferences: IPreferencesService,
+    private val _configModelStore: ConfigModelStore,
+    private val _time: ITime,
+) : IBackgroundService {
+    @Volatile
+    private var retryNotBefore = 0L
+
+    private val lastRunTime: Long
+        get() = _preferences.getLong(PreferenceStores.ONESIGNAL, PreferenceOneSignalKeys.PREFS_OS_LAST_DB_MAINTENANCE_TIME, 0L) ?: 0L
+
+    private val nextRunTime: Long
+        get() = maxOf(lastRunTime + _configModelStore.model.dbMaintenanceInterval, retryNotBefore)
+
+    // Maintenance rides along with the other background services, it only schedules a
+    // background run of its own once it is due within SCHEDULE_HORIZON_MS.
+    override val scheduleBackgroundRunIn: Long?
+        get() {
+            val runIn = maxOf(nextRunTime - _time.currentTimeMillis, 0L)
+            return if (runIn <= SCHEDULE_HORIZON_MS) runIn else null
+        }
+
+    override suspend fun backgroundRun() {
+        val now = _time.currentTimeMillis
+        if (now < nextRunTime) return
+
+        if (!isDeviceChargingOrIdle()) {
+            Logging.debug("DatabaseMaintenanceService: Device is in use and not charging, retrying later")
+            retryNotBefore = now + RETRY_INTERVAL_MS
+            return
+        }
+
+        try {
+            runMaintenance()
+            _preferences.saveLong(PreferenceStores.ONESIGNAL, PreferenceOneSignalKeys.PREFS_OS_LAST_DB_MAINTENANCE_TIME, now)
+        } catch (e: SQLException) {
+            Logging.warn("DatabaseMaintenanceService: Maintenance failed", e)
+            retryNotBefore = now + RETRY_INTERVAL_MS
+        }
+    }
+
+    /**
+     * Prune, vacuum and analyze the database, regardless of when it last ran.
+     */
+    fun runMaintenance(): DatabaseMaintenanceReport {
+        val db = _databaseProvider.os
+        val sizeBefore = sizeOf(db)
+
+        db.runInTransaction { prune(it) }
+
+        if (db.longForQuery("PRAGMA auto_vacuum") == AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("PRAGMA incremental_vacuum")
+        } else {
+            // Databases created before maintenance existed have no auto vacuum, switching to it
+            // takes a one time full VACUUM. It rewrites the whole file holding up every other
+            // operation, so it waits for a run where the database is idle.
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
+            if (!db.execSQLIfIdle("VACUUM")) {
+                Logging.debug("DatabaseMaintenanceService: Database is busy, switching it to incremental vacuum on a later run")
+            }
+        }
+        db.execSQL("ANALYZE")
+
+        val report = DatabaseMaintenanceReport(sizeBefore, sizeOf(db))
+        Logging.debug("DatabaseMaintenanceService: Database size ${report.sizeBefore} bytes before maintenance, ${report.sizeAfter} bytes after")
+        return report
+    }
+
+    private fun prune(db: IDatabase) {
+        val config = _configModelStore.model
+
+        capRows(db, OneSignalDbContract.NotificationTable.TABLE_NAME, HANDLED_NOTIFICATION, config.dbNotificationRowCap)
+        // A cached unique outcome was sent, and is only kept so it is not sent again.
+        capRows(db, CachedUniqueOutcomeTable.TABLE_NAME, "1", config.dbOutcomeRowCap)
+    }
+
+    /**
+     * Delete all but the [cap] most recently inserted rows of [table] that match [selection],
+     * rows that do not match it are kept.
+     */
+    private fun capRows(
+        db: IDatabase,
+        table: String,
+        selection: String,
+        cap: Int,
+    ) {
+        db.delete(
+            table,
+            "$selection AND ${BaseColumns._ID} NOT IN " +
+                "(SELECT ${BaseColumns._ID} FROM $table WHERE $selection ORDER BY ${BaseColumns._ID} DESC LIMIT ?)",
+            arrayOf(cap.toString()),
+        )
+    }
+
+    private fun sizeOf(db: IDatabase): Long {
+        val pageCount = db.longForQuery("PRAGMA page_count") ?: 0L
+        val pageSize = db.longForQuery("PRAGMA page_size") ?: 0L
+        return pageCount * pageSize
+    }
+
+    private fun isDeviceChargingOrIdle(): Boolean {
+        val context = _applicationService.appContext
+
+        // ACTION_BATTERY_CHANGED is sticky, registering a null receiver only reads its last value.
+        val battery = context.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+        if ((battery?.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) ?: 0) != 0) return true
+
+        val powerManager = context.getSystemService(Context.POWER_SERVICE) as? PowerManager ?: return false
+        if (!powerManager.isInteractive) return true
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && powerManager.isDeviceIdleMode
+    }
+
+    companion object {
+        private const val AUTO_VACUUM_INCREMENTAL = 2L
+        private const val RETRY_INTERVAL_MS = 3_600_000L
+        private const val SCHEDULE_HORIZON_MS = 3_600_000L
+
+        private const val HANDLED_NOTIFICATION =
+            "(${OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED} = 1 OR " +
+                "${OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED} = 1)"
+    }
+}
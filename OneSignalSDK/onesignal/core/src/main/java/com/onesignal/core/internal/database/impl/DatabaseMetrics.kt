@@ -0,0 +1,124 @@
+package com.onesignal.core.internal.database.impl
+
+import com.onesignal.debug.internal.logging.Logging
+
+/**
+ * The latency, lock wait and row totals of one kind of [OSDatabase] operation on one table.
+ */
+internal class DatabaseOperationStats {
+    var count = 0L
+        private set
+    var totalNanos = 0L
+        private set
+    var maxNanos = 0L
+        private set
+    var lockWaitNanos = 0L
+        private set
+    var rows = 0L
+        private set
+
+    /**
+     * The number of operations per latency bucket, see [DatabaseMetrics.BUCKET_UPPER_BOUNDS_MS].
+     * The last bucket counts everything above the last bound.
+     */
+    val histogram = LongArray(DatabaseMetrics.BUCKET_UPPER_BOUNDS_MS.size + 1)
+
+    internal fun add(
+        durationNanos: Long,
+        lockWaitNanos: Long,
+        rows: Int,
+    ) {
+        count++
+        totalNanos += durationNanos
+        maxNanos = maxOf(maxNanos, durationNanos)
+        this.lockWaitNanos += lockWaitNanos
+        this.rows += rows
+
+        val durationMs = durationNanos / 1_000_000
+        val bucket = DatabaseMetrics.BUCKET_UPPER_BOUNDS_MS.indexOfFirst { durationMs < it }
+        histogram[if (bucket == -1) histogram.size - 1 else bucket]++
+    }
+
+    override fun toString(): String =
+        "count=$count avg=${if (count == 0L) 0 else totalNanos / count / 1_000}us max=${maxNanos / 1_000}us " +
+            "lockWait=${lockWaitNanos / 1_000}us rows=$rows histogram=${histogram.joinToString(",")}"
+}
+
+/**
+ * Records the cost of every [OSDatabase] operation, keyed by table and operation, along with
+ * how often opening the database had to be retried. An operation slower than
+ * [_slowOperationThresholdMs] is logged as a warning, which remote logging forwards, with the
+ * values in its SQL replaced by `?` so operations of the same shape group together. The
+ * [snapshot] is logged as debug every [SNAPSHOT_LOG_INTERVAL] operations.
+ */
+internal class DatabaseMetrics(
+    private val _slowOperationThresholdMs: Long = DEFAULT_SLOW_OPERATION_THRESHOLD_MS,
+) {
+    private val stats = HashMap<String, DatabaseOperationStats>()
+    private var recorded = 0L
+
+    @Volatile
+    var openRetries = 0
+        private set
+
+    fun record(
+        operation: String,
+        table: String,
+        sql: String?,
+        startNanos: Long,
+        lockAcquiredNanos: Long,
+        rows: Int,
+    ) {
+        val durationNanos = System.nanoTime() - startNanos
+        val lockWaitNanos = lockAcquiredNanos - startNanos
+        val isSnapshotDue =
+            synchronized(stats) {
+                stats.getOrPut("$operation $table") { DatabaseOperationStats() }.add(durationNanos, lockWaitNanos, rows)
+                ++recorded % SNAPSHOT_LOG_INTERVAL == 0L
+            }
+
+        val durationMs = durationNanos / 1_000_000
+        if (durationMs >= _slowOperationThresholdMs) {
+            Logging.warn(
+                "OSDatabase: Slow $operation on $table took ${durationMs}ms " +
+                    "(lock wait ${lockWaitNanos / 1_000_000}ms, $rows rows)" +
+                    if (sql != null) ": ${fingerprint(sql)}" else "",
+            )
+        }
+
+        if (isSnapshotDue) {
+            Logging.debug("OSDatabase: stats after $recorded operations, $openRetries open retries $BUCKET_UPPER_BOUNDS_MS_TEXT ${snapshot()}")
+        }
+    }
+
+    fun recordOpenRetry() {
+        synchronized(stats) { openRetries++ }
+    }
+
+    /**
+     * A copy of the stats recorded so far, keyed by "operation table".
+     */
+    fun snapshot(): Map<String, String> = synchronized(stats) { stats.mapValues { it.value.toString() } }
+
+    companion object {
+        private const val DEFAULT_SLOW_OPERATION_THRESHOLD_MS = 100L
+        const val SNAPSHOT_LOG_INTERVAL = 500L
+
+        val BUCKET_UPPER_BOUNDS_MS = longArrayOf(1, 2, 4, 8, 16, 32, 64, 128, 256, 512)
+        private val BUCKET_UPPER_BOUNDS_MS_TEXT = "(buckets <${BUCKET_UPPER_BOUNDS_MS.joinToString(",")}ms)"
+
+        private val STRING_LITERAL = Regex("'(?:[^']|'')*'")
+        private val NUMBER_LITERAL = Regex("\\b\\d+(?:\\.\\d+)?\\b")
+        private val FROM_TABLE = Regex("\\bFROM\\s+(\\w+)", RegexOption.IGNORE_CASE)
+
+        /**
+         * The shape of [sql], with every string and number literal replaced by `?`.
+         */
+        fun fingerprint(sql: String): String = sql.replace(STRING_LITERAL, "?").replace(NUMBER_LITERAL, "?")
+
+        /**
+         * The table a single table `SELECT` reads from, or "-" when there is none.
+         */
+        fun tableOf(sql: String): String = FROM_TABLE.find(sql)?.groupValues?.get(1) ?: "-"
+    }
+}
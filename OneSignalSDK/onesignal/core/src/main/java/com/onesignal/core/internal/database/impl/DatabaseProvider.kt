@@ -16,7 +16,7 @@ internal class DatabaseProvider(
             if (osDatabase == null) {
                 synchronized(lock) {
                     if (osDatabase == null) {
-                        osDatabase = OSDatabase(OutcomeTableProvider(), _application.appContext)
+                        osDatabase = OSDatabase(OutcomeTableProvider(), _application.appContext, _useWriteAheadLogging = true)
                     }
                 }
             }
@@ -0,0 +1,29 @@
+package com.onesignal.core.internal.database.impl
+
+import com.onesignal.common.threading.launchOnIO
+import com.onesignal.core.internal.application.IApplicationLifecycleHandler
+import com.onesignal.core.internal.application.IApplicationService
+import com.onesignal.core.internal.database.IDatabaseProvider
+import com.onesignal.core.internal.startup.IStartableService
+
+/**
+ * Commits the database's queued writes as soon as the app is backgrounded, the process may not
+ * live long enough for their scheduled commit.
+ */
+internal class DatabaseWriteFlusher(
+    private val _applicationService: IApplicationService,
+    private val _databaseProvider: IDatabaseProvider,
+) : IStartableService,
+    IApplicationLifecycleHandler {
+    override fun start() {
+        _applicationService.addApplicationLifecycleHandler(this)
+    }
+
+    override fun onFocus(firedOnSubscribe: Boolean) { }
+
+    override fun onUnfocused() {
+        launchOnIO {
+            _databaseProvider.os.flushWrites()
+        }
+    }
+}
@@ -3,14 +3,18 @@ package com.onesignal.core.internal.database.impl
 import android.content.ContentValues
 import android.content.Context
 import android.database.Cursor
+import android.database.DatabaseUtils
 import android.database.SQLException
 import android.database.sqlite.SQLiteCantOpenDatabaseException
 import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteDatabaseLockedException
+import android.database.sqlite.SQLiteDoneException
 import android.database.sqlite.SQLiteException
 import android.database.sqlite.SQLiteOpenHelper
+import android.database.sqlite.SQLiteStatement
 import android.os.SystemClock
 import android.provider.BaseColumns
+import com.onesignal.common.threading.launchOnIO
 import com.onesignal.core.internal.database.ICursor
 import com.onesignal.core.internal.database.IDatabase
 import com.onesignal.debug.internal.logging.Logging
@@ -19,12 +23,58 @@ import com.onesignal.session.internal.outcomes.impl.OutcomesDbContract.SQL_CREAT
 import com.onesignal.session.internal.outcomes.impl.OutcomesDbContract.SQL_CREATE_OUTCOME_ENTRIES_V4
 import com.onesignal.session.internal.outcomes.impl.OutcomesDbContract.SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V1
 import com.onesignal.session.internal.outcomes.impl.OutcomesDbContract.SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V2
+import kotlinx.coroutines.delay
+import java.util.concurrent.atomic.AtomicInteger
 
+/**
+ * The SDK's SQLite database.
+ *
+ * By default every operation is serialized on a single process-wide lock. When
+ * [_useWriteAheadLogging] is set the database runs in SQLite's write-ahead logging mode:
+ * writes are still serialized on that lock, but [query] takes no lock and runs on one of the
+ * pool's read connections, so reads neither wait for nor block an in-progress write.
+ *
+ * Writes queued with [enqueueWrite] are committed [WRITE_BEHIND_DELAY_MS] later in a single
+ * transaction. Every other operation commits the queue first, so it never sees the database
+ * without them, except those within a [runInTransaction] block, which the queue is committed
+ * before.
+ */
 internal open class OSDatabase(
     private val _outcomeTableProvider: OutcomeTableProvider,
     context: Context?,
     version: Int = DB_VERSION,
+    private val _useWriteAheadLogging: Boolean = false,
 ) : SQLiteOpenHelper(context, DATABASE_NAME, null, version), IDatabase {
+    init {
+        // Must be set before the database is first opened, the journal mode is applied on open.
+        setWriteAheadLoggingEnabled(_useWriteAheadLogging)
+    }
+
+    private val statementCache = StatementCache()
+
+    /**
+     * The latency, lock wait and row counts of the operations run on this database.
+     */
+    val metrics = DatabaseMetrics()
+
+    /**
+     * The queued writes in the order they were queued, keyed by table and key, or by a unique
+     * object for writes that must not be replaced.
+     */
+    private val pendingWrites = LinkedHashMap<Any, (IDatabase) -> Unit>()
+
+    /**
+     * Set from the moment a write is queued until it is committed, so the operations that
+     * follow know to commit it first without taking any lock in the common case.
+     */
+    @Volatile
+    private var hasPendingWrites = false
+
+    // Guarded by LOCK, the number of runInTransaction calls in progress, and whether an operation
+    // within them failed. Such a failure rolls back the outermost transaction, see runInTransaction.
+    private var transactionDepth = 0
+    private var transactionFailed = false
+
     /**
      * Should be used in the event that we don't want to retry getting the a [SQLiteDatabase] instance
      * Replaced all [SQLiteOpenHelper.getReadableDatabase] with [SQLiteOpenHelper.getWritableDatabase]
@@ -35,20 +85,20 @@ internal open class OSDatabase(
      * @see [StackOverflow | What are best practices for SQLite on Android](https://stackoverflow.com/questions/2493331/what-are-the-best-practices-for-sqlite-on-android/3689883.3689883)
      */
     private fun getSQLiteDatabase(): SQLiteDatabase {
-        synchronized(LOCK) {
-            return try {
-                writableDatabase
-            } catch (e: SQLiteCantOpenDatabaseException) {
-                // SQLiteCantOpenDatabaseException
-                // Retry in-case of rare device issues with opening database.
-                // https://github.com/OneSignal/OneSignal-Android-SDK/issues/136
-                // SQLiteDatabaseLockedException
-                // Retry in-case of rare device issues with locked database.
-                // https://github.com/OneSignal/OneSignal-Android-SDK/issues/988
-                throw e
-            } catch (e: SQLiteDatabaseLockedException) {
-                throw e
-            }
+        // Not guarded by LOCK, SQLiteOpenHelper synchronizes opening the database itself. Writers
+        // already hold LOCK here, and WAL mode readers must not wait on it.
+        return try {
+            writableDatabase
+        } catch (e: SQLiteCantOpenDatabaseException) {
+            // SQLiteCantOpenDatabaseException
+            // Retry in-case of rare device issues with opening database.
+            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/136
+            // SQLiteDatabaseLockedException
+            // Retry in-case of rare device issues with locked database.
+            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/988
+            throw e
+        } catch (e: SQLiteDatabaseLockedException) {
+            throw e
         }
     }
 
@@ -59,22 +109,55 @@ internal open class OSDatabase(
      * @see OSDatabase.getSQLiteDatabase
      */
     private fun getSQLiteDatabaseWithRetries(): SQLiteDatabase {
-        synchronized(LOCK) {
-            var count = 0
-            while (true) {
-                try {
-                    return getSQLiteDatabase()
-                } catch (e: SQLiteCantOpenDatabaseException) {
-                    if (++count >= DB_OPEN_RETRY_MAX) throw e
-                    SystemClock.sleep((count * DB_OPEN_RETRY_BACKOFF).toLong())
-                } catch (e: SQLiteDatabaseLockedException) {
-                    if (++count >= DB_OPEN_RETRY_MAX) throw e
-                    SystemClock.sleep((count * DB_OPEN_RETRY_BACKOFF).toLong())
-                }
+        var count = 0
+        while (true) {
+            try {
+                return getSQLiteDatabase()
+            } catch (e: SQLiteCantOpenDatabaseException) {
+                if (++count >= DB_OPEN_RETRY_MAX) throw e
+                backOffBeforeRetry(count, e)
+            } catch (e: SQLiteDatabaseLockedException) {
+                if (++count >= DB_OPEN_RETRY_MAX) throw e
+                backOffBeforeRetry(count, e)
             }
         }
     }
 
+    private fun backOffBeforeRetry(
+        attempt: Int,
+        e: SQLiteException,
+    ) {
+        // Writers call this holding LOCK, every other operation waits out the backoff too.
+        metrics.recordOpenRetry()
+        Logging.warn("OSDatabase: Opening the database failed, retry $attempt in ${attempt * DB_OPEN_RETRY_BACKOFF}ms", e)
+        SystemClock.sleep((attempt * DB_OPEN_RETRY_BACKOFF).toLong())
+    }
+
+    /**
+     * Run [block] holding [LOCK], counted in [LOCK_USERS] while waiting for and holding it.
+     */
+    private inline fun <T> withLock(block: () -> T): T {
+        LOCK_USERS.incrementAndGet()
+        try {
+            synchronized(LOCK) {
+                return block()
+            }
+        } finally {
+            LOCK_USERS.decrementAndGet()
+        }
+    }
+
+    /**
+     * Run [block] under the lock readers need: none in WAL mode, where SQLite isolates each
+     * read connection from the writer, otherwise the same [LOCK] writers hold.
+     */
+    private inline fun <T> withReadLock(block: () -> T): T {
+        if (_useWriteAheadLogging) return block()
+        withLock {
+            return block()
+        }
+    }
+
     override fun query(
         table: String,
         columns: Array<String>?,
@@ -86,10 +169,13 @@ internal open class OSDatabase(
         limit: String?,
         action: (ICursor) -> Unit,
     ) {
-        val cursor: Cursor
-        synchronized(LOCK) {
-            if (limit == null) {
-                cursor =
+        flushWrites()
+        val start = System.nanoTime()
+        var lockAcquired = start
+        val cursor: Cursor =
+            withReadLock {
+                lockAcquired = System.nanoTime()
+                if (limit == null) {
                     getSQLiteDatabaseWithRetries().query(
                         table,
                         columns,
@@ -99,8 +185,7 @@ internal open class OSDatabase(
                         having,
                         orderBy,
                     )
-            } else {
-                cursor =
+                } else {
                     getSQLiteDatabaseWithRetries().query(
                         table,
                         columns,
@@ -111,12 +196,56 @@ internal open class OSDatabase(
                         orderBy,
                         limit,
                     )
+                }
             }
-        }
 
+        var rows = 0
         cursor.use {
             val dbCursor = DatabaseCursor(it)
             action(dbCursor)
+            rows = it.count
+        }
+        metrics.record(OPERATION_QUERY, table, whereClause, start, lockAcquired, rows)
+    }
+
+    override fun longForQuery(
+        sql: String,
+        bindArgs: Array<String>?,
+    ): Long? = simpleQuery(sql, bindArgs) { it.simpleQueryForLong() }
+
+    override fun stringForQuery(
+        sql: String,
+        bindArgs: Array<String>?,
+    ): String? = simpleQuery(sql, bindArgs) { it.simpleQueryForString() }
+
+    private fun <T> simpleQuery(
+        sql: String,
+        bindArgs: Array<String>?,
+        query: (SQLiteStatement) -> T,
+    ): T? {
+        flushWrites()
+        val start = System.nanoTime()
+        var lockAcquired = start
+        val result =
+            withReadLock {
+                lockAcquired = System.nanoTime()
+                try {
+                    statementCache.withStatement(getSQLiteDatabaseWithRetries(), sql, bindArgs, query)
+                } catch (e: SQLiteDoneException) {
+                    // The query returned no rows.
+                    null
+                }
+            }
+        metrics.record(OPERATION_QUERY, DatabaseMetrics.tableOf(sql), sql, start, lockAcquired, if (result == null) 0 else 1)
+        return result
+    }
+
+    override fun close() {
+        flushWrites()
+        withLock {
+            // Statements are compiled against the open database, they can not outlive it.
+            statementCache.clear()
+            super.close()
         }
     }
 
@@ -125,18 +254,24 @@ internal open class OSDatabase(
         nullColumnHack: String?,
         values: ContentValues?,
     ) {
-        synchronized(LOCK) {
+        flushWrites()
+        val start = System.nanoTime()
+        var lockAcquired = start
+        withLock {
+            lockAcquired = System.nanoTime()
             val writableDb = getSQLiteDatabaseWithRetries()
             try {
                 writableDb.beginTransaction()
                 writableDb.insert(table, nullColumnHack, values)
                 writableDb.setTransactionSuccessful()
             } catch (e: SQLiteException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error inserting on table: $table with nullColumnHack: $nullColumnHack and values: $values",
                     e,
                 )
             } catch (e: IllegalStateException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error under inserting transaction under table: $table with nullColumnHack: $nullColumnHack and values: $values",
                     e,
@@ -151,6 +286,7 @@ internal open class OSDatabase(
                 }
             }
         }
+        metrics.record(OPERATION_INSERT, table, null, start, lockAcquired, 1)
     }
 
     @Throws(SQLException::class)
@@ -159,18 +295,24 @@ internal open class OSDatabase(
         nullColumnHack: String?,
         values: ContentValues?,
     ) {
-        synchronized(LOCK) {
+        flushWrites()
+        val start = System.nanoTime()
+        var lockAcquired = start
+        withLock {
+            lockAcquired = System.nanoTime()
             val writableDb = getSQLiteDatabaseWithRetries()
             try {
                 writableDb.beginTransaction()
                 writableDb.insertOrThrow(table, nullColumnHack, values)
                 writableDb.setTransactionSuccessful()
             } catch (e: SQLiteException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error inserting or throw on table: $table with nullColumnHack: $nullColumnHack and values: $values",
                     e,
                 )
             } catch (e: IllegalStateException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error under inserting or throw transaction under table: $table with nullColumnHack: $nullColumnHack and values: $values",
                     e,
@@ -185,6 +327,7 @@ internal open class OSDatabase(
                 }
             }
         }
+        metrics.record(OPERATION_INSERT, table, null, start, lockAcquired, 1)
     }
 
     override fun update(
@@ -195,18 +338,24 @@ internal open class OSDatabase(
     ): Int {
         var result = 0
         if (values.toString().isEmpty()) return result
-        synchronized(LOCK) {
+        flushWrites()
+        val start = System.nanoTime()
+        var lockAcquired = start
+        withLock {
+            lockAcquired = System.nanoTime()
             val writableDb = getSQLiteDatabaseWithRetries()
             try {
                 writableDb.beginTransaction()
                 result = writableDb.update(table, values, whereClause, whereArgs)
                 writableDb.setTransactionSuccessful()
             } catch (e: SQLiteException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error updating on table: $table with whereClause: $whereClause and whereArgs: $whereArgs",
                     e,
                 )
             } catch (e: IllegalStateException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error under update transaction under table: $table with whereClause: $whereClause and whereArgs: $whereArgs",
                     e,
@@ -221,6 +370,7 @@ internal open class OSDatabase(
                 }
             }
         }
+        metrics.record(OPERATION_UPDATE, table, whereClause, start, lockAcquired, result)
         return result
     }
 
@@ -229,18 +379,25 @@ internal open class OSDatabase(
         whereClause: String?,
         whereArgs: Array<String>?,
     ) {
-        synchronized(LOCK) {
+        flushWrites()
+        var deleted = 0
+        val start = System.nanoTime()
+        var lockAcquired = start
+        withLock {
+            lockAcquired = System.nanoTime()
             val writableDb = getSQLiteDatabaseWithRetries()
             try {
                 writableDb.beginTransaction()
-                writableDb.delete(table, whereClause, whereArgs)
+                deleted = writableDb.delete(table, whereClause, whereArgs)
                 writableDb.setTransactionSuccessful()
             } catch (e: SQLiteException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error deleting on table: $table with whereClause: $whereClause and whereArgs: $whereArgs",
                     e,
                 )
             } catch (e: IllegalStateException) {
+                markTransactionFailed()
                 Logging.error(
                     "Error under delete transaction under table: $table with whereClause: $whereClause and whereArgs: $whereArgs",
                     e,
@@ -255,6 +412,130 @@ internal open class OSDatabase(
                 }
             }
         }
+        metrics.record(OPERATION_DELETE, table, whereClause, start, lockAcquired, deleted)
+    }
+
+    override fun execSQL(sql: String) {
+        flushWrites()
+        val start = System.nanoTime()
+        var lockAcquired = start
+        var steps = 0
+        withLock {
+            lockAcquired = System.nanoTime()
+            // Stepped through a cursor because SQLiteDatabase.execSQL steps a statement only once,
+            // and some PRAGMAs, i.e. incremental_vacuum, do one unit of work per step.
+            getSQLiteDatabaseWithRetries().rawQuery(sql, null).use {
+                while (it.moveToNext()) steps++
+            }
+        }
+        metrics.record(OPERATION_EXEC, "-", sql, start, lockAcquired, steps)
+    }
+
+    override fun execSQLIfIdle(sql: String): Boolean {
+        // Any operation waiting for LOCK would wait out the whole statement.
+        if (hasPendingWrites || LOCK_USERS.get() > 0) return false
+        execSQL(sql)
+        return true
+    }
+
+    @Throws(SQLException::class)
+    override fun <T> runInTransaction(block: (IDatabase) -> T): T {
+        // Before taking the lock, so the queued writes are committed on their own, see flushWrites.
+        flushWrites()
+        val start = System.nanoTime()
+        withLock {
+            val lockAcquired = System.nanoTime()
+            val writableDb = getSQLiteDatabaseWithRetries()
+            writableDb.beginTransaction()
+            if (transactionDepth++ == 0) transactionFailed = false
+            var ended = false
+            val result =
+                try {
+                    // The single statement operations called from block nest their own transactions
+                    // within this one, a nested failure marks this one as failed as well.
+                    block(this).also { if (!transactionFailed) writableDb.setTransactionSuccessful() }
+                } finally {
+                    transactionDepth--
+                    try {
+                        writableDb.endTransaction() // May throw if transaction was never opened or DB is full.
+                        ended = true
+                    } catch (e: IllegalStateException) {
+                        Logging.error("Error closing transaction! ", e)
+                    } catch (e: SQLiteException) {
+                        Logging.error("Error closing transaction! ", e)
+                    }
+                    // Its operations are recorded on their own as well, this is the transaction as a whole.
+                    metrics.record(OPERATION_TRANSACTION, "-", null, start, lockAcquired, 0)
+                }
+
+            if (transactionFailed || !ended) {
+                throw SQLException("OSDatabase: Transaction rolled back, an operation within it failed")
+            }
+            return result
+        }
+    }
+
+    // Called by an operation that failed under LOCK, the transaction it is part of, if any, is rolled back.
+    private fun markTransactionFailed() {
+        if (transactionDepth > 0) transactionFailed = true
+    }
+
+    override fun enqueueWrite(
+        table: String,
+        key: String?,
+        block: (IDatabase) -> Unit,
+    ) {
+        val wasEmpty: Boolean
+        synchronized(pendingWrites) {
+            wasEmpty = pendingWrites.isEmpty()
+            val writeKey: Any = if (key != null) "$table|$key" else Any()
+            // Removed first so the replacement runs after the writes queued since the original.
+            pendingWrites.remove(writeKey)
+            pendingWrites[writeKey] = block
+            hasPendingWrites = true
+        }
+
+        if (wasEmpty) {
+            launchOnIO {
+                delay(WRITE_BEHIND_DELAY_MS)
+                flushWrites()
+            }
+        }
+    }
+
+    override fun flushWrites() {
+        if (!hasPendingWrites) return
+        // Holding LOCK, this thread is within an operation, a transaction or running the queued
+        // writes. Committing the queue here would make it part of the caller's transaction,
+        // rolled back with it, or rolling it back on failure.
+        if (Thread.holdsLock(LOCK)) return
+
+        withLock {
+            val writes =
+                synchronized(pendingWrites) {
+                    val writes = pendingWrites.values.toList()
+                    pendingWrites.clear()
+                    writes
+                }
+            if (writes.isEmpty()) return
+
+            try {
+                runInTransaction { db -> writes.forEach { it(db) } }
+            } catch (e: Exception) {
+                // Rolled back as a whole, committing each write on its own only loses the one that fails.
+                Logging.warn("OSDatabase: Committing ${writes.size} queued writes failed, committing them one at a time", e)
+                for (write in writes) {
+                    try {
+                        runInTransaction(write)
+                    } catch (e: Exception) {
+                        Logging.error("OSDatabase: Error committing a queued write", e)
+                    }
+                }
+            } finally {
+                // Only cleared once committed, until then a WAL mode reader must wait here for it.
+                synchronized(pendingWrites) { hasPendingWrites = pendingWrites.isNotEmpty() }
+            }
+        }
     }
 
     override fun onCreate(db: SQLiteDatabase) {
@@ -262,6 +543,8 @@ internal open class OSDatabase(
         db.execSQL(SQL_CREATE_OUTCOME_ENTRIES_V4)
         db.execSQL(SQL_CREATE_UNIQUE_OUTCOME_ENTRIES_V2)
         db.execSQL(SQL_CREATE_IN_APP_MESSAGE_ENTRIES)
+        db.execSQL(SQL_CREATE_NOTIFICATION_PAYLOAD_ENTRIES)
+        db.execSQL(OneSignalDbContract.NotificationPayloadTable.TRIGGER_CREATE_DELETE_WITH_NOTIFICATION)
         for (ind in SQL_INDEX_ENTRIES) {
             db.execSQL(ind)
         }
@@ -281,6 +564,10 @@ internal open class OSDatabase(
             //   However this shouldn't happen as we clearing the database on onDowngrade
             Logging.error("Error in upgrade, migration may have already run! Skipping!", e)
         }
+
+        // Not caught, should moving the payloads fail the whole upgrade is rolled back rather
+        // than the database being stamped v10 without them. It is tried again on the next open.
+        if (oldVersion < 10 && newVersion >= 10) upgradeToV10(db)
     }
 
     @Synchronized
@@ -371,6 +658,32 @@ internal open class OSDatabase(
         _outcomeTableProvider.upgradeOutcomeTableRevision3To4(db)
     }
 
+    // Move full_data out of the notification table into notification_payload. SQLite can not
+    // drop a column on older Android versions, so it is cleared rather than dropped, and only once
+    // every payload is verified to have been copied. Any failure throws, see onUpgrade.
+    private fun upgradeToV10(db: SQLiteDatabase) {
+        db.execSQL(SQL_CREATE_NOTIFICATION_PAYLOAD_ENTRIES)
+        db.execSQL(OneSignalDbContract.NotificationPayloadTable.TRIGGER_CREATE_DELETE_WITH_NOTIFICATION)
+        db.execSQL(
+            "INSERT OR REPLACE INTO " + OneSignalDbContract.NotificationPayloadTable.TABLE_NAME + " (" +
+                OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_NOTIFICATION_ROW_ID + COMMA_SEP +
+                OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA + ") " +
+                "SELECT " + BaseColumns._ID + COMMA_SEP + OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA +
+                " FROM " + OneSignalDbContract.NotificationTable.TABLE_NAME +
+                " WHERE " + OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA + " IS NOT NULL;",
+        )
+
+        val notCopied = DatabaseUtils.longForQuery(db, SQL_COUNT_PAYLOADS_NOT_COPIED, null)
+        if (notCopied > 0) {
+            throw SQLiteException("OSDatabase: $notCopied notification payloads were not copied to ${OneSignalDbContract.NotificationPayloadTable.TABLE_NAME}")
+        }
+
+        db.execSQL(
+            "UPDATE " + OneSignalDbContract.NotificationTable.TABLE_NAME +
+                " SET " + OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA + " = NULL;",
+        )
+    }
+
     override fun onDowngrade(
         db: SQLiteDatabase,
         oldVersion: Int,
@@ -390,8 +703,11 @@ internal open class OSDatabase(
     }
 
     companion object {
-        private const val DB_VERSION = 9
+        private const val DB_VERSION = 10
         private val LOCK = Any()
+
+        // The number of threads holding or waiting for LOCK.
+        private val LOCK_USERS = AtomicInteger()
         private const val DATABASE_NAME = "OneSignal.db"
         private const val INTEGER_PRIMARY_KEY_TYPE = " INTEGER PRIMARY KEY"
         private const val TEXT_TYPE = " TEXT"
@@ -401,6 +717,13 @@ internal open class OSDatabase(
         private const val COMMA_SEP = ","
         private const val DB_OPEN_RETRY_MAX = 5
         private const val DB_OPEN_RETRY_BACKOFF = 400
+        private const val OPERATION_QUERY = "query"
+        private const val OPERATION_INSERT = "insert"
+        private const val OPERATION_UPDATE = "update"
+        private const val OPERATION_DELETE = "delete"
+        private const val OPERATION_EXEC = "exec"
+        private const val OPERATION_TRANSACTION = "transaction"
+        private const val WRITE_BEHIND_DELAY_MS = 250L
         private const val SQL_CREATE_ENTRIES =
             "CREATE TABLE " + OneSignalDbContract.NotificationTable.TABLE_NAME + " (" +
                 BaseColumns._ID + INTEGER_PRIMARY_KEY_TYPE + COMMA_SEP +
@@ -426,6 +749,21 @@ internal open class OSDatabase(
                 OneSignalDbContract.InAppMessageTable.COLUMN_DISPLAYED_IN_SESSION + INT_TYPE + COMMA_SEP +
                 OneSignalDbContract.InAppMessageTable.COLUMN_CLICK_IDS + TEXT_TYPE +
                 ");"
+        private const val SQL_CREATE_NOTIFICATION_PAYLOAD_ENTRIES =
+            "CREATE TABLE " + OneSignalDbContract.NotificationPayloadTable.TABLE_NAME + " (" +
+                OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_NOTIFICATION_ROW_ID + INTEGER_PRIMARY_KEY_TYPE + COMMA_SEP +
+                OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA + TEXT_TYPE +
+                ");"
+
+        // The notifications whose full_data is not in notification_payload, after the v10 copy.
+        private const val SQL_COUNT_PAYLOADS_NOT_COPIED =
+            "SELECT COUNT(*) FROM " + OneSignalDbContract.NotificationTable.TABLE_NAME +
+                " LEFT JOIN " + OneSignalDbContract.NotificationPayloadTable.TABLE_NAME +
+                " ON " + OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_NOTIFICATION_ROW_ID + " = " +
+                OneSignalDbContract.NotificationTable.TABLE_NAME + "." + BaseColumns._ID +
+                " WHERE " + OneSignalDbContract.NotificationTable.TABLE_NAME + "." + OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA + " IS NOT NULL" +
+                " AND " + OneSignalDbContract.NotificationPayloadTable.TABLE_NAME + "." + OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA +
+                " IS NOT " + OneSignalDbContract.NotificationTable.TABLE_NAME + "." + OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA
         private val SQL_INDEX_ENTRIES =
             arrayOf(
                 OneSignalDbContract.NotificationTable.INDEX_CREATE_NOTIFICATION_ID,
@@ -17,7 +17,8 @@ class OneSignalDbContract {
         const val COLUMN_NAME_CREATED_TIME = "created_time"
         const val COLUMN_NAME_EXPIRE_TIME = "expire_time" // created_time + TTL
 
-        // JSON formatted string of the full FCM bundle
+        // JSON formatted string of the full FCM bundle. Moved to NotificationPayloadTable on DB v10,
+        // left null for the notifications saved since, read only when a notification has no payload row.
         const val COLUMN_NAME_FULL_DATA = "full_data"
         const val INDEX_CREATE_NOTIFICATION_ID =
             "CREATE INDEX notification_notification_id_idx ON notification(notification_id); "
@@ -33,6 +34,23 @@ class OneSignalDbContract {
             "CREATE INDEX notification_expire_time_idx ON notification(expire_time); "
     }
 
+    /**
+     * The full FCM bundle of each notification, kept apart from [NotificationTable] so the
+     * status queries run on every notification do not page through large payloads. A row is
+     * keyed by the `_id` of its notification row, as several rows may have the same notification
+     * id, and is deleted along with it.
+     */
+    object NotificationPayloadTable {
+        const val TABLE_NAME = "notification_payload"
+        const val COLUMN_NAME_NOTIFICATION_ROW_ID = "notification_row_id" // NotificationTable _id, primary key
+
+        // JSON formatted string of the full FCM bundle
+        const val COLUMN_NAME_FULL_DATA = "full_data"
+        const val TRIGGER_CREATE_DELETE_WITH_NOTIFICATION =
+            "CREATE TRIGGER notification_payload_delete_trigger AFTER DELETE ON notification " +
+                "BEGIN DELETE FROM notification_payload WHERE notification_row_id = OLD._id; END;"
+    }
+
     object InAppMessageTable : BaseColumns {
         const val TABLE_NAME = "in_app_message"
         const val COLUMN_NAME_MESSAGE_ID = "message_id" // OneSignal IAM Ids
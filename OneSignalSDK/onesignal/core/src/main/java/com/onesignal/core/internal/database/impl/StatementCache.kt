@@ -0,0 +1,78 @@
+package com.onesignal.core.internal.database.impl
+
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteStatement
+
+/**
+ * A bounded, least recently used cache of compiled [SQLiteStatement]s keyed by their SQL, so
+ * a query run on every push is parsed and compiled once and then only re-bound per call.
+ *
+ * A [SQLiteStatement] holds its bindings, so each cached statement is used by one thread at
+ * a time. A statement evicted while a caller is waiting on it is not reused, the caller
+ * compiles a one-off statement instead.
+ */
+internal class StatementCache(
+    private val maxSize: Int = DEFAULT_MAX_SIZE,
+) {
+    private class Entry(val statement: SQLiteStatement) {
+        var isClosed = false
+    }
+
+    private val entries =
+        object : LinkedHashMap<String, Entry>(maxSize, 0.75f, true) {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>): Boolean {
+                if (size <= maxSize) return false
+                close(eldest.value)
+                return true
+            }
+        }
+
+    /**
+     * Bind [bindArgs] to the cached statement for [sql], compiling it against [db] on first
+     * use, and run [block] with it.
+     */
+    fun <T> withStatement(
+        db: SQLiteDatabase,
+        sql: String,
+        bindArgs: Array<String>?,
+        block: (SQLiteStatement) -> T,
+    ): T {
+        val entry = synchronized(entries) { entries.getOrPut(sql) { Entry(db.compileStatement(sql)) } }
+        synchronized(entry) {
+            if (!entry.isClosed) return bindAndRun(entry.statement, bindArgs, block)
+        }
+
+        return db.compileStatement(sql).use { bindAndRun(it, bindArgs, block) }
+    }
+
+    /**
+     * Close and forget every cached statement, i.e. before the database is closed.
+     */
+    fun clear() {
+        synchronized(entries) {
+            entries.values.forEach { close(it) }
+            entries.clear()
+        }
+    }
+
+    private fun <T> bindAndRun(
+        statement: SQLiteStatement,
+        bindArgs: Array<String>?,
+        block: (SQLiteStatement) -> T,
+    ): T {
+        statement.clearBindings()
+        bindArgs?.forEachIndexed { index, arg -> statement.bindString(index + 1, arg) }
+        return block(statement)
+    }
+
+    private fun close(entry: Entry) {
+        synchronized(entry) {
+            entry.isClosed = true
+            entry.statement.close()
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_SIZE = 16
+    }
+}
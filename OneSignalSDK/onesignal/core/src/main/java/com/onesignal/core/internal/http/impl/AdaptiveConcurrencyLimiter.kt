@@ -0,0 +1,106 @@
+package com.onesignal.core.internal.http.impl
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+
+/**
+ * Caps the number of HTTP requests in flight, adjusting the cap with AIMD (additive increase,
+ * multiplicative decrease) based on the observed latency of completed requests:
+ * - A request that succeeds within [latencyTargetMs] grows the limit by `1 / limit`, so the
+ *   limit grows by roughly one for each full window of fast requests.
+ * - A request that fails or exceeds [latencyTargetMs] halves the limit.
+ *
+ * The limit is always kept between [minLimit] and [maxLimit]. Callers that can't get a slot
+ * suspend in [acquire] (FIFO) until a slot is released.
+ */
+internal class AdaptiveConcurrencyLimiter(
+    private val minLimit: Int = DEFAULT_MIN_LIMIT,
+    private val maxLimit: Int = DEFAULT_MAX_LIMIT,
+    initialLimit: Int = DEFAULT_INITIAL_LIMIT,
+    private val latencyTargetMs: Long = DEFAULT_LATENCY_TARGET_MS,
+) {
+    private val lock = Any()
+    private var limit: Double = initialLimit.coerceIn(minLimit, maxLimit).toDouble()
+    private var inFlight = 0
+    private val waiters = ArrayDeque<CompletableDeferred<Unit>>()
+
+    /**
+     * The current concurrency limit.
+     */
+    val currentLimit: Int
+        get() = synchronized(lock) { limit.toInt() }
+
+    /**
+     * The number of requests currently holding a slot.
+     */
+    val currentInFlight: Int
+        get() = synchronized(lock) { inFlight }
+
+    /**
+     * Suspend until a request slot is available. Every successful call must be balanced
+     * with a call to [release].
+     */
+    suspend fun acquire() {
+        val waiter: CompletableDeferred<Unit>
+        synchronized(lock) {
+            if (inFlight < limit.toInt()) {
+                inFlight++
+                return
+            }
+            waiter = CompletableDeferred()
+            waiters.addLast(waiter)
+        }
+
+        try {
+            waiter.await()
+        } catch (e: CancellationException) {
+            val wasGranted = synchronized(lock) { !waiters.remove(waiter) }
+            // the slot was handed to us just as we were cancelled, pass it on.
+            if (wasGranted) {
+                releaseSlot()
+            }
+            throw e
+        }
+    }
+
+    /**
+     * Release a slot previously obtained through [acquire], feeding the outcome of the
+     * request into the limit calculation.
+     *
+     * @param latencyMs How long the request took.
+     * @param success Whether the request completed without a transport failure or server error.
+     */
+    fun release(
+        latencyMs: Long,
+        success: Boolean,
+    ) {
+        synchronized(lock) {
+            limit =
+                if (success && latencyMs <= latencyTargetMs) {
+                    (limit + 1.0 / limit).coerceAtMost(maxLimit.toDouble())
+                } else {
+                    (limit / 2).coerceAtLeast(minLimit.toDouble())
+                }
+        }
+        releaseSlot()
+    }
+
+    private fun releaseSlot() {
+        val toGrant = mutableListOf<CompletableDeferred<Unit>>()
+        synchronized(lock) {
+            inFlight--
+            while (inFlight < limit.toInt() && waiters.isNotEmpty()) {
+                inFlight++
+                toGrant.add(waiters.removeFirst())
+            }
+        }
+        toGrant.forEach { it.complete(Unit) }
+    }
+
+    companion object {
+        const val DEFAULT_MIN_LIMIT = 1
+        const val DEFAULT_MAX_LIMIT = 16
+        const val DEFAULT_INITIAL_LIMIT = 4
+        const val DEFAULT_LATENCY_TARGET_MS = 5_000L
+    }
+}
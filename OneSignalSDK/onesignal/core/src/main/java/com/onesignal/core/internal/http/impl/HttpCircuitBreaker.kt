@@ -0,0 +1,128 @@
+package com.onesignal.core.internal.http.impl
+
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.internal.logging.Logging
+
+/**
+ * Tracks consecutive request failures per [HttpEndpointClass] and stops sending requests to an
+ * endpoint class that is failing, so a backend brownout doesn't cause every subsystem to wait
+ * out its own full request timeout.
+ *
+ * Each endpoint class moves through the standard states:
+ * - [State.CLOSED]: requests flow normally. After [failureThreshold] consecutive failures
+ *   the circuit opens.
+ * - [State.OPEN]: requests are rejected immediately until [openDurationMs] has elapsed.
+ * - [State.HALF_OPEN]: a single probe request is let through. Success closes the circuit,
+ *   failure re-opens it.
+ */
+internal class HttpCircuitBreaker(
+    private val _time: ITime,
+    private val failureThreshold: Int = DEFAULT_FAILURE_THRESHOLD,
+    private val openDurationMs: Long = DEFAULT_OPEN_DURATION_MS,
+) {
+    enum class State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    private class Circuit {
+        var state = State.CLOSED
+        var consecutiveFailures = 0
+        var openedAt = 0L
+        var probeInFlight = false
+    }
+
+    private val circuits = mutableMapOf<HttpEndpointClass, Circuit>()
+
+    /**
+     * Attempt to start a request to the [endpoint] class.
+     *
+     * @return 0 when the request may proceed, otherwise the number of milliseconds remaining
+     * before the circuit will allow a probe request through.
+     */
+    @Synchronized
+    fun tryAcquire(endpoint: HttpEndpointClass): Long {
+        val circuit = circuits.getOrPut(endpoint) { Circuit() }
+        return when (circuit.state) {
+            State.CLOSED -> 0
+            State.OPEN -> {
+                val remaining = circuit.openedAt + openDurationMs - _time.currentTimeMillis
+                if (remaining > 0) {
+                    remaining
+                } else {
+                    Logging.debug("HttpCircuitBreaker: $endpoint is half-open, allowing a probe request")
+                    circuit.state = State.HALF_OPEN
+                    circuit.probeInFlight = true
+                    0
+                }
+            }
+            State.HALF_OPEN -> {
+                if (circuit.probeInFlight) {
+                    openDurationMs
+                } else {
+                    circuit.probeInFlight = true
+                    0
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the outcome of a request previously allowed by [tryAcquire].
+     */
+    @Synchronized
+    fun onResult(
+        endpoint: HttpEndpointClass,
+        success: Boolean,
+    ) {
+        val circuit = circuits.getOrPut(endpoint) { Circuit() }
+        circuit.probeInFlight = false
+
+        if (success) {
+            if (circuit.state != State.CLOSED) {
+                Logging.info("HttpCircuitBreaker: $endpoint recovered, closing circuit")
+            }
+            circuit.state = State.CLOSED
+            circuit.consecutiveFailures = 0
+            return
+        }
+
+        circuit.consecutiveFailures++
+        if (circuit.state == State.HALF_OPEN || circuit.consecutiveFailures >= failureThreshold) {
+            if (circuit.state != State.OPEN) {
+                Logging.warn(
+                    "HttpCircuitBreaker: $endpoint failed ${circuit.consecutiveFailures} times in a row, " +
+                        "failing requests fast for ${openDurationMs}ms",
+                )
+            }
+            circuit.state = State.OPEN
+            circuit.openedAt = _time.currentTimeMillis
+        }
+    }
+
+    /**
+     * Release a request previously allowed by [tryAcquire] that ended without an outcome
+     * (i.e. the caller was cancelled), so a half-open circuit can let another probe through.
+     */
+    @Synchronized
+    fun onAbandoned(endpoint: HttpEndpointClass) {
+        circuits[endpoint]?.probeInFlight = false
+    }
+
+    @Synchronized
+    fun stateOf(endpoint: HttpEndpointClass): State = circuits[endpoint]?.state ?: State.CLOSED
+
+    companion object {
+        const val DEFAULT_FAILURE_THRESHOLD = 5
+        const val DEFAULT_OPEN_DURATION_MS = 30_000L
+    }
+}
+
+/**
+ * The throwable set on the [com.onesignal.core.internal.http.HttpResponse] of a request that
+ * was rejected without going to the network because the circuit for its endpoint is open.
+ */
+internal class CircuitOpenException(
+    endpoint: HttpEndpointClass,
+) : Exception("Circuit for $endpoint is open")
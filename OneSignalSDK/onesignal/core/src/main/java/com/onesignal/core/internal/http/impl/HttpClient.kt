@@ -2,7 +2,6 @@ package com.onesignal.core.internal.http.impl
 
 import android.net.TrafficStats
 import android.os.Build
-import com.onesignal.common.JSONUtils
 import com.onesignal.common.OneSignalUtils
 import com.onesignal.common.OneSignalWrapper
 import com.onesignal.common.threading.launchOnIO
@@ -14,27 +13,27 @@ import com.onesignal.core.internal.preferences.IPreferencesService
 import com.onesignal.core.internal.preferences.PreferenceOneSignalKeys
 import com.onesignal.core.internal.preferences.PreferenceStores
 import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.LogLevel
 import com.onesignal.debug.internal.logging.Logging
+import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.TimeoutCancellationException
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.withTimeout
 import org.json.JSONObject
 import java.net.ConnectException
 import java.net.HttpURLConnection
-import java.net.URL
 import java.net.UnknownHostException
-import java.util.Scanner
-import javax.net.ssl.HttpsURLConnection
 
 internal const val HTTP_SDK_VERSION_HEADER_KEY = "SDK-Version"
 internal val HTTP_SDK_VERSION_HEADER_VALUE = "onesignal/android/${OneSignalUtils.sdkVersion}"
 
 internal class HttpClient(
-    private val _connectionFactory: IHttpConnectionFactory,
+    private val _transport: IHttpTransport,
     private val _prefs: IPreferencesService,
     private val _configModelStore: ConfigModelStore,
     private val _time: ITime,
     private val _installIdService: IInstallIdService,
+    private val _connectionPrewarmer: HttpConnectionPrewarmer,
 ) : IHttpClient {
     /**
      * Delay making network requests until we reach this time.
@@ -42,6 +41,17 @@ internal class HttpClient(
      */
     private var delayNewRequestsUntil = 0L
 
+    /**
+     * Fails requests fast to an endpoint class that is consistently failing.
+     */
+    private val circuitBreaker = HttpCircuitBreaker(_time)
+
+    /**
+     * Caps the number of concurrent requests per endpoint class, backing off when the backend
+     * slows down, so slow requests to one class do not hold up those to the others.
+     */
+    private val concurrencyLimiters = HttpEndpointClass.values().associateWith { AdaptiveConcurrencyLimiter() }
+
     override suspend fun post(
         url: String,
         body: JSONObject,
@@ -88,18 +98,59 @@ internal class HttpClient(
         val delayUntil = delayNewRequestsUntil - _time.currentTimeMillis
         if (delayUntil > 0) delay(delayUntil)
 
+        // Fail fast when this endpoint class is failing, the retry-after seconds lets the
+        // caller's existing retry logic back off until the circuit will allow a probe.
+        val endpoint = HttpEndpointClass.fromUrl(url)
+        val openFor = circuitBreaker.tryAcquire(endpoint)
+        if (openFor > 0) {
+            Logging.debug("HttpClient: Circuit for $endpoint is open, failing ${method ?: "GET"} `$url` fast")
+            return HttpResponse(0, null, CircuitOpenException(endpoint), retryAfterSeconds = ((openFor + 999) / 1_000).toInt())
+        }
+
+        val concurrencyLimiter = concurrencyLimiters.getValue(endpoint)
+        var acquired = false
+        var startTime = 0L
+        var abandoned = false
+        var response = HttpResponse(0, null, null)
         try {
-            return withTimeout(getThreadTimeout(timeout).toLong()) {
-                return@withTimeout makeRequestIODispatcher(url, method, jsonBody, timeout, headers)
-            }
+            response =
+                withTimeout(getThreadTimeout(timeout).toLong()) {
+                    // Waiting for a slot counts towards the timeout, the same as the request itself.
+                    concurrencyLimiter.acquire()
+                    acquired = true
+                    startTime = _time.currentTimeMillis
+                    return@withTimeout makeRequestIODispatcher(url, method, jsonBody, timeout, headers)
+                }
         } catch (e: TimeoutCancellationException) {
-            Logging.info("HttpClient: Request timed out: $url", e)
-            return HttpResponse(0, null, e)
+            Logging.info("HttpClient: Request timed out${if (acquired) "" else " waiting for a request slot"}: $url", e)
+            response = HttpResponse(0, null, e)
         } catch (e: Throwable) {
-            return HttpResponse(0, null, e)
+            abandoned = e is CancellationException
+            response = HttpResponse(0, null, e)
+        } finally {
+            val success = isHealthyResponse(response)
+            if (acquired) {
+                concurrencyLimiter.release(_time.currentTimeMillis - startTime, success || abandoned)
+            }
+            // A request that was never sent says nothing about the endpoint.
+            if (abandoned || !acquired) {
+                circuitBreaker.onAbandoned(endpoint)
+            } else {
+                circuitBreaker.onResult(endpoint, success)
+            }
         }
+
+        return response
     }
 
+    /**
+     * Whether the [response] indicates the backend (and the path to it) is healthy. Transport
+     * failures, timeouts, and 5xx responses count against the endpoint, any other status
+     * (including 4xx and 429, which are governed by Retry-After) means the backend answered.
+     */
+    private fun isHealthyResponse(response: HttpResponse): Boolean =
+        response.throwable == null && response.statusCode < HttpURLConnection.HTTP_INTERNAL_ERROR
+
     private suspend fun makeRequestIODispatcher(
         url: String,
         method: String?,
@@ -112,101 +163,24 @@ internal class HttpClient(
         val job =
             launchOnIO {
                 var httpResponse = -1
-                var con: HttpURLConnection? = null
 
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                     TrafficStats.setThreadStatsTag(THREAD_ID)
                 }
 
                 try {
-                    con = _connectionFactory.newHttpURLConnection(url)
-
-                    // https://github.com/OneSignal/OneSignal-Android-SDK/issues/1465
-                    // Android 4.4 and older devices fail to register to onesignal.com to due it's TLS1.2+ requirement
-                    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1 && con is HttpsURLConnection) {
-                        val conHttps = con
-                        conHttps.sslSocketFactory =
-                            TLS12SocketFactory(
-                                conHttps.sslSocketFactory,
-                            )
-                    }
-
-                    con.useCaches = false
-                    con.connectTimeout = timeout
-                    con.readTimeout = timeout
-                    con.setRequestProperty(HTTP_SDK_VERSION_HEADER_KEY, HTTP_SDK_VERSION_HEADER_VALUE)
-
-                    if (OneSignalWrapper.sdkType != null && OneSignalWrapper.sdkVersion != null) {
-                        con.setRequestProperty("SDK-Wrapper", "onesignal/${OneSignalWrapper.sdkType}/${OneSignalWrapper.sdkVersion}")
-                    }
-
-                    con.setRequestProperty("Accept", OS_ACCEPT_HEADER)
-
-                    val subscriptionId = _configModelStore.model.pushSubscriptionId
-                    if (subscriptionId != null && subscriptionId.isNotEmpty()) {
-                        con.setRequestProperty("OneSignal-Subscription-Id", subscriptionId)
-                    }
-
-                    con.setRequestProperty("OneSignal-Install-Id", _installIdService.getId().toString())
-
-                    if (jsonBody != null) {
-                        con.doInput = true
-                    }
-
-                    if (method != null) {
-                        con.setRequestProperty("Content-Type", "application/json; charset=UTF-8")
-                        con.requestMethod = method
-                        con.doOutput = true
-                    }
-
-                    // H E A D E R S — must be set before any body write below. `getOutputStream()`
-                    // (and `setFixedLengthStreamingMode`) commit the request line + headers to the
-                    // wire; `setRequestProperty` after that point either throws IllegalStateException
-                    // or is silently dropped, depending on the HttpURLConnection implementation.
-
-                    if (headers?.cacheKey != null) {
-                        val eTag =
-                            _prefs.getString(
-                                PreferenceStores.ONESIGNAL,
-                                PreferenceOneSignalKeys.PREFS_OS_ETAG_PREFIX + headers.cacheKey,
-                            )
-                        if (eTag != null) {
-                            con.setRequestProperty("If-None-Match", eTag)
-                            Logging.debug("HttpClient: Adding header if-none-match: $eTag")
-                        }
-                    }
-
-                    if (headers?.rywToken != null) {
-                        con.setRequestProperty("OneSignal-RYW-Token", headers.rywToken.toString())
-                    }
-
-                    if (headers?.retryCount != null) {
-                        con.setRequestProperty("Onesignal-Retry-Count", headers.retryCount.toString())
-                    }
-
-                    if (headers?.sessionDuration != null) {
-                        con.setRequestProperty("OneSignal-Session-Duration", headers.sessionDuration.toString())
-                    }
-
-                    if (headers?.jwt != null) {
-                        con.setRequestProperty("Authorization", "Bearer ${headers.jwt}")
-                    }
+                    val requestHeaders = buildRequestHeaders(method, headers)
+                    val methodStr = method ?: "GET"
 
-                    logHTTPSent(con.requestMethod, con.url, jsonBody, con.requestProperties)
+                    val body = if (jsonBody != null) HttpRequestBody(jsonBody) else null
+                    logHTTPSent(methodStr, url, body, requestHeaders)
 
-                    if (jsonBody != null) {
-                        val strJsonBody = JSONUtils.toUnescapedEUIDString(jsonBody)
-                        val sendBytes = strJsonBody.toByteArray(charset("UTF-8"))
-                        con.setFixedLengthStreamingMode(sendBytes.size)
-                        val outputStream = con.outputStream
-                        outputStream.write(sendBytes)
-                    }
-
-                    // Network request is made from getResponseCode()
-                    httpResponse = con.responseCode
+                    val response = _transport.execute(HttpTransportRequest(url, methodStr, requestHeaders, body, timeout))
+                    httpResponse = response.statusCode
+                    _connectionPrewarmer.onResponse(url, response.timeToFirstByteMs)
 
-                    val retryAfter = retryAfterFromResponse(con)
-                    val retryLimit = retryLimitFromResponse(con)
+                    val retryAfter = retryAfterFromResponse(response)
+                    val retryLimit = retryLimitFromResponse(response)
                     val newDelayUntil = _time.currentTimeMillis + (retryAfter ?: 0) * 1_000
                     if (newDelayUntil > delayNewRequestsUntil) delayNewRequestsUntil = newDelayUntil
 
@@ -218,7 +192,7 @@ internal class HttpClient(
                                     PreferenceOneSignalKeys.PREFS_OS_HTTP_CACHE_PREFIX + headers?.cacheKey,
                                 )
                             Logging.debug(
-                                "HttpClient: Got Response = ${method ?: "GET"} ${con.url} - Using Cached response due to 304: " +
+                                "HttpClient: Got Response = $methodStr $url - Using Cached response due to 304: " +
                                     cachedResponse,
                             )
 
@@ -226,16 +200,13 @@ internal class HttpClient(
                             retVal = HttpResponse(httpResponse, cachedResponse, retryAfterSeconds = retryAfter, retryLimit = retryLimit)
                         }
                         HttpURLConnection.HTTP_ACCEPTED, HttpURLConnection.HTTP_CREATED, HttpURLConnection.HTTP_OK -> {
-                            val inputStream = con.inputStream
-                            val scanner = Scanner(inputStream, "UTF-8")
-                            val json = if (scanner.useDelimiter("\\A").hasNext()) scanner.next() else ""
-                            scanner.close()
+                            val json = response.body ?: ""
                             Logging.debug(
-                                "HttpClient: Got Response = ${method ?: "GET"} ${con.url} - STATUS: $httpResponse - Body: " + json,
+                                "HttpClient: Got Response = $methodStr $url - STATUS: $httpResponse - Body: " + json,
                             )
 
                             if (headers?.cacheKey != null) {
-                                val eTag = con.getHeaderField("etag")
+                                val eTag = response.header("etag")
                                 if (eTag != null) {
                                     Logging.debug("HttpClient: Got Response = Response has etag of $eTag so caching the response.")
 
@@ -255,19 +226,10 @@ internal class HttpClient(
                             retVal = HttpResponse(httpResponse, json, retryAfterSeconds = retryAfter, retryLimit = retryLimit)
                         }
                         else -> {
-                            Logging.debug("HttpClient: Got Response = ${method ?: "GET"} ${con.url} - FAILED STATUS: $httpResponse")
+                            Logging.debug("HttpClient: Got Response = $methodStr $url - FAILED STATUS: $httpResponse")
 
-                            var inputStream = con.errorStream
-                            if (inputStream == null) {
-                                inputStream = con.inputStream
-                            }
-
-                            var jsonResponse: String? = null
-                            if (inputStream != null) {
-                                val scanner = Scanner(inputStream, "UTF-8")
-                                jsonResponse =
-                                    if (scanner.useDelimiter("\\A").hasNext()) scanner.next() else ""
-                                scanner.close()
+                            val jsonResponse = response.body
+                            if (jsonResponse != null) {
                                 Logging.warn("HttpClient: Got Response = $method - STATUS: $httpResponse - Body: $jsonResponse")
                             } else {
                                 Logging.warn("HttpClient: Got Response = $method - STATUS: $httpResponse - No response body!")
@@ -284,8 +246,6 @@ internal class HttpClient(
                     }
 
                     retVal = HttpResponse(httpResponse, null, t)
-                } finally {
-                    con?.disconnect()
                 }
             }
 
@@ -293,6 +253,61 @@ internal class HttpClient(
         return retVal!!
     }
 
+    private fun buildRequestHeaders(
+        method: String?,
+        headers: OptionalHeaders?,
+    ): Map<String, String> {
+        val requestHeaders = linkedMapOf<String, String>()
+        requestHeaders[HTTP_SDK_VERSION_HEADER_KEY] = HTTP_SDK_VERSION_HEADER_VALUE
+
+        if (OneSignalWrapper.sdkType != null && OneSignalWrapper.sdkVersion != null) {
+            requestHeaders["SDK-Wrapper"] = "onesignal/${OneSignalWrapper.sdkType}/${OneSignalWrapper.sdkVersion}"
+        }
+
+        requestHeaders["Accept"] = OS_ACCEPT_HEADER
+
+        val subscriptionId = _configModelStore.model.pushSubscriptionId
+        if (subscriptionId != null && subscriptionId.isNotEmpty()) {
+            requestHeaders["OneSignal-Subscription-Id"] = subscriptionId
+        }
+
+        requestHeaders["OneSignal-Install-Id"] = _installIdService.getId().toString()
+
+        if (method != null) {
+            requestHeaders["Content-Type"] = "application/json; charset=UTF-8"
+        }
+
+        if (headers?.cacheKey != null) {
+            val eTag =
+                _prefs.getString(
+                    PreferenceStores.ONESIGNAL,
+                    PreferenceOneSignalKeys.PREFS_OS_ETAG_PREFIX + headers.cacheKey,
+                )
+            if (eTag != null) {
+                requestHeaders["If-None-Match"] = eTag
+                Logging.debug("HttpClient: Adding header if-none-match: $eTag")
+            }
+        }
+
+        if (headers?.rywToken != null) {
+            requestHeaders["OneSignal-RYW-Token"] = headers.rywToken.toString()
+        }
+
+        if (headers?.retryCount != null) {
+            requestHeaders["Onesignal-Retry-Count"] = headers.retryCount.toString()
+        }
+
+        if (headers?.sessionDuration != null) {
+            requestHeaders["OneSignal-Session-Duration"] = headers.sessionDuration.toString()
+        }
+
+        if (headers?.jwt != null) {
+            requestHeaders["Authorization"] = "Bearer ${headers.jwt}"
+        }
+
+        return requestHeaders
+    }
+
     private fun getThreadTimeout(timeout: Int): Int {
         return timeout + 5000
     }
@@ -301,12 +316,12 @@ internal class HttpClient(
      * Reads the HTTP Retry-After from the response.
      * Only supports number format, not the date format.
      */
-    private fun retryAfterFromResponse(con: HttpURLConnection): Int? {
-        val retryAfterStr = con.getHeaderField("Retry-After")
+    private fun retryAfterFromResponse(response: HttpTransportResponse): Int? {
+        val retryAfterStr = response.header("Retry-After")
         return if (retryAfterStr != null) {
             Logging.debug("HttpClient: Response Retry-After: $retryAfterStr")
             retryAfterStr.toIntOrNull() ?: _configModelStore.model.httpRetryAfterParseFailFallback
-        } else if (con.responseCode == 429) {
+        } else if (response.statusCode == 429) {
             _configModelStore.model.httpRetryAfterParseFailFallback
         } else {
             null
@@ -316,8 +331,8 @@ internal class HttpClient(
     /**
      * Reads the HTTP Retry-Limit from the response.
      */
-    private fun retryLimitFromResponse(con: HttpURLConnection): Int? {
-        val retryLimitStr = con.getHeaderField("OneSignal-Retry-Limit")
+    private fun retryLimitFromResponse(response: HttpTransportResponse): Int? {
+        val retryLimitStr = response.header("OneSignal-Retry-Limit")
         return if (retryLimitStr != null) {
             Logging.debug("HttpClient: Response OneSignal-Retry-Limit: $retryLimitStr")
             retryLimitStr.toIntOrNull()
@@ -327,20 +342,22 @@ internal class HttpClient(
     }
 
     private fun logHTTPSent(
-        method: String?,
-        url: URL,
-        jsonBody: JSONObject?,
-        headers: Map<String, List<String>>,
+        method: String,
+        url: String,
+        body: HttpRequestBody?,
+        headers: Map<String, String>,
     ) {
+        if (!Logging.atLogLevel(LogLevel.DEBUG)) return
+
         val headersStr = headers.entries.joinToString()
-        val methodStr = method ?: "GET"
-        val bodyStr = if (jsonBody != null) JSONUtils.toUnescapedEUIDString(jsonBody) else null
-        Logging.debug("HttpClient: Request Sent = $methodStr $url - Body: $bodyStr - Headers: $headersStr")
+        val bodyStr = body?.toLogString(MAX_LOGGED_BODY_CHARS)
+        Logging.debug("HttpClient: Request Sent = $method $url - Body: $bodyStr - Headers: $headersStr")
     }
 
     companion object {
         private const val OS_API_VERSION = "1"
         private const val OS_ACCEPT_HEADER = "application/vnd.onesignal.v$OS_API_VERSION+json"
         private const val THREAD_ID = 10000
+        private const val MAX_LOGGED_BODY_CHARS = 4 * 1024
     }
 }
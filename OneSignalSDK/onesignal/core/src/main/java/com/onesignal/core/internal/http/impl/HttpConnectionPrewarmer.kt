@@ -0,0 +1,114 @@
+package com.onesignal.core.internal.http.impl
+
+import android.content.Context
+import android.net.ConnectivityManager
+import android.os.Build
+import com.onesignal.common.threading.launchOnIO
+import com.onesignal.core.internal.application.IApplicationLifecycleHandler
+import com.onesignal.core.internal.application.IApplicationService
+import com.onesignal.core.internal.config.ConfigModelStore
+import com.onesignal.core.internal.startup.IStartableService
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.internal.logging.Logging
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Opens a connection to the API host in the background whenever the app comes to the
+ * foreground, so the requests that follow (params, IAM fetch, session start) find a warm
+ * connection instead of paying DNS, TCP and TLS setup inline.
+ *
+ * Pre-warming is skipped when:
+ * - Focus was fired on subscribe, the SDK is initializing and its own requests are already
+ *   opening the connection.
+ * - A connection was warmed within [MIN_PREWARM_INTERVAL_MS], it is likely still pooled.
+ * - The active network is metered or Data Saver is on, a speculative request is not worth
+ *   the user's data.
+ *
+ * The time to first byte of the first request after each foreground is logged, along with
+ * whether that foreground was pre-warmed, so the benefit can be measured.
+ */
+internal class HttpConnectionPrewarmer(
+    private val _applicationService: IApplicationService,
+    private val _transport: IHttpTransport,
+    private val _configModelStore: ConfigModelStore,
+    private val _time: ITime,
+) : IStartableService,
+    IApplicationLifecycleHandler {
+    private var lastPrewarmAt = 0L
+    private val awaitingFirstResponse = AtomicBoolean(false)
+
+    @Volatile
+    private var prewarmed = false
+
+    /**
+     * The time to first byte of the most recent first request after a foreground, or null
+     * when none has completed yet.
+     */
+    @Volatile
+    var lastFirstRequestTimeToFirstByteMs: Long? = null
+        private set
+
+    override fun start() {
+        _applicationService.addApplicationLifecycleHandler(this)
+    }
+
+    override fun onFocus(firedOnSubscribe: Boolean) {
+        if (firedOnSubscribe) return
+
+        prewarmed = false
+        awaitingFirstResponse.set(true)
+
+        synchronized(this) {
+            val now = _time.currentTimeMillis
+            if (now - lastPrewarmAt < MIN_PREWARM_INTERVAL_MS) return
+            lastPrewarmAt = now
+        }
+
+        if (!isPrewarmAllowedOnNetwork()) {
+            Logging.debug("HttpConnectionPrewarmer: Skipping pre-warm on a metered or data saver network")
+            return
+        }
+
+        launchOnIO {
+            try {
+                _transport.warmUp(_configModelStore.model.httpGetTimeout)
+                prewarmed = true
+            } catch (e: IOException) {
+                Logging.debug("HttpConnectionPrewarmer: Pre-warm failed", e)
+            }
+        }
+    }
+
+    override fun onUnfocused() {
+        awaitingFirstResponse.set(false)
+    }
+
+    /**
+     * Called by [HttpClient] for every response, records the first one after a foreground.
+     */
+    fun onResponse(
+        url: String,
+        timeToFirstByteMs: Long,
+    ) {
+        if (!awaitingFirstResponse.compareAndSet(true, false)) return
+
+        lastFirstRequestTimeToFirstByteMs = timeToFirstByteMs
+        Logging.debug("HttpConnectionPrewarmer: First request after foreground `$url` time to first byte: ${timeToFirstByteMs}ms (pre-warmed: $prewarmed)")
+    }
+
+    private fun isPrewarmAllowedOnNetwork(): Boolean {
+        return try {
+            val cm = _applicationService.appContext.getSystemService(Context.CONNECTIVITY_SERVICE) as? ConnectivityManager ?: return false
+            if (cm.isActiveNetworkMetered) return false
+            Build.VERSION.SDK_INT < Build.VERSION_CODES.N ||
+                cm.restrictBackgroundStatus != ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED
+        } catch (e: SecurityException) {
+            false
+        }
+    }
+
+    companion object {
+        private const val MIN_PREWARM_INTERVAL_MS = 60_000L
+    }
+}
@@ -0,0 +1,37 @@
+package com.onesignal.core.internal.http.impl
+
+/**
+ * A coarse grouping of the backend endpoints the SDK talks to. Failure tracking in
+ * [HttpCircuitBreaker] and the [AdaptiveConcurrencyLimiter] are kept per class, so a brownout
+ * of one backend service (outcomes, for example) does not stop or slow traffic to the others.
+ */
+internal enum class HttpEndpointClass {
+    USERS,
+    SUBSCRIPTIONS,
+    CUSTOM_EVENTS,
+    OUTCOMES,
+    IN_APP_MESSAGES,
+    NOTIFICATIONS,
+    PARAMS,
+    OTHER,
+    ;
+
+    companion object {
+        /**
+         * Determine the endpoint class of the relative [url] provided to [HttpClient].
+         */
+        fun fromUrl(url: String): HttpEndpointClass {
+            val path = url.substringBefore('?')
+            return when {
+                path.contains("/iams") || path.startsWith("in_app_messages") -> IN_APP_MESSAGES
+                path.startsWith("outcomes") -> OUTCOMES
+                path.startsWith("notifications") -> NOTIFICATIONS
+                path.endsWith("android_params.js") -> PARAMS
+                path.contains("/custom_events") -> CUSTOM_EVENTS
+                path.contains("/users") -> USERS
+                path.contains("/subscriptions") -> SUBSCRIPTIONS
+                else -> OTHER
+            }
+        }
+    }
+}
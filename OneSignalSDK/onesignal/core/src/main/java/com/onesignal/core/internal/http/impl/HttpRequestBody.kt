@@ -0,0 +1,70 @@
+package com.onesignal.core.internal.http.impl
+
+import org.json.JSONObject
+import java.io.BufferedWriter
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.io.Writer
+
+/**
+ * A JSON request body that is serialized on demand by [JSONBodyWriter], directly into the
+ * transport's output stream, rather than being materialized as a String and then a ByteArray.
+ */
+internal class HttpRequestBody(
+    private val json: JSONObject,
+) {
+    /**
+     * Write the body, UTF-8 encoded, to [out]. May be called more than once, i.e. when the
+     * transport retries a request on a new connection. [out] is flushed but not closed.
+     */
+    fun writeTo(out: OutputStream) {
+        val writer = BufferedWriter(OutputStreamWriter(out, Charsets.UTF_8), WRITE_BUFFER_SIZE)
+        JSONBodyWriter.write(json, writer)
+        writer.flush()
+    }
+
+    /**
+     * The body as text for logging, truncated to [maxChars]. Serialization stops as soon as the
+     * cap is reached, so logging a large body costs no more than logging a small one.
+     */
+    fun toLogString(maxChars: Int): String {
+        val writer = CappedStringWriter(maxChars)
+        try {
+            JSONBodyWriter.write(json, writer)
+        } catch (e: CappedStringWriter.CapReachedException) {
+            return writer.toString() + "...(truncated)"
+        }
+        return writer.toString()
+    }
+
+    private class CappedStringWriter(
+        private val maxChars: Int,
+    ) : Writer() {
+        private val builder = StringBuilder()
+
+        override fun write(
+            cbuf: CharArray,
+            off: Int,
+            len: Int,
+        ) {
+            val remaining = maxChars - builder.length
+            builder.append(cbuf, off, minOf(len, remaining))
+            if (len > remaining) throw CapReachedException()
+        }
+
+        override fun flush() {}
+
+        override fun close() {}
+
+        override fun toString(): String = builder.toString()
+
+        class CapReachedException : RuntimeException() {
+            // Only used to unwind serialization, a stack trace is never needed.
+            override fun fillInStackTrace(): Throwable = this
+        }
+    }
+
+    companion object {
+        private const val WRITE_BUFFER_SIZE = 8 * 1024
+    }
+}
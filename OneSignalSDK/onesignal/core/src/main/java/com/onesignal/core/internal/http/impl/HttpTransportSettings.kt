@@ -0,0 +1,28 @@
+package com.onesignal.core.internal.http.impl
+
+import com.onesignal.common.services.IServiceProvider
+import com.onesignal.core.internal.config.ConfigModelStore
+import com.onesignal.debug.internal.logging.Logging
+
+/**
+ * Selects the [IHttpTransport] used by [HttpClient].
+ */
+internal object HttpTransportSettings {
+    /**
+     * The app provided `okhttp3.OkHttpClient`, when the app has opted in through
+     * [com.onesignal.common.OneSignalOkHttp]. Typed as [Any] so OkHttp classes are never
+     * referenced unless the app provides one.
+     */
+    @Volatile
+    var okHttpClient: Any? = null
+
+    fun createTransport(services: IServiceProvider): IHttpTransport {
+        val client = okHttpClient
+        if (client != null) {
+            Logging.debug("HttpTransportSettings: Using the app provided OkHttpClient for network requests")
+            return OkHttpTransport.create(client, services.getService(ConfigModelStore::class.java))
+        }
+
+        return HttpURLConnectionTransport(services.getService(IHttpConnectionFactory::class.java))
+    }
+}
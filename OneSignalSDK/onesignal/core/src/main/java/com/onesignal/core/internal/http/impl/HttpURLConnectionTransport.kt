@@ -0,0 +1,168 @@
+package com.onesignal.core.internal.http.impl
+
+import android.os.Build
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.HttpURLConnection
+import java.util.Scanner
+import javax.net.ssl.HttpsURLConnection
+
+/**
+ * The default [IHttpTransport], backed by the platform's [HttpURLConnection].
+ */
+internal class HttpURLConnectionTransport(
+    private val _connectionFactory: IHttpConnectionFactory,
+) : IHttpTransport {
+    @Throws(IOException::class)
+    override fun execute(request: HttpTransportRequest): HttpTransportResponse {
+        var con: HttpURLConnection? = null
+        try {
+            val startTime = System.currentTimeMillis()
+            con = openConnection(request.url, request.timeout)
+
+            if (request.method != "GET") {
+                con.requestMethod = request.method
+                con.doOutput = true
+            }
+
+            // H E A D E R S — must be set before any body write below. `getOutputStream()`
+            // (and `setFixedLengthStreamingMode`) commit the request line + headers to the
+            // wire; `setRequestProperty` after that point either throws IllegalStateException
+            // or is silently dropped, depending on the HttpURLConnection implementation.
+            for ((name, value) in request.headers) {
+                con.setRequestProperty(name, value)
+            }
+
+            if (request.body != null) {
+                // Not closed if writing the body fails, closing would send what was written so far
+                // as the whole body.
+                val out = ContentLengthProbingOutputStream(con)
+                request.body.writeTo(out)
+                out.close()
+            }
+
+            // Network request is made from getResponseCode()
+            val statusCode = con.responseCode
+            val timeToFirstByte = System.currentTimeMillis() - startTime
+
+            val body =
+                when (statusCode) {
+                    HttpURLConnection.HTTP_NOT_MODIFIED -> null
+                    HttpURLConnection.HTTP_ACCEPTED, HttpURLConnection.HTTP_CREATED, HttpURLConnection.HTTP_OK -> readFully(con.inputStream)
+                    else -> (con.errorStream ?: con.inputStream)?.let { readFully(it) }
+                }
+
+            return HttpTransportResponse(statusCode, body, con.headerFields ?: emptyMap(), timeToFirstByte)
+        } finally {
+            con?.disconnect()
+        }
+    }
+
+    @Throws(IOException::class)
+    override fun warmUp(timeout: Int) {
+        val con = openConnection("", timeout)
+        con.requestMethod = "HEAD"
+        val statusCode = con.responseCode
+        // Closing the (empty) stream rather than disconnecting hands the connection back to the
+        // keep-alive pool, where the next request to the host picks it up.
+        val stream = if (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) con.errorStream else con.inputStream
+        stream?.close()
+    }
+
+    private fun openConnection(
+        url: String,
+        timeout: Int,
+    ): HttpURLConnection {
+        val con = _connectionFactory.newHttpURLConnection(url)
+
+        // https://github.com/OneSignal/OneSignal-Android-SDK/issues/1465
+        // Android 4.4 and older devices fail to register to onesignal.com to due it's TLS1.2+ requirement
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1 && con is HttpsURLConnection) {
+            val conHttps = con
+            conHttps.sslSocketFactory =
+                TLS12SocketFactory(
+                    conHttps.sslSocketFactory,
+                )
+        }
+
+        con.useCaches = false
+        con.connectTimeout = timeout
+        con.readTimeout = timeout
+        return con
+    }
+
+    private fun readFully(inputStream: InputStream): String {
+        val scanner = Scanner(inputStream, "UTF-8")
+        val body = if (scanner.useDelimiter("\\A").hasNext()) scanner.next() else ""
+        scanner.close()
+        return body
+    }
+
+    /**
+     * Buffers up to [FIXED_LENGTH_LIMIT] bytes of the body. A body that fits is sent with a
+     * Content-Length once it is closed; a larger one switches the connection to chunked
+     * streaming as soon as the limit is crossed, and the rest is written straight through.
+     * Once closed the length is fixed, a write past it throws rather than being cut off.
+     */
+    private class ContentLengthProbingOutputStream(
+        private val con: HttpURLConnection,
+    ) : OutputStream() {
+        private var buffer: ByteArrayOutputStream? = ByteArrayOutputStream(INITIAL_BUFFER_SIZE)
+        private var out: OutputStream? = null
+        private var fixedLength = -1
+
+        override fun write(b: Int) {
+            streamFor(1).write(b)
+        }
+
+        override fun write(
+            b: ByteArray,
+            off: Int,
+            len: Int,
+        ) {
+            streamFor(len).write(b, off, len)
+        }
+
+        override fun flush() {
+            // Flushing the buffer would commit the headers before the streaming mode is known.
+            out?.flush()
+        }
+
+        override fun close() {
+            val buffered = buffer
+            if (buffered != null) {
+                fixedLength = buffered.size()
+                con.setFixedLengthStreamingMode(fixedLength)
+                open(buffered)
+            }
+            out?.close()
+        }
+
+        private fun streamFor(len: Int): OutputStream {
+            if (fixedLength >= 0) {
+                throw IOException("Request body is longer than its Content-Length of $fixedLength bytes")
+            }
+
+            val buffered = buffer ?: return out!!
+            if (buffered.size() + len <= FIXED_LENGTH_LIMIT) return buffered
+
+            con.setChunkedStreamingMode(0)
+            return open(buffered)
+        }
+
+        private fun open(buffered: ByteArrayOutputStream): OutputStream {
+            val stream = con.outputStream
+            buffered.writeTo(stream)
+            buffer = null
+            out = stream
+            return stream
+        }
+    }
+
+    companion object {
+        private const val INITIAL_BUFFER_SIZE = 512
+        private const val FIXED_LENGTH_LIMIT = 16 * 1024
+    }
+}
@@ -0,0 +1,75 @@
+package com.onesignal.core.internal.http.impl
+
+import java.io.IOException
+import java.util.TreeMap
+
+/**
+ * The network stack used by [HttpClient] to send a request and receive its response.
+ * [HttpClient] owns everything OneSignal specific (headers, caching, Retry-After, circuit
+ * breaking), the transport only moves bytes.
+ *
+ * Implementations:
+ * - [HttpURLConnectionTransport]: the platform's `HttpURLConnection`, used by default.
+ * - [OkHttpTransport]: an app provided `OkHttpClient`, see [com.onesignal.common.OneSignalOkHttp].
+ */
+internal interface IHttpTransport {
+    /**
+     * Execute the [request], blocking the calling thread until the full response is read.
+     *
+     * @throws IOException When the request could not be completed.
+     */
+    @Throws(IOException::class)
+    fun execute(request: HttpTransportRequest): HttpTransportResponse
+
+    /**
+     * Send a bodiless `HEAD` request to the API host and leave its connection open, so the next
+     * request can skip DNS, TCP and TLS setup.
+     *
+     * @throws IOException When the host could not be reached.
+     */
+    @Throws(IOException::class)
+    fun warmUp(timeout: Int)
+}
+
+internal class HttpTransportRequest(
+    /**
+     * The URL relative to the configured API url.
+     */
+    val url: String,
+    /**
+     * The HTTP method, i.e. `GET` or `POST`.
+     */
+    val method: String,
+    val headers: Map<String, String>,
+    /**
+     * The request body, or null when the request has none.
+     */
+    val body: HttpRequestBody?,
+    /**
+     * The connect and read timeout, in milliseconds.
+     */
+    val timeout: Int,
+)
+
+internal class HttpTransportResponse(
+    val statusCode: Int,
+    /**
+     * The decoded response body. Null when there is no body (i.e. a 304).
+     */
+    val body: String?,
+    headers: Map<out String?, List<String>>,
+    /**
+     * The time from starting the request until the response headers were received, in milliseconds.
+     */
+    val timeToFirstByteMs: Long = 0,
+) {
+    private val headersByName: Map<String, List<String>> =
+        TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER).apply {
+            headers.forEach { (name, values) -> if (name != null) put(name, values) }
+        }
+
+    /**
+     * The last value of the response header [name], compared case-insensitively.
+     */
+    fun header(name: String): String? = headersByName[name]?.lastOrNull()
+}
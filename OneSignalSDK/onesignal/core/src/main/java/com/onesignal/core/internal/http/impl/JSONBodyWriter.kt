@@ -0,0 +1,101 @@
+package com.onesignal.core.internal.http.impl
+
+import com.onesignal.common.JSONUtils
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.Writer
+
+/**
+ * Serializes a [JSONObject] straight to a [Writer], producing the same text as
+ * [JSONUtils.toUnescapedEUIDString] without building the intermediate strings.
+ *
+ * Strings are escaped the way `org.json` escapes them, except that forward slashes are left
+ * unescaped within `external_user_id` values when the top level object has that key.
+ */
+internal object JSONBodyWriter {
+    fun write(
+        json: JSONObject,
+        writer: Writer,
+    ) {
+        writeObject(json, writer, json.has(JSONUtils.EXTERNAL_USER_ID))
+    }
+
+    private fun writeValue(
+        value: Any?,
+        writer: Writer,
+        unescapeEUID: Boolean,
+    ) {
+        when (value) {
+            null, JSONObject.NULL -> writer.write("null")
+            is JSONObject -> writeObject(value, writer, unescapeEUID)
+            is JSONArray -> writeArray(value, writer, unescapeEUID)
+            is Boolean -> writer.write(value.toString())
+            is Number -> writer.write(JSONObject.numberToString(value))
+            else -> writeString(value.toString(), writer, escapeSlash = true)
+        }
+    }
+
+    private fun writeObject(
+        json: JSONObject,
+        writer: Writer,
+        unescapeEUID: Boolean,
+    ) {
+        writer.write('{'.code)
+        var first = true
+        val keys = json.keys()
+        while (keys.hasNext()) {
+            val key = keys.next()
+            if (!first) writer.write(','.code)
+            first = false
+
+            writeString(key, writer, escapeSlash = true)
+            writer.write(':'.code)
+
+            val value = json.opt(key)
+            if (unescapeEUID && key == JSONUtils.EXTERNAL_USER_ID && value is String) {
+                writeString(value, writer, escapeSlash = false)
+            } else {
+                writeValue(value, writer, unescapeEUID)
+            }
+        }
+        writer.write('}'.code)
+    }
+
+    private fun writeArray(
+        array: JSONArray,
+        writer: Writer,
+        unescapeEUID: Boolean,
+    ) {
+        writer.write('['.code)
+        for (i in 0 until array.length()) {
+            if (i > 0) writer.write(','.code)
+            writeValue(array.opt(i), writer, unescapeEUID)
+        }
+        writer.write(']'.code)
+    }
+
+    private fun writeString(
+        value: String,
+        writer: Writer,
+        escapeSlash: Boolean,
+    ) {
+        writer.write('"'.code)
+        for (c in value) {
+            when {
+                c == '"' || c == '\\' -> {
+                    writer.write('\\'.code)
+                    writer.write(c.code)
+                }
+                c == '/' && escapeSlash -> writer.write("\\/")
+                c == '\t' -> writer.write("\\t")
+                c == '\b' -> writer.write("\\b")
+                c == '\n' -> writer.write("\\n")
+                c == '\r' -> writer.write("\\r")
+                c == '\u000C' -> writer.write("\\f")
+                c.code <= 0x1F -> writer.write(String.format("\\u%04x", c.code))
+                else -> writer.write(c.code)
+            }
+        }
+        writer.write('"'.code)
+    }
+}
@@ -0,0 +1,98 @@
+package com.onesignal.core.internal.http.impl
+
+import com.onesignal.core.internal.config.ConfigModelStore
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
+import okio.BufferedSink
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * An [IHttpTransport] backed by an app provided [OkHttpClient] (OkHttp 4.x).
+ *
+ * Per-timeout clients are derived with [OkHttpClient.newBuilder], which shares the app's
+ * connection pool and dispatcher, so SDK requests reuse already warm connections and, over
+ * HTTP/2, multiplex operation, outcome and IAM traffic onto a single connection.
+ *
+ * OkHttp is a compileOnly dependency, this class must only be loaded when the app has opted
+ * in through [com.onesignal.common.OneSignalOkHttp].
+ */
+internal class OkHttpTransport(
+    private val _client: OkHttpClient,
+    private val _configModelStore: ConfigModelStore,
+) : IHttpTransport {
+    private val clientsByTimeout = ConcurrentHashMap<Int, OkHttpClient>()
+
+    @Throws(IOException::class)
+    override fun execute(request: HttpTransportRequest): HttpTransportResponse {
+        val builder = Request.Builder().url(_configModelStore.model.apiUrl + request.url)
+        for ((name, value) in request.headers) {
+            builder.header(name, value)
+        }
+
+        // OkHttp requires a body for POST/PUT/PATCH and rejects one on GET.
+        val body =
+            request.body?.let { StreamingRequestBody(it) }
+                ?: if (request.method == "GET" || request.method == "DELETE") null else EMPTY_BODY.toRequestBody(JSON_MEDIA_TYPE)
+        builder.method(request.method, body)
+
+        val startTime = System.currentTimeMillis()
+        clientFor(request.timeout).newCall(builder.build()).execute().use { response ->
+            val timeToFirstByte = System.currentTimeMillis() - startTime
+            val responseBody = if (response.code == HttpURLConnection.HTTP_NOT_MODIFIED) null else response.body?.string()
+            return HttpTransportResponse(response.code, responseBody, response.headers.toMultimap(), timeToFirstByte)
+        }
+    }
+
+    @Throws(IOException::class)
+    override fun warmUp(timeout: Int) {
+        val request = Request.Builder().url(_configModelStore.model.apiUrl).head().build()
+        // Closing the response releases the connection to the shared pool.
+        clientFor(timeout).newCall(request).execute().close()
+    }
+
+    private fun clientFor(timeout: Int): OkHttpClient =
+        clientsByTimeout.getOrPut(timeout) {
+            _client.newBuilder()
+                .connectTimeout(timeout.toLong(), TimeUnit.MILLISECONDS)
+                .readTimeout(timeout.toLong(), TimeUnit.MILLISECONDS)
+                .writeTimeout(timeout.toLong(), TimeUnit.MILLISECONDS)
+                // The SDK does its own ETag caching, never serve SDK requests from the app's cache.
+                .cache(null)
+                .build()
+        }
+
+    /**
+     * Serializes the body straight into OkHttp's sink. The length is not known up front, so
+     * HTTP/1.1 requests are sent chunked; HTTP/2 frames the body regardless.
+     */
+    private class StreamingRequestBody(
+        private val body: HttpRequestBody,
+    ) : RequestBody() {
+        override fun contentType(): MediaType = JSON_MEDIA_TYPE
+
+        override fun writeTo(sink: BufferedSink) {
+            body.writeTo(sink.outputStream())
+        }
+    }
+
+    companion object {
+        /**
+         * Create the transport from the untyped client held by [HttpTransportSettings], keeping
+         * every reference to OkHttp types inside this class.
+         */
+        fun create(
+            client: Any,
+            configModelStore: ConfigModelStore,
+        ): OkHttpTransport = OkHttpTransport(client as OkHttpClient, configModelStore)
+
+        private val JSON_MEDIA_TYPE = "application/json; charset=UTF-8".toMediaType()
+        private val EMPTY_BODY = ByteArray(0)
+    }
+}
@@ -192,6 +192,13 @@ object PreferenceOneSignalKeys {
      */
     const val PREFS_LEGACY_USER_SYNCVALUES = "ONESIGNAL_USERSTATE_SYNCVALYES_CURRENT_STATE"
 
+    // Database
+
+    /**
+     * (Long) The last time the database maintenance ran, in Unix time milliseconds.
+     */
+    const val PREFS_OS_LAST_DB_MAINTENANCE_TIME = "OS_LAST_DB_MAINTENANCE_TIME"
+
     // Location
 
     /**
@@ -251,6 +258,23 @@ object PreferenceOneSignalKeys {
      */
     const val PREFS_OS_UNATTRIBUTED_UNIQUE_OUTCOME_EVENTS_SENT = "PREFS_OS_UNATTRIBUTED_UNIQUE_OUTCOME_EVENTS_SENT"
 
+    // Notifications
+
+    /**
+     * (String) JSON array of the receive receipts waiting to be sent, oldest first.
+     */
+    const val PREFS_OS_PENDING_RECEIVE_RECEIPTS = "PREFS_OS_PENDING_RECEIVE_RECEIPTS"
+
+    /**
+     * (Long) The time the backend last turned down a batch of receive receipts, they are sent one at a time for a while after.
+     */
+    const val PREFS_OS_RECEIVE_RECEIPT_BATCHES_UNSUPPORTED_AT = "PREFS_OS_RECEIVE_RECEIPT_BATCHES_UNSUPPORTED_AT"
+
+    /**
+     * (String) JSON object with the hashes of the notification channel list last applied, and of each channel in it.
+     */
+    const val PREFS_OS_NOTIFICATION_CHANNELS_FINGERPRINT = "PREFS_OS_NOTIFICATION_CHANNELS_FINGERPRINT"
+
     // In-App Messaging
 
     /**
@@ -90,7 +90,10 @@ internal class OutcomeEventsRepository(
                 put(OutcomeEventsTable.COLUMN_NAME_TIMESTAMP, eventParams.timestamp)
                 put(OutcomeEventsTable.COLUMN_NAME_SESSION_TIME, eventParams.sessionTime)
             }.also { values ->
-                _databaseProvider.os.insert(OutcomeEventsTable.TABLE_NAME, null, values)
+                // Nothing waits on the row, it is read back only when events are retried.
+                _databaseProvider.os.enqueueWrite(OutcomeEventsTable.TABLE_NAME) { db ->
+                    db.insert(OutcomeEventsTable.TABLE_NAME, null, values)
+                }
             }
         }
     }
@@ -256,19 +259,24 @@ internal class OutcomeEventsRepository(
             addIdsToListFromSource(cachedUniqueOutcomes, directBody)
             addIdsToListFromSource(cachedUniqueOutcomes, indirectBody)
 
-            for (uniqueOutcome in cachedUniqueOutcomes) {
-                ContentValues().apply {
-                    put(
-                        CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID,
-                        uniqueOutcome.influenceId,
-                    )
-                    put(
-                        CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE,
-                        uniqueOutcome.channel.toString(),
-                    )
-                    put(CachedUniqueOutcomeTable.COLUMN_NAME_NAME, outcomeName)
-                }.also { values ->
-                    _databaseProvider.os.insert(CachedUniqueOutcomeTable.TABLE_NAME, null, values)
+            if (cachedUniqueOutcomes.isEmpty()) return@withContext
+
+            // One row per influence id, committed together with the other queued writes.
+            _databaseProvider.os.enqueueWrite(CachedUniqueOutcomeTable.TABLE_NAME) { db ->
+                for (uniqueOutcome in cachedUniqueOutcomes) {
+                    ContentValues().apply {
+                        put(
+                            CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID,
+                            uniqueOutcome.influenceId,
+                        )
+                        put(
+                            CachedUniqueOutcomeTable.COLUMN_CHANNEL_TYPE,
+                            uniqueOutcome.channel.toString(),
+                        )
+                        put(CachedUniqueOutcomeTable.COLUMN_NAME_NAME, outcomeName)
+                    }.also { values ->
+                        db.insert(CachedUniqueOutcomeTable.TABLE_NAME, null, values)
+                    }
                 }
             }
         }
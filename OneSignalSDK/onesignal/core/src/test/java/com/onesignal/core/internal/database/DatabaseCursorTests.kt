@@ -0,0 +1,130 @@
+package com.onesignal.core.internal.database
+
+import android.content.ContentValues
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.core.internal.database.impl.OSDatabase
+import com.onesignal.core.internal.database.impl.OneSignalDbContract.NotificationTable
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.mockk
+
+private const val LOAD_TEST_PROPERTY = "onesignal.loadtest"
+
+private val COLUMNS =
+    arrayOf(
+        NotificationTable.COLUMN_NAME_NOTIFICATION_ID,
+        NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
+        NotificationTable.COLUMN_NAME_GROUP_ID,
+        NotificationTable.COLUMN_NAME_TITLE,
+        NotificationTable.COLUMN_NAME_MESSAGE,
+        NotificationTable.COLUMN_NAME_COLLAPSE_ID,
+        NotificationTable.COLUMN_NAME_CREATED_TIME,
+    )
+
+@RobolectricTest
+class DatabaseCursorTests : FunSpec({
+    lateinit var db: OSDatabase
+
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    beforeTest {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        context.deleteDatabase("OneSignal.db")
+        db = OSDatabase(mockk(), context)
+    }
+
+    afterTest {
+        db.close()
+    }
+
+    fun insertNotifications(count: Int) {
+        db.runInTransaction {
+            repeat(count) { i ->
+                it.insert(
+                    NotificationTable.TABLE_NAME,
+                    null,
+                    ContentValues().apply {
+                        put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "notification$i")
+                        put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, i)
+                        if (i % 2 == 0) put(NotificationTable.COLUMN_NAME_GROUP_ID, "group$i")
+                        put(NotificationTable.COLUMN_NAME_TITLE, "title $i")
+                        put(NotificationTable.COLUMN_NAME_MESSAGE, "message $i")
+                        put(NotificationTable.COLUMN_NAME_COLLAPSE_ID, "collapse$i")
+                    },
+                )
+            }
+        }
+    }
+
+    test("reads each row's values by column name") {
+        // Given
+        insertNotifications(3)
+        val rows = mutableListOf<Triple<String, Int, String?>>()
+
+        // When
+        db.query(NotificationTable.TABLE_NAME, columns = COLUMNS, orderBy = "${NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID} ASC") {
+            while (it.moveToNext()) {
+                rows +=
+                    Triple(
+                        it.getString(NotificationTable.COLUMN_NAME_NOTIFICATION_ID),
+                        it.getInt(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID),
+                        it.getOptString(NotificationTable.COLUMN_NAME_GROUP_ID),
+                    )
+            }
+        }
+
+        // Then
+        rows shouldBe
+            listOf(
+                Triple("notification0", 0, "group0"),
+                Triple("notification1", 1, null),
+                Triple("notification2", 2, "group2"),
+            )
+    }
+
+    test("row iteration benchmark").config(enabled = System.getProperty(LOAD_TEST_PROPERTY).toBoolean()) {
+        insertNotifications(1_000)
+
+        // The rows each way read in its last run, so both are known to have read every row.
+        var uncachedRows = 0
+        var cachedRows = 0
+
+        fun timeMicros(readAll: () -> Unit): Double {
+            repeat(5) { readAll() } // warm up
+            val start = System.nanoTime()
+            repeat(20) { readAll() }
+            return (System.nanoTime() - start) / 1_000.0 / 20
+        }
+
+        val uncached =
+            timeMicros {
+                db.readableDatabase.query(NotificationTable.TABLE_NAME, COLUMNS, null, null, null, null, null).use { c ->
+                    uncachedRows = 0
+                    while (c.moveToNext()) {
+                        for (column in COLUMNS) c.getString(c.getColumnIndex(column))
+                        uncachedRows++
+                    }
+                }
+            }
+        val cached =
+            timeMicros {
+                db.query(NotificationTable.TABLE_NAME, columns = COLUMNS) { c ->
+                    cachedRows = 0
+                    while (c.moveToNext()) {
+                        for (column in COLUMNS) c.getOptString(column)
+                        cachedRows++
+                    }
+                }
+            }
+
+        Logging.info("Reading 1000 notifications: getColumnIndex per field ${"%.0f".format(uncached)}us, DatabaseCursor ${"%.0f".format(cached)}us")
+        uncachedRows shouldBe 1_000
+        cachedRows shouldBe 1_000
+    }
+})
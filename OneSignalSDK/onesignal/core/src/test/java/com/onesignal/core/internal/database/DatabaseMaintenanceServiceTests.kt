@@ -0,0 +1,157 @@
+package com.onesignal.core.internal.database
+
+import android.content.ContentValues
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.core.internal.database.impl.DatabaseMaintenanceService
+import com.onesignal.core.internal.database.impl.OSDatabase
+import com.onesignal.core.internal.database.impl.OneSignalDbContract.NotificationTable
+import com.onesignal.core.internal.preferences.IPreferencesService
+import com.onesignal.core.internal.preferences.PreferenceOneSignalKeys
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.MockHelper
+import com.onesignal.session.internal.outcomes.impl.CachedUniqueOutcomeTable
+import com.onesignal.session.internal.outcomes.impl.OutcomeEventsTable
+import com.onesignal.session.internal.outcomes.impl.OutcomeTableProvider
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.nulls.shouldBeNull
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+
+private const val NOW = 1_700_000_000_000L
+private const val DAY_SECONDS = 86_400L
+
+@RobolectricTest
+class DatabaseMaintenanceServiceTests : FunSpec({
+    lateinit var db: OSDatabase
+    lateinit var databaseProvider: IDatabaseProvider
+
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    beforeTest {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        context.deleteDatabase("OneSignal.db")
+        db = OSDatabase(OutcomeTableProvider(), context)
+        databaseProvider =
+            mockk {
+                every { os } returns db
+            }
+    }
+
+    afterTest {
+        db.close()
+    }
+
+    fun maintenanceService(preferences: IPreferencesService = mockk(relaxed = true)) =
+        DatabaseMaintenanceService(
+            MockHelper.applicationService(),
+            databaseProvider,
+            preferences,
+            MockHelper.configModelStore {
+                it.dbNotificationRowCap = 1
+                it.dbOutcomeRowCap = 3
+            },
+            MockHelper.time(NOW),
+        )
+
+    fun insertNotification(
+        id: String,
+        ageSeconds: Long,
+        opened: Boolean = false,
+        dismissed: Boolean = false,
+    ) {
+        db.insert(
+            NotificationTable.TABLE_NAME,
+            null,
+            ContentValues().apply {
+                put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, id)
+                put(NotificationTable.COLUMN_NAME_CREATED_TIME, NOW / 1000 - ageSeconds)
+                put(NotificationTable.COLUMN_NAME_OPENED, if (opened) 1 else 0)
+                put(NotificationTable.COLUMN_NAME_DISMISSED, if (dismissed) 1 else 0)
+            },
+        )
+    }
+
+    test("caps the handled notifications and the sent unique outcomes") {
+        // Given
+        insertNotification("opened-old", DAY_SECONDS * 8, opened = true)
+        insertNotification("dismissed-recent", DAY_SECONDS * 2, dismissed = true)
+        insertNotification("displayed-old", DAY_SECONDS * 8)
+        repeat(5) {
+            db.insert(
+                OutcomeEventsTable.TABLE_NAME,
+                null,
+                ContentValues().apply {
+                    put(OutcomeEventsTable.COLUMN_NAME_NAME, "outcome$it")
+                    put(OutcomeEventsTable.COLUMN_NAME_TIMESTAMP, NOW)
+                },
+            )
+            db.insert(
+                CachedUniqueOutcomeTable.TABLE_NAME,
+                null,
+                ContentValues().apply {
+                    put(CachedUniqueOutcomeTable.COLUMN_CHANNEL_INFLUENCE_ID, "notification$it")
+                    put(CachedUniqueOutcomeTable.COLUMN_NAME_NAME, "outcome$it")
+                },
+            )
+        }
+
+        // When
+        val report = maintenanceService().runMaintenance()
+
+        // Then
+        val notificationIds = mutableListOf<String>()
+        db.query(NotificationTable.TABLE_NAME) {
+            while (it.moveToNext()) notificationIds += it.getString(NotificationTable.COLUMN_NAME_NOTIFICATION_ID)
+        }
+        notificationIds shouldContainExactlyInAnyOrder listOf("dismissed-recent", "displayed-old")
+        // Outcomes waiting to be sent are not capped.
+        db.longForQuery("SELECT COUNT(*) FROM ${OutcomeEventsTable.TABLE_NAME}") shouldBe 5L
+        db.longForQuery("SELECT COUNT(*) FROM ${CachedUniqueOutcomeTable.TABLE_NAME}") shouldBe 3L
+        db.longForQuery("PRAGMA auto_vacuum") shouldBe 2L
+        (report.sizeAfter > 0) shouldBe true
+    }
+
+    test("does not run again within the maintenance interval") {
+        // Given
+        val preferences =
+            mockk<IPreferencesService>(relaxed = true) {
+                every { getLong(any(), PreferenceOneSignalKeys.PREFS_OS_LAST_DB_MAINTENANCE_TIME, any()) } returns NOW - 1_000
+            }
+        val databaseProvider = mockk<IDatabaseProvider>()
+
+        // When
+        DatabaseMaintenanceService(
+            MockHelper.applicationService(),
+            databaseProvider,
+            preferences,
+            MockHelper.configModelStore(),
+            MockHelper.time(NOW),
+        ).backgroundRun()
+
+        // Then
+        verify(exactly = 0) { databaseProvider.os }
+        verify(exactly = 0) { preferences.saveLong(any(), any(), any()) }
+    }
+
+    test("does not schedule a background run of its own until it is nearly due") {
+        // Given
+        val preferences =
+            mockk<IPreferencesService>(relaxed = true) {
+                every { getLong(any(), PreferenceOneSignalKeys.PREFS_OS_LAST_DB_MAINTENANCE_TIME, any()) } returns NOW - 1_000
+            }
+
+        // When
+        val scheduleIn = maintenanceService(preferences).scheduleBackgroundRunIn
+
+        // Then
+        scheduleIn.shouldBeNull()
+    }
+})
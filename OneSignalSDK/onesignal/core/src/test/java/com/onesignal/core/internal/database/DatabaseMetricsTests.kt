@@ -0,0 +1,72 @@
+package com.onesignal.core.internal.database
+
+import com.onesignal.core.internal.database.impl.DatabaseMetrics
+import com.onesignal.debug.ILogListener
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.OneSignalLogEvent
+import com.onesignal.debug.internal.logging.Logging
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import io.mockk.every
+import io.mockk.mockk
+
+class DatabaseMetricsTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("fingerprint replaces literal values but keeps names") {
+        DatabaseMetrics.fingerprint("android_notification_id = 12345 AND opened = 0") shouldBe "android_notification_id = ? AND opened = ?"
+        DatabaseMetrics.fingerprint("group_id = 'it''s a group' AND collapse_id = ?") shouldBe "group_id = ? AND collapse_id = ?"
+        DatabaseMetrics.fingerprint("SELECT 1 FROM cached_unique_outcome_v2 LIMIT 1") shouldBe "SELECT ? FROM cached_unique_outcome_v2 LIMIT ?"
+    }
+
+    test("tableOf finds the table of a select") {
+        DatabaseMetrics.tableOf("SELECT group_id FROM notification WHERE android_notification_id = ?") shouldBe "notification"
+        DatabaseMetrics.tableOf("PRAGMA page_count") shouldBe "-"
+    }
+
+    test("record adds each operation to its table and operation") {
+        // Given
+        val metrics = DatabaseMetrics()
+        val now = System.nanoTime()
+
+        // When
+        metrics.record("query", "notification", null, now - 3_000_000, now - 1_000_000, 4)
+        metrics.record("query", "notification", null, now - 20_000_000, now - 20_000_000, 1)
+        metrics.record("insert", "outcome", null, now, now, 1)
+
+        // Then
+        val snapshot = metrics.snapshot()
+        snapshot.keys shouldBe setOf("query notification", "insert outcome")
+        snapshot["query notification"]!! shouldContain "count=2"
+        snapshot["query notification"]!! shouldContain "rows=5"
+        snapshot["query notification"]!! shouldContain "histogram=0,0,1,0,0,1,0,0,0,0,0"
+    }
+
+    test("record logs the stats every SNAPSHOT_LOG_INTERVAL operations") {
+        // Given
+        val metrics = DatabaseMetrics()
+        val messages = mutableListOf<String>()
+        val listener = mockk<ILogListener>()
+        every { listener.onLogEvent(any()) } answers {
+            messages.add(firstArg<OneSignalLogEvent>().entry)
+            Unit
+        }
+        Logging.addListener(listener)
+        val now = System.nanoTime()
+
+        // When
+        repeat(DatabaseMetrics.SNAPSHOT_LOG_INTERVAL.toInt() * 2) {
+            metrics.record("query", "notification", null, now, now, 1)
+        }
+        Logging.removeListener(listener)
+
+        // Then
+        val snapshots = messages.filter { it.contains("OSDatabase: stats after") }
+        snapshots.size shouldBe 2
+        snapshots.last() shouldContain "query notification"
+        snapshots.last() shouldContain "count=${DatabaseMetrics.SNAPSHOT_LOG_INTERVAL * 2}"
+    }
+})
@@ -0,0 +1,193 @@
+package com.onesignal.core.internal.database
+
+import android.content.ContentValues
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.core.internal.database.impl.OSDatabase
+import com.onesignal.core.internal.database.impl.OneSignalDbContract
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.session.internal.outcomes.impl.OutcomeEventsTable
+import com.onesignal.session.internal.outcomes.impl.OutcomeTableProvider
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import java.util.Collections
+
+private const val LOAD_TEST_PROPERTY = "onesignal.loadtest"
+
+/**
+ * Mixes the SDK's three heaviest database users (notification receipt, outcome caching and IAM
+ * persistence) on parallel coroutines, with and without write-ahead logging.
+ *
+ * The small run always executes as a correctness check. The benchmark run, which logs the
+ * read latency and wall time of each mode as info, is skipped unless the `onesignal.loadtest`
+ * system property is true:
+ *   ./gradlew :OneSignal:core:testReleaseUnitTest -Ponesignal.loadtest=true --tests '*OSDatabaseContentionTests*'
+ */
+@RobolectricTest
+class OSDatabaseContentionTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    for (writeAheadLogging in listOf(false, true)) {
+        test("parallel mixed workload keeps every write (write-ahead logging: $writeAheadLogging)") {
+            val report = runMixedWorkload(writeAheadLogging, workersPerKind = 2, iterations = 25)
+
+            report.notifications shouldBe 50
+            report.outcomes shouldBe 50
+            report.inAppMessages shouldBe 10
+        }
+    }
+
+    test("contention benchmark").config(enabled = System.getProperty(LOAD_TEST_PROPERTY).toBoolean()) {
+        for (writeAheadLogging in listOf(false, true)) {
+            val report = runMixedWorkload(writeAheadLogging, workersPerKind = 4, iterations = 500)
+            Logging.info(report.toString())
+
+            report.notifications shouldBe 2_000
+            report.outcomes shouldBe 2_000
+            report.inAppMessages shouldBe 20
+            report.queryLatenciesNanos.size shouldBe 4_000
+        }
+    }
+})
+
+private class ContentionReport(
+    val writeAheadLogging: Boolean,
+    val wallTimeMs: Long,
+    val queryLatenciesNanos: List<Long>,
+    val notifications: Int,
+    val outcomes: Int,
+    val inAppMessages: Int,
+) {
+    private fun percentileMs(percent: Int): Double {
+        if (queryLatenciesNanos.isEmpty()) return 0.0
+        val sorted = queryLatenciesNanos.sorted()
+        return sorted[((percent / 100.0) * (sorted.size - 1)).toInt()] / 1_000_000.0
+    }
+
+    override fun toString(): String =
+        "OSDatabase contention (write-ahead logging: $writeAheadLogging): wall time ${wallTimeMs}ms, " +
+            "${queryLatenciesNanos.size} queries p50 ${"%.2f".format(percentileMs(50))}ms " +
+            "p99 ${"%.2f".format(percentileMs(99))}ms max ${"%.2f".format(percentileMs(100))}ms"
+}
+
+private suspend fun runMixedWorkload(
+    writeAheadLogging: Boolean,
+    workersPerKind: Int,
+    iterations: Int,
+): ContentionReport {
+    val context = ApplicationProvider.getApplicationContext<Context>()
+    context.deleteDatabase("OneSignal.db")
+    val db = OSDatabase(OutcomeTableProvider(), context, _useWriteAheadLogging = writeAheadLogging)
+    val queryLatencies = Collections.synchronizedList(mutableListOf<Long>())
+
+    fun timedQuery(
+        table: String,
+        whereClause: String?,
+        whereArgs: Array<String>?,
+    ) {
+        val start = System.nanoTime()
+        db.query(table, whereClause = whereClause, whereArgs = whereArgs) {
+            // Step through every row so the cursor window is actually filled.
+            var rows = 0
+            while (it.moveToNext()) rows++
+        }
+        queryLatencies.add(System.nanoTime() - start)
+    }
+
+    val startedAt = System.currentTimeMillis()
+    coroutineScope {
+        val jobs = mutableListOf<Deferred<Unit>>()
+        repeat(workersPerKind) { worker ->
+            // Notification receipt: duplicate check followed by the insert.
+            jobs +=
+                async(Dispatchers.IO) {
+                    repeat(iterations) {
+                        val notificationId = "notification-$worker-$it"
+                        timedQuery(
+                            OneSignalDbContract.NotificationTable.TABLE_NAME,
+                            "${OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID} = ?",
+                            arrayOf(notificationId),
+                        )
+                        db.insertOrThrow(
+                            OneSignalDbContract.NotificationTable.TABLE_NAME,
+                            null,
+                            ContentValues().apply {
+                                put(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID, notificationId)
+                                put(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, worker * iterations + it)
+                                put(OneSignalDbContract.NotificationTable.COLUMN_NAME_MESSAGE, "message $it")
+                            },
+                        )
+                    }
+                }
+
+            // Outcome caching: cache the event, then read back the pending events.
+            jobs +=
+                async(Dispatchers.IO) {
+                    repeat(iterations) {
+                        db.insert(
+                            OutcomeEventsTable.TABLE_NAME,
+                            null,
+                            ContentValues().apply {
+                                put(OutcomeEventsTable.COLUMN_NAME_NAME, "outcome-$worker-$it")
+                                put(OutcomeEventsTable.COLUMN_NAME_NOTIFICATION_IDS, "[\"notification-$worker-$it\"]")
+                                put(OutcomeEventsTable.COLUMN_NAME_TIMESTAMP, System.currentTimeMillis())
+                            },
+                        )
+                        timedQuery(OutcomeEventsTable.TABLE_NAME, null, null)
+                    }
+                }
+
+            // IAM persistence: update the message's display state, inserting it the first time.
+            jobs +=
+                async(Dispatchers.IO) {
+                    repeat(iterations) {
+                        val messageId = "iam-$worker-${it % 5}"
+                        val values =
+                            ContentValues().apply {
+                                put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID, messageId)
+                                put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_DISPLAY_QUANTITY, it)
+                                put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_LAST_DISPLAY, System.currentTimeMillis())
+                            }
+                        val updated =
+                            db.update(
+                                OneSignalDbContract.InAppMessageTable.TABLE_NAME,
+                                values,
+                                "${OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID} = ?",
+                                arrayOf(messageId),
+                            )
+                        if (updated == 0) db.insert(OneSignalDbContract.InAppMessageTable.TABLE_NAME, null, values)
+                        timedQuery(OneSignalDbContract.InAppMessageTable.TABLE_NAME, null, null)
+                    }
+                }
+        }
+        jobs.awaitAll()
+    }
+    val wallTime = System.currentTimeMillis() - startedAt
+
+    fun count(table: String): Int {
+        var count = 0
+        db.query(table) { count = it.count }
+        return count
+    }
+
+    val report =
+        ContentionReport(
+            writeAheadLogging = writeAheadLogging,
+            wallTimeMs = wallTime,
+            queryLatenciesNanos = queryLatencies.toList(),
+            notifications = count(OneSignalDbContract.NotificationTable.TABLE_NAME),
+            outcomes = count(OutcomeEventsTable.TABLE_NAME),
+            inAppMessages = count(OneSignalDbContract.InAppMessageTable.TABLE_NAME),
+        )
+    db.close()
+    return report
+}
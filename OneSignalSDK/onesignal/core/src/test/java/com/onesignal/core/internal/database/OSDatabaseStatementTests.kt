@@ -0,0 +1,100 @@
+package com.onesignal.core.internal.database
+
+import android.content.ContentValues
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.core.internal.database.impl.OSDatabase
+import com.onesignal.core.internal.database.impl.OneSignalDbContract.NotificationTable
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.doubles.shouldBeLessThan
+import io.kotest.matchers.shouldBe
+import io.mockk.mockk
+
+private const val LOAD_TEST_PROPERTY = "onesignal.loadtest"
+
+private const val SQL_EXISTS = "SELECT 1 FROM ${NotificationTable.TABLE_NAME} WHERE ${NotificationTable.COLUMN_NAME_NOTIFICATION_ID} = ? LIMIT 1"
+private const val SQL_GROUP_ID =
+    "SELECT ${NotificationTable.COLUMN_NAME_GROUP_ID} FROM ${NotificationTable.TABLE_NAME} " +
+        "WHERE ${NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID} = ? LIMIT 1"
+private const val SQL_COLLAPSE =
+    "SELECT ${NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID} FROM ${NotificationTable.TABLE_NAME} " +
+        "WHERE ${NotificationTable.COLUMN_NAME_COLLAPSE_ID} = ? AND ${NotificationTable.COLUMN_NAME_DISMISSED} = 0 " +
+        "AND ${NotificationTable.COLUMN_NAME_OPENED} = 0 LIMIT 1"
+
+@RobolectricTest
+class OSDatabaseStatementTests : FunSpec({
+    lateinit var db: OSDatabase
+
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    beforeTest {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        context.deleteDatabase("OneSignal.db")
+        db = OSDatabase(mockk(), context)
+        repeat(3) {
+            db.insert(
+                NotificationTable.TABLE_NAME,
+                null,
+                ContentValues().apply {
+                    put(NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "notification$it")
+                    put(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, it)
+                    put(NotificationTable.COLUMN_NAME_COLLAPSE_ID, "collapse$it")
+                    if (it > 0) put(NotificationTable.COLUMN_NAME_GROUP_ID, "group$it")
+                },
+            )
+        }
+    }
+
+    afterTest {
+        db.close()
+    }
+
+    test("longForQuery binds the arguments of each call to the cached statement") {
+        db.longForQuery(SQL_COLLAPSE, arrayOf("collapse1")) shouldBe 1L
+        db.longForQuery(SQL_COLLAPSE, arrayOf("collapse2")) shouldBe 2L
+        db.longForQuery(SQL_EXISTS, arrayOf("notification0")) shouldBe 1L
+    }
+
+    test("longForQuery returns null when there is no row") {
+        db.longForQuery(SQL_EXISTS, arrayOf("missing")) shouldBe null
+        db.longForQuery("SELECT COUNT(*) FROM ${NotificationTable.TABLE_NAME}") shouldBe 3L
+    }
+
+    test("stringForQuery returns the value, or null for no row or a NULL value") {
+        db.stringForQuery(SQL_GROUP_ID, arrayOf("2")) shouldBe "group2"
+        db.stringForQuery(SQL_GROUP_ID, arrayOf("0")) shouldBe null
+        db.stringForQuery(SQL_GROUP_ID, arrayOf("9")) shouldBe null
+    }
+
+    test("per push lookup benchmark").config(enabled = System.getProperty(LOAD_TEST_PROPERTY).toBoolean()) {
+        val pushes = 5_000
+
+        fun timePerPushMicros(lookup: (Int) -> Unit): Double {
+            repeat(100) { lookup(it) } // warm up
+            val start = System.nanoTime()
+            repeat(pushes) { lookup(it) }
+            return (System.nanoTime() - start) / 1_000.0 / pushes
+        }
+
+        val queried =
+            timePerPushMicros {
+                db.query(NotificationTable.TABLE_NAME, arrayOf(NotificationTable.COLUMN_NAME_NOTIFICATION_ID), "${NotificationTable.COLUMN_NAME_NOTIFICATION_ID} = ?", arrayOf("notification$it")) { c -> c.moveToFirst() }
+                db.query(NotificationTable.TABLE_NAME, arrayOf(NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID), "${NotificationTable.COLUMN_NAME_COLLAPSE_ID} = ? AND ${NotificationTable.COLUMN_NAME_DISMISSED} = 0 AND ${NotificationTable.COLUMN_NAME_OPENED} = 0", arrayOf("collapse$it")) { c -> c.moveToFirst() }
+                db.query(NotificationTable.TABLE_NAME, arrayOf(NotificationTable.COLUMN_NAME_GROUP_ID), "${NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID} = $it") { c -> c.moveToFirst() }
+            }
+        val compiled =
+            timePerPushMicros {
+                db.longForQuery(SQL_EXISTS, arrayOf("notification$it"))
+                db.longForQuery(SQL_COLLAPSE, arrayOf("collapse$it"))
+                db.stringForQuery(SQL_GROUP_ID, arrayOf("$it"))
+            }
+
+        Logging.info("Per push notification lookups: query() ${"%.1f".format(queried)}us, compiled statements ${"%.1f".format(compiled)}us")
+        compiled shouldBeLessThan queried
+    }
+})
@@ -1,6 +1,7 @@
 package com.onesignal.core.internal.database
 
 import android.content.ContentValues
+import android.database.SQLException
 import androidx.test.core.app.ApplicationProvider
 import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
 import com.onesignal.core.internal.database.impl.OSDatabase
@@ -8,9 +9,12 @@ import com.onesignal.core.internal.database.impl.OneSignalDbContract
 import com.onesignal.debug.LogLevel
 import com.onesignal.debug.internal.logging.Logging
 import com.onesignal.session.internal.outcomes.impl.OutcomeTableProvider
+import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.FunSpec
 import io.kotest.matchers.shouldBe
 import io.mockk.mockk
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
 
 @RobolectricTest
 class OSDatabaseTests : FunSpec({
@@ -57,4 +61,231 @@ class OSDatabaseTests : FunSpec({
         // Then
         expireTime shouldBe createdTime + (72L * (60 * 60))
     }
+
+    test("runInTransaction commits every write made in the block") {
+        // Given
+        val db = OSDatabase(mockk(), ApplicationProvider.getApplicationContext())
+
+        // When
+        db.runInTransaction {
+            it.insert(OneSignalDbContract.InAppMessageTable.TABLE_NAME, null, ContentValues().apply { put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID, "iam1") })
+            it.insert(OneSignalDbContract.InAppMessageTable.TABLE_NAME, null, ContentValues().apply { put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID, "iam2") })
+        }
+
+        // Then
+        var count = 0
+        db.query(OneSignalDbContract.InAppMessageTable.TABLE_NAME) { count = it.count }
+        count shouldBe 2
+    }
+
+    test("runInTransaction rolls back every write when the block throws") {
+        // Given
+        val db = OSDatabase(mockk(), ApplicationProvider.getApplicationContext())
+
+        // When
+        val thrown =
+            shouldThrow<IllegalStateException> {
+                db.runInTransaction {
+                    it.insert(OneSignalDbContract.InAppMessageTable.TABLE_NAME, null, ContentValues().apply { put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID, "iam1") })
+                    throw IllegalStateException("failed")
+                }
+            }
+
+        // Then
+        thrown.message shouldBe "failed"
+        var count = 0
+        db.query(OneSignalDbContract.InAppMessageTable.TABLE_NAME) { count = it.count }
+        count shouldBe 0
+    }
+
+    test("runInTransaction throws when an operation within it failed and was rolled back") {
+        // Given
+        val db = OSDatabase(mockk(), ApplicationProvider.getApplicationContext())
+
+        // When
+        shouldThrow<SQLException> {
+            db.runInTransaction {
+                it.insert(OneSignalDbContract.InAppMessageTable.TABLE_NAME, null, ContentValues().apply { put(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID, "iam1") })
+                // Logged rather than thrown, the table does not exist.
+                it.insert("missing_table", null, ContentValues().apply { put("column", "value") })
+            }
+        }
+
+        // Then
+        var count = 0
+        db.query(OneSignalDbContract.InAppMessageTable.TABLE_NAME) { count = it.count }
+        count shouldBe 0
+    }
+
+    test("queued writes with the same key are coalesced and committed before the next query") {
+        // Given
+        val db = OSDatabase(mockk(), ApplicationProvider.getApplicationContext())
+        val table = OneSignalDbContract.InAppMessageTable.TABLE_NAME
+        val messageIdColumn = OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID
+        val quantityColumn = OneSignalDbContract.InAppMessageTable.COLUMN_NAME_DISPLAY_QUANTITY
+
+        // When
+        for (quantity in 1..3) {
+            db.enqueueWrite(table, "iam1") {
+                val values =
+                    ContentValues().apply {
+                        put(messageIdColumn, "iam1")
+                        put(quantityColumn, quantity)
+                    }
+                it.insert(table, null, values)
+            }
+        }
+        db.enqueueWrite(table) {
+            val values =
+                ContentValues().apply {
+                    put(messageIdColumn, "iam2")
+                    put(quantityColumn, 1)
+                }
+            it.insert(table, null, values)
+        }
+        val rows = db.longForQuery("SELECT COUNT(*) FROM $table")
+        val quantity = db.longForQuery("SELECT $quantityColumn FROM $table WHERE $messageIdColumn = ?", arrayOf("iam1"))
+
+        // Then
+        rows shouldBe 2L
+        quantity shouldBe 3L
+    }
+
+    test("a failing queued write loses only itself") {
+        // Given
+        val db = OSDatabase(mockk(), ApplicationProvider.getApplicationContext())
+        val table = OneSignalDbContract.InAppMessageTable.TABLE_NAME
+        val messageIdColumn = OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID
+
+        // When
+        db.enqueueWrite(table) {
+            it.insert(table, null, ContentValues().apply { put(messageIdColumn, "iam1") })
+        }
+        db.enqueueWrite(table) { throw IllegalStateException("failed") }
+        db.enqueueWrite(table) {
+            it.insert(table, null, ContentValues().apply { put(messageIdColumn, "iam2") })
+        }
+        db.flushWrites()
+        val rows = db.longForQuery("SELECT COUNT(*) FROM $table")
+
+        // Then
+        rows shouldBe 2L
+    }
+
+    test("queued writes are committed before a transaction, not rolled back with it") {
+        // Given
+        val db = OSDatabase(mockk(), ApplicationProvider.getApplicationContext())
+        val table = OneSignalDbContract.InAppMessageTable.TABLE_NAME
+        val messageIdColumn = OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID
+        db.enqueueWrite(table) {
+            it.insert(table, null, ContentValues().apply { put(messageIdColumn, "iam1") })
+        }
+
+        // When
+        shouldThrow<IllegalStateException> {
+            db.runInTransaction {
+                it.insert(table, null, ContentValues().apply { put(messageIdColumn, "iam2") })
+                throw IllegalStateException("failed")
+            }
+        }
+        val messageId = db.stringForQuery("SELECT $messageIdColumn FROM $table")
+        val rows = db.longForQuery("SELECT COUNT(*) FROM $table")
+
+        // Then
+        messageId shouldBe "iam1"
+        rows shouldBe 1L
+    }
+
+    test("upgrade moves notification payloads to their own table, deleted along with the notification") {
+        // Given
+        InitialOSDatabase(ApplicationProvider.getApplicationContext()).also { initialDb ->
+            initialDb.writableDatabase.insertOrThrow(
+                OneSignalDbContract.NotificationTable.TABLE_NAME,
+                null,
+                ContentValues().apply {
+                    put(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "notification1")
+                    put(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID, 2)
+                    put(OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA, "{\"alert\":\"message\"}")
+                },
+            )
+            initialDb.close()
+        }
+
+        // When
+        val db = OSDatabase(OutcomeTableProvider(), ApplicationProvider.getApplicationContext())
+        val payload =
+            db.stringForQuery(
+                "SELECT notification_payload.full_data FROM notification_payload " +
+                    "JOIN notification ON notification_row_id = notification._id WHERE notification_id = ?",
+                arrayOf("notification1"),
+            )
+        val hotTableFullData =
+            db.stringForQuery(
+                "SELECT full_data FROM notification WHERE notification_id = ?",
+                arrayOf("notification1"),
+            )
+        db.delete(OneSignalDbContract.NotificationTable.TABLE_NAME, null, null)
+        val payloadsAfterDelete = db.longForQuery("SELECT COUNT(*) FROM notification_payload")
+
+        // Then
+        payload shouldBe "{\"alert\":\"message\"}"
+        hotTableFullData shouldBe null
+        payloadsAfterDelete shouldBe 0L
+        db.close()
+    }
+
+    test("deleting a notification keeps the payload of another with the same notification id") {
+        // Given
+        InitialOSDatabase(ApplicationProvider.getApplicationContext()).also { initialDb ->
+            for (payload in listOf("{\"alert\":\"older\"}", "{\"alert\":\"newer\"}")) {
+                initialDb.writableDatabase.insertOrThrow(
+                    OneSignalDbContract.NotificationTable.TABLE_NAME,
+                    null,
+                    ContentValues().apply {
+                        put(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID, "notification1")
+                        put(OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA, payload)
+                    },
+                )
+            }
+            initialDb.close()
+        }
+        val db = OSDatabase(OutcomeTableProvider(), ApplicationProvider.getApplicationContext())
+        val olderRowId = db.longForQuery("SELECT MIN(_id) FROM notification WHERE notification_id = ?", arrayOf("notification1"))
+
+        // When
+        db.delete(OneSignalDbContract.NotificationTable.TABLE_NAME, "_id = ?", arrayOf(olderRowId.toString()))
+        val payloads = db.longForQuery("SELECT COUNT(*) FROM notification_payload")
+        val payload = db.stringForQuery("SELECT full_data FROM notification_payload")
+
+        // Then
+        payloads shouldBe 1L
+        payload shouldBe "{\"alert\":\"newer\"}"
+        db.close()
+    }
+
+    test("a statement to run when idle is skipped while another operation holds the database") {
+        // Given
+        val db = OSDatabase(mockk(), ApplicationProvider.getApplicationContext())
+        val inTransaction = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val holder =
+            thread {
+                db.runInTransaction {
+                    inTransaction.countDown()
+                    release.await()
+                }
+            }
+        inTransaction.await()
+
+        // When
+        val whileBusy = db.execSQLIfIdle("VACUUM")
+        release.countDown()
+        holder.join()
+        val whenIdle = db.execSQLIfIdle("VACUUM")
+
+        // Then
+        whileBusy shouldBe false
+        whenIdle shouldBe true
+        db.close()
+    }
 })
@@ -0,0 +1,152 @@
+package com.onesignal.core.internal.http
+
+import com.onesignal.core.internal.http.impl.AdaptiveConcurrencyLimiter
+import com.onesignal.core.internal.http.impl.HttpCircuitBreaker
+import com.onesignal.core.internal.http.impl.HttpEndpointClass
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.withTimeoutOrNull
+
+class HttpCircuitBreakerTests : FunSpec({
+
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("endpoint classes are determined from the request url") {
+        HttpEndpointClass.fromUrl("apps/appId/users") shouldBe HttpEndpointClass.USERS
+        HttpEndpointClass.fromUrl("apps/appId/users/by/onesignal_id/123/subscriptions") shouldBe HttpEndpointClass.USERS
+        HttpEndpointClass.fromUrl("apps/appId/subscriptions/subId") shouldBe HttpEndpointClass.SUBSCRIPTIONS
+        HttpEndpointClass.fromUrl("apps/appId/subscriptions/subId/iams") shouldBe HttpEndpointClass.IN_APP_MESSAGES
+        HttpEndpointClass.fromUrl("in_app_messages/messageId/impression") shouldBe HttpEndpointClass.IN_APP_MESSAGES
+        HttpEndpointClass.fromUrl("apps/appId/custom_events") shouldBe HttpEndpointClass.CUSTOM_EVENTS
+        HttpEndpointClass.fromUrl("outcomes/measure") shouldBe HttpEndpointClass.OUTCOMES
+        HttpEndpointClass.fromUrl("notifications/notifId/report_received") shouldBe HttpEndpointClass.NOTIFICATIONS
+        HttpEndpointClass.fromUrl("apps/appId/android_params.js?player_id=abc") shouldBe HttpEndpointClass.PARAMS
+    }
+
+    test("circuit opens after consecutive failures and only affects that endpoint class") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val breaker = HttpCircuitBreaker(time, failureThreshold = 3, openDurationMs = 10_000)
+
+        // When
+        repeat(3) {
+            breaker.tryAcquire(HttpEndpointClass.OUTCOMES) shouldBe 0
+            breaker.onResult(HttpEndpointClass.OUTCOMES, false)
+        }
+        now += 4_000
+
+        // Then
+        breaker.stateOf(HttpEndpointClass.OUTCOMES) shouldBe HttpCircuitBreaker.State.OPEN
+        breaker.tryAcquire(HttpEndpointClass.OUTCOMES) shouldBe 6_000
+        breaker.tryAcquire(HttpEndpointClass.USERS) shouldBe 0
+    }
+
+    test("a success resets the consecutive failure count") {
+        // Given
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } returns 1_000L
+        val breaker = HttpCircuitBreaker(time, failureThreshold = 3, openDurationMs = 10_000)
+
+        // When
+        breaker.onResult(HttpEndpointClass.USERS, false)
+        breaker.onResult(HttpEndpointClass.USERS, false)
+        breaker.onResult(HttpEndpointClass.USERS, true)
+        breaker.onResult(HttpEndpointClass.USERS, false)
+        breaker.onResult(HttpEndpointClass.USERS, false)
+
+        // Then
+        breaker.stateOf(HttpEndpointClass.USERS) shouldBe HttpCircuitBreaker.State.CLOSED
+    }
+
+    test("half-open circuit lets a single probe through and closes on success") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val breaker = HttpCircuitBreaker(time, failureThreshold = 1, openDurationMs = 10_000)
+        breaker.onResult(HttpEndpointClass.PARAMS, false)
+
+        // When
+        now += 10_000
+        val probe = breaker.tryAcquire(HttpEndpointClass.PARAMS)
+        val secondWhileProbing = breaker.tryAcquire(HttpEndpointClass.PARAMS)
+        breaker.onResult(HttpEndpointClass.PARAMS, true)
+
+        // Then
+        probe shouldBe 0
+        (secondWhileProbing > 0) shouldBe true
+        breaker.stateOf(HttpEndpointClass.PARAMS) shouldBe HttpCircuitBreaker.State.CLOSED
+        breaker.tryAcquire(HttpEndpointClass.PARAMS) shouldBe 0
+    }
+
+    test("half-open circuit re-opens when the probe fails") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val breaker = HttpCircuitBreaker(time, failureThreshold = 1, openDurationMs = 10_000)
+        breaker.onResult(HttpEndpointClass.PARAMS, false)
+
+        // When
+        now += 10_000
+        breaker.tryAcquire(HttpEndpointClass.PARAMS) shouldBe 0
+        breaker.onResult(HttpEndpointClass.PARAMS, false)
+
+        // Then
+        breaker.stateOf(HttpEndpointClass.PARAMS) shouldBe HttpCircuitBreaker.State.OPEN
+        breaker.tryAcquire(HttpEndpointClass.PARAMS) shouldBe 10_000
+    }
+
+    test("concurrency limit grows additively on fast successes and halves on slow requests") {
+        // Given
+        val limiter = AdaptiveConcurrencyLimiter(minLimit = 1, maxLimit = 8, initialLimit = 4, latencyTargetMs = 100)
+
+        // When
+        repeat(5) {
+            limiter.acquire()
+            limiter.release(10, true)
+        }
+        val grown = limiter.currentLimit
+
+        limiter.acquire()
+        limiter.release(500, true)
+        val shrunk = limiter.currentLimit
+
+        // Then
+        grown shouldBe 5
+        shrunk shouldBe 2
+    }
+
+    test("acquire suspends once the concurrency limit is reached") {
+        // Given
+        val limiter = AdaptiveConcurrencyLimiter(minLimit = 1, maxLimit = 1, initialLimit = 1)
+        limiter.acquire()
+
+        // When
+        val blocked = withTimeoutOrNull(100) { limiter.acquire() }
+        val unblocked =
+            coroutineScope {
+                val waiter = async { limiter.acquire() }
+                delay(10)
+                limiter.release(10, true)
+                withTimeoutOrNull(1_000) { waiter.await() }
+            }
+
+        // Then
+        blocked shouldBe null
+        unblocked shouldBe Unit
+        limiter.currentInFlight shouldBe 1
+    }
+})
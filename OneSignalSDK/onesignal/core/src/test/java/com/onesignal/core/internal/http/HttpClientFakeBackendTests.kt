@@ -0,0 +1,176 @@
+package com.onesignal.core.internal.http
+
+import com.onesignal.core.internal.device.impl.InstallIdService
+import com.onesignal.core.internal.http.impl.HttpClient
+import com.onesignal.core.internal.http.impl.HttpConnectionFactory
+import com.onesignal.core.internal.http.impl.HttpURLConnectionTransport
+import com.onesignal.core.internal.http.impl.OkHttpTransport
+import com.onesignal.core.internal.http.impl.OptionalHeaders
+import com.onesignal.core.internal.time.impl.Time
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.MockHelper
+import com.onesignal.mocks.MockPreferencesService
+import com.onesignal.mocks.backend.FakeOneSignalBackend
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.ints.shouldBeLessThan
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+import io.mockk.mockk
+import okhttp3.OkHttpClient
+import org.json.JSONArray
+import org.json.JSONObject
+import java.net.HttpURLConnection
+import java.net.URL
+
+class HttpClientFakeBackendTests : FunSpec({
+
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    fun httpClientFor(
+        backend: FakeOneSignalBackend,
+        okHttpClient: OkHttpClient? = null,
+    ): HttpClient {
+        val configModelStore = MockHelper.configModelStore { it.apiUrl = backend.baseUrl }
+        val transport =
+            if (okHttpClient != null) {
+                OkHttpTransport.create(okHttpClient, configModelStore)
+            } else {
+                HttpURLConnectionTransport(HttpConnectionFactory(configModelStore))
+            }
+        return HttpClient(
+            transport,
+            MockPreferencesService(),
+            configModelStore,
+            Time(),
+            InstallIdService(MockPreferencesService()),
+            mockk(relaxed = true),
+        )
+    }
+
+    test("user can be created and updated against the fake backend") {
+        FakeOneSignalBackend().start().use { backend ->
+            // Given
+            val httpClient = httpClientFor(backend)
+            val createBody =
+                JSONObject()
+                    .put("identity", JSONObject().put("external_id", "ext"))
+                    .put("subscriptions", JSONArray().put(JSONObject().put("type", "AndroidPush").put("token", "token")))
+
+            // When
+            val createResponse = httpClient.post("apps/appId/users", createBody)
+            val updateResponse =
+                httpClient.patch(
+                    "apps/appId/users/by/external_id/ext",
+                    JSONObject().put("properties", JSONObject().put("tags", JSONObject().put("key", "value"))),
+                )
+            val getResponse = httpClient.get("apps/appId/users/by/external_id/ext")
+
+            // Then
+            createResponse.statusCode shouldBe 201
+            JSONObject(createResponse.payload!!).getJSONArray("subscriptions").getJSONObject(0).has("id") shouldBe true
+            JSONObject(updateResponse.payload!!).optString("ryw_token") shouldNotBe ""
+            JSONObject(getResponse.payload!!).getJSONObject("properties").getJSONObject("tags").getString("key") shouldBe "value"
+            backend.requests.size shouldBe 3
+            backend.requests[0].header("SDK-Version") shouldNotBe null
+        }
+    }
+
+    test("429 from the fake backend surfaces its Retry-After") {
+        FakeOneSignalBackend().start().use { backend ->
+            // Given
+            val httpClient = httpClientFor(backend)
+            backend.throttleNext(1, retryAfterSeconds = 7)
+
+            // When
+            val response = httpClient.post("outcomes/measure", JSONObject(), OptionalHeaders(rywToken = "1"))
+
+            // Then
+            response.statusCode shouldBe 429
+            response.retryAfterSeconds shouldBe 7
+            backend.requests.single().header("OneSignal-RYW-Token") shouldBe "1"
+        }
+    }
+
+    test("requests can be sent through an app provided OkHttpClient") {
+        FakeOneSignalBackend().start().use { backend ->
+            // Given
+            val httpClient = httpClientFor(backend, OkHttpClient())
+            backend.throttleNext(1, retryAfterSeconds = 3)
+
+            // When
+            val throttledResponse = httpClient.put("notifications/notificationId/report_received", JSONObject().put("app_id", "appId"))
+            val response = httpClient.put("notifications/notificationId/report_received", JSONObject().put("app_id", "appId"))
+
+            // Then
+            throttledResponse.statusCode shouldBe 429
+            throttledResponse.retryAfterSeconds shouldBe 3
+            response.statusCode shouldBe 200
+            JSONObject(backend.requests.last().body).getString("app_id") shouldBe "appId"
+            backend.requests.last().header("OneSignal-Install-Id") shouldNotBe null
+        }
+    }
+
+    test("large bodies are streamed chunked, small ones with a Content-Length") {
+        FakeOneSignalBackend().start().use { backend ->
+            // Given
+            val httpClient = httpClientFor(backend)
+            val tags = JSONObject()
+            repeat(2_000) { tags.put("key$it", "value$it") }
+
+            // When
+            httpClient.patch("apps/appId/users/by/onesignal_id/id", JSONObject().put("properties", JSONObject().put("tags", JSONObject().put("a", "b"))))
+            httpClient.patch("apps/appId/users/by/onesignal_id/id", JSONObject().put("properties", JSONObject().put("tags", tags)))
+
+            // Then
+            val (small, large) = backend.requests
+            small.header("Content-Length") shouldNotBe null
+            large.header("Transfer-Encoding") shouldBe "chunked"
+            JSONObject(large.body).getJSONObject("properties").getJSONObject("tags").length() shouldBe 2_000
+        }
+    }
+
+    test("receipts of several notifications can be reported at once") {
+        FakeOneSignalBackend().start().use { backend ->
+            // Given
+            val httpClient = httpClientFor(backend)
+            val body =
+                JSONObject()
+                    .put("app_id", "appId")
+                    .put("player_id", "subscriptionId")
+                    .put("notification_ids", JSONArray().put("id1").put("id2"))
+
+            // When
+            val response = httpClient.post("notifications/report_received", body)
+            val missingIdsResponse = httpClient.post("notifications/report_received", JSONObject().put("app_id", "appId"))
+
+            // Then
+            response.statusCode shouldBe 200
+            missingIdsResponse.statusCode shouldBe 400
+            backend.requestsTo("notifications/report_received").size shouldBe 2
+        }
+    }
+
+    test("a HEAD request gets the headers of a GET without its body") {
+        FakeOneSignalBackend().start().use { backend ->
+            // Given
+            val url = URL(backend.baseUrl + "apps/appId/android_params.js")
+
+            // When
+            val getConnection = url.openConnection() as HttpURLConnection
+            val getBody = getConnection.inputStream.use { it.readBytes() }
+            val headConnection = url.openConnection() as HttpURLConnection
+            headConnection.requestMethod = "HEAD"
+            val headBody = headConnection.inputStream.use { it.readBytes() }
+
+            // Then
+            headConnection.responseCode shouldBe 200
+            headConnection.contentLength shouldBe getBody.size
+            headBody.size shouldBe 0
+            val (get, head) = backend.requests
+            head.bytesSent shouldBeLessThan get.bytesSent
+        }
+    }
+})
@@ -2,7 +2,14 @@ package com.onesignal.core.internal.http
 
 import com.onesignal.common.OneSignalUtils
 import com.onesignal.core.internal.device.impl.InstallIdService
+import com.onesignal.core.internal.http.impl.AdaptiveConcurrencyLimiter
+import com.onesignal.core.internal.http.impl.CircuitOpenException
+import com.onesignal.core.internal.http.impl.HttpCircuitBreaker
 import com.onesignal.core.internal.http.impl.HttpClient
+import com.onesignal.core.internal.http.impl.HttpTransportRequest
+import com.onesignal.core.internal.http.impl.HttpTransportResponse
+import com.onesignal.core.internal.http.impl.HttpURLConnectionTransport
+import com.onesignal.core.internal.http.impl.IHttpTransport
 import com.onesignal.core.internal.http.impl.OptionalHeaders
 import com.onesignal.core.internal.time.impl.Time
 import com.onesignal.debug.LogLevel
@@ -14,9 +21,18 @@ import io.kotest.matchers.should
 import io.kotest.matchers.shouldBe
 import io.kotest.matchers.shouldNotBe
 import io.kotest.matchers.types.beInstanceOf
+import io.mockk.mockk
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.withContext
 import kotlinx.coroutines.withTimeoutOrNull
 import org.json.JSONObject
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 class Mocks {
     internal val mockConfigModel = MockHelper.configModelStore()
@@ -24,7 +40,7 @@ class Mocks {
     internal val factory = MockHttpConnectionFactory(response)
     internal val installIdService = InstallIdService(MockPreferencesService())
     internal val httpClient by lazy {
-        HttpClient(factory, MockPreferencesService(), mockConfigModel, Time(), installIdService)
+        HttpClient(HttpURLConnectionTransport(factory), MockPreferencesService(), mockConfigModel, Time(), installIdService, mockk(relaxed = true))
     }
 }
 
@@ -299,4 +315,88 @@ class HttpClientTests : FunSpec({
         response.throwable shouldBe null
         mocks.factory.connections.last().getRequestProperty("Authorization") shouldBe "Bearer the-jwt"
     }
+
+    test("requests fail fast once the endpoint's circuit is open") {
+        // Given
+        val mocks = Mocks()
+        mocks.response.status = 503
+        mocks.response.errorResponseBody = "{}"
+        repeat(HttpCircuitBreaker.DEFAULT_FAILURE_THRESHOLD) {
+            mocks.httpClient.post("outcomes/measure", JSONObject())
+        }
+
+        // When
+        val response = mocks.httpClient.post("outcomes/measure", JSONObject())
+        mocks.response.status = 200
+        mocks.response.responseBody = "{}"
+        val otherEndpointResponse = mocks.httpClient.post("apps/appId/users", JSONObject())
+
+        // Then
+        response.statusCode shouldBe 0
+        response.throwable should beInstanceOf<CircuitOpenException>()
+        response.retryAfterSeconds shouldBe 30
+        otherEndpointResponse.statusCode shouldBe 200
+        mocks.factory.connections.size shouldBe HttpCircuitBreaker.DEFAULT_FAILURE_THRESHOLD + 1
+    }
+
+    test("slow requests to one endpoint class do not hold up requests to another") {
+        // Given
+        val transport = BlockingOutcomesTransport()
+        val httpClient = HttpClient(transport, MockPreferencesService(), MockHelper.configModelStore(), Time(), InstallIdService(MockPreferencesService()), mockk(relaxed = true))
+
+        coroutineScope {
+            val outcomes = List(AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT) { async { httpClient.post("outcomes/measure", JSONObject()) } }
+            withContext(Dispatchers.IO) { transport.outcomesStarted.await(5, TimeUnit.SECONDS) } shouldBe true
+
+            // When
+            val response = withTimeoutOrNull(2_000) { httpClient.post("apps/appId/users", JSONObject()) }
+            transport.releaseOutcomes.countDown()
+
+            // Then
+            response?.statusCode shouldBe 200
+            outcomes.awaitAll().forEach { it.statusCode shouldBe 200 }
+        }
+    }
+
+    test("a request waiting for a request slot times out") {
+        // Given
+        val configModelStore = MockHelper.configModelStore { it.httpTimeout = 100 }
+        val transport = BlockingOutcomesTransport()
+        val httpClient = HttpClient(transport, MockPreferencesService(), configModelStore, Time(), InstallIdService(MockPreferencesService()), mockk(relaxed = true))
+
+        coroutineScope {
+            val outcomes = List(AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT) { async { httpClient.post("outcomes/measure", JSONObject()) } }
+            withContext(Dispatchers.IO) { transport.outcomesStarted.await(5, TimeUnit.SECONDS) } shouldBe true
+
+            // When
+            val response = httpClient.post("outcomes/measure", JSONObject())
+            transport.releaseOutcomes.countDown()
+            outcomes.awaitAll()
+
+            // Then
+            response.statusCode shouldBe 0
+            response.throwable should beInstanceOf<TimeoutCancellationException>()
+            transport.outcomesSent.get() shouldBe AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT
+        }
+    }
 })
+
+/**
+ * Answers every request with a 200, holding the `outcomes` requests until [releaseOutcomes] is counted down.
+ */
+private class BlockingOutcomesTransport : IHttpTransport {
+    val outcomesStarted = CountDownLatch(AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT)
+    val releaseOutcomes = CountDownLatch(1)
+    val outcomesSent = AtomicInteger(0)
+
+    override fun execute(request: HttpTransportRequest): HttpTransportResponse {
+        if (request.url.startsWith("outcomes")) {
+            outcomesSent.incrementAndGet()
+            outcomesStarted.countDown()
+            releaseOutcomes.await()
+        }
+        return HttpTransportResponse(200, "{}", emptyMap())
+    }
+
+    override fun warmUp(timeout: Int) {}
+}
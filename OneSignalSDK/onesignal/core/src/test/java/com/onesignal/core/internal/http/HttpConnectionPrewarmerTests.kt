@@ -0,0 +1,101 @@
+package com.onesignal.core.internal.http
+
+import android.content.Context
+import android.net.ConnectivityManager
+import com.onesignal.core.internal.http.impl.HttpConnectionPrewarmer
+import com.onesignal.core.internal.http.impl.IHttpTransport
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.MockHelper
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.just
+import io.mockk.mockk
+import io.mockk.runs
+import io.mockk.verify
+
+private class Mocks(metered: Boolean = false) {
+    val connectivityManager =
+        mockk<ConnectivityManager> {
+            every { isActiveNetworkMetered } returns metered
+        }
+    val context =
+        mockk<Context> {
+            every { getSystemService(Context.CONNECTIVITY_SERVICE) } returns connectivityManager
+        }
+    val applicationService =
+        MockHelper.applicationService().also {
+            every { it.appContext } returns context
+        }
+    val transport =
+        mockk<IHttpTransport> {
+            every { warmUp(any()) } just runs
+        }
+    var now = 1_000_000L
+    val time =
+        mockk<ITime> {
+            every { currentTimeMillis } answers { now }
+        }
+    val prewarmer = HttpConnectionPrewarmer(applicationService, transport, MockHelper.configModelStore(), time)
+}
+
+class HttpConnectionPrewarmerTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("warms up a connection on foreground, at most once per interval") {
+        // Given
+        val mocks = Mocks()
+
+        // When
+        mocks.prewarmer.onFocus(false)
+        mocks.now += 1_000
+        mocks.prewarmer.onFocus(false)
+        mocks.now += 60_000
+        mocks.prewarmer.onFocus(false)
+
+        // Then
+        verify(exactly = 2, timeout = 1_000) { mocks.transport.warmUp(any()) }
+    }
+
+    test("does not warm up when focus fires on subscribe") {
+        // Given
+        val mocks = Mocks()
+
+        // When
+        mocks.prewarmer.onFocus(true)
+
+        // Then
+        verify(exactly = 0) { mocks.transport.warmUp(any()) }
+    }
+
+    test("does not warm up on a metered network") {
+        // Given
+        val mocks = Mocks(metered = true)
+
+        // When
+        mocks.prewarmer.onFocus(false)
+
+        // Then
+        verify(exactly = 0) { mocks.transport.warmUp(any()) }
+    }
+
+    test("records the time to first byte of the first request after a foreground only") {
+        // Given
+        val mocks = Mocks(metered = true)
+
+        // When
+        mocks.prewarmer.onResponse("apps/appId/android_params.js", 50)
+        val beforeFocus = mocks.prewarmer.lastFirstRequestTimeToFirstByteMs
+        mocks.prewarmer.onFocus(false)
+        mocks.prewarmer.onResponse("apps/appId/android_params.js", 120)
+        mocks.prewarmer.onResponse("apps/appId/users", 30)
+
+        // Then
+        beforeFocus shouldBe null
+        mocks.prewarmer.lastFirstRequestTimeToFirstByteMs shouldBe 120
+    }
+})
@@ -0,0 +1,79 @@
+package com.onesignal.core.internal.http
+
+import com.onesignal.common.JSONUtils
+import com.onesignal.core.internal.http.impl.HttpRequestBody
+import com.onesignal.core.internal.http.impl.JSONBodyWriter
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldEndWith
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.ByteArrayOutputStream
+import java.io.StringWriter
+
+class JSONBodyWriterTests : FunSpec({
+    fun written(json: JSONObject): String {
+        val writer = StringWriter()
+        JSONBodyWriter.write(json, writer)
+        return writer.toString()
+    }
+
+    test("writes the same text as toUnescapedEUIDString") {
+        // Given
+        val json =
+            JSONObject()
+                .put("external_user_id", "user/123")
+                .put("url", "https://onesignal.com/a")
+                .put("quote", "a \"b\" \\ c\n\t\u0001")
+                .put("int", 1)
+                .put("double", 1.5)
+                .put("bool", true)
+                .put("null", JSONObject.NULL)
+                .put("array", JSONArray().put(1).put("x/y").put(JSONObject().put("external_user_id", "nested/id")))
+                .put("unicode", "café 😀")
+
+        // When
+        val result = written(json)
+
+        // Then
+        result shouldBe JSONUtils.toUnescapedEUIDString(json)
+        JSONObject(result).toString() shouldBe json.toString()
+    }
+
+    test("slashes stay escaped when there is no top level external_user_id") {
+        // Given
+        val json = JSONObject().put("identity", JSONObject().put("external_user_id", "a/b"))
+
+        // When
+        val result = written(json)
+
+        // Then
+        result shouldBe JSONUtils.toUnescapedEUIDString(json)
+    }
+
+    test("body is encoded as UTF-8") {
+        // Given
+        val json = JSONObject().put("tag", "café 😀")
+        val out = ByteArrayOutputStream()
+
+        // When
+        HttpRequestBody(json).writeTo(out)
+
+        // Then
+        out.toByteArray().contentEquals(json.toString().toByteArray(Charsets.UTF_8)) shouldBe true
+    }
+
+    test("log string is truncated at the cap") {
+        // Given
+        val tags = JSONObject()
+        repeat(1_000) { tags.put("key$it", "value$it") }
+        val body = HttpRequestBody(JSONObject().put("tags", tags))
+
+        // When
+        val logString = body.toLogString(100)
+
+        // Then
+        logString shouldEndWith "...(truncated)"
+        logString.length shouldBe 100 + "...(truncated)".length
+    }
+})
@@ -61,6 +61,10 @@ internal class MockHttpConnectionFactory(
             return mockResponse.mockProps[name]
         }
 
+        override fun getHeaderFields(): Map<String, List<String>> {
+            return mockResponse.mockProps.mapValues { listOf(it.value) }
+        }
+
         @Throws(IOException::class)
         override fun getResponseCode(): Int {
             headersCommitted = true
@@ -0,0 +1,282 @@
+package com.onesignal.internal
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.core.internal.config.CONFIG_NAME_SPACE
+import com.onesignal.core.internal.preferences.PreferenceOneSignalKeys
+import com.onesignal.core.internal.preferences.PreferenceStores
+import com.onesignal.debug.ILogListener
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.backend.FakeOneSignalBackend
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.ints.shouldBeGreaterThan
+import io.kotest.matchers.ints.shouldBeLessThan
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.withContext
+import org.json.JSONArray
+import org.json.JSONObject
+import java.util.Collections
+
+private const val LOAD_TEST_PROPERTY = "onesignal.loadtest"
+private const val APP_ID = "00000000-0000-0000-0000-000000000000"
+
+/**
+ * How long the backend must see no traffic for a scenario to be considered finished. Longer
+ * than the operation repo's default execution interval, so batched work is not cut off.
+ */
+private const val IDLE_MS = 10_000L
+private const val SCENARIO_TIMEOUT_MS = 180_000L
+
+/**
+ * End-to-end throughput harness: drives a real [OneSignalImp] (real services, real
+ * `HttpClient`) against a [FakeOneSignalBackend] through scripted scenarios, and reports the
+ * network cost of each one.
+ *
+ * The scenarios wait for the backend to go quiet, so each takes tens of seconds. They are
+ * skipped unless the `onesignal.loadtest` system property is true:
+ *   ./gradlew :OneSignal:core:testReleaseUnitTest -Ponesignal.loadtest=true --tests '*SdkThroughputHarnessTests*'
+ */
+@RobolectricTest
+class SdkThroughputHarnessTests : FunSpec({
+    val enabled = System.getProperty(LOAD_TEST_PROPERTY).toBoolean()
+
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("bulk tags").config(enabled = enabled) {
+        val report =
+            runScenario("bulk tags") { os, _ ->
+                repeat(100) { os.user.addTag("key$it", "value$it") }
+                os.user.addTags((0 until 500).associate { "bulk$it" to "$it" })
+                repeat(50) { os.user.removeTag("key$it") }
+            }
+
+        report.failedRequests shouldBe 0
+    }
+
+    test("login storm").config(enabled = enabled) {
+        val report =
+            runScenario("login storm") { os, _ ->
+                repeat(20) {
+                    os.loginSuspend("external-$it", null)
+                    os.user.addTag("login", "$it")
+                }
+                os.logoutSuspend()
+            }
+
+        report.failedRequests shouldBe 0
+    }
+
+    test("offline/online flaps").config(enabled = enabled) {
+        var onesignalId = ""
+        var backendTags: Map<String, String>? = null
+        val report =
+            runScenario(
+                "offline/online flaps",
+                afterIdle = { os, backend ->
+                    onesignalId = os.user.onesignalId
+                    backendTags = backend.tagsOf("onesignal_id", onesignalId)
+                },
+            ) { os, backend ->
+                repeat(5) { flap ->
+                    backend.isOffline = true
+                    repeat(10) { os.user.addTag("flap$flap-$it", "offline") }
+                    delay(2_000)
+                    backend.isOffline = false
+                    repeat(10) { os.user.addTag("flap$flap-$it", "online") }
+                    delay(2_000)
+                }
+            }
+
+        // The connections were dropped while offline, yet every tag reached the backend once online.
+        report.droppedConnections shouldBeGreaterThan 0
+        onesignalId shouldNotBe ""
+        backendTags shouldBe (0 until 5).flatMap { flap -> (0 until 10).map { "flap$flap-$it" to "online" } }.toMap()
+        report.requests.last { it.method == "PATCH" }.status shouldBeLessThan 400
+        // A circuit opened by the failed connections closed again once the backend answered.
+        report.circuitsOpenAtEnd shouldBe emptySet()
+    }
+
+    test("throttled and slow backend").config(enabled = enabled) {
+        var backendTags: Map<String, String>? = null
+        val report =
+            runScenario(
+                "throttled and slow backend",
+                afterIdle = { _, backend -> backendTags = backend.tagsOf("external_id", "external-throttled") },
+            ) { os, backend ->
+                backend.latencyMs = 250
+                backend.throttleNext(5, retryAfterSeconds = 2)
+                repeat(50) { os.user.addTag("slow$it", "$it") }
+                os.loginSuspend("external-throttled", null)
+            }
+
+        // Only the throttled requests failed, the SDK waited out the Retry-After and sent them again.
+        report.failedRequests shouldBe 5
+        report.requests.count { it.status == 429 } shouldBe 5
+        report.requests.takeLastWhile { it.status != 429 }.none { it.status >= 400 } shouldBe true
+        backendTags shouldBe (0 until 50).associate { "slow$it" to "$it" }
+        // A 429 means the backend answered, it does not count towards opening a circuit.
+        report.circuitsOpened shouldBe emptySet()
+    }
+})
+
+/**
+ * What a scenario cost, as observed by the [FakeOneSignalBackend].
+ */
+internal class ScenarioReport(
+    val name: String,
+    val requests: List<FakeOneSignalBackend.RecordedRequest>,
+    val droppedConnections: Int,
+    val wallTimeMs: Long,
+    val cpuTimeMs: Long?,
+    /**
+     * The endpoint classes whose circuit opened during the scenario, see `HttpCircuitBreaker`.
+     */
+    val circuitsOpened: Set<String>,
+    /**
+     * The endpoint classes whose circuit was still open when the scenario finished.
+     */
+    val circuitsOpenAtEnd: Set<String>,
+) {
+    val failedRequests: Int
+        get() = requests.count { it.status >= 400 }
+
+    fun percentile(percent: Int): Long {
+        if (requests.isEmpty()) return 0
+        val sorted = requests.map { it.durationMs }.sorted()
+        val index = ((percent / 100.0) * (sorted.size - 1)).toInt()
+        return sorted[index]
+    }
+
+    override fun toString(): String {
+        val byEndpoint =
+            requests
+                .groupingBy { "${it.method} ${it.path.replace(ID_SEGMENT, "{id}")}" }
+                .eachCount()
+                .entries
+                .joinToString("\n") { "    ${it.value} x ${it.key}" }
+
+        return """
+            |Scenario: $name
+            |  requests: ${requests.size} (failed: $failedRequests, dropped connections: $droppedConnections)
+            |  bytes: sent ${requests.sumOf { it.bytesReceived }}, received ${requests.sumOf { it.bytesSent }}
+            |  latency: p50 ${percentile(50)}ms, p99 ${percentile(99)}ms
+            |  wall time: ${wallTimeMs}ms, cpu time: ${cpuTimeMs?.let { "${it}ms" } ?: "n/a"}
+            |  circuits opened: ${circuitsOpened.ifEmpty { "none" }}
+            |  by endpoint:
+            |$byEndpoint
+        """.trimMargin()
+    }
+
+    companion object {
+        private val ID_SEGMENT = Regex("(?<=/)[0-9a-fA-F-]{36}|(?<=/)external-[^/]+")
+        private val CIRCUIT_OPENED = Regex("HttpCircuitBreaker: (\\w+) failed \\d+ times in a row")
+        private val CIRCUIT_CLOSED = Regex("HttpCircuitBreaker: (\\w+) recovered, closing circuit")
+
+        /**
+         * Replay the circuit breaker's log [entries], in the order logged.
+         *
+         * @return the endpoint classes whose circuit opened, and those still open after the last entry.
+         */
+        fun circuitsFrom(entries: List<String>): Pair<Set<String>, Set<String>> {
+            val opened = mutableSetOf<String>()
+            val open = mutableSetOf<String>()
+            for (entry in entries) {
+                CIRCUIT_OPENED.find(entry)?.let {
+                    opened.add(it.groupValues[1])
+                    open.add(it.groupValues[1])
+                }
+                CIRCUIT_CLOSED.find(entry)?.let { open.remove(it.groupValues[1]) }
+            }
+            return opened to open
+        }
+    }
+}
+
+/**
+ * Run [script] against a fresh SDK and backend, then wait for the backend to go idle.
+ *
+ * @param afterIdle Called once the backend went idle, before it is closed, to read the state the
+ * scenario left on either side.
+ */
+private suspend fun runScenario(
+    name: String,
+    afterIdle: (OneSignalImp, FakeOneSignalBackend) -> Unit = { _, _ -> },
+    script: suspend (OneSignalImp, FakeOneSignalBackend) -> Unit,
+): ScenarioReport {
+    // Listeners receive every entry regardless of the log level.
+    val circuitLog = Collections.synchronizedList(mutableListOf<String>())
+    val logListener = ILogListener { if (it.entry.contains("HttpCircuitBreaker:")) circuitLog.add(it.entry) }
+    Logging.addListener(logListener)
+
+    try {
+        FakeOneSignalBackend().start().use { backend ->
+            val context = ApplicationProvider.getApplicationContext<Context>()
+            seedFreshInstall(context, backend.baseUrl)
+
+            val cpuBefore = processCpuTimeNanos()
+            val startedAt = System.currentTimeMillis()
+
+            val os = OneSignalImp()
+            os.initWithContextSuspend(context, APP_ID)
+            script(os, backend)
+            withContext(Dispatchers.IO) { backend.awaitIdle(idleMs = IDLE_MS, timeoutMs = SCENARIO_TIMEOUT_MS) }
+
+            val wallTime = System.currentTimeMillis() - startedAt - IDLE_MS
+            val cpuAfter = processCpuTimeNanos()
+            afterIdle(os, backend)
+            val (circuitsOpened, circuitsOpenAtEnd) = ScenarioReport.circuitsFrom(synchronized(circuitLog) { circuitLog.toList() })
+            val report =
+                ScenarioReport(
+                    name = name,
+                    requests = synchronized(backend.requests) { backend.requests.toList() },
+                    droppedConnections = backend.droppedConnections.get(),
+                    wallTimeMs = wallTime,
+                    cpuTimeMs = if (cpuBefore != null && cpuAfter != null) (cpuAfter - cpuBefore) / 1_000_000 else null,
+                    circuitsOpened = circuitsOpened,
+                    circuitsOpenAtEnd = circuitsOpenAtEnd,
+                )
+            Logging.info("SdkThroughputHarness: $report")
+            return report
+        }
+    } finally {
+        Logging.removeListener(logListener)
+    }
+}
+
+/**
+ * Wipe any SDK state left by a previous scenario and point the SDK at the fake backend. The
+ * config model is read from this key on init, and [com.onesignal.core.internal.config.ConfigModel.apiUrl]
+ * is carried over when the remote params are applied.
+ */
+private fun seedFreshInstall(
+    context: Context,
+    apiUrl: String,
+) {
+    val config = JSONObject().put("id", "-singleton-").put("apiUrl", apiUrl)
+    context.getSharedPreferences(PreferenceStores.ONESIGNAL, Context.MODE_PRIVATE)
+        .edit()
+        .clear()
+        .putString(PreferenceOneSignalKeys.MODEL_STORE_PREFIX + CONFIG_NAME_SPACE, JSONArray().put(config).toString())
+        .commit()
+}
+
+/**
+ * CPU time consumed by the whole test process. `java.lang.management` isn't part of the
+ * Android API the unit tests compile against, so it is looked up reflectively.
+ */
+@Suppress("TooGenericExceptionCaught", "SwallowedException")
+private fun processCpuTimeNanos(): Long? =
+    try {
+        val osBean = Class.forName("java.lang.management.ManagementFactory").getMethod("getOperatingSystemMXBean").invoke(null)
+        val method = Class.forName("com.sun.management.OperatingSystemMXBean").getMethod("getProcessCpuTime")
+        method.invoke(osBean) as Long
+    } catch (t: Throwable) {
+        null
+    }
@@ -93,6 +93,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
 
         // Then
         verifySequence {
+            mockDatabasePair.second.enqueueWrite(OutcomeEventsTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 OutcomeEventsTable.TABLE_NAME,
                 null,
@@ -106,6 +107,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
                     it[OutcomeEventsTable.COLUMN_NAME_IAM_IDS] shouldBe JSONArray().toString()
                 },
             )
+            mockDatabasePair.second.enqueueWrite(OutcomeEventsTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 OutcomeEventsTable.TABLE_NAME,
                 null,
@@ -119,6 +121,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
                     it[OutcomeEventsTable.COLUMN_NAME_IAM_IDS] shouldBe JSONArray("[\"iamId1\", \"iamId2\"]").toString()
                 },
             )
+            mockDatabasePair.second.enqueueWrite(OutcomeEventsTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 OutcomeEventsTable.TABLE_NAME,
                 null,
@@ -132,6 +135,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
                     it[OutcomeEventsTable.COLUMN_NAME_IAM_IDS] shouldBe JSONArray("[\"iamId1\"]").toString()
                 },
             )
+            mockDatabasePair.second.enqueueWrite(OutcomeEventsTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 OutcomeEventsTable.TABLE_NAME,
                 null,
@@ -268,6 +272,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
 
         // Then
         verifyAll {
+            mockDatabasePair.second.enqueueWrite(CachedUniqueOutcomeTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 CachedUniqueOutcomeTable.TABLE_NAME,
                 null,
@@ -319,6 +324,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
 
         // Then
         verifyAll {
+            mockDatabasePair.second.enqueueWrite(CachedUniqueOutcomeTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 CachedUniqueOutcomeTable.TABLE_NAME,
                 null,
@@ -370,6 +376,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
 
         // Then
         verifyAll {
+            mockDatabasePair.second.enqueueWrite(CachedUniqueOutcomeTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 CachedUniqueOutcomeTable.TABLE_NAME,
                 null,
@@ -412,6 +419,7 @@ class OutcomeEventsRepositoryTests : FunSpec({
 
         // Then
         verifyAll {
+            mockDatabasePair.second.enqueueWrite(CachedUniqueOutcomeTable.TABLE_NAME, null, any())
             mockDatabasePair.second.insert(
                 CachedUniqueOutcomeTable.TABLE_NAME,
                 null,
@@ -1,6 +1,7 @@
 package com.onesignal.inAppMessages.internal.repositories.impl
 
 import android.content.ContentValues
+import android.database.SQLException
 import com.onesignal.common.JSONUtils
 import com.onesignal.core.internal.database.IDatabaseProvider
 import com.onesignal.core.internal.database.impl.OneSignalDbContract
@@ -43,9 +44,10 @@ internal class InAppRepository(
             inAppMessage.isDisplayedInSession,
         )
 
-        withContext(Dispatchers.IO) {
+        // Keyed by message id, only the latest stats of a message are written.
+        _databaseProvider.os.enqueueWrite(OneSignalDbContract.InAppMessageTable.TABLE_NAME, inAppMessage.messageId) { db ->
             val rowsUpdated: Int =
-                _databaseProvider.os.update(
+                db.update(
                     OneSignalDbContract.InAppMessageTable.TABLE_NAME,
                     values,
                     OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID.toString() + " = ?",
@@ -53,7 +55,7 @@ internal class InAppRepository(
                 )
 
             if (rowsUpdated == 0) {
-                _databaseProvider.os.insert(
+                db.insert(
                     OneSignalDbContract.InAppMessageTable.TABLE_NAME,
                     null,
                     values,
@@ -119,48 +121,58 @@ internal class InAppRepository(
             val oldMessageIds: MutableSet<String> = mutableSetOf()
             val oldClickedClickIds: MutableSet<String> = mutableSetOf()
 
+            // The delete runs in the same transaction as the query, so only the messages whose ids
+            // are cleaned from SharedPreferences below are removed.
             try {
-                _databaseProvider.os.query(
-                    OneSignalDbContract.InAppMessageTable.TABLE_NAME,
-                    columns = retColumns,
-                    whereClause = whereStr,
-                    whereArgs = whereArgs,
-                ) {
-                    if (it.count == 0) {
-                        Logging.debug("Attempted to clean 6 month old IAM data, but none exists!")
-                        return@query
-                    }
+                _databaseProvider.os.runInTransaction { db ->
+                    try {
+                        db.query(
+                            OneSignalDbContract.InAppMessageTable.TABLE_NAME,
+                            columns = retColumns,
+                            whereClause = whereStr,
+                            whereArgs = whereArgs,
+                        ) {
+                            if (it.count == 0) {
+                                Logging.debug("Attempted to clean 6 month old IAM data, but none exists!")
+                                return@query
+                            }
 
-                    // From cursor get all of the old message ids and old clicked click ids
-                    if (it.moveToFirst()) {
-                        do {
-                            val oldMessageId =
-                                it.getString(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID)
-                            val oldClickIds =
-                                it.getString(OneSignalDbContract.InAppMessageTable.COLUMN_CLICK_IDS)
+                            // From cursor get all of the old message ids and old clicked click ids
+                            if (it.moveToFirst()) {
+                                do {
+                                    val oldMessageId =
+                                        it.getString(OneSignalDbContract.InAppMessageTable.COLUMN_NAME_MESSAGE_ID)
+                                    val oldClickIds =
+                                        it.getString(OneSignalDbContract.InAppMessageTable.COLUMN_CLICK_IDS)
 
-                            oldMessageIds.add(oldMessageId)
-                            oldClickedClickIds.addAll(
-                                JSONUtils.newStringSetFromJSONArray(
-                                    JSONArray(
-                                        oldClickIds,
-                                    ),
-                                ),
-                            )
-                        } while (it.moveToNext())
+                                    oldMessageIds.add(oldMessageId)
+                                    oldClickedClickIds.addAll(
+                                        JSONUtils.newStringSetFromJSONArray(
+                                            JSONArray(
+                                                oldClickIds,
+                                            ),
+                                        ),
+                                    )
+                                } while (it.moveToNext())
+                            }
+                        }
+                    } catch (e: JSONException) {
+                        e.printStackTrace()
                     }
+
+                    // 2. Delete old IAMs from SQL
+                    db.delete(
+                        OneSignalDbContract.InAppMessageTable.TABLE_NAME,
+                        whereStr,
+                        whereArgs,
+                    )
                 }
-            } catch (e: JSONException) {
-                e.printStackTrace()
+            } catch (e: SQLException) {
+                // Rolled back, the messages are still there and keep their ids in SharedPreferences.
+                Logging.warn("Cleaning 6 month old IAM data failed", e)
+                return@withContext
             }
 
-            // 2. Delete old IAMs from SQL
-            _databaseProvider.os.delete(
-                OneSignalDbContract.InAppMessageTable.TABLE_NAME,
-                whereStr,
-                whereArgs,
-            )
-
             // 3. Use queried data to clean SharedPreferences
             _prefs.cleanInAppMessageIds(oldMessageIds)
             _prefs.cleanInAppMessageClickedClickIds(oldClickedClickIds)
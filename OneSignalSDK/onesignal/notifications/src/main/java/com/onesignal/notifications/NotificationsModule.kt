@@ -1,5 +1,6 @@
 package com.onesignal.notifications
 
+import android.os.SystemClock
 import com.onesignal.common.modules.IModule
 import com.onesignal.common.services.ServiceBuilder
 import com.onesignal.core.internal.application.IApplicationService
@@ -19,21 +20,28 @@ import com.onesignal.notifications.internal.badges.impl.BadgeCountUpdater
 import com.onesignal.notifications.internal.bundle.INotificationBundleProcessor
 import com.onesignal.notifications.internal.bundle.impl.NotificationBundleProcessor
 import com.onesignal.notifications.internal.channels.INotificationChannelManager
+import com.onesignal.notifications.internal.channels.impl.NotificationChannelFingerprint
 import com.onesignal.notifications.internal.channels.impl.NotificationChannelManager
+import com.onesignal.notifications.internal.common.NotificationPostPacer
 import com.onesignal.notifications.internal.data.INotificationQueryHelper
 import com.onesignal.notifications.internal.data.INotificationRepository
+import com.onesignal.notifications.internal.data.IRecentNotificationIdIndex
 import com.onesignal.notifications.internal.data.impl.NotificationQueryHelper
 import com.onesignal.notifications.internal.data.impl.NotificationRepository
+import com.onesignal.notifications.internal.data.impl.RecentNotificationIdIndex
 import com.onesignal.notifications.internal.display.INotificationDisplayBuilder
 import com.onesignal.notifications.internal.display.INotificationDisplayer
+import com.onesignal.notifications.internal.display.INotificationImageLoader
 import com.onesignal.notifications.internal.display.ISummaryNotificationDisplayer
 import com.onesignal.notifications.internal.display.impl.NotificationDisplayBuilder
 import com.onesignal.notifications.internal.display.impl.NotificationDisplayer
+import com.onesignal.notifications.internal.display.impl.NotificationImageLoader
 import com.onesignal.notifications.internal.display.impl.SummaryNotificationDisplayer
 import com.onesignal.notifications.internal.generation.INotificationGenerationProcessor
 import com.onesignal.notifications.internal.generation.INotificationGenerationWorkManager
 import com.onesignal.notifications.internal.generation.impl.NotificationGenerationProcessor
 import com.onesignal.notifications.internal.generation.impl.NotificationGenerationWorkManager
+import com.onesignal.notifications.internal.generation.impl.NotificationIngestionQueue
 import com.onesignal.notifications.internal.lifecycle.INotificationLifecycleService
 import com.onesignal.notifications.internal.lifecycle.impl.NotificationLifecycleService
 import com.onesignal.notifications.internal.limiting.INotificationLimitManager
@@ -50,6 +58,7 @@ import com.onesignal.notifications.internal.pushtoken.PushTokenManager
 import com.onesignal.notifications.internal.receivereceipt.IReceiveReceiptProcessor
 import com.onesignal.notifications.internal.receivereceipt.IReceiveReceiptWorkManager
 import com.onesignal.notifications.internal.receivereceipt.impl.ReceiveReceiptProcessor
+import com.onesignal.notifications.internal.receivereceipt.impl.ReceiveReceiptQueue
 import com.onesignal.notifications.internal.receivereceipt.impl.ReceiveReceiptWorkManager
 import com.onesignal.notifications.internal.registration.IPushRegistrator
 import com.onesignal.notifications.internal.registration.impl.GooglePlayServicesUpgradePrompt
@@ -64,6 +73,8 @@ import com.onesignal.notifications.internal.restoration.impl.NotificationRestore
 import com.onesignal.notifications.internal.restoration.impl.NotificationRestoreWorkManager
 import com.onesignal.notifications.internal.summary.INotificationSummaryManager
 import com.onesignal.notifications.internal.summary.impl.NotificationSummaryManager
+import com.onesignal.notifications.internal.tracing.INotificationPipelineTracer
+import com.onesignal.notifications.internal.tracing.impl.NotificationPipelineTracer
 
 internal class NotificationsModule : IModule {
     override fun register(builder: ServiceBuilder) {
@@ -72,18 +83,40 @@ internal class NotificationsModule : IModule {
         builder.register<NotificationRestoreWorkManager>().provides<INotificationRestoreWorkManager>()
         builder.register<NotificationQueryHelper>().provides<INotificationQueryHelper>()
         builder.register<BadgeCountUpdater>().provides<IBadgeCountUpdater>()
+        builder.register { NotificationPipelineTracer(SystemClock::elapsedRealtime) }.provides<INotificationPipelineTracer>()
         builder.register<NotificationRepository>().provides<INotificationRepository>()
+        builder.register<RecentNotificationIdIndex>().provides<IRecentNotificationIdIndex>()
+        builder.register<NotificationPostPacer>().provides<NotificationPostPacer>()
+        builder.register<NotificationIngestionQueue>().provides<NotificationIngestionQueue>()
         builder.register<NotificationGenerationWorkManager>().provides<INotificationGenerationWorkManager>()
         builder.register<NotificationBundleProcessor>().provides<INotificationBundleProcessor>()
+        builder.register<NotificationChannelFingerprint>().provides<NotificationChannelFingerprint>()
         builder.register<NotificationChannelManager>().provides<INotificationChannelManager>()
         builder.register<NotificationLimitManager>().provides<INotificationLimitManager>()
 
         builder.register<NotificationDisplayer>().provides<INotificationDisplayer>()
         builder.register<SummaryNotificationDisplayer>().provides<ISummaryNotificationDisplayer>()
         builder.register<NotificationDisplayBuilder>().provides<INotificationDisplayBuilder>()
+        builder.register {
+            NotificationImageLoader(
+                it.getService(IApplicationService::class.java),
+                it.getService(ITime::class.java),
+            )
+        }.provides<INotificationImageLoader>()
 
         builder.register<NotificationGenerationProcessor>().provides<INotificationGenerationProcessor>()
-        builder.register<NotificationRestoreProcessor>().provides<INotificationRestoreProcessor>()
+        builder.register {
+            NotificationRestoreProcessor(
+                it.getService(IApplicationService::class.java),
+                it.getService(INotificationGenerationWorkManager::class.java),
+                it.getService(INotificationRepository::class.java),
+                it.getService(IBadgeCountUpdater::class.java),
+                it.getService(IRecentNotificationIdIndex::class.java),
+                it.getService(NotificationPostPacer::class.java),
+                it.getService(ITime::class.java),
+                lazy { it.getService(INotificationGenerationProcessor::class.java) },
+            )
+        }.provides<INotificationRestoreProcessor>()
         builder.register<NotificationSummaryManager>().provides<INotificationSummaryManager>()
 
         builder.register<NotificationOpenedProcessor>().provides<INotificationOpenedProcessor>()
@@ -136,6 +169,7 @@ internal class NotificationsModule : IModule {
         builder.register<GooglePlayServicesUpgradePrompt>().provides<GooglePlayServicesUpgradePrompt>()
         builder.register<PushTokenManager>().provides<IPushTokenManager>()
 
+        builder.register<ReceiveReceiptQueue>().provides<ReceiveReceiptQueue>()
         builder.register<ReceiveReceiptWorkManager>().provides<IReceiveReceiptWorkManager>()
         builder.register<ReceiveReceiptProcessor>().provides<IReceiveReceiptProcessor>()
 
@@ -24,6 +24,25 @@ internal interface INotificationBackendService {
         deviceType: IDeviceService.DeviceType,
     )
 
+    /**
+     * Update the provided notifications as received by a specific subscription, in one request.
+     *
+     * If there is a non-successful response from the backend, a [BackendException] will be thrown with response data.
+     * A backend that does not accept batched receipts responds with a [BackendException] whose status
+     * code is 400, 404 or 405, the receipts should then be sent one at a time with [updateNotificationAsReceived].
+     *
+     * @param appId The ID of the application that the notifications were generated/received under.
+     * @param notificationIds The IDs of the notifications within the [appId] that have been received.
+     * @param subscriptionId The specific subscription within the [appId] the notifications have been received for.
+     * @param deviceType The type of device the notifications were received at.
+     */
+    suspend fun updateNotificationsAsReceived(
+        appId: String,
+        notificationIds: List<String>,
+        subscriptionId: String,
+        deviceType: IDeviceService.DeviceType,
+    )
+
     /**
      * Update the provided notification as opened by a specific subscription.
      *
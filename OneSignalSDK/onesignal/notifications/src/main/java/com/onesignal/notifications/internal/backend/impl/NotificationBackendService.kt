@@ -4,6 +4,7 @@ import com.onesignal.common.exceptions.BackendException
 import com.onesignal.core.internal.device.IDeviceService
 import com.onesignal.core.internal.http.IHttpClient
 import com.onesignal.notifications.internal.backend.INotificationBackendService
+import org.json.JSONArray
 import org.json.JSONObject
 
 internal class NotificationBackendService(
@@ -28,6 +29,26 @@ internal class NotificationBackendService(
         }
     }
 
+    override suspend fun updateNotificationsAsReceived(
+        appId: String,
+        notificationIds: List<String>,
+        subscriptionId: String,
+        deviceType: IDeviceService.DeviceType,
+    ) {
+        val jsonBody: JSONObject =
+            JSONObject()
+                .put("app_id", appId)
+                .put("player_id", subscriptionId)
+                .put("device_type", deviceType.value)
+                .put("notification_ids", JSONArray(notificationIds))
+
+        val response = _httpClient.post("notifications/report_received", jsonBody)
+
+        if (!response.isSuccess) {
+            throw BackendException(response.statusCode, response.payload, response.retryAfterSeconds)
+        }
+    }
+
     override suspend fun updateNotificationAsOpened(
         appId: String,
         notificationId: String,
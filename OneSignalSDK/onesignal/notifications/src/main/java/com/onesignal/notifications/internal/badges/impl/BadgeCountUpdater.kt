@@ -2,8 +2,10 @@ package com.onesignal.notifications.internal.badges.impl
 
 import android.content.pm.PackageManager
 import android.os.Build
+import android.os.SystemClock
 import androidx.annotation.RequiresApi
 import androidx.annotation.VisibleForTesting
+import com.onesignal.common.threading.launchOnIO
 import com.onesignal.core.internal.application.IApplicationService
 import com.onesignal.core.internal.database.IDatabaseProvider
 import com.onesignal.core.internal.database.impl.OneSignalDbContract
@@ -14,29 +16,60 @@ import com.onesignal.notifications.internal.badges.impl.shortcutbadger.ShortcutB
 import com.onesignal.notifications.internal.common.NotificationHelper
 import com.onesignal.notifications.internal.data.INotificationQueryHelper
 import com.onesignal.notifications.internal.limiting.INotificationLimitManager
+import kotlinx.coroutines.delay
+import java.util.concurrent.atomic.AtomicBoolean
 
+/**
+ * Keeps the launcher badge at the number of active notifications. A burst of [update] calls,
+ * e.g. while notifications are restored, is counted once [_updateDelayMs] after the first, and
+ * the launcher is not called again for the count it was given within [UNCHANGED_COUNT_SKIP_MS].
+ * Past that the same count is applied again, the launcher may have cleared its badge since.
+ */
 internal class BadgeCountUpdater private constructor(
     private val _applicationService: IApplicationService,
     private val _queryHelper: INotificationQueryHelper,
     private val _databaseProvider: IDatabaseProvider,
     private val _sdkInt: Int,
+    private val _updateDelayMs: Long,
+    private val _clock: () -> Long,
 ) : IBadgeCountUpdater {
     constructor(
         applicationService: IApplicationService,
         queryHelper: INotificationQueryHelper,
         databaseProvider: IDatabaseProvider,
-    ) : this(applicationService, queryHelper, databaseProvider, Build.VERSION.SDK_INT)
+    ) : this(
+        applicationService,
+        queryHelper,
+        databaseProvider,
+        Build.VERSION.SDK_INT,
+        UPDATE_DELAY_MS,
+        SystemClock::elapsedRealtime,
+    )
 
     companion object {
+        private const val UPDATE_DELAY_MS = 250L
+        private const val UNCHANGED_COUNT_SKIP_MS = 5_000L
+
         @VisibleForTesting
         internal fun createForTesting(
             applicationService: IApplicationService,
             queryHelper: INotificationQueryHelper,
             databaseProvider: IDatabaseProvider,
             sdkInt: Int,
-        ) = BadgeCountUpdater(applicationService, queryHelper, databaseProvider, sdkInt)
+            updateDelayMs: Long = 0L,
+            clock: () -> Long = { 0L },
+        ) = BadgeCountUpdater(applicationService, queryHelper, databaseProvider, sdkInt, updateDelayMs, clock)
     }
 
+    private val isUpdateScheduled = AtomicBoolean(false)
+
+    // The count last given to the launcher and when, null until it has been set or after setting it failed.
+    @Volatile
+    private var appliedCount: Int? = null
+
+    @Volatile
+    private var appliedAt = 0L
+
     // Cache for manifest setting.
     private var badgesEnabled = -1
 
@@ -67,6 +100,27 @@ internal class BadgeCountUpdater private constructor(
     }
 
     override fun update() {
+        if (_sdkInt >= Build.VERSION_CODES.O) return
+        if (_updateDelayMs <= 0) {
+            recount()
+            return
+        }
+
+        // The first update of a burst schedules the recount, the rest are covered by it.
+        if (!isUpdateScheduled.compareAndSet(false, true)) return
+        launchOnIO {
+            delay(_updateDelayMs)
+            // Cleared first, an update made while counting needs a count of its own.
+            isUpdateScheduled.set(false)
+            try {
+                recount()
+            } catch (t: Throwable) {
+                Logging.warn("BadgeCountUpdater: could not update the badge count", t)
+            }
+        }
+    }
+
+    private fun recount() {
         if (!areBadgesEnabled()) return
         // On API 26+ the system handles badges via NotificationChannel, and
         // ShortcutBadger can cause native SIGSEGV crashes on some OEM devices
@@ -106,9 +160,14 @@ internal class BadgeCountUpdater private constructor(
     override fun updateCount(count: Int) {
         if (!areBadgeSettingsEnabled()) return
         if (_sdkInt >= Build.VERSION_CODES.O) return
+        val now = _clock()
+        if (count == appliedCount && now - appliedAt < UNCHANGED_COUNT_SKIP_MS) return
         try {
             ShortcutBadger.applyCountOrThrow(_applicationService.appContext, count)
+            appliedCount = count
+            appliedAt = now
         } catch (e: ShortcutBadgeException) {
+            appliedCount = null
             // Suppress error as there are normal cases where this will throw
             // Can throw if:
             //    - Badges are not support on the device.
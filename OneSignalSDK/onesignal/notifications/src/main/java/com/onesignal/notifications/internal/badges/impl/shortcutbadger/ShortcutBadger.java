@@ -8,6 +8,7 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import com.onesignal.notifications.internal.badges.impl.shortcutbadger.impl.AdwHomeBadger;
 import com.onesignal.notifications.internal.badges.impl.shortcutbadger.impl.ApexHomeBadger;
@@ -34,6 +35,7 @@ public final class ShortcutBadger {
 
     private static final String LOG_TAG = "ShortcutBadger";
     private static final int SUPPORTED_CHECK_ATTEMPTS = 3;
+    private static final long NO_LAUNCHER_RECHECK_MS = 60 * 60 * 1000L;
 
     private static final List<Class<? extends Badger>> BADGERS = new LinkedList<Class<? extends Badger>>();
 
@@ -58,6 +60,10 @@ public final class ShortcutBadger {
     private static Badger sShortcutBadger;
     private static ComponentName sComponentName;
 
+    // Set when no launcher could be resolved, so it is not looked up again on every count. The
+    // user may set a default launcher since, it is looked up again once this time has passed.
+    private static volatile long sNoLauncherRecheckAt;
+
     /**
      * Tries to update the notification count
      *
@@ -85,9 +91,16 @@ public final class ShortcutBadger {
      */
     public static void applyCountOrThrow(Context context, int badgeCount) throws ShortcutBadgeException {
         if (sShortcutBadger == null) {
+            if (SystemClock.elapsedRealtime() < sNoLauncherRecheckAt) {
+                throw new ShortcutBadgeException("No default launcher available");
+            }
+
             boolean launcherReady = initBadger(context);
 
-            if (!launcherReady) throw new ShortcutBadgeException("No default launcher available");
+            if (!launcherReady) {
+                sNoLauncherRecheckAt = SystemClock.elapsedRealtime() + NO_LAUNCHER_RECHECK_MS;
+                throw new ShortcutBadgeException("No default launcher available");
+            }
         }
 
         try {
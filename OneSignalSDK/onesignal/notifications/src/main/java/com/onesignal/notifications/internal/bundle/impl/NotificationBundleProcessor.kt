@@ -9,6 +9,7 @@ import com.onesignal.notifications.internal.common.NotificationConstants
 import com.onesignal.notifications.internal.common.NotificationFormatHelper
 import com.onesignal.notifications.internal.common.NotificationPriorityMapper
 import com.onesignal.notifications.internal.generation.INotificationGenerationWorkManager
+import com.onesignal.notifications.internal.tracing.INotificationPipelineTracer
 import org.json.JSONArray
 import org.json.JSONException
 import org.json.JSONObject
@@ -16,6 +17,7 @@ import org.json.JSONObject
 internal class NotificationBundleProcessor(
     private val _workManager: INotificationGenerationWorkManager,
     private val _time: ITime,
+    private val _tracer: INotificationPipelineTracer,
 ) : INotificationBundleProcessor {
     // Format our short keys into more readable ones.
     private fun maximizeButtonsFromBundle(fcmBundle: Bundle) {
@@ -72,6 +74,7 @@ internal class NotificationBundleProcessor(
         context: Context,
         bundle: Bundle,
     ): INotificationBundleProcessor.ProcessedBundleResult? {
+        val receivedAt = _tracer.now
         val bundleResult = INotificationBundleProcessor.ProcessedBundleResult()
 
         // Not a OneSignal FCM message
@@ -96,10 +99,12 @@ internal class NotificationBundleProcessor(
                 )
         }
 
+        _tracer.begin(osNotificationId!!, receivedAt)
+
         val processed =
             _workManager.beginEnqueueingWork(
                 context,
-                osNotificationId!!,
+                osNotificationId,
                 androidNotificationId,
                 jsonPayload,
                 timestamp,
@@ -0,0 +1,124 @@
+package com.onesignal.notifications.internal.channels.impl
+
+import com.onesignal.core.internal.preferences.IPreferencesService
+import com.onesignal.core.internal.preferences.PreferenceOneSignalKeys
+import com.onesignal.core.internal.preferences.PreferenceStores
+import com.onesignal.debug.internal.logging.Logging
+import org.json.JSONException
+import org.json.JSONObject
+import java.security.MessageDigest
+
+/**
+ * What the notification channel list last applied looked like: a hash of the whole list, and
+ * a hash per channel id. It is kept in the preferences, the channel list is usually the same on
+ * every cold start and does not have to be applied again.
+ *
+ * A channel the SDK may have changed since, e.g. by creating it from the payload of a
+ * notification, must be [forget]ed so it is applied again by the next sync. Channels changed
+ * outside of the SDK are not known to the fingerprint, a sync compares it to the existing ones.
+ */
+internal class NotificationChannelFingerprint(
+    private val _preferences: IPreferencesService,
+) {
+    private var listHash: String? = null
+    private var channelHashes: MutableMap<String, String>? = null
+
+    /**
+     * Whether the channel list with the provided hash is the one last applied.
+     */
+    @Synchronized
+    fun isApplied(listHash: String): Boolean {
+        load()
+        return this.listHash == listHash
+    }
+
+    /**
+     * The hash of the channel with the provided id when it was last applied, or null if it was not.
+     * A [forget]ed channel has a hash no channel matches, it is still deleted when no longer listed.
+     */
+    @Synchronized
+    fun channelHash(channelId: String): String? = load()[channelId]
+
+    /**
+     * The ids of the channels last applied.
+     */
+    @get:Synchronized
+    val channelIds: Set<String>
+        get() = load().keys.toSet()
+
+    /**
+     * Record the channel list that was just applied.
+     *
+     * @param listHash The hash of the whole list.
+     * @param channelHashes The hash of each channel in it, by channel id.
+     */
+    @Synchronized
+    fun applied(
+        listHash: String,
+        channelHashes: Map<String, String>,
+    ) {
+        this.listHash = listHash
+        this.channelHashes = channelHashes.toMutableMap()
+        save()
+    }
+
+    /**
+     * A channel was created outside of a sync. A channel of the last list is applied again on
+     * the next sync, a channel it does not have is found by the next sync when it lists the
+     * existing channels.
+     */
+    @Synchronized
+    fun forget(channelId: String) {
+        val channels = load()
+        if (!channels.containsKey(channelId)) return
+        if (channels[channelId] == FORGOTTEN && listHash == null) return
+
+        channels[channelId] = FORGOTTEN
+        listHash = null
+        save()
+    }
+
+    private fun load(): MutableMap<String, String> {
+        channelHashes?.let { return it }
+
+        val channels = mutableMapOf<String, String>()
+        val json = _preferences.getString(PreferenceStores.ONESIGNAL, PreferenceOneSignalKeys.PREFS_OS_NOTIFICATION_CHANNELS_FINGERPRINT)
+        if (json != null) {
+            try {
+                val fingerprint = JSONObject(json)
+                listHash = if (fingerprint.has(LIST)) fingerprint.getString(LIST) else null
+                val channelsJson = fingerprint.getJSONObject(CHANNELS)
+                for (channelId in channelsJson.keys()) {
+                    channels[channelId] = channelsJson.getString(channelId)
+                }
+            } catch (e: JSONException) {
+                Logging.warn("NotificationChannelFingerprint: discarding unreadable fingerprint", e)
+                listHash = null
+                channels.clear()
+            }
+        }
+
+        channelHashes = channels
+        return channels
+    }
+
+    private fun save() {
+        val fingerprint = JSONObject().put(CHANNELS, JSONObject(load()))
+        listHash?.let { fingerprint.put(LIST, it) }
+        _preferences.saveString(PreferenceStores.ONESIGNAL, PreferenceOneSignalKeys.PREFS_OS_NOTIFICATION_CHANNELS_FINGERPRINT, fingerprint.toString())
+    }
+
+    companion object {
+        private const val LIST = "list"
+        private const val CHANNELS = "channels"
+        private const val FORGOTTEN = ""
+
+        /**
+         * The hash of a channel list, or of one channel of it, as displayed in [language].
+         */
+        fun hash(
+            json: String,
+            language: String,
+        ): String = MessageDigest.getInstance("SHA-1").digest("$language\n$json".toByteArray()).joinToString("") { "%02x".format(it) }
+    }
+}
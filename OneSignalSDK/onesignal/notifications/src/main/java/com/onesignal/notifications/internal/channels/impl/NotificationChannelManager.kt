@@ -23,6 +23,7 @@ import java.util.regex.Pattern
 internal class NotificationChannelManager(
     private val _applicationService: IApplicationService,
     private val _languageContext: ILanguageContext,
+    private val _fingerprint: NotificationChannelFingerprint,
 ) : INotificationChannelManager {
     companion object {
         // Can't create a channel with the id 'miscellaneous' as an exception is thrown.
@@ -35,6 +36,13 @@ internal class NotificationChannelManager(
 
     private val hexPattern = Pattern.compile("^([A-Fa-f0-9]{8})$")
 
+    /**
+     * The number of [NotificationManager] calls [processChannelList] did not have to make
+     * because the channels were already applied, since the process started.
+     */
+    var skippedNotificationManagerCalls = 0L
+        private set
+
     override fun createNotificationChannel(notificationJob: NotificationGenerationJob): String {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return DEFAULT_CHANNEL_ID
         val context = _applicationService.appContext
@@ -49,7 +57,12 @@ internal class NotificationChannelManager(
         }
         if (!jsonPayload.has("chnl")) return createDefaultChannel(notificationManager)
         try {
-            return createChannel(context, notificationManager, jsonPayload)
+            synchronized(this) {
+                val channelId = createChannel(context, notificationManager, jsonPayload)
+                // The channel list may set this channel up differently, it has to be applied again.
+                _fingerprint.forget(channelId)
+                return channelId
+            }
         } catch (e: JSONException) {
             Logging.error("Could not create notification channel due to JSON payload error!", e)
         }
@@ -68,21 +81,8 @@ internal class NotificationChannelManager(
         notificationManager: NotificationManager,
         payload: JSONObject,
     ): String {
-        // 'chnl' will be a string if coming from FCM and it will be a JSONObject when coming from
-        //   a cold start sync.
-        val objChannelPayload = payload.opt("chnl")
-        var channelPayload: JSONObject? = null
-        channelPayload =
-            if (objChannelPayload is String) {
-                JSONObject(
-                    objChannelPayload,
-                )
-            } else {
-                objChannelPayload as JSONObject
-            }
-        var channelId = channelPayload!!.optString("id", DEFAULT_CHANNEL_ID)
-        // Ensure we don't try to use the system reserved id
-        if (channelId == NotificationChannel.DEFAULT_CHANNEL_ID) channelId = DEFAULT_CHANNEL_ID
+        val channelPayload = channelPayloadOf(payload)
+        val channelId = channelIdOf(channelPayload)
         var payloadWithText = channelPayload
         if (channelPayload.has("langs")) {
             val langList = channelPayload.getJSONObject("langs")
@@ -185,45 +185,115 @@ internal class NotificationChannelManager(
         return RESTORE_CHANNEL_ID
     }
 
+    // 'chnl' will be a string if coming from FCM and it will be a JSONObject when coming from
+    //   a cold start sync.
+    @Throws(JSONException::class)
+    private fun channelPayloadOf(payload: JSONObject): JSONObject {
+        val objChannelPayload = payload.opt("chnl")
+        return if (objChannelPayload is String) {
+            JSONObject(
+                objChannelPayload,
+            )
+        } else {
+            objChannelPayload as? JSONObject ?: throw JSONException("chnl is not a JSONObject")
+        }
+    }
+
+    private fun channelIdOf(channelPayload: JSONObject): String {
+        val channelId = channelPayload.optString("id", DEFAULT_CHANNEL_ID)
+        // Ensure we don't try to use the system reserved id
+        return if (channelId == NotificationChannel.DEFAULT_CHANNEL_ID) DEFAULT_CHANNEL_ID else channelId
+    }
+
+    // The NotificationManager calls made by createChannel for a channel.
+    private fun callsToCreate(channelPayload: JSONObject): Int = if (channelPayload.has("grp_id")) 2 else 1
+
+    // Only the channels that changed since the last list was applied, or that are missing, are
+    // created again, and only the SDK channels the list does not have are deleted. The existing
+    // channels are listed on every sync, the fingerprint may not match them, e.g. when it was
+    // restored from a backup onto another device or the app deleted a channel.
+    @Synchronized
     override fun processChannelList(list: JSONArray?) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return
         if (list == null || list.length() == 0) return
-        val notificationManager = NotificationHelper.getNotificationManager(_applicationService.appContext)
-        val syncedChannelSet: MutableSet<String> = HashSet()
+        val language = _languageContext.language
+        val listHash = NotificationChannelFingerprint.hash(list.toString(), language)
         val jsonArraySize = list.length()
+        val notificationManager = NotificationHelper.getNotificationManager(_applicationService.appContext)
+        val existingChannelIds = existingChannelIds(notificationManager).toSet()
+
+        if (_fingerprint.isApplied(listHash) && isAppliedTo(existingChannelIds)) {
+            var skippedCalls = 0
+            for (i in 0 until jsonArraySize) {
+                try {
+                    skippedCalls += callsToCreate(channelPayloadOf(list.getJSONObject(i)))
+                } catch (e: JSONException) {
+                    // Logged when this list was applied.
+                }
+            }
+            reportSkippedCalls("channel list unchanged", skippedCalls)
+            return
+        }
+
+        val syncedChannelHashes: MutableMap<String, String> = HashMap()
+        var skippedCalls = 0
         for (i in 0 until jsonArraySize) {
             try {
-                syncedChannelSet.add(
-                    createChannel(
-                        _applicationService.appContext,
-                        notificationManager,
-                        list.getJSONObject(i),
-                    ),
-                )
+                val payload = list.getJSONObject(i)
+                val channelPayload = channelPayloadOf(payload)
+                val channelId = channelIdOf(channelPayload)
+                val channelHash = NotificationChannelFingerprint.hash(payload.toString(), language)
+                if (_fingerprint.channelHash(channelId) == channelHash && existingChannelIds.contains(channelId)) {
+                    skippedCalls += callsToCreate(channelPayload)
+                } else {
+                    createChannel(_applicationService.appContext, notificationManager, payload)
+                }
+                syncedChannelHashes[channelId] = channelHash
             } catch (e: JSONException) {
                 Logging.error("Could not create notification channel due to JSON payload error!", e)
             }
         }
-        if (syncedChannelSet.isEmpty()) return
-        var existingChannels: List<NotificationChannel> = ArrayList()
-        try {
-            existingChannels = notificationManager.notificationChannels
-        } catch (e: NullPointerException) {
-            // Catch issue caused by "Attempt to invoke virtual method 'boolean android.app.NotificationChannel.isDeleted()' on a null object reference"
-            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/1291
-            Logging.warn("Error when trying to delete notification channel: " + e.message)
-        }
+        if (syncedChannelHashes.isEmpty()) return
 
         // Delete old channels - Payload will include all changes for the app. Any extra OS_ ones must
         //                       have been deleted from the dashboard and should be removed.
-        for (existingChannel in existingChannels) {
-            val id = existingChannel.id
-            if (id.startsWith(CHANNEL_PREFIX) && !syncedChannelSet.contains(id)) {
+        for (id in existingChannelIds) {
+            if (id.startsWith(CHANNEL_PREFIX) && !syncedChannelHashes.containsKey(id)) {
                 notificationManager.deleteNotificationChannel(
                     id,
                 )
             }
         }
+
+        _fingerprint.applied(listHash, syncedChannelHashes)
+        reportSkippedCalls("applied channel list", skippedCalls)
+    }
+
+    // Whether the channels last applied are the SDK channels that exist.
+    private fun isAppliedTo(existingChannelIds: Set<String>): Boolean {
+        val appliedChannelIds = _fingerprint.channelIds
+        return existingChannelIds.containsAll(appliedChannelIds) &&
+            existingChannelIds.all { !it.startsWith(CHANNEL_PREFIX) || appliedChannelIds.contains(it) }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    private fun existingChannelIds(notificationManager: NotificationManager): List<String> {
+        try {
+            return notificationManager.notificationChannels.map { it.id }
+        } catch (e: NullPointerException) {
+            // Catch issue caused by "Attempt to invoke virtual method 'boolean android.app.NotificationChannel.isDeleted()' on a null object reference"
+            // https://github.com/OneSignal/OneSignal-Android-SDK/issues/1291
+            Logging.warn("Error when trying to delete notification channel: " + e.message)
+        }
+        return listOf()
+    }
+
+    private fun reportSkippedCalls(
+        reason: String,
+        skippedCalls: Int,
+    ) {
+        skippedNotificationManagerCalls += skippedCalls
+        Logging.debug("NotificationChannelManager: $reason, skipped $skippedCalls NotificationManager calls ($skippedNotificationManagerCalls since start)")
     }
 
     private fun priorityToImportance(priority: Int): Int = NotificationPriorityMapper.toAndroidImportance(priority)
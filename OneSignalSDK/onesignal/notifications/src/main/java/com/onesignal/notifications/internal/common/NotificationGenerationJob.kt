@@ -1,8 +1,10 @@
 package com.onesignal.notifications.internal.common
 
+import android.graphics.Bitmap
 import android.net.Uri
 import com.onesignal.core.internal.time.ITime
 import com.onesignal.notifications.internal.Notification
+import com.onesignal.notifications.internal.display.NotificationImageSlot
 import org.json.JSONObject
 import java.security.SecureRandom
 
@@ -30,6 +32,13 @@ class NotificationGenerationJob(
     var orgFlags: Int? = null
     var orgSound: Uri? = null
 
+    /**
+     * The remote images loaded for this notification ahead of display, keyed by the slot they
+     * are displayed in. A slot with a remote image but no entry was not loaded in time and is
+     * displayed without it. Null when the images were not prefetched.
+     */
+    internal var prefetchedImages: Map<NotificationImageSlot, Bitmap>? = null
+
     constructor(jsonPayload: JSONObject, time: ITime) : this(
         Notification(jsonPayload, time),
         jsonPayload,
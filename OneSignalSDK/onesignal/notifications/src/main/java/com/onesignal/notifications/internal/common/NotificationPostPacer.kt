@@ -0,0 +1,28 @@
+package com.onesignal.notifications.internal.common
+
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.notifications.internal.restoration.impl.TokenBucket
+
+/**
+ * Paces every notification the SDK posts, pushed and restored alike, through one [TokenBucket],
+ * to stay under the rate at which the system starts dropping an app's notifications. The two
+ * paths each having their own would together post faster than either allows.
+ */
+internal class NotificationPostPacer(
+    _time: ITime,
+) {
+    private val bucket = TokenBucket(POST_BURST, POSTS_PER_SECOND, _time)
+
+    /**
+     * Suspend until a notification may be posted.
+     */
+    suspend fun take() = bucket.take()
+
+    companion object {
+        // The system drops the notifications of an app posting faster than 5 per second, logging;
+        // E/NotificationService: Package enqueue rate is 10.56985. Shedding events. package=####
+        // Kept under it, a grouped notification posts its summary as well.
+        private const val POSTS_PER_SECOND = 4.0
+        private const val POST_BURST = 2.0
+    }
+}
@@ -74,7 +74,8 @@ internal interface INotificationRepository {
     suspend fun getAndroidIdFromCollapseKey(collapseKey: String): Int?
 
     /**
-     * List all notifications that belong to the provided group.
+     * List all notifications that belong to the provided group. After the first call for a group
+     * the list is kept in memory, updated as notifications are saved, dismissed and opened.
      *
      * @param group The group identifier for which the notifications should be returned.
      *
@@ -91,6 +92,34 @@ internal interface INotificationRepository {
      */
     suspend fun listNotificationsForOutstanding(excludeAndroidIds: List<Int>? = null): List<NotificationData>
 
+    /**
+     * Visit the notifications [listNotificationsForGroup] would return, in the same order, reading
+     * [pageSize] of them at a time so only one page is held in memory.
+     *
+     * @param group The group identifier for which the notifications should be visited.
+     * @param pageSize The number of notifications read per database query.
+     * @param action Called for each notification, after the page it is on has been read.
+     */
+    suspend fun forEachNotificationForGroup(
+        group: String,
+        pageSize: Int = DEFAULT_PAGE_SIZE,
+        action: suspend (NotificationData) -> Unit,
+    )
+
+    /**
+     * Visit the notifications [listNotificationsForOutstanding] would return, in the same order,
+     * reading [pageSize] of them at a time so only one page is held in memory.
+     *
+     * @param excludeAndroidIds An optional list of Android IDs that should be skipped.
+     * @param pageSize The number of notifications read per database query.
+     * @param action Called for each notification, after the page it is on has been read.
+     */
+    suspend fun forEachNotificationForOutstanding(
+        excludeAndroidIds: List<Int>? = null,
+        pageSize: Int = DEFAULT_PAGE_SIZE,
+        action: suspend (NotificationData) -> Unit,
+    )
+
     suspend fun markAsConsumed(
         androidId: Int,
         dismissed: Boolean,
@@ -123,6 +152,10 @@ internal interface INotificationRepository {
      */
     suspend fun deleteExpiredNotifications()
 
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 10
+    }
+
     class NotificationData(
         val androidId: Int,
         val id: String,
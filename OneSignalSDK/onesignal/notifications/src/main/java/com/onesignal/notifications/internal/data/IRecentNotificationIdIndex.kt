@@ -0,0 +1,39 @@
+package com.onesignal.notifications.internal.data
+
+/**
+ * An in-memory index of the OneSignal notification ids this device has recently received,
+ * both those still being processed and those already saved to the notification table. It is
+ * used to reject duplicate deliveries without a database read in the common case.
+ */
+internal interface IRecentNotificationIdIndex {
+    /**
+     * Mark the notification as being processed.
+     *
+     * @param id The notification's OneSignal id.
+     *
+     * @return false if the notification is already being processed, true otherwise.
+     */
+    fun beginProcessing(id: String): Boolean
+
+    /**
+     * Mark the notification as no longer being processed, whether or not it was saved.
+     *
+     * @param id The notification's OneSignal id.
+     */
+    fun endProcessing(id: String)
+
+    /**
+     * Determine whether a notification with the provided id may have been saved. A false
+     * result is definitive, a true result must be confirmed against the notification table.
+     *
+     * @param id The notification's OneSignal id.
+     */
+    fun mightBeSaved(id: String): Boolean
+
+    /**
+     * Record that a notification with the provided id has been saved.
+     *
+     * @param id The notification's OneSignal id.
+     */
+    fun onSaved(id: String)
+}
@@ -0,0 +1,93 @@
+package com.onesignal.notifications.internal.data.impl
+
+import com.onesignal.notifications.internal.data.INotificationRepository
+
+/**
+ * The active children of notification groups, newest first, as they were last read from the
+ * notification table. A group is read from the table the first time it is needed after the
+ * process starts, and from then on kept up to date as notifications are received, dismissed
+ * and opened, so a grouped notification arriving does not re-read its whole group.
+ *
+ * A change that can not be applied to the cached children, e.g. deleting expired rows,
+ * invalidates them instead, and the group is read from the table again on next use. Every
+ * change bumps [version], a read from the table that started before a change is not cached.
+ */
+internal class NotificationGroupCache {
+    private val groups = HashMap<String, MutableList<INotificationRepository.NotificationData>>()
+
+    @get:Synchronized
+    var version = 0L
+        private set
+
+    /**
+     * The cached children of [group], or null if they have to be read from the table.
+     */
+    @Synchronized
+    fun get(group: String): List<INotificationRepository.NotificationData>? = groups[group]?.toList()
+
+    /**
+     * Cache the children of [group] read from the table, unless the table changed since [readAtVersion].
+     */
+    @Synchronized
+    fun put(
+        group: String,
+        children: List<INotificationRepository.NotificationData>,
+        readAtVersion: Long,
+    ) {
+        if (readAtVersion != version) return
+        groups[group] = children.toMutableList()
+    }
+
+    /**
+     * A notification was saved.
+     *
+     * @param group The group of the notification, or null if it has none.
+     * @param replacedAndroidId The Android id of the notifications it replaced, or null if it replaced none.
+     * @param notification The notification, or null if it was saved as already opened.
+     */
+    @Synchronized
+    fun onSaved(
+        group: String?,
+        replacedAndroidId: Int?,
+        notification: INotificationRepository.NotificationData?,
+    ) {
+        version++
+        if (replacedAndroidId != null) removeAndroidId(replacedAndroidId)
+        if (group != null && notification != null) {
+            groups[group]?.add(0, notification)
+        }
+    }
+
+    /**
+     * The notification with the provided Android id was dismissed or opened.
+     */
+    @Synchronized
+    fun onRemoved(androidId: Int) {
+        version++
+        removeAndroidId(androidId)
+    }
+
+    /**
+     * Every child of [group] was dismissed or opened.
+     */
+    @Synchronized
+    fun onGroupRemoved(group: String) {
+        version++
+        groups[group] = mutableListOf()
+    }
+
+    /**
+     * Forget the cached children of [group], or of every group when null.
+     */
+    @Synchronized
+    fun invalidate(group: String? = null) {
+        version++
+        if (group == null) groups.clear() else groups.remove(group)
+    }
+
+    private fun removeAndroidId(androidId: Int) {
+        for (children in groups.values) {
+            children.removeAll { it.androidId == androidId }
+        }
+    }
+}
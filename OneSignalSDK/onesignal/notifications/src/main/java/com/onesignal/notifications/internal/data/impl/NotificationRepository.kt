@@ -2,9 +2,12 @@ package com.onesignal.notifications.internal.data.impl
 
 import android.app.NotificationManager
 import android.content.ContentValues
+import android.database.SQLException
 import android.provider.BaseColumns
 import android.text.TextUtils
 import com.onesignal.core.internal.application.IApplicationService
+import com.onesignal.core.internal.database.ICursor
+import com.onesignal.core.internal.database.IDatabase
 import com.onesignal.core.internal.database.IDatabaseProvider
 import com.onesignal.core.internal.database.impl.OneSignalDbContract
 import com.onesignal.core.internal.time.ITime
@@ -13,7 +16,10 @@ import com.onesignal.notifications.internal.badges.IBadgeCountUpdater
 import com.onesignal.notifications.internal.common.NotificationHelper
 import com.onesignal.notifications.internal.data.INotificationQueryHelper
 import com.onesignal.notifications.internal.data.INotificationRepository
+import com.onesignal.notifications.internal.data.IRecentNotificationIdIndex
 import com.onesignal.notifications.internal.limiting.INotificationLimitManager
+import com.onesignal.notifications.internal.tracing.INotificationPipelineTracer
+import com.onesignal.notifications.internal.tracing.NotificationPipelineStage
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import org.json.JSONException
@@ -24,7 +30,11 @@ internal class NotificationRepository(
     private val _databaseProvider: IDatabaseProvider,
     private val _time: ITime,
     private val _badgeCountUpdater: IBadgeCountUpdater,
+    private val _recentNotificationIds: IRecentNotificationIdIndex,
+    private val _tracer: INotificationPipelineTracer,
 ) : INotificationRepository {
+    private val groupCache = NotificationGroupCache()
+
     /**
      * Deletes notifications with created timestamps older than 7 days
      * Cleans notification tables
@@ -44,6 +54,7 @@ internal class NotificationRepository(
                 whereStr,
                 whereArgs,
             )
+            groupCache.invalidate()
         }
     }
 
@@ -72,7 +83,10 @@ internal class NotificationRepository(
             val whereStr: String = OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED.toString() + " = 0"
             val values = ContentValues()
             values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED, 1)
-            _databaseProvider.os.update(OneSignalDbContract.NotificationTable.TABLE_NAME, values, whereStr, null)
+            _databaseProvider.os.enqueueWrite(OneSignalDbContract.NotificationTable.TABLE_NAME, KEY_DISMISS_ALL) { db ->
+                db.update(OneSignalDbContract.NotificationTable.TABLE_NAME, values, whereStr, null)
+            }
+            groupCache.invalidate()
 
             _badgeCountUpdater.updateCount(0)
         }
@@ -110,12 +124,16 @@ internal class NotificationRepository(
                 OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED + " = 0"
             val values = ContentValues()
             values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED, 1)
-            _databaseProvider.os.update(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
-                values,
-                whereStr,
-                whereArgs,
-            )
+            // The badge count update below reads the table, which commits this first.
+            _databaseProvider.os.enqueueWrite(OneSignalDbContract.NotificationTable.TABLE_NAME, KEY_DISMISS_GROUP + group) { db ->
+                db.update(
+                    OneSignalDbContract.NotificationTable.TABLE_NAME,
+                    values,
+                    whereStr,
+                    whereArgs,
+                )
+            }
+            groupCache.onGroupRemoved(group)
 
             _badgeCountUpdater.update()
         }
@@ -141,6 +159,7 @@ internal class NotificationRepository(
         val values = ContentValues()
         values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED, 1)
         val records: Int = _databaseProvider.os.update(OneSignalDbContract.NotificationTable.TABLE_NAME, values, whereStr, null)
+        groupCache.onRemoved(androidId)
 
         val didDismiss = records > 0
 
@@ -160,24 +179,16 @@ internal class NotificationRepository(
         var result = false
 
         withContext(Dispatchers.IO) {
-            val retColumn =
-                arrayOf<String>(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID)
-            val whereArgs = arrayOf(id!!)
-            _databaseProvider.os.query(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
-                columns = retColumn,
-                // Where String
-                whereClause = OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?",
-                whereArgs = whereArgs,
-            ) {
-                val exists = it.moveToFirst()
-
-                if (exists) {
-                    Logging.debug(
-                        "Notification notValidOrDuplicated with id duplicated, duplicate FCM message received, skip processing of $id",
-                    )
-                    result = true
-                }
+            // Most notifications are new, only a possible match needs the query.
+            val exists =
+                _recentNotificationIds.mightBeSaved(id) &&
+                    _databaseProvider.os.longForQuery(SQL_NOTIFICATION_EXISTS, arrayOf(id)) != null
+
+            if (exists) {
+                Logging.debug(
+                    "Notification notValidOrDuplicated with id duplicated, duplicate FCM message received, skip processing of $id",
+                )
+                result = true
             }
         }
 
@@ -222,22 +233,6 @@ internal class NotificationRepository(
             Logging.debug("Saving Notification id=$id")
 
             try {
-                if (shouldDismissIdenticals) {
-                    val whereStr =
-                        OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidId
-                    val values = ContentValues()
-                    values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED, 1)
-
-                    _databaseProvider.os.update(
-                        OneSignalDbContract.NotificationTable.TABLE_NAME,
-                        values,
-                        whereStr,
-                        null,
-                    )
-
-                    _badgeCountUpdater.update()
-                }
-
                 // Save just received notification to DB
                 val values = ContentValues()
 
@@ -278,17 +273,62 @@ internal class NotificationRepository(
                     OneSignalDbContract.NotificationTable.COLUMN_NAME_EXPIRE_TIME,
                     expireTime,
                 )
-                values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA, jsonPayload)
 
-                _databaseProvider.os.insertOrThrow(
-                    OneSignalDbContract.NotificationTable.TABLE_NAME,
-                    null,
-                    values,
+                val payloadValues = ContentValues()
+                payloadValues.put(OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA, jsonPayload)
+
+                // Dismissing the identical notification and saving this one share a transaction,
+                // so receiving a notification costs a single commit.
+                try {
+                    _databaseProvider.os.runInTransaction { db ->
+                        if (shouldDismissIdenticals) {
+                            val whereStr =
+                                OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidId
+                            val dismissValues = ContentValues()
+                            dismissValues.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED, 1)
+
+                            db.update(
+                                OneSignalDbContract.NotificationTable.TABLE_NAME,
+                                dismissValues,
+                                whereStr,
+                                null,
+                            )
+                        }
+
+                        db.insertOrThrow(
+                            OneSignalDbContract.NotificationTable.TABLE_NAME,
+                            null,
+                            values,
+                        )
+
+                        // The payload is keyed by the row just inserted, the latest one with this id.
+                        val rowId =
+                            db.longForQuery(SQL_LATEST_ROW_ID_FOR_NOTIFICATION_ID, arrayOf(id))?.takeIf { it > 0 }
+                                ?: throw SQLException("Inserted notification id=$id not found")
+                        payloadValues.put(OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_NOTIFICATION_ROW_ID, rowId)
+                        db.insertOrThrow(
+                            OneSignalDbContract.NotificationPayloadTable.TABLE_NAME,
+                            null,
+                            payloadValues,
+                        )
+                    }
+                } catch (e: SQLException) {
+                    // Not saved, the id index, group cache and badge must not count it.
+                    Logging.error("Could not save notification id=$id", e)
+                    return@withContext
+                }
+                _recentNotificationIds.onSaved(id)
+                groupCache.onSaved(
+                    groupId,
+                    if (shouldDismissIdenticals) androidId else null,
+                    if (isOpened) null else INotificationRepository.NotificationData(androidId, id, jsonPayload, _time.currentTimeMillis / 1000L, title, body),
                 )
+                _tracer.mark(id, NotificationPipelineStage.SAVED)
                 Logging.debug("Notification saved values: $values")
 
-                if (!isOpened) {
+                if (shouldDismissIdenticals || !isOpened) {
                     _badgeCountUpdater.update()
+                    _tracer.mark(id, NotificationPipelineStage.BADGE_UPDATED)
                 }
             } catch (e: JSONException) {
                 e.printStackTrace()
@@ -303,73 +343,88 @@ internal class NotificationRepository(
         clearGroupOnSummaryClick: Boolean,
     ) {
         withContext(Dispatchers.IO) {
-            var whereStr: String
-            var whereArgs: Array<String>? = null
-            if (summaryGroup != null) {
-                val isGroupless = summaryGroup == NotificationHelper.GROUPLESS_SUMMARY_KEY
-                if (isGroupless) {
-                    whereStr =
-                        OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID + " IS NULL"
-                } else {
-                    whereStr = OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID + " = ?"
-                    whereArgs = arrayOf(summaryGroup)
-                }
-                if (!dismissed) {
-                    // Make sure when a notification is not being dismissed it is handled through the dashboard setting
-                    if (!clearGroupOnSummaryClick) {
-                        /* If the open event shouldn't clear all summary notifications then the SQL query
-                         * will look for the most recent notification instead of all grouped notifications */
-                        val mostRecentId = getAndroidIdForGroup(summaryGroup, false).toString()
-                        whereStr += " AND " + OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = ?"
-                        whereArgs =
-                            if (isGroupless) {
-                                arrayOf(mostRecentId)
-                            } else {
-                                arrayOf(
-                                    summaryGroup,
-                                    mostRecentId,
-                                )
-                            }
-                    }
+            // Finding the most recent notification and marking it share a transaction, so a
+            // notification received in between can not be marked in its place.
+            try {
+                _databaseProvider.os.runInTransaction { db ->
+                    internalMarkAsConsumed(db, androidId, dismissed, summaryGroup, clearGroupOnSummaryClick)
                 }
+            } catch (e: SQLException) {
+                Logging.error("Could not mark notification androidId=$androidId as consumed", e)
+                return@withContext
+            }
+            if (summaryGroup != null) {
+                // Which children were consumed depends on the dashboard setting, read the group again.
+                groupCache.invalidate(summaryGroup)
             } else {
-                whereStr =
-                    OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidId
+                groupCache.onRemoved(androidId)
             }
 
-            val values = ContentValues()
-            if (dismissed) {
-                values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED, 1)
+            _badgeCountUpdater.update()
+        }
+    }
+
+    private fun internalMarkAsConsumed(
+        db: IDatabase,
+        androidId: Int,
+        dismissed: Boolean,
+        summaryGroup: String?,
+        clearGroupOnSummaryClick: Boolean,
+    ) {
+        var whereStr: String
+        var whereArgs: Array<String>? = null
+        if (summaryGroup != null) {
+            val isGroupless = summaryGroup == NotificationHelper.GROUPLESS_SUMMARY_KEY
+            if (isGroupless) {
+                whereStr =
+                    OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID + " IS NULL"
             } else {
-                values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED, 1)
+                whereStr = OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID + " = ?"
+                whereArgs = arrayOf(summaryGroup)
             }
+            if (!dismissed) {
+                // Make sure when a notification is not being dismissed it is handled through the dashboard setting
+                if (!clearGroupOnSummaryClick) {
+                    /* If the open event shouldn't clear all summary notifications then the SQL query
+                     * will look for the most recent notification instead of all grouped notifications */
+                    val mostRecentId = queryAndroidIdForGroup(db, summaryGroup, false).toString()
+                    whereStr += " AND " + OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = ?"
+                    whereArgs =
+                        if (isGroupless) {
+                            arrayOf(mostRecentId)
+                        } else {
+                            arrayOf(
+                                summaryGroup,
+                                mostRecentId,
+                            )
+                        }
+                }
+            }
+        } else {
+            whereStr =
+                OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidId
+        }
 
-            _databaseProvider.os.update(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
-                values,
-                whereStr,
-                whereArgs,
-            )
-
-            _badgeCountUpdater.update()
+        val values = ContentValues()
+        if (dismissed) {
+            values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED, 1)
+        } else {
+            values.put(OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED, 1)
         }
+
+        db.update(
+            OneSignalDbContract.NotificationTable.TABLE_NAME,
+            values,
+            whereStr,
+            whereArgs,
+        )
     }
 
     override suspend fun getGroupId(androidId: Int): String? {
         var groupId: String? = null
 
         withContext(Dispatchers.IO) {
-            _databaseProvider.os.query(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
-                // retColumn
-                columns = arrayOf(OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID),
-                whereClause = OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = " + androidId,
-            ) {
-                if (it.moveToFirst()) {
-                    groupId =
-                        it.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID)
-                }
-            }
+            groupId = _databaseProvider.os.stringForQuery(SQL_GROUP_ID_FOR_ANDROID_ID, arrayOf(androidId.toString()))
         }
 
         return groupId
@@ -379,20 +434,7 @@ internal class NotificationRepository(
         var androidId: Int? = null
 
         withContext(Dispatchers.IO) {
-            _databaseProvider.os.query(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
-                // retColumn
-                columns = arrayOf(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID),
-                whereClause =
-                OneSignalDbContract.NotificationTable.COLUMN_NAME_COLLAPSE_ID + " = ? AND " +
-                    OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
-                    OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED + " = 0 ",
-                whereArgs = arrayOf(collapseKey),
-            ) {
-                if (it.moveToFirst()) {
-                    androidId = it.getInt(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID)
-                }
-            }
+            androidId = _databaseProvider.os.longForQuery(SQL_ANDROID_ID_FOR_COLLAPSE_KEY, arrayOf(collapseKey))?.toInt()
         }
 
         return androidId
@@ -435,19 +477,18 @@ internal class NotificationRepository(
     }
 
     override suspend fun listNotificationsForGroup(summaryGroup: String): List<INotificationRepository.NotificationData> {
+        groupCache.get(summaryGroup)?.let { return it }
+
         val listOfNotifications = mutableListOf<INotificationRepository.NotificationData>()
 
         withContext(Dispatchers.IO) {
+            val readAtVersion = groupCache.version
             val whereArgs = arrayOf(summaryGroup)
 
             _databaseProvider.os.query(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
+                NOTIFICATION_WITH_PAYLOAD,
                 columns = COLUMNS_FOR_LIST_NOTIFICATIONS,
-                whereClause =
-                OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID + " = ? AND " + // Where String
-                    OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
-                    OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " +
-                    OneSignalDbContract.NotificationTable.COLUMN_NAME_IS_SUMMARY + " = 0",
+                whereClause = WHERE_GROUP_CHILDREN,
                 whereArgs = whereArgs,
                 // sort order, new to old);
                 orderBy = BaseColumns._ID + " DESC",
@@ -455,29 +496,14 @@ internal class NotificationRepository(
                 if (it.moveToFirst()) {
                     do {
                         try {
-                            val title = it.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_TITLE)
-                            val message = it.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_MESSAGE)
-                            val osNotificationId = it.getString(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID)
-                            val existingId = it.getInt(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID)
-                            val fullData = it.getString(OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA)
-                            val dateTime = it.getLong(OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME)
-
-                            listOfNotifications.add(
-                                INotificationRepository.NotificationData(
-                                    existingId,
-                                    osNotificationId,
-                                    fullData,
-                                    dateTime,
-                                    title,
-                                    message,
-                                ),
-                            )
+                            listOfNotifications.add(readNotificationData(it))
                         } catch (e: JSONException) {
                             Logging.error("Could not parse JSON of sub notification in group: $summaryGroup")
                         }
                     } while (it.moveToNext())
                 }
             }
+            groupCache.put(summaryGroup, listOfNotifications, readAtVersion)
         }
 
         return listOfNotifications
@@ -491,6 +517,20 @@ internal class NotificationRepository(
         getSummaryNotification: Boolean,
     ): Int? {
         var recentId: Int? = null
+
+        withContext(Dispatchers.IO) {
+            recentId = queryAndroidIdForGroup(_databaseProvider.os, group, getSummaryNotification)
+        }
+
+        return recentId
+    }
+
+    private fun queryAndroidIdForGroup(
+        db: IDatabase,
+        group: String,
+        getSummaryNotification: Boolean,
+    ): Int? {
+        var recentId: Int? = null
         val isGroupless = group == NotificationHelper.GROUPLESS_SUMMARY_KEY
 
         /* Beginning of the query string changes based on being groupless or not
@@ -512,25 +552,23 @@ internal class NotificationRepository(
 
         val whereArgs = if (isGroupless) null else arrayOf(group)
 
-        withContext(Dispatchers.IO) {
-            // Order by timestamp in descending and limit to 1
-            _databaseProvider.os.query(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
-                columns = arrayOf(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID),
-                whereClause = whereStr,
-                whereArgs = whereArgs,
-                orderBy = OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME + " DESC",
-                limit = "1",
-            ) {
-                val hasRecord = it.moveToFirst()
-                recentId =
-                    if (!hasRecord) {
-                        null
-                    } else {
-                        // Get more recent notification id from Cursor
-                        it.getInt(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID)
-                    }
-            }
+        // Order by timestamp in descending and limit to 1
+        db.query(
+            OneSignalDbContract.NotificationTable.TABLE_NAME,
+            columns = arrayOf(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID),
+            whereClause = whereStr,
+            whereArgs = whereArgs,
+            orderBy = OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME + " DESC",
+            limit = "1",
+        ) {
+            val hasRecord = it.moveToFirst()
+            recentId =
+                if (!hasRecord) {
+                    null
+                } else {
+                    // Get more recent notification id from Cursor
+                    it.getInt(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID)
+                }
         }
 
         return recentId
@@ -539,48 +577,17 @@ internal class NotificationRepository(
     override suspend fun listNotificationsForOutstanding(excludeAndroidIds: List<Int>?): List<INotificationRepository.NotificationData> {
         val listOfNotifications = mutableListOf<INotificationRepository.NotificationData>()
         withContext(Dispatchers.IO) {
-            val dbQuerySelection = _queryHelper.recentUninteractedWithNotificationsWhere()
-
-            if (excludeAndroidIds != null) {
-                dbQuerySelection
-                    .append(" AND " + OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " NOT IN (")
-                    .append(TextUtils.join(",", excludeAndroidIds))
-                    .append(")")
-            }
-
             _databaseProvider.os.query(
-                OneSignalDbContract.NotificationTable.TABLE_NAME,
+                NOTIFICATION_WITH_PAYLOAD,
                 columns = COLUMNS_FOR_LIST_NOTIFICATIONS,
-                whereClause = dbQuerySelection.toString(),
+                whereClause = outstandingWhere(excludeAndroidIds),
                 // sort order, new to old
                 orderBy = BaseColumns._ID + " DESC",
                 // limit
                 limit = INotificationLimitManager.Constants.maxNumberOfNotifications.toString(),
             ) {
                 while (it.moveToNext()) {
-                    val title =
-                        it.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_TITLE)
-                    val message =
-                        it.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_MESSAGE)
-                    val osNotificationId =
-                        it.getString(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID)
-                    val existingId =
-                        it.getInt(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID)
-                    val fullData =
-                        it.getString(OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA)
-                    val dateTime =
-                        it.getLong(OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME)
-
-                    listOfNotifications.add(
-                        INotificationRepository.NotificationData(
-                            existingId,
-                            osNotificationId,
-                            fullData,
-                            dateTime,
-                            title,
-                            message,
-                        ),
-                    )
+                    listOfNotifications.add(readNotificationData(it))
                 }
             }
         }
@@ -588,17 +595,160 @@ internal class NotificationRepository(
         return listOfNotifications
     }
 
+    override suspend fun forEachNotificationForGroup(
+        group: String,
+        pageSize: Int,
+        action: suspend (INotificationRepository.NotificationData) -> Unit,
+    ) {
+        forEachNotificationPage(WHERE_GROUP_CHILDREN, arrayOf(group), Int.MAX_VALUE, pageSize, action)
+    }
+
+    override suspend fun forEachNotificationForOutstanding(
+        excludeAndroidIds: List<Int>?,
+        pageSize: Int,
+        action: suspend (INotificationRepository.NotificationData) -> Unit,
+    ) {
+        forEachNotificationPage(
+            outstandingWhere(excludeAndroidIds),
+            arrayOf(),
+            INotificationLimitManager.Constants.maxNumberOfNotifications,
+            pageSize,
+            action,
+        )
+    }
+
+    /**
+     * Visit up to [limit] notifications matching [whereClause], new to old, [pageSize] at a time.
+     * Each page starts below the last row id of the one before it instead of at an offset, so it
+     * is a range scan of the primary key. Its cursor is closed before [action] runs, as [action]
+     * may suspend for a while.
+     */
+    private suspend fun forEachNotificationPage(
+        whereClause: String,
+        whereArgs: Array<String>,
+        limit: Int,
+        pageSize: Int,
+        action: suspend (INotificationRepository.NotificationData) -> Unit,
+    ) {
+        var visited = 0
+        var beforeRowId = Long.MAX_VALUE
+        while (visited < limit) {
+            val requested = minOf(pageSize, limit - visited)
+            val page = ArrayList<INotificationRepository.NotificationData>(requested)
+
+            withContext(Dispatchers.IO) {
+                _databaseProvider.os.query(
+                    NOTIFICATION_WITH_PAYLOAD,
+                    columns = COLUMNS_FOR_PAGED_NOTIFICATIONS,
+                    whereClause = "$whereClause AND $NOTIFICATION_ROW_ID < ?",
+                    whereArgs = whereArgs + beforeRowId.toString(),
+                    orderBy = NOTIFICATION_ROW_ID + " DESC",
+                    limit = requested.toString(),
+                ) {
+                    while (it.moveToNext()) {
+                        beforeRowId = it.getLong(BaseColumns._ID)
+                        page.add(readNotificationData(it))
+                    }
+                }
+            }
+
+            for (notification in page) {
+                action(notification)
+            }
+
+            visited += page.size
+            if (page.size < requested) return
+        }
+    }
+
+    private fun outstandingWhere(excludeAndroidIds: List<Int>?): String {
+        val dbQuerySelection = _queryHelper.recentUninteractedWithNotificationsWhere()
+
+        if (excludeAndroidIds != null) {
+            dbQuerySelection
+                .append(" AND " + OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " NOT IN (")
+                .append(TextUtils.join(",", excludeAndroidIds))
+                .append(")")
+        }
+
+        return dbQuerySelection.toString()
+    }
+
+    private fun readNotificationData(cursor: ICursor): INotificationRepository.NotificationData {
+        val title = cursor.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_TITLE)
+        val message = cursor.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_MESSAGE)
+        val osNotificationId = cursor.getString(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID)
+        val existingId = cursor.getInt(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID)
+        val fullData = cursor.getString(OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA)
+        val dateTime = cursor.getLong(OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME)
+
+        return INotificationRepository.NotificationData(
+            existingId,
+            osNotificationId,
+            fullData,
+            dateTime,
+            title,
+            message,
+        )
+    }
+
     companion object {
         private const val NOTIFICATION_CACHE_DATA_LIFETIME = 604800L // 7 days in second
 
+        // enqueueWrite keys, a repeated dismiss replaces the one still queued.
+        private const val KEY_DISMISS_ALL = "dismiss_all"
+        private const val KEY_DISMISS_GROUP = "dismiss_group:"
+
+        // Run on every received notification, through IDatabase's compiled statement cache.
+        private const val SQL_NOTIFICATION_EXISTS =
+            "SELECT 1 FROM " + OneSignalDbContract.NotificationTable.TABLE_NAME +
+                " WHERE " + OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ? LIMIT 1"
+        private const val SQL_GROUP_ID_FOR_ANDROID_ID =
+            "SELECT " + OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID +
+                " FROM " + OneSignalDbContract.NotificationTable.TABLE_NAME +
+                " WHERE " + OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID + " = ? LIMIT 1"
+        private const val SQL_ANDROID_ID_FOR_COLLAPSE_KEY =
+            "SELECT " + OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID +
+                " FROM " + OneSignalDbContract.NotificationTable.TABLE_NAME +
+                " WHERE " + OneSignalDbContract.NotificationTable.COLUMN_NAME_COLLAPSE_ID + " = ? AND " +
+                OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
+                OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED + " = 0 LIMIT 1"
+
+        private const val SQL_LATEST_ROW_ID_FOR_NOTIFICATION_ID =
+            "SELECT MAX(" + BaseColumns._ID + ") FROM " + OneSignalDbContract.NotificationTable.TABLE_NAME +
+                " WHERE " + OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID + " = ?"
+
+        // The full payload is only read when listing notifications to restore or summarize them.
+        // A left join, a notification without a payload row is still listed, with the payload from
+        // its own full_data column, if any.
+        private const val NOTIFICATION_WITH_PAYLOAD =
+            OneSignalDbContract.NotificationTable.TABLE_NAME + " LEFT JOIN " +
+                OneSignalDbContract.NotificationPayloadTable.TABLE_NAME + " ON " +
+                OneSignalDbContract.NotificationPayloadTable.TABLE_NAME + "." + OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_NOTIFICATION_ROW_ID +
+                " = " + OneSignalDbContract.NotificationTable.TABLE_NAME + "." + BaseColumns._ID
+
         val COLUMNS_FOR_LIST_NOTIFICATIONS =
             arrayOf(
                 OneSignalDbContract.NotificationTable.COLUMN_NAME_TITLE,
                 OneSignalDbContract.NotificationTable.COLUMN_NAME_MESSAGE,
                 OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID,
                 OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID,
-                OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA,
+                "COALESCE(" +
+                    OneSignalDbContract.NotificationPayloadTable.TABLE_NAME + "." + OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA + ", " +
+                    OneSignalDbContract.NotificationTable.TABLE_NAME + "." + OneSignalDbContract.NotificationTable.COLUMN_NAME_FULL_DATA +
+                    ") AS " + OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA,
                 OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME,
             )
+
+        private const val NOTIFICATION_ROW_ID = OneSignalDbContract.NotificationTable.TABLE_NAME + "." + BaseColumns._ID
+
+        // The list columns, plus the row id each page continues from.
+        private val COLUMNS_FOR_PAGED_NOTIFICATIONS = COLUMNS_FOR_LIST_NOTIFICATIONS + "$NOTIFICATION_ROW_ID AS ${BaseColumns._ID}"
+
+        private const val WHERE_GROUP_CHILDREN =
+            OneSignalDbContract.NotificationTable.COLUMN_NAME_GROUP_ID + " = ? AND " +
+                OneSignalDbContract.NotificationTable.COLUMN_NAME_DISMISSED + " = 0 AND " +
+                OneSignalDbContract.NotificationTable.COLUMN_NAME_OPENED + " = 0 AND " +
+                OneSignalDbContract.NotificationTable.COLUMN_NAME_IS_SUMMARY + " = 0"
     }
 }
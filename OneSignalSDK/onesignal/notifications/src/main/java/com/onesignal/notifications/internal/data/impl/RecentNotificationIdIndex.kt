@@ -0,0 +1,128 @@
+package com.onesignal.notifications.internal.data.impl
+
+import com.onesignal.core.internal.database.IDatabaseProvider
+import com.onesignal.core.internal.database.impl.OneSignalDbContract
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.notifications.internal.data.IRecentNotificationIdIndex
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Keeps the ids of notifications being processed in a set, and the ids of saved notifications
+ * in a fixed size Bloom filter, so a new notification is known not to be a duplicate without
+ * querying the notification table. Only a possible match, or a false positive, needs the query.
+ *
+ * The filter is filled from the notification table on first use. A Bloom filter cannot forget
+ * an id, so once [REBUILD_AFTER_SAVES] notifications have been saved it is rebuilt from the
+ * table, which by then no longer holds the expired ones.
+ */
+internal class RecentNotificationIdIndex(
+    private val _databaseProvider: IDatabaseProvider,
+) : IRecentNotificationIdIndex {
+    private val processing = ConcurrentHashMap<String, Boolean>()
+    private val bits = LongArray(FILTER_BITS / Long.SIZE_BITS)
+    private var isLoaded = false
+    private var savesSinceLoad = 0
+
+    override fun beginProcessing(id: String): Boolean {
+        if (id.isEmpty()) return true
+
+        // Keep in memory on going processed notifications, to avoid fast duplicates that already finished work process but are not completed yet
+        // enqueueUniqueWork might not be enough, if the work already finished then the duplicate notification work might be queued again
+        if (processing.putIfAbsent(id, true) != null) {
+            Logging.debug("RecentNotificationIdIndex: notification with notificationId: $id already queued")
+            return false
+        }
+        return true
+    }
+
+    override fun endProcessing(id: String) {
+        if (id.isEmpty()) return
+
+        processing.remove(id)
+    }
+
+    override fun mightBeSaved(id: String): Boolean {
+        synchronized(bits) {
+            if (!isLoaded) load()
+            return forEachBit(id) { word, mask -> bits[word] and mask != 0L }
+        }
+    }
+
+    override fun onSaved(id: String) {
+        synchronized(bits) {
+            // Not loaded yet, the id is picked up from the table on first use.
+            if (!isLoaded) return
+
+            if (++savesSinceLoad >= REBUILD_AFTER_SAVES) {
+                isLoaded = false
+                return
+            }
+
+            add(id)
+        }
+    }
+
+    private fun load() {
+        bits.fill(0L)
+        var count = 0
+        _databaseProvider.os.query(
+            OneSignalDbContract.NotificationTable.TABLE_NAME,
+            columns = arrayOf(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID),
+        ) {
+            if (it.moveToFirst()) {
+                do {
+                    val id = it.getOptString(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID)
+                    if (id != null) {
+                        add(id)
+                        count++
+                    }
+                } while (it.moveToNext())
+            }
+        }
+
+        isLoaded = true
+        savesSinceLoad = 0
+        Logging.debug("RecentNotificationIdIndex: loaded $count notification ids")
+    }
+
+    private fun add(id: String) {
+        forEachBit(id) { word, mask ->
+            bits[word] = bits[word] or mask
+            true
+        }
+    }
+
+    /**
+     * Visit the [HASH_COUNT] bits of [id], stopping early when [visit] returns false.
+     *
+     * @return false if [visit] returned false for a bit, true otherwise.
+     */
+    private inline fun forEachBit(
+        id: String,
+        visit: (word: Int, mask: Long) -> Boolean,
+    ): Boolean {
+        // Double hashing, the second hash is forced odd so every probe lands on a distinct bit.
+        val h1 = id.hashCode()
+        val h2 = fnv1a(id) or 1
+        for (i in 0 until HASH_COUNT) {
+            val bit = (h1 + i * h2) and (FILTER_BITS - 1)
+            if (!visit(bit ushr 6, 1L shl (bit and 63))) return false
+        }
+        return true
+    }
+
+    private fun fnv1a(value: String): Int {
+        var hash = -0x7ee3623b // 2166136261
+        for (c in value) {
+            hash = (hash xor c.code) * 0x01000193
+        }
+        return hash
+    }
+
+    companion object {
+        // 64K bits (8KB) with 4 hashes keeps false positives under 0.5% up to ~5000 ids.
+        private const val FILTER_BITS = 1 shl 16
+        private const val HASH_COUNT = 4
+        private const val REBUILD_AFTER_SAVES = 4096
+    }
+}
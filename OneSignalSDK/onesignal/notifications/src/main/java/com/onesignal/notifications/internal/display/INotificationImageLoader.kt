@@ -0,0 +1,45 @@
+package com.onesignal.notifications.internal.display
+
+import android.graphics.Bitmap
+import com.onesignal.notifications.internal.common.NotificationGenerationJob
+
+/**
+ * Downloads and decodes the remote images a notification displays, i.e. its large icon, big
+ * picture and background image.
+ */
+internal interface INotificationImageLoader {
+    /**
+     * Load the image at the provided URL, decoded no larger than needed to fill a slot of the
+     * provided size. The decoded image may still be larger than the slot, it is never smaller
+     * unless the image itself is.
+     *
+     * Must not be called from the main thread, it may block on disk and network IO.
+     *
+     * @param url The http(s) URL of the image.
+     * @param targetWidth The width in pixels of the slot the image is displayed in.
+     * @param targetHeight The height in pixels of the slot the image is displayed in.
+     *
+     * @return The image, or null if it could not be downloaded or decoded.
+     */
+    fun load(
+        url: String,
+        targetWidth: Int,
+        targetHeight: Int,
+    ): Bitmap?
+
+    /**
+     * Load the remote image of the provided slot of a notification, see [NotificationImageSlot.urlIn].
+     * When the notification's images were prefetched, see [NotificationGenerationJob.prefetchedImages],
+     * the prefetched image is returned and nothing is loaded, so an image that was not ready by
+     * the prefetch deadline is left out.
+     *
+     * @param notificationJob The notification to load the image of.
+     * @param slot The slot to load the image of, sized to fit it.
+     *
+     * @return The image, or null if the slot has no remote image or it could not be loaded.
+     */
+    fun load(
+        notificationJob: NotificationGenerationJob,
+        slot: NotificationImageSlot,
+    ): Bitmap?
+}
@@ -0,0 +1,61 @@
+package com.onesignal.notifications.internal.display
+
+import android.content.res.Resources
+import org.json.JSONException
+import org.json.JSONObject
+
+/**
+ * The places a notification can display an image loaded from a URL in its payload.
+ */
+internal enum class NotificationImageSlot {
+    LARGE_ICON {
+        override fun nameIn(fcmJson: JSONObject): String? = fcmJson.optString("licon", null)
+
+        override fun widthIn(resources: Resources) = resources.getDimension(android.R.dimen.notification_large_icon_width).toInt()
+
+        override fun heightIn(resources: Resources) = resources.getDimension(android.R.dimen.notification_large_icon_height).toInt()
+    },
+
+    // Shown across the expanded notification, at most half as tall as it is wide.
+    BIG_PICTURE {
+        override fun nameIn(fcmJson: JSONObject): String? = fcmJson.optString("bicon", null)
+
+        override fun widthIn(resources: Resources) = resources.displayMetrics.widthPixels
+
+        override fun heightIn(resources: Resources) = resources.displayMetrics.widthPixels / 2
+    },
+
+    // Fills the width of the collapsed notification.
+    BACKGROUND {
+        override fun nameIn(fcmJson: JSONObject): String? {
+            val bgImage = fcmJson.optString("bg_img", null) ?: return null
+            return try {
+                JSONObject(bgImage).optString("img", null)
+            } catch (e: JSONException) {
+                null
+            }
+        }
+
+        override fun widthIn(resources: Resources) = resources.displayMetrics.widthPixels
+
+        override fun heightIn(resources: Resources) = resources.displayMetrics.widthPixels / 4
+    },
+    ;
+
+    /**
+     * The asset, resource or URL name of this slot's image in [fcmJson], or null if it has none.
+     */
+    abstract fun nameIn(fcmJson: JSONObject): String?
+
+    abstract fun widthIn(resources: Resources): Int
+
+    abstract fun heightIn(resources: Resources): Int
+
+    /**
+     * The URL of this slot's image in [fcmJson], or null if it has none or it is not remote.
+     */
+    fun urlIn(fcmJson: JSONObject): String? {
+        val name = nameIn(fcmJson)?.trim { it <= ' ' } ?: return null
+        return if (name.startsWith("http://") || name.startsWith("https://")) name else null
+    }
+}
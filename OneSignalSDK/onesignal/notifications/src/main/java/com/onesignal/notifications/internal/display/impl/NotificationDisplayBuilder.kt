@@ -21,16 +21,18 @@ import com.onesignal.notifications.internal.common.NotificationGenerationJob
 import com.onesignal.notifications.internal.common.NotificationHelper
 import com.onesignal.notifications.internal.common.NotificationPriorityMapper
 import com.onesignal.notifications.internal.display.INotificationDisplayBuilder
+import com.onesignal.notifications.internal.display.INotificationImageLoader
+import com.onesignal.notifications.internal.display.NotificationImageSlot
 import com.onesignal.notifications.receivers.NotificationDismissReceiver
 import org.json.JSONException
 import org.json.JSONObject
 import java.math.BigInteger
-import java.net.URL
 import java.util.Arrays
 
 internal class NotificationDisplayBuilder(
     private val _applicationService: IApplicationService,
     private val _notificationChannelManager: INotificationChannelManager,
+    private val _imageLoader: INotificationImageLoader,
 ) : INotificationDisplayBuilder {
     private val notificationDismissedClass: Class<*> = NotificationDismissReceiver::class.java
 
@@ -110,12 +112,12 @@ internal class NotificationDisplayBuilder(
             notificationBuilder.setVisibility(lockScreenVisibility)
         } catch (t: Throwable) {
         } // Can throw if an old android support lib is used or parse error
-        val largeIcon = getLargeIcon(fcmJson)
+        val largeIcon = getLargeIcon(notificationJob)
         if (largeIcon != null) {
             oneSignalNotificationBuilder.hasLargeIcon = true
             notificationBuilder.setLargeIcon(largeIcon)
         }
-        val bigPictureIcon = getBitmap(fcmJson.optString("bicon", null))
+        val bigPictureIcon = getBitmap(NotificationImageSlot.BIG_PICTURE, notificationJob)
         if (bigPictureIcon != null) {
             notificationBuilder.setStyle(
                 NotificationCompat.BigPictureStyle().bigPicture(bigPictureIcon).setSummaryText(message),
@@ -205,8 +207,8 @@ internal class NotificationDisplayBuilder(
         } // Ignore if not a Xiaomi device
     }
 
-    private fun getLargeIcon(fcmJson: JSONObject): Bitmap? {
-        var bitmap = getBitmap(fcmJson.optString("licon"))
+    private fun getLargeIcon(notificationJob: NotificationGenerationJob): Bitmap? {
+        var bitmap = getBitmap(NotificationImageSlot.LARGE_ICON, notificationJob)
         if (bitmap == null) {
             bitmap =
                 getBitmapFromAssetsOrResourceName("ic_onesignal_large_icon_default")
@@ -277,22 +279,13 @@ internal class NotificationDisplayBuilder(
         return null
     }
 
-    private fun getBitmapFromURL(location: String): Bitmap? {
-        try {
-            return BitmapFactory.decodeStream(URL(location).openConnection().getInputStream())
-        } catch (t: Throwable) {
-            Logging.warn("Could not download image!", t)
-        }
-        return null
-    }
-
-    private fun getBitmap(name: String?): Bitmap? {
-        if (name == null) return null
-        val trimmedName = name.trim { it <= ' ' }
-        return if (trimmedName.startsWith("http://") || trimmedName.startsWith("https://")) {
-            getBitmapFromURL(
-                trimmedName,
-            )
+    private fun getBitmap(
+        slot: NotificationImageSlot,
+        notificationJob: NotificationGenerationJob,
+    ): Bitmap? {
+        val name = slot.nameIn(notificationJob.jsonPayload) ?: return null
+        return if (slot.urlIn(notificationJob.jsonPayload) != null) {
+            _imageLoader.load(notificationJob, slot)
         } else {
             getBitmapFromAssetsOrResourceName(
                 name,
@@ -25,11 +25,12 @@ import com.onesignal.notifications.internal.common.NotificationGenerationJob
 import com.onesignal.notifications.internal.common.NotificationHelper
 import com.onesignal.notifications.internal.display.INotificationDisplayBuilder
 import com.onesignal.notifications.internal.display.INotificationDisplayer
+import com.onesignal.notifications.internal.display.INotificationImageLoader
+import com.onesignal.notifications.internal.display.NotificationImageSlot
 import com.onesignal.notifications.internal.display.ISummaryNotificationDisplayer
 import com.onesignal.notifications.internal.limiting.INotificationLimitManager
 import org.json.JSONObject
 import java.math.BigInteger
-import java.net.URL
 import java.security.SecureRandom
 import java.util.Arrays
 import java.util.Random
@@ -39,6 +40,7 @@ internal class NotificationDisplayer(
     private val _notificationLimitManager: INotificationLimitManager,
     private val _summaryNotificationDisplayer: ISummaryNotificationDisplayer,
     private val _notificationDisplayBuilder: INotificationDisplayBuilder,
+    private val _imageLoader: INotificationImageLoader,
 ) : INotificationDisplayer {
     private val contextResources: Resources?
         get() = _applicationService.appContext.resources
@@ -102,7 +104,7 @@ internal class NotificationDisplayer(
         )
 
         try {
-            addBackgroundImage(fcmJson, notifBuilder)
+            addBackgroundImage(notificationJob, notifBuilder)
         } catch (t: Throwable) {
             Logging.error("Could not set background notification image!", t)
         }
@@ -227,7 +229,7 @@ internal class NotificationDisplayer(
     //    This maybe the case if a jar is used instead of an aar.
     @Throws(Throwable::class)
     private fun addBackgroundImage(
-        fcmJson: JSONObject,
+        notificationJob: NotificationGenerationJob,
         notifBuilder: NotificationCompat.Builder?,
     ) {
         // Not adding Background Images to API Versions >= 31
@@ -235,12 +237,13 @@ internal class NotificationDisplayer(
             Logging.verbose("Cannot use background images in notifications for device on version: " + Build.VERSION.SDK_INT)
             return
         }
+        val fcmJson = notificationJob.jsonPayload
         var bgImage: Bitmap? = null
         var jsonBgImage: JSONObject? = null
         val jsonStrBgImage = fcmJson.optString("bg_img", null)
         if (jsonStrBgImage != null) {
             jsonBgImage = JSONObject(jsonStrBgImage)
-            bgImage = getBitmap(jsonBgImage.optString("img", null))
+            bgImage = getBitmap(NotificationImageSlot.BACKGROUND, notificationJob)
         }
         if (bgImage == null) {
             bgImage =
@@ -365,22 +368,13 @@ internal class NotificationDisplayer(
         return null
     }
 
-    private fun getBitmapFromURL(location: String): Bitmap? {
-        try {
-            return BitmapFactory.decodeStream(URL(location).openConnection().getInputStream())
-        } catch (t: Throwable) {
-            Logging.warn("Could not download image!", t)
-        }
-        return null
-    }
-
-    private fun getBitmap(name: String?): Bitmap? {
-        if (name == null) return null
-        val trimmedName = name.trim { it <= ' ' }
-        return if (trimmedName.startsWith("http://") || trimmedName.startsWith("https://")) {
-            getBitmapFromURL(
-                trimmedName,
-            )
+    private fun getBitmap(
+        slot: NotificationImageSlot,
+        notificationJob: NotificationGenerationJob,
+    ): Bitmap? {
+        val name = slot.nameIn(notificationJob.jsonPayload) ?: return null
+        return if (slot.urlIn(notificationJob.jsonPayload) != null) {
+            _imageLoader.load(notificationJob, slot)
         } else {
             getBitmapFromAssetsOrResourceName(
                 name,
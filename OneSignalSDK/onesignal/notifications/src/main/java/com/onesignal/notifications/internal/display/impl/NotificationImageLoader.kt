@@ -0,0 +1,293 @@
+package com.onesignal.notifications.internal.display.impl
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.util.LruCache
+import com.onesignal.core.internal.application.IApplicationService
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.notifications.internal.common.NotificationGenerationJob
+import com.onesignal.notifications.internal.display.INotificationImageLoader
+import com.onesignal.notifications.internal.display.NotificationImageSlot
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.net.HttpURLConnection
+import java.net.URL
+import java.security.MessageDigest
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * How often [NotificationImageLoader] found an image in its caches, and what decoding cost.
+ */
+internal data class NotificationImageCacheStats(
+    val memoryHits: Long,
+    val diskHits: Long,
+    val misses: Long,
+    val decodes: Long,
+    val decodeMillis: Long,
+) {
+    val hitRate: Double
+        get() {
+            val total = memoryHits + diskHits + misses
+            return if (total == 0L) 0.0 else (memoryHits + diskHits).toDouble() / total
+        }
+}
+
+/**
+ * Loads notification images through two caches, so an image a campaign reuses is downloaded once:
+ * - Decoded bitmaps in memory, least recently used evicted first once they take up
+ *   [MEMORY_CACHE_MAX_BYTES].
+ * - Downloaded bytes on disk, under the app's cache directory, oldest downloaded evicted first
+ *   once they take up [DISK_CACHE_MAX_BYTES]. An image is downloaded again once it is older than
+ *   [DISK_CACHE_MAX_AGE_MS], the image at a URL may have been changed since.
+ *
+ * Downloads time out and are abandoned past [MAX_IMAGE_BYTES], bytes that do not decode are not
+ * kept. Images are decoded at the largest
+ * power of two fraction of their size that still fills the slot, the bounds are read first so a
+ * large image is never decoded at full size.
+ */
+internal class NotificationImageLoader(
+    private val _applicationService: IApplicationService,
+    private val _time: ITime,
+    private val _openConnection: (String) -> HttpURLConnection = { URL(it).openConnection() as HttpURLConnection },
+) : INotificationImageLoader {
+    private val memoryCache =
+        object : LruCache<String, Bitmap>(MEMORY_CACHE_MAX_BYTES) {
+            override fun sizeOf(
+                key: String,
+                value: Bitmap,
+            ): Int = value.byteCount
+        }
+
+    private val diskCacheDir: File
+        get() = File(File(_applicationService.appContext.cacheDir, "onesignal"), "notification_images")
+
+    private val memoryHits = AtomicLong()
+    private val diskHits = AtomicLong()
+    private val misses = AtomicLong()
+    private val decodes = AtomicLong()
+    private val decodeNanos = AtomicLong()
+
+    val stats: NotificationImageCacheStats
+        get() = NotificationImageCacheStats(memoryHits.get(), diskHits.get(), misses.get(), decodes.get(), decodeNanos.get() / 1_000_000)
+
+    override fun load(
+        url: String,
+        targetWidth: Int,
+        targetHeight: Int,
+    ): Bitmap? {
+        // The same image may be loaded for slots of different sizes, each gets its own decode.
+        val memoryKey = "$url@${targetWidth}x$targetHeight"
+        val cached = memoryCache.get(memoryKey)
+        if (cached != null) {
+            memoryHits.incrementAndGet()
+            logStats("Memory cache hit", url)
+            return cached
+        }
+
+        val bytes = loadFromDisk(url) ?: download(url) ?: return null
+        val bitmap = decode(bytes, targetWidth, targetHeight)
+        if (bitmap == null) {
+            // Not an image, e.g. an error page served with a 200, it is downloaded again next time.
+            deleteFromDisk(url)
+            return null
+        }
+        memoryCache.put(memoryKey, bitmap)
+        return bitmap
+    }
+
+    override fun load(
+        notificationJob: NotificationGenerationJob,
+        slot: NotificationImageSlot,
+    ): Bitmap? {
+        val prefetched = notificationJob.prefetchedImages
+        if (prefetched != null) return prefetched[slot]
+
+        val url = slot.urlIn(notificationJob.jsonPayload) ?: return null
+        val resources = _applicationService.appContext.resources
+        return load(url, slot.widthIn(resources), slot.heightIn(resources))
+    }
+
+    private fun loadFromDisk(url: String): ByteArray? {
+        synchronized(this) {
+            val file = File(diskCacheDir, diskKeyOf(url))
+            if (!file.exists()) return null
+
+            // The last modified time is when the image was downloaded.
+            if (_time.currentTimeMillis - file.lastModified() > DISK_CACHE_MAX_AGE_MS) {
+                file.delete()
+                return null
+            }
+
+            return try {
+                val bytes = file.readBytes()
+                diskHits.incrementAndGet()
+                logStats("Disk cache hit", url)
+                bytes
+            } catch (e: IOException) {
+                Logging.warn("NotificationImageLoader: Could not read cached image", e)
+                file.delete()
+                null
+            }
+        }
+    }
+
+    private fun download(url: String): ByteArray? {
+        misses.incrementAndGet()
+        logStats("Cache miss", url)
+
+        var connection: HttpURLConnection? = null
+        try {
+            connection = _openConnection(url)
+            connection.connectTimeout = CONNECT_TIMEOUT_MS
+            connection.readTimeout = READ_TIMEOUT_MS
+
+            if (connection.contentLength > MAX_IMAGE_BYTES) {
+                Logging.warn("NotificationImageLoader: Image of ${connection.contentLength} bytes is over the $MAX_IMAGE_BYTES byte limit: $url")
+                return null
+            }
+
+            val bytes = connection.inputStream.use { readAtMost(it, MAX_IMAGE_BYTES) }
+            if (bytes == null) {
+                Logging.warn("NotificationImageLoader: Image is over the $MAX_IMAGE_BYTES byte limit: $url")
+                return null
+            }
+
+            saveToDisk(url, bytes)
+            return bytes
+        } catch (t: Throwable) {
+            Logging.warn("Could not download image!", t)
+            return null
+        } finally {
+            connection?.disconnect()
+        }
+    }
+
+    private fun saveToDisk(
+        url: String,
+        bytes: ByteArray,
+    ) {
+        synchronized(this) {
+            try {
+                val dir = diskCacheDir
+                dir.mkdirs()
+                // Written aside and renamed, a reader never sees a partial image.
+                val temp = File(dir, diskKeyOf(url) + ".tmp")
+                temp.writeBytes(bytes)
+                temp.renameTo(File(dir, diskKeyOf(url)))
+                trimDiskCache(dir, DISK_CACHE_MAX_BYTES)
+            } catch (e: IOException) {
+                Logging.warn("NotificationImageLoader: Could not cache image", e)
+            }
+        }
+    }
+
+    private fun deleteFromDisk(url: String) {
+        synchronized(this) {
+            File(diskCacheDir, diskKeyOf(url)).delete()
+        }
+    }
+
+    private fun decode(
+        bytes: ByteArray,
+        targetWidth: Int,
+        targetHeight: Int,
+    ): Bitmap? {
+        val start = System.nanoTime()
+
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.size, bounds)
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            Logging.warn("NotificationImageLoader: Could not decode image bounds")
+            return null
+        }
+
+        val options =
+            BitmapFactory.Options().apply {
+                inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, targetWidth, targetHeight)
+            }
+        val bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.size, options)
+
+        val durationNanos = System.nanoTime() - start
+        decodes.incrementAndGet()
+        decodeNanos.addAndGet(durationNanos)
+        Logging.debug(
+            "NotificationImageLoader: Decoded ${bounds.outWidth}x${bounds.outHeight} image at 1/${options.inSampleSize} " +
+                "for a ${targetWidth}x$targetHeight slot in ${durationNanos / 1_000_000}ms",
+        )
+        return bitmap
+    }
+
+    private fun logStats(
+        event: String,
+        url: String,
+    ) {
+        Logging.verbose("NotificationImageLoader: $event for $url, hit rate ${(stats.hitRate * 100).toInt()}%")
+    }
+
+    companion object {
+        private const val MEMORY_CACHE_MAX_BYTES = 4 * 1024 * 1024
+        private const val DISK_CACHE_MAX_BYTES = 10L * 1024 * 1024
+        private const val DISK_CACHE_MAX_AGE_MS = 7 * 24 * 60 * 60 * 1_000L
+        const val MAX_IMAGE_BYTES = 5 * 1024 * 1024
+        private const val CONNECT_TIMEOUT_MS = 10_000
+        private const val READ_TIMEOUT_MS = 15_000
+
+        /**
+         * The largest power of two an image of [width] by [height] can be divided by while
+         * still covering [targetWidth] by [targetHeight].
+         */
+        fun calculateInSampleSize(
+            width: Int,
+            height: Int,
+            targetWidth: Int,
+            targetHeight: Int,
+        ): Int {
+            if (targetWidth <= 0 || targetHeight <= 0) return 1
+
+            var sampleSize = 1
+            while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+                sampleSize *= 2
+            }
+            return sampleSize
+        }
+
+        /**
+         * Delete the oldest files in [dir] until they take up at most [maxBytes].
+         */
+        fun trimDiskCache(
+            dir: File,
+            maxBytes: Long,
+        ) {
+            val files = dir.listFiles() ?: return
+            var total = files.sumOf { it.length() }
+            for (file in files.sortedBy { it.lastModified() }) {
+                if (total <= maxBytes) return
+                total -= file.length()
+                file.delete()
+            }
+        }
+
+        private fun diskKeyOf(url: String): String =
+            MessageDigest.getInstance("SHA-1").digest(url.toByteArray()).joinToString("") { "%02x".format(it) }
+
+        /**
+         * Read all of [input], or null if it holds more than [maxBytes].
+         */
+        private fun readAtMost(
+            input: InputStream,
+            maxBytes: Int,
+        ): ByteArray? {
+            val output = ByteArrayOutputStream()
+            val buffer = ByteArray(8 * 1024)
+            while (true) {
+                val read = input.read(buffer)
+                if (read == -1) return output.toByteArray()
+                if (output.size() + read > maxBytes) return null
+                output.write(buffer, 0, read)
+            }
+        }
+    }
+}
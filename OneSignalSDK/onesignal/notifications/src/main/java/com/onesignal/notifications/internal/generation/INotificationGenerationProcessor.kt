@@ -11,4 +11,17 @@ internal interface INotificationGenerationProcessor {
         isRestoring: Boolean,
         timestamp: Long,
     )
+
+    /**
+     * Process a received notification that was replaced by a later one with the same collapse
+     * key before it could be displayed. The app's service extension is called as for any
+     * notification received, the notification is then saved and reported as received, like one
+     * the app chose not to display, without calling the foreground handlers or displaying it.
+     */
+    suspend fun processReplacedNotificationData(
+        context: Context,
+        androidNotificationId: Int,
+        jsonPayload: JSONObject,
+        timestamp: Long,
+    )
 }
@@ -1,6 +1,7 @@
 package com.onesignal.notifications.internal.generation.impl
 
 import android.content.Context
+import android.graphics.Bitmap
 import com.onesignal.common.AndroidUtils
 import com.onesignal.common.safeString
 import com.onesignal.common.threading.launchOnIO
@@ -15,14 +16,21 @@ import com.onesignal.notifications.internal.common.NotificationConstants
 import com.onesignal.notifications.internal.common.NotificationGenerationJob
 import com.onesignal.notifications.internal.data.INotificationRepository
 import com.onesignal.notifications.internal.display.INotificationDisplayer
+import com.onesignal.notifications.internal.display.INotificationImageLoader
+import com.onesignal.notifications.internal.display.NotificationImageSlot
 import com.onesignal.notifications.internal.generation.INotificationGenerationProcessor
 import com.onesignal.notifications.internal.lifecycle.INotificationLifecycleService
 import com.onesignal.notifications.internal.summary.INotificationSummaryManager
+import com.onesignal.notifications.internal.tracing.INotificationPipelineTracer
+import com.onesignal.notifications.internal.tracing.NotificationPipelineStage
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.TimeoutCancellationException
-import kotlinx.coroutines.delay
+import kotlinx.coroutines.joinAll
 import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
 import org.json.JSONException
 import org.json.JSONObject
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * The [NotificationGenerationProcessor] is responsible for driving the displaying of a notification
@@ -36,10 +44,15 @@ internal class NotificationGenerationProcessor(
     private val _notificationSummaryManager: INotificationSummaryManager,
     private val _lifecycleService: INotificationLifecycleService,
     private val _time: ITime,
+    private val _imageLoader: INotificationImageLoader,
+    private val _tracer: INotificationPipelineTracer,
 ) : INotificationGenerationProcessor {
 
     private val EXTERNAL_CALLBACKS_TIMEOUT get() = 30_000L
 
+    // Shared by all of a notification's images, counted from when their downloads start.
+    private val IMAGE_PREFETCH_TIMEOUT get() = 10_000L
+
     override suspend fun processNotificationData(
         context: Context,
         androidNotificationId: Int,
@@ -47,12 +60,15 @@ internal class NotificationGenerationProcessor(
         isRestoring: Boolean,
         timestamp: Long,
     ) {
+        val startedAt = _tracer.now
         if (!_lifecycleService.canReceiveNotification(jsonPayload)) {
             // Return early, we don't want the extender service or etc. to fire for IAM previews
             return
         }
 
         val notification = Notification(null, jsonPayload, androidNotificationId, _time)
+        val notificationId = notification.notificationId ?: ""
+        _tracer.mark(notificationId, NotificationPipelineStage.PROCESSING_STARTED, startedAt)
 
         // When restoring it will always be seen as a duplicate, because we are restoring...
         if (!isRestoring && isDuplicateNotification(notification)) {
@@ -64,37 +80,16 @@ internal class NotificationGenerationProcessor(
         notificationJob.isRestoring = isRestoring
 
         var didDisplay = false
-        var wantsToDisplay = true
-
-        Logging.info("Fire remoteNotificationReceived")
-
-        try {
-            val notificationReceivedEvent = NotificationReceivedEvent(context, notification)
-            withTimeout(EXTERNAL_CALLBACKS_TIMEOUT) {
-                launchOnIO {
-                    _lifecycleService.externalRemoteNotificationReceived(notificationReceivedEvent)
-
-                    if (notificationReceivedEvent.discard) {
-                        wantsToDisplay = false
-                    } else if (notificationReceivedEvent.isPreventDefault) {
-                        wantsToDisplay = false
-                        // wait on display waiter. If the caller calls `display` or `preventDefault(true)` on the notification,
-                        // we will exit `waitForWake` and set `wantsToDisplay` to true or false respectively. If the callback
-                        // never calls `display` or `preventDefault(true)`, we will timeout and never update `wantsToDisplay`.
-                        wantsToDisplay = notification.displayWaiter.waitForWake()
-                    }
-                }.join()
-            }
-        } catch (to: TimeoutCancellationException) {
-            Logging.info("remoteNotificationReceived timed out, continuing with wantsToDisplay=$wantsToDisplay.", to)
-        } catch (t: Throwable) {
-            Logging.info("remoteNotificationReceived threw an exception. Displaying normal OneSignal notification.", t)
-        }
+        var wantsToDisplay = fireRemoteNotificationReceived(context, notification)
+        _tracer.mark(notificationId, NotificationPipelineStage.EXTENSION_DONE)
 
         var shouldDisplay =
             processHandlerResponse(notificationJob, wantsToDisplay, isRestoring)
                 ?: return
 
+        // Downloads while the foreground handler runs, see awaitImagePrefetch.
+        val imagePrefetch = if (shouldDisplay) startImagePrefetch(notificationJob) else null
+
         if (shouldDisplay) {
             if (shouldFireForegroundHandlers(notificationJob)) {
                 Logging.info("Fire notificationWillShowInForegroundHandler")
@@ -126,15 +121,23 @@ internal class NotificationGenerationProcessor(
                         t,
                     )
                 }
+                _tracer.mark(notificationId, NotificationPipelineStage.FOREGROUND_HANDLERS_DONE)
 
                 shouldDisplay = processHandlerResponse(notificationJob, wantsToDisplay, isRestoring)
                     ?: return
             }
 
             if (shouldDisplay) {
+                if (imagePrefetch != null) {
+                    awaitImagePrefetch(notificationJob, imagePrefetch)
+                }
+
                 // display the notification
                 // Notification might end not displaying because the channel for that notification has notification disable
                 didDisplay = _notificationDisplayer.displayNotification(notificationJob)
+                if (didDisplay) {
+                    _tracer.mark(notificationId, NotificationPipelineStage.DISPLAYED)
+                }
             }
         }
 
@@ -142,14 +145,123 @@ internal class NotificationGenerationProcessor(
         if (!notificationJob.isRestoring) {
             postProcessNotification(notificationJob, false, didDisplay)
         }
+    }
 
-        // Delay to prevent CPU spikes
-        // Normally more than one notification is restored at a time
-        if (isRestoring) {
-            delay(100)
+    override suspend fun processReplacedNotificationData(
+        context: Context,
+        androidNotificationId: Int,
+        jsonPayload: JSONObject,
+        timestamp: Long,
+    ) {
+        if (!_lifecycleService.canReceiveNotification(jsonPayload)) return
+
+        val notification = Notification(null, jsonPayload, androidNotificationId, _time)
+        if (isDuplicateNotification(notification)) return
+
+        // The app's service extension sees every notification received, whatever it decides is not
+        // displayed either way.
+        fireRemoteNotificationReceived(context, notification)
+
+        val notificationJob = NotificationGenerationJob(notification, jsonPayload)
+        notificationJob.shownTimeStamp = timestamp
+        // Saved as processed, the same as a notification the handlers did not display, so a
+        // redelivery of it is detected as a duplicate rather than displayed over its replacement.
+        notificationJob.isNotificationToDisplay = false
+        postProcessNotification(notificationJob, true, false)
+    }
+
+    /**
+     * Call the app's service extension, see [INotificationLifecycleService.externalRemoteNotificationReceived].
+     *
+     * @return Whether the extension wants the notification displayed.
+     */
+    private suspend fun fireRemoteNotificationReceived(
+        context: Context,
+        notification: Notification,
+    ): Boolean {
+        var wantsToDisplay = true
+
+        Logging.info("Fire remoteNotificationReceived")
+
+        try {
+            val notificationReceivedEvent = NotificationReceivedEvent(context, notification)
+            withTimeout(EXTERNAL_CALLBACKS_TIMEOUT) {
+                launchOnIO {
+                    _lifecycleService.externalRemoteNotificationReceived(notificationReceivedEvent)
+
+                    if (notificationReceivedEvent.discard) {
+                        wantsToDisplay = false
+                    } else if (notificationReceivedEvent.isPreventDefault) {
+                        wantsToDisplay = false
+                        // wait on display waiter. If the caller calls `display` or `preventDefault(true)` on the notification,
+                        // we will exit `waitForWake` and set `wantsToDisplay` to true or false respectively. If the callback
+                        // never calls `display` or `preventDefault(true)`, we will timeout and never update `wantsToDisplay`.
+                        wantsToDisplay = notification.displayWaiter.waitForWake()
+                    }
+                }.join()
+            }
+        } catch (to: TimeoutCancellationException) {
+            Logging.info("remoteNotificationReceived timed out, continuing with wantsToDisplay=$wantsToDisplay.", to)
+        } catch (t: Throwable) {
+            Logging.info("remoteNotificationReceived threw an exception. Displaying normal OneSignal notification.", t)
         }
+
+        return wantsToDisplay
     }
 
+    /**
+     * Start loading every remote image of the notification at once, rather than one after the
+     * other while it is being built for display.
+     *
+     * @return The prefetch to await before display, or null if the notification has no remote images.
+     */
+    private fun startImagePrefetch(notificationJob: NotificationGenerationJob): ImagePrefetch? {
+        val urls = NotificationImageSlot.values().mapNotNull { slot -> slot.urlIn(notificationJob.jsonPayload)?.let { slot to it } }
+        if (urls.isEmpty()) return null
+
+        val resources = _applicationService.appContext.resources
+        val loaded = ConcurrentHashMap<NotificationImageSlot, Bitmap>()
+        val jobs =
+            urls.map { (slot, url) ->
+                val width = slot.widthIn(resources)
+                val height = slot.heightIn(resources)
+                launchOnIO {
+                    val bitmap = _imageLoader.load(url, width, height)
+                    if (bitmap != null) loaded[slot] = bitmap
+                }
+            }
+
+        return ImagePrefetch(jobs, loaded, _time.currentTimeMillis + IMAGE_PREFETCH_TIMEOUT)
+    }
+
+    /**
+     * Wait until every image of [prefetch] is loaded or its deadline passes, whichever is first,
+     * and hand the loaded ones to the display through the job. An image still loading at the
+     * deadline is left out of the notification, it is not waited on any longer.
+     */
+    private suspend fun awaitImagePrefetch(
+        notificationJob: NotificationGenerationJob,
+        prefetch: ImagePrefetch,
+    ) {
+        val remaining = prefetch.deadline - _time.currentTimeMillis
+        if (remaining > 0) {
+            // Only the wait is cut short, a download past the deadline still finishes into the
+            // image caches.
+            withTimeoutOrNull(remaining) { prefetch.jobs.joinAll() }
+        }
+
+        if (prefetch.jobs.any { !it.isCompleted }) {
+            Logging.info("Notification images not loaded within ${IMAGE_PREFETCH_TIMEOUT}ms, displaying without them")
+        }
+        notificationJob.prefetchedImages = HashMap(prefetch.loaded)
+    }
+
+    private class ImagePrefetch(
+        val jobs: List<Job>,
+        val loaded: Map<NotificationImageSlot, Bitmap>,
+        val deadline: Long,
+    )
+
     /**
      * Process the response to the external handler (either the foreground handler or the service extension).
      *
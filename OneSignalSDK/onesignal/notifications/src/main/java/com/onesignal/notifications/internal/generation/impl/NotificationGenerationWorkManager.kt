@@ -1,23 +1,29 @@
 package com.onesignal.notifications.internal.generation.impl
 
 import android.content.Context
+import android.os.SystemClock
 import androidx.work.CoroutineWorker
 import androidx.work.Data
 import androidx.work.ExistingWorkPolicy
 import androidx.work.OneTimeWorkRequest
 import androidx.work.WorkerParameters
 import com.onesignal.OneSignal
-import com.onesignal.common.AndroidUtils
 import com.onesignal.debug.internal.logging.Logging
 import com.onesignal.notifications.internal.common.NotificationFormatHelper
 import com.onesignal.notifications.internal.common.OSWorkManagerHelper
+import com.onesignal.notifications.internal.data.IRecentNotificationIdIndex
 import com.onesignal.notifications.internal.generation.INotificationGenerationProcessor
 import com.onesignal.notifications.internal.generation.INotificationGenerationWorkManager
+import com.onesignal.notifications.internal.tracing.INotificationPipelineTracer
+import com.onesignal.notifications.internal.tracing.NotificationPipelineStage
 import org.json.JSONException
 import org.json.JSONObject
-import java.util.concurrent.ConcurrentHashMap
 
-internal class NotificationGenerationWorkManager : INotificationGenerationWorkManager {
+internal class NotificationGenerationWorkManager(
+    private val _recentNotificationIds: IRecentNotificationIdIndex,
+    private val _tracer: INotificationPipelineTracer,
+    private val _ingestionQueue: NotificationIngestionQueue,
+) : INotificationGenerationWorkManager {
     override fun beginEnqueueingWork(
         context: Context,
         osNotificationId: String,
@@ -34,11 +40,14 @@ internal class NotificationGenerationWorkManager : INotificationGenerationWorkMa
             return false
         }
 
-        if (!addNotificationIdProcessed(id)) {
+        if (!_recentNotificationIds.beginProcessing(id)) {
             Logging.debug("Notification beginEnqueueingWork with id duplicated")
             return true
         }
 
+        // Takes its place in the order received now, its worker may start after a later one's.
+        _ingestionQueue.reserve(id, NotificationIngestionQueue.collapseKeyOf(jsonPayload, isRestoring))
+
         // TODO: Need to figure out how to implement the isHighPriority param
         val inputData =
             Data.Builder()
@@ -47,6 +56,7 @@ internal class NotificationGenerationWorkManager : INotificationGenerationWorkMa
                 .putString(JSON_PAYLOAD_WORKER_DATA_PARAM, jsonPayload.toString())
                 .putLong(TIMESTAMP_WORKER_DATA_PARAM, timestamp)
                 .putBoolean(IS_RESTORING_WORKER_DATA_PARAM, isRestoring)
+                .putLong(RECEIVED_AT_WORKER_DATA_PARAM, _tracer.receivedAt(id) ?: _tracer.now)
                 .build()
         val workRequest =
             OneTimeWorkRequest.Builder(NotificationGenerationWorker::class.java)
@@ -57,26 +67,40 @@ internal class NotificationGenerationWorkManager : INotificationGenerationWorkMa
         )
         OSWorkManagerHelper.getInstance(context)
             .enqueueUniqueWork(osNotificationId, ExistingWorkPolicy.KEEP, workRequest)
+        _tracer.mark(id, NotificationPipelineStage.ENQUEUED)
 
         return true
     }
 
     class NotificationGenerationWorker(context: Context, workerParams: WorkerParameters) : CoroutineWorker(context, workerParams) {
         override suspend fun doWork(): Result {
+            // Taken before initializing, which is part of the time to display in a new process.
+            val startedAt = SystemClock.elapsedRealtime()
             if (!OneSignal.initWithContext(applicationContext)) {
                 Logging.warn("NotificationWorker skipped due to failed OneSignal initialization")
                 return Result.success()
             }
 
             val notificationProcessor: INotificationGenerationProcessor = OneSignal.getService()
+            val recentNotificationIds: IRecentNotificationIdIndex = OneSignal.getService()
+            val tracer: INotificationPipelineTracer = OneSignal.getService()
+            val ingestionQueue: NotificationIngestionQueue = OneSignal.getService()
             val inputData = inputData
             val id = inputData.getString(OS_ID_DATA_PARAM) ?: return Result.failure()
 
+            // The trace was lost if the process was restarted since receiving, it restarts from the receive time.
+            tracer.begin(id, inputData.getLong(RECEIVED_AT_WORKER_DATA_PARAM, startedAt))
+            tracer.mark(id, NotificationPipelineStage.WORKER_STARTED, startedAt)
+
             return try {
                 Logging.debug("NotificationWorker running doWork with data: $inputData")
 
                 val androidNotificationId = inputData.getInt(ANDROID_NOTIF_ID_WORKER_DATA_PARAM, 0)
+                // The payload is parsed again from the input data, which keeps it if the process is
+                // restarted before the worker runs. The cost of doing so is logged per push.
+                val parseStartedAt = SystemClock.elapsedRealtime()
                 val jsonPayload = JSONObject(inputData.getString(JSON_PAYLOAD_WORKER_DATA_PARAM))
+                Logging.debug("NotificationWorker parsed payload of $id in ${SystemClock.elapsedRealtime() - parseStartedAt}ms")
                 val timestamp =
                     inputData.getLong(
                         TIMESTAMP_WORKER_DATA_PARAM,
@@ -84,19 +108,27 @@ internal class NotificationGenerationWorkManager : INotificationGenerationWorkMa
                     )
                 val isRestoring = inputData.getBoolean(IS_RESTORING_WORKER_DATA_PARAM, false)
 
-                notificationProcessor.processNotificationData(
-                    applicationContext,
-                    androidNotificationId,
-                    jsonPayload,
-                    isRestoring,
-                    timestamp,
-                )
+                val processed =
+                    ingestionQueue.process(id, NotificationIngestionQueue.collapseKeyOf(jsonPayload, isRestoring)) {
+                        notificationProcessor.processNotificationData(
+                            applicationContext,
+                            androidNotificationId,
+                            jsonPayload,
+                            isRestoring,
+                            timestamp,
+                        )
+                    }
+                if (!processed) {
+                    Logging.debug("NotificationWorker not displaying $id, a later notification with the same collapse key replaces it")
+                    notificationProcessor.processReplacedNotificationData(applicationContext, androidNotificationId, jsonPayload, timestamp)
+                }
                 Result.success()
             } catch (e: JSONException) {
                 Logging.error("Error occurred doing work for job with id: $id", e)
                 Result.failure()
             } finally {
-                removeNotificationIdProcessed(id!!)
+                recentNotificationIds.endProcessing(id)
+                tracer.finish(id)
             }
         }
     }
@@ -107,28 +139,6 @@ internal class NotificationGenerationWorkManager : INotificationGenerationWorkMa
         private const val JSON_PAYLOAD_WORKER_DATA_PARAM = "json_payload"
         private const val TIMESTAMP_WORKER_DATA_PARAM = "timestamp"
         private const val IS_RESTORING_WORKER_DATA_PARAM = "is_restoring"
-
-        private val notificationIds = ConcurrentHashMap<String, Boolean>()
-
-        fun addNotificationIdProcessed(osNotificationId: String): Boolean {
-            // Duplicate control
-            // Keep in memory on going processed notifications, to avoid fast duplicates that already finished work process but are not completed yet
-            // enqueueUniqueWork might not be enough, if the work already finished then the duplicate notification work might be queued again
-            if (AndroidUtils.isStringNotEmpty(osNotificationId)) {
-                if (notificationIds.contains(osNotificationId)) {
-                    Logging.debug("OSNotificationWorkManager notification with notificationId: $osNotificationId already queued")
-                    return false
-                } else {
-                    notificationIds[osNotificationId] = true
-                }
-            }
-            return true
-        }
-
-        fun removeNotificationIdProcessed(osNotificationId: String) {
-            if (AndroidUtils.isStringNotEmpty(osNotificationId)) {
-                notificationIds.remove(osNotificationId)
-            }
-        }
+        private const val RECEIVED_AT_WORKER_DATA_PARAM = "received_at"
     }
 }
@@ -0,0 +1,268 @@
+package com.onesignal.notifications.internal.generation.impl
+
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.notifications.internal.common.NotificationPostPacer
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.withTimeoutOrNull
+import org.json.JSONObject
+
+/**
+ * Lets the generation workers of pushed notifications run their pipeline one at a time, in the
+ * order the notifications were received, rather than all at once competing for the database
+ * and the IO threads during a burst.
+ *
+ * A notification takes its place in the queue when it is received, see [reserve], and its
+ * worker waits for its turn in [process]. The worker stays the durable record of the
+ * notification, if the process is killed it is run again and takes a new place in the queue.
+ * A worker that starts before the one of a notification received earlier waits for it, for up
+ * to [HEAD_START_WAIT_MS] after that notification was received, so one whose worker is slow to
+ * start, or never does, holds up the ones behind it only that long.
+ *
+ * A turn lasts until the pipeline finishes or [MAX_TURN_MS] has passed, whichever is first, so
+ * a pipeline waiting on the app's handlers or on its images does not hold up every notification
+ * behind it. The pipeline itself keeps running past the end of its turn.
+ *
+ * The queue holds up to [MAX_QUEUE_DEPTH] notifications, a worker of a notification that did
+ * not fit waits for room. A notification replaced by a later one with the same collapse key
+ * before its turn is not displayed, as it would only be displayed to be replaced right after,
+ * its worker still saves it and reports it received, see [process]. The pipelines are paced by
+ * the [NotificationPostPacer] restored notifications are paced by as well.
+ */
+internal class NotificationIngestionQueue(
+    private val _time: ITime,
+    private val _pacer: NotificationPostPacer,
+) {
+    private class Entry(
+        val notificationId: String,
+        val collapseKey: String?,
+        val reservedAt: Long,
+    ) {
+        var isReady = false
+        var isReplaced = false
+
+        // Completed with true when it is this notification's turn, with false when it was replaced.
+        val turn = CompletableDeferred<Boolean>()
+    }
+
+    // In the order received, each holds one of the permits.
+    private val entries = mutableListOf<Entry>()
+    private val permits = Semaphore(MAX_QUEUE_DEPTH)
+    private var running: Entry? = null
+
+    // Counted from when the queue was last empty, logged once it is empty again.
+    private var burstProcessed = 0
+    private var burstReplaced = 0
+    private var burstMaxDepth = 0
+    private var burstPacedMillis = 0L
+    private var burstOvertime = 0
+
+    /**
+     * The number of notifications in the queue, including the one being processed.
+     */
+    @get:Synchronized
+    val depth: Int
+        get() = entries.size
+
+    /**
+     * Give a notification that was just received its place in the queue.
+     *
+     * @param notificationId The OneSignal id of the notification.
+     * @param collapseKey The collapse key of the notification, see [collapseKeyOf].
+     *
+     * @return false if the queue is full, the notification then takes its place once its worker runs.
+     */
+    fun reserve(
+        notificationId: String,
+        collapseKey: String?,
+    ): Boolean {
+        synchronized(this) {
+            if (entries.any { it.notificationId == notificationId }) return true
+            removeStaleReservations()
+        }
+
+        if (!permits.tryAcquire()) {
+            Logging.warn("NotificationIngestionQueue: queue is full with $MAX_QUEUE_DEPTH notifications, $notificationId waits for room")
+            return false
+        }
+        synchronized(this) { add(Entry(notificationId, collapseKey, _time.currentTimeMillis)) }
+        return true
+    }
+
+    /**
+     * Wait for the turn of a notification, then run its pipeline.
+     *
+     * @param notificationId The OneSignal id of the notification.
+     * @param collapseKey The collapse key of the notification, see [collapseKeyOf].
+     * @param pipeline Processes the notification.
+     *
+     * @return false if the notification was replaced by a later one and [pipeline] was not run,
+     * the caller is then to save it without displaying it.
+     */
+    suspend fun process(
+        notificationId: String,
+        collapseKey: String?,
+        pipeline: suspend () -> Unit,
+    ): Boolean {
+        val entry =
+            synchronized(this) { entries.firstOrNull { it.notificationId == notificationId } }
+                ?: addWhenRoom(notificationId, collapseKey)
+
+        try {
+            synchronized(this) {
+                entry.isReady = true
+                dispatch()
+            }
+            if (!awaitTurn(entry)) {
+                return false
+            }
+
+            val pacingStartedAt = _time.currentTimeMillis
+            _pacer.take()
+            synchronized(this) { burstPacedMillis += _time.currentTimeMillis - pacingStartedAt }
+
+            coroutineScope {
+                val turnLimit =
+                    launch {
+                        delay(MAX_TURN_MS)
+                        synchronized(this@NotificationIngestionQueue) {
+                            Logging.debug("NotificationIngestionQueue: $notificationId still processing after ${MAX_TURN_MS}ms, starting the next notification")
+                            burstOvertime++
+                            release(entry)
+                        }
+                    }
+                try {
+                    pipeline()
+                } finally {
+                    turnLimit.cancel()
+                }
+            }
+            return true
+        } finally {
+            synchronized(this) { release(entry) }
+        }
+    }
+
+    // An earlier notification whose worker has not started holds up the turn of this one until it
+    // has waited HEAD_START_WAIT_MS, nothing else dispatches once it has, so this one checks again.
+    private suspend fun awaitTurn(entry: Entry): Boolean {
+        while (true) {
+            val turn = withTimeoutOrNull(HEAD_START_WAIT_MS) { entry.turn.await() }
+            if (turn != null) return turn
+            synchronized(this) { dispatch() }
+        }
+    }
+
+    // Ends the turn of, or gives up the place of, a notification, and starts the next one.
+    private fun release(entry: Entry) {
+        if (entries.remove(entry)) permits.release()
+        if (running === entry) running = null
+        dispatch()
+    }
+
+    // A notification whose worker runs without a reservation, e.g. after the process was restarted.
+    // Reservations go stale while it waits, without a push arriving to remove them, so it does so
+    // itself every ROOM_RECHECK_INTERVAL_MS.
+    private suspend fun addWhenRoom(
+        notificationId: String,
+        collapseKey: String?,
+    ): Entry {
+        while (true) {
+            synchronized(this) { removeStaleReservations() }
+            if (withTimeoutOrNull(ROOM_RECHECK_INTERVAL_MS) { permits.acquire() } != null) break
+        }
+        val entry = Entry(notificationId, collapseKey, _time.currentTimeMillis)
+        synchronized(this) { add(entry) }
+        return entry
+    }
+
+    private fun add(entry: Entry) {
+        if (entry.collapseKey != null) {
+            for (earlier in entries) {
+                if (earlier.collapseKey == entry.collapseKey && earlier !== running) earlier.isReplaced = true
+            }
+        }
+        entries.add(entry)
+        burstMaxDepth = maxOf(burstMaxDepth, entries.size)
+    }
+
+    // Starts the first notification received, unless one is being processed. Those before it whose
+    // worker has not started are skipped once they have been waited on for HEAD_START_WAIT_MS.
+    private fun dispatch() {
+        if (running != null) return
+
+        val now = _time.currentTimeMillis
+        val iterator = entries.iterator()
+        while (iterator.hasNext()) {
+            val next = iterator.next()
+            if (!next.isReady) {
+                if (now - next.reservedAt < HEAD_START_WAIT_MS) return
+                continue
+            }
+
+            if (next.isReplaced) {
+                iterator.remove()
+                permits.release()
+                burstReplaced++
+                next.turn.complete(false)
+                continue
+            }
+
+            running = next
+            burstProcessed++
+            next.turn.complete(true)
+            return
+        }
+
+        if (entries.isEmpty() && burstProcessed + burstReplaced > 0) {
+            Logging.debug(
+                "NotificationIngestionQueue: drained after $burstProcessed notifications, $burstReplaced replaced by a later one, " +
+                    "$burstOvertime past their turn, max depth $burstMaxDepth, paced for ${burstPacedMillis}ms",
+            )
+            burstProcessed = 0
+            burstReplaced = 0
+            burstOvertime = 0
+            burstMaxDepth = 0
+            burstPacedMillis = 0L
+        }
+    }
+
+    // A reservation whose worker did not start in this process, e.g. because it was killed or its
+    // work was not enqueued, gives up its place. Should the worker start later, it joins at the back.
+    private fun removeStaleReservations() {
+        val now = _time.currentTimeMillis
+        val stale = entries.filter { !it.isReady && now - it.reservedAt > STALE_RESERVATION_MS }
+        for (entry in stale) {
+            entries.remove(entry)
+            permits.release()
+        }
+    }
+
+    companion object {
+        const val MAX_QUEUE_DEPTH = 100
+        private const val STALE_RESERVATION_MS = 2 * 60 * 1_000L
+        private const val ROOM_RECHECK_INTERVAL_MS = 5_000L
+
+        // Workers usually start within a few hundred milliseconds of their notification being received.
+        const val HEAD_START_WAIT_MS = 2_000L
+
+        // Longer than a notification takes without handlers or images to wait on.
+        const val MAX_TURN_MS = 5_000L
+
+        /**
+         * The collapse key of a notification payload, or null if it has none or is being restored.
+         */
+        fun collapseKeyOf(
+            jsonPayload: JSONObject?,
+            isRestoring: Boolean,
+        ): String? {
+            if (isRestoring || jsonPayload == null || !jsonPayload.has("collapse_key")) return null
+            val collapseKey = jsonPayload.optString("collapse_key")
+            return if (collapseKey == "do_not_collapse") null else collapseKey
+        }
+    }
+}
@@ -18,4 +18,13 @@ internal interface IReceiveReceiptProcessor {
         subscriptionId: String,
         notificationId: String,
     )
+
+    /**
+     * Send the queued receive receipts to the backend on the current thread, batching those of
+     * the same app and subscription into one request. Receipts are removed from the queue once
+     * sent, or once the backend has rejected them for good.
+     *
+     * @return true if the queue was emptied, false if sending should be retried later.
+     */
+    suspend fun sendQueuedReceiveReceipts(): Boolean
 }
@@ -7,9 +7,16 @@ package com.onesignal.notifications.internal.receivereceipt
  */
 internal interface IReceiveReceiptWorkManager {
     /**
-     * Enqueue a worker which will send receipt of receiving a notification.
+     * Queue the receipt of receiving a notification, and enqueue the worker which will send it.
+     * Receipts queued within a few seconds of each other are sent together by a single worker.
      *
      * @param notificationId The id of the notification that has been received.
      */
     fun enqueueReceiveReceipt(notificationId: String)
+
+    /**
+     * Called by the worker when it starts, before it looks at the queue. A receipt queued from
+     * then on enqueues another worker, to run after this one.
+     */
+    fun onWorkerStarted()
 }
@@ -1,7 +1,12 @@
 package com.onesignal.notifications.internal.receivereceipt.impl
 
+import com.onesignal.common.NetworkUtils
 import com.onesignal.common.exceptions.BackendException
 import com.onesignal.core.internal.device.IDeviceService
+import com.onesignal.core.internal.preferences.IPreferencesService
+import com.onesignal.core.internal.preferences.PreferenceOneSignalKeys
+import com.onesignal.core.internal.preferences.PreferenceStores
+import com.onesignal.core.internal.time.ITime
 import com.onesignal.debug.internal.logging.Logging
 import com.onesignal.notifications.internal.backend.INotificationBackendService
 import com.onesignal.notifications.internal.receivereceipt.IReceiveReceiptProcessor
@@ -9,7 +14,19 @@ import com.onesignal.notifications.internal.receivereceipt.IReceiveReceiptProces
 internal class ReceiveReceiptProcessor(
     private val _deviceService: IDeviceService,
     private val _backend: INotificationBackendService,
+    private val _queue: ReceiveReceiptQueue,
+    private val _preferences: IPreferencesService,
+    private val _time: ITime,
 ) : IReceiveReceiptProcessor {
+    // Once the backend has turned down a batch, receipts are sent one at a time for BATCHES_RETRY_AFTER_MS,
+    // across process restarts, rather than every worker first trying a batch again.
+    private val batchesUnsupported: Boolean
+        get() {
+            val unsupportedAt =
+                _preferences.getLong(PreferenceStores.ONESIGNAL, PreferenceOneSignalKeys.PREFS_OS_RECEIVE_RECEIPT_BATCHES_UNSUPPORTED_AT, 0L) ?: 0L
+            return unsupportedAt > 0L && _time.currentTimeMillis - unsupportedAt in 0 until BATCHES_RETRY_AFTER_MS
+        }
+
     override suspend fun sendReceiveReceipt(
         appId: String,
         subscriptionId: String,
@@ -23,4 +40,90 @@ internal class ReceiveReceiptProcessor(
             Logging.info("Receive receipt failed with statusCode: ${ex.statusCode} response: ${ex.response}")
         }
     }
+
+    override suspend fun sendQueuedReceiveReceipts(): Boolean {
+        val deviceType = _deviceService.deviceType
+
+        while (true) {
+            val receipts = _queue.peek(MAX_BATCH_SIZE)
+            if (receipts.isEmpty()) return true
+
+            // A batch is for one app and subscription, normally every queued receipt shares them.
+            val first = receipts.first()
+            val batch = receipts.filter { it.appId == first.appId && it.subscriptionId == first.subscriptionId }
+
+            val done =
+                (if (batch.size > 1 && !batchesUnsupported) sendBatch(batch, deviceType) else null)
+                    ?: sendEach(batch, deviceType)
+            _queue.remove(done)
+
+            if (done.size < batch.size) {
+                Logging.debug("ReceiveReceiptProcessor: ${_queue.size} receive receipts left to retry")
+                return false
+            }
+        }
+    }
+
+    /**
+     * Send [batch] in one request.
+     *
+     * @return The receipts that are done with, or null if the backend does not accept batches.
+     */
+    private suspend fun sendBatch(
+        batch: List<PendingReceiveReceipt>,
+        deviceType: IDeviceService.DeviceType,
+    ): List<PendingReceiveReceipt>? {
+        val first = batch.first()
+        try {
+            _backend.updateNotificationsAsReceived(first.appId, batch.map { it.notificationId }, first.subscriptionId, deviceType)
+            Logging.debug("ReceiveReceiptProcessor: sent ${batch.size} receive receipts in one request")
+            return batch
+        } catch (ex: BackendException) {
+            if (ex.statusCode in BATCH_UNSUPPORTED_STATUS_CODES) {
+                Logging.info("Batched receive receipts not accepted with statusCode: ${ex.statusCode}, sending them one at a time")
+                _preferences.saveLong(
+                    PreferenceStores.ONESIGNAL,
+                    PreferenceOneSignalKeys.PREFS_OS_RECEIVE_RECEIPT_BATCHES_UNSUPPORTED_AT,
+                    _time.currentTimeMillis,
+                )
+                return null
+            }
+
+            Logging.info("Batched receive receipts failed with statusCode: ${ex.statusCode} response: ${ex.response}")
+            return if (isRetryable(ex)) emptyList() else batch
+        }
+    }
+
+    /**
+     * Send each receipt of [batch] in its own request, stopping at the first that can be retried.
+     *
+     * @return The receipts that are done with.
+     */
+    private suspend fun sendEach(
+        batch: List<PendingReceiveReceipt>,
+        deviceType: IDeviceService.DeviceType,
+    ): List<PendingReceiveReceipt> {
+        val done = mutableListOf<PendingReceiveReceipt>()
+        for (receipt in batch) {
+            try {
+                _backend.updateNotificationAsReceived(receipt.appId, receipt.notificationId, receipt.subscriptionId, deviceType)
+            } catch (ex: BackendException) {
+                Logging.info("Receive receipt failed with statusCode: ${ex.statusCode} response: ${ex.response}")
+                if (isRetryable(ex)) break
+            }
+            done.add(receipt)
+        }
+        return done
+    }
+
+    private fun isRetryable(ex: BackendException) = NetworkUtils.getResponseStatusType(ex.statusCode) == NetworkUtils.ResponseStatusType.RETRYABLE
+
+    companion object {
+        const val MAX_BATCH_SIZE = 100
+
+        private const val BATCHES_RETRY_AFTER_MS = 7 * 24 * 60 * 60 * 1_000L
+
+        // A 400 is about the receipts in the batch, not batching itself, which is not given up on for it.
+        private val BATCH_UNSUPPORTED_STATUS_CODES = setOf(404, 405)
+    }
 }
@@ -0,0 +1,122 @@
+package com.onesignal.notifications.internal.receivereceipt.impl
+
+import com.onesignal.core.internal.preferences.IPreferencesService
+import com.onesignal.core.internal.preferences.PreferenceOneSignalKeys
+import com.onesignal.core.internal.preferences.PreferenceStores
+import com.onesignal.debug.internal.logging.Logging
+import org.json.JSONArray
+import org.json.JSONException
+import org.json.JSONObject
+
+/**
+ * A receive receipt waiting to be sent.
+ */
+internal data class PendingReceiveReceipt(
+    val appId: String,
+    val subscriptionId: String,
+    val notificationId: String,
+)
+
+/**
+ * The receive receipts waiting to be sent, oldest first. The queue is kept in the preferences,
+ * so receipts survive the process being killed before the receipt worker runs.
+ *
+ * Once the queue holds [MAX_PENDING_RECEIPTS] receipts the oldest are dropped, a device that
+ * has been offline for a long time only reports what it received most recently.
+ */
+internal class ReceiveReceiptQueue(
+    private val _preferences: IPreferencesService,
+) {
+    private var pending: MutableList<PendingReceiveReceipt>? = null
+
+    /**
+     * Add a receipt to the end of the queue.
+     *
+     * @return false if a receipt for the same notification was already queued.
+     */
+    @Synchronized
+    fun add(receipt: PendingReceiveReceipt): Boolean {
+        val receipts = load()
+        if (receipts.any { it.notificationId == receipt.notificationId }) {
+            return false
+        }
+
+        receipts.add(receipt)
+        while (receipts.size > MAX_PENDING_RECEIPTS) {
+            Logging.debug("ReceiveReceiptQueue: dropping receive receipt for ${receipts.first().notificationId}, queue is full")
+            receipts.removeAt(0)
+        }
+        save(receipts)
+        return true
+    }
+
+    /**
+     * The oldest receipts in the queue, up to [max] of them. They stay queued until [remove]d.
+     */
+    @Synchronized
+    fun peek(max: Int): List<PendingReceiveReceipt> = load().take(max)
+
+    /**
+     * Remove the provided receipts, typically once they have been sent.
+     */
+    @Synchronized
+    fun remove(receipts: Collection<PendingReceiveReceipt>) {
+        val remaining = load()
+        if (remaining.removeAll(receipts.toSet())) {
+            save(remaining)
+        }
+    }
+
+    @get:Synchronized
+    val size: Int
+        get() = load().size
+
+    private fun load(): MutableList<PendingReceiveReceipt> {
+        pending?.let { return it }
+
+        val receipts = mutableListOf<PendingReceiveReceipt>()
+        val json = _preferences.getString(PreferenceStores.ONESIGNAL, PreferenceOneSignalKeys.PREFS_OS_PENDING_RECEIVE_RECEIPTS)
+        if (json != null) {
+            try {
+                val array = JSONArray(json)
+                for (i in 0 until array.length()) {
+                    val item = array.getJSONObject(i)
+                    receipts.add(
+                        PendingReceiveReceipt(
+                            item.getString(APP_ID),
+                            item.getString(SUBSCRIPTION_ID),
+                            item.getString(NOTIFICATION_ID),
+                        ),
+                    )
+                }
+            } catch (e: JSONException) {
+                Logging.warn("ReceiveReceiptQueue: discarding unreadable receive receipts", e)
+                receipts.clear()
+            }
+        }
+
+        pending = receipts
+        return receipts
+    }
+
+    private fun save(receipts: List<PendingReceiveReceipt>) {
+        val array = JSONArray()
+        for (receipt in receipts) {
+            array.put(
+                JSONObject()
+                    .put(APP_ID, receipt.appId)
+                    .put(SUBSCRIPTION_ID, receipt.subscriptionId)
+                    .put(NOTIFICATION_ID, receipt.notificationId),
+            )
+        }
+        _preferences.saveString(PreferenceStores.ONESIGNAL, PreferenceOneSignalKeys.PREFS_OS_PENDING_RECEIVE_RECEIPTS, array.toString())
+    }
+
+    companion object {
+        const val MAX_PENDING_RECEIPTS = 500
+
+        private const val APP_ID = "app_id"
+        private const val SUBSCRIPTION_ID = "subscription_id"
+        private const val NOTIFICATION_ID = "notification_id"
+    }
+}
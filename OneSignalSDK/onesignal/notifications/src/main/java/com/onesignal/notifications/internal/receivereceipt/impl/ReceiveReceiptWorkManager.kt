@@ -3,7 +3,6 @@ package com.onesignal.notifications.internal.receivereceipt.impl
 import android.content.Context
 import androidx.work.Constraints
 import androidx.work.CoroutineWorker
-import androidx.work.Data
 import androidx.work.ExistingWorkPolicy
 import androidx.work.NetworkType
 import androidx.work.OneTimeWorkRequest
@@ -18,15 +17,20 @@ import com.onesignal.notifications.internal.receivereceipt.IReceiveReceiptProces
 import com.onesignal.notifications.internal.receivereceipt.IReceiveReceiptWorkManager
 import com.onesignal.user.internal.subscriptions.ISubscriptionManager
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 internal class ReceiveReceiptWorkManager(
     private val _applicationService: IApplicationService,
     private val _configModelStore: ConfigModelStore,
     private val _subscriptionManager: ISubscriptionManager,
+    private val _queue: ReceiveReceiptQueue,
 ) : IReceiveReceiptWorkManager {
     private val minDelay = 0
     private val maxDelay = 25
 
+    // Whether a worker was enqueued that has not started yet, it will send whatever is queued by then.
+    private val isWorkerPending = AtomicBoolean(false)
+
     override fun enqueueReceiveReceipt(notificationId: String) {
         if (!_configModelStore.model.receiveReceiptEnabled) {
             Logging.debug("sendReceiveReceipt disabled")
@@ -36,35 +40,47 @@ internal class ReceiveReceiptWorkManager(
         val appId: String = _configModelStore.model.appId
         val subscriptionId = _subscriptionManager.subscriptions.push.id
 
+        // The backend can not attribute a receipt without them, it is not sent.
         if (subscriptionId.isEmpty() || appId.isEmpty()) {
-            Logging.debug("ReceiveReceiptWorkManager: No push subscription or appId!")
+            Logging.debug("ReceiveReceiptWorkManager: No push subscription or appId, not sending receive receipt for notificationId: $notificationId")
+            return
+        }
+
+        if (!_queue.add(PendingReceiveReceipt(appId, subscriptionId, notificationId))) {
+            Logging.debug("ReceiveReceiptWorkManager: receive receipt for notificationId: $notificationId already queued")
+            return
+        }
+
+        // The first receipt of a burst schedules the worker, the rest join the queue it sends.
+        // The random delay is the window receipts are batched over, and spreads a campaign's
+        // receipts out over time.
+        if (!isWorkerPending.compareAndSet(false, true)) {
+            return
         }
 
         val delay: Int = AndroidUtils.getRandomDelay(minDelay, maxDelay)
-        val inputData =
-            Data.Builder()
-                .putString(OS_NOTIFICATION_ID, notificationId)
-                .putString(OS_APP_ID, appId)
-                .putString(OS_SUBSCRIPTION_ID, subscriptionId)
-                .build()
         val constraints = buildConstraints()
         val workRequest =
             OneTimeWorkRequest.Builder(ReceiveReceiptWorker::class.java)
                 .setConstraints(constraints)
                 .setInitialDelay(delay.toLong(), TimeUnit.SECONDS)
-                .setInputData(inputData)
                 .build()
         Logging.debug(
             "OSReceiveReceiptController enqueueing send receive receipt work with notificationId: $notificationId and delay: $delay seconds",
         )
         OSWorkManagerHelper.getInstance(_applicationService.appContext)
             .enqueueUniqueWork(
-                notificationId + "_receive_receipt",
-                ExistingWorkPolicy.KEEP,
+                RECEIVE_RECEIPT_WORK_NAME,
+                // A worker already running may have looked at the queue for the last time, this one runs after it.
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
                 workRequest,
             )
     }
 
+    override fun onWorkerStarted() {
+        isWorkerPending.set(false)
+    }
+
     private fun buildConstraints(): Constraints {
         return Constraints.Builder()
             .setRequiredNetworkType(NetworkType.CONNECTED)
@@ -78,17 +94,29 @@ internal class ReceiveReceiptWorkManager(
                 return Result.success()
             }
 
-            val notificationId = inputData.getString(OS_NOTIFICATION_ID) ?: return Result.failure()
-            val appId = inputData.getString(OS_APP_ID) ?: return Result.failure()
-            val subscriptionId = inputData.getString(OS_SUBSCRIPTION_ID) ?: return Result.failure()
+            OneSignal.getService<IReceiveReceiptWorkManager>().onWorkerStarted()
+
+            // A worker enqueued by an earlier version of the SDK carries its one receipt.
+            val notificationId = inputData.getString(OS_NOTIFICATION_ID)
+            val appId = inputData.getString(OS_APP_ID)
+            val subscriptionId = inputData.getString(OS_SUBSCRIPTION_ID)
+            if (notificationId != null && !appId.isNullOrEmpty() && !subscriptionId.isNullOrEmpty()) {
+                OneSignal.getService<ReceiveReceiptQueue>().add(PendingReceiveReceipt(appId, subscriptionId, notificationId))
+            }
 
             val receiveReceiptProcessor = OneSignal.getService<IReceiveReceiptProcessor>()
-            receiveReceiptProcessor.sendReceiveReceipt(appId, subscriptionId, notificationId)
-            return Result.success()
+            if (receiveReceiptProcessor.sendQueuedReceiveReceipts()) {
+                return Result.success()
+            }
+
+            // Whatever is left stays queued, and goes with the next receipt's worker.
+            return if (runAttemptCount < MAX_ATTEMPTS) Result.retry() else Result.success()
         }
     }
 
     companion object {
+        private const val RECEIVE_RECEIPT_WORK_NAME = "OS_RECEIVE_RECEIPTS"
+        private const val MAX_ATTEMPTS = 3
         private const val OS_NOTIFICATION_ID = "os_notification_id"
         private const val OS_APP_ID = "os_app_id"
         private const val OS_SUBSCRIPTION_ID = "os_subscription_id"
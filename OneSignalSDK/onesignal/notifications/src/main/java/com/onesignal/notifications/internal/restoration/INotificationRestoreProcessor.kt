@@ -3,7 +3,16 @@ package com.onesignal.notifications.internal.restoration
 import com.onesignal.notifications.internal.data.INotificationRepository
 
 internal interface INotificationRestoreProcessor {
-    suspend fun process()
+    /**
+     * Restore the outstanding notifications, stopping once it has run for a few minutes so the
+     * worker calling it stays within the time the system gives it.
+     *
+     * @param alreadyRestored The android ids of the notifications an earlier run restored.
+     *
+     * @return null once all of them are restored, otherwise the android ids of those restored
+     * so far, to pass to the run that restores the rest.
+     */
+    suspend fun process(alreadyRestored: List<Int> = listOf()): List<Int>?
 
     suspend fun processNotification(
         notification: INotificationRepository.NotificationData,
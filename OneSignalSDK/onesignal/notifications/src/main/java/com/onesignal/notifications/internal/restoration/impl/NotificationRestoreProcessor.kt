@@ -2,36 +2,91 @@ package com.onesignal.notifications.internal.restoration.impl
 
 import android.os.Build
 import com.onesignal.core.internal.application.IApplicationService
+import com.onesignal.core.internal.time.ITime
 import com.onesignal.debug.internal.logging.Logging
 import com.onesignal.notifications.internal.badges.IBadgeCountUpdater
 import com.onesignal.notifications.internal.common.NotificationHelper
+import com.onesignal.notifications.internal.common.NotificationPostPacer
 import com.onesignal.notifications.internal.data.INotificationRepository
+import com.onesignal.notifications.internal.data.IRecentNotificationIdIndex
+import com.onesignal.notifications.internal.generation.INotificationGenerationProcessor
 import com.onesignal.notifications.internal.generation.INotificationGenerationWorkManager
 import com.onesignal.notifications.internal.restoration.INotificationRestoreProcessor
 import kotlinx.coroutines.delay
+import org.json.JSONException
 import org.json.JSONObject
 
+/**
+ * Restores the notifications a reboot, app update or force stop removed from the shade.
+ *
+ * [process] restores all of them within the calling worker, straight from the rows it reads,
+ * rather than enqueueing a generation work request per notification. The posts are paced by the
+ * [NotificationPostPacer] pushed notifications are paced by as well. A notification can take its
+ * generation processor a while, the worker stops restoring after [MAX_RESTORE_DURATION_MS] and
+ * leaves the rest to a follow-up worker.
+ */
 internal class NotificationRestoreProcessor(
     private val _applicationService: IApplicationService,
     private val _workManager: INotificationGenerationWorkManager,
     private val _dataController: INotificationRepository,
     private val _badgeCountUpdater: IBadgeCountUpdater,
+    private val _recentNotificationIds: IRecentNotificationIdIndex,
+    private val _pacer: NotificationPostPacer,
+    private val _time: ITime,
+    // Lazy, the generation processor depends on this processor through the summary manager.
+    private val _generationProcessor: Lazy<INotificationGenerationProcessor>,
 ) : INotificationRestoreProcessor {
-    override suspend fun process() {
+    override suspend fun process(alreadyRestored: List<Int>): List<Int>? {
         Logging.info("Restoring notifications")
 
+        val deadline = _time.currentTimeMillis + MAX_RESTORE_DURATION_MS
+        val restored = alreadyRestored.toMutableList()
+        var remaining = 0
+
         try {
-            var excludeAndroidIds = getVisibleNotifications()
-            var outstandingNotifications = _dataController.listNotificationsForOutstanding(excludeAndroidIds)
+            // Those restored before are excluded as well, below Android M they are not visible.
+            val excludeAndroidIds = ((getVisibleNotifications() ?: listOf()) + alreadyRestored).ifEmpty { null }
+
+            // Paged, only a few payloads are held at a time while the rest wait their turn.
+            _dataController.forEachNotificationForOutstanding(excludeAndroidIds) { notification ->
+                if (_time.currentTimeMillis >= deadline) {
+                    remaining++
+                    return@forEachNotificationForOutstanding
+                }
 
-            for (notification in outstandingNotifications) {
-                processNotification(notification, DELAY_BETWEEN_NOTIFICATION_RESTORES_MS)
+                _pacer.take()
+                restoreNotification(notification)
+                restored.add(notification.androidId)
             }
 
             _badgeCountUpdater.update()
         } catch (t: Throwable) {
             Logging.warn("Error restoring notification records! ", t)
         }
+
+        if (remaining == 0) return null
+
+        Logging.info("Restoring notifications ran out of time, $remaining left for a follow-up worker")
+        return restored
+    }
+
+    private suspend fun restoreNotification(notification: INotificationRepository.NotificationData) {
+        // The same guard the generation worker holds, a push of this notification arriving now is dropped.
+        if (!_recentNotificationIds.beginProcessing(notification.id)) return
+
+        try {
+            _generationProcessor.value.processNotificationData(
+                _applicationService.appContext,
+                notification.androidId,
+                JSONObject(notification.fullData),
+                true,
+                notification.createdAt,
+            )
+        } catch (e: JSONException) {
+            Logging.error("Could not restore notification ${notification.id}", e)
+        } finally {
+            _recentNotificationIds.endProcessing(notification.id)
+        }
     }
 
     override suspend fun processNotification(
@@ -72,10 +127,9 @@ internal class NotificationRestoreProcessor(
     }
 
     companion object {
-        // Delay to prevent logcat messages and possibly skipping some notifications
-        //    This prevents the following error;
-        // E/NotificationService: Package enqueue rate is 10.56985. Shedding events. package=####
-        private const val DELAY_BETWEEN_NOTIFICATION_RESTORES_MS = 200
         const val DEFAULT_TTL_IF_NOT_IN_PAYLOAD = 259200
+
+        // Within the 10 minutes the system gives a worker, with room for the one in progress.
+        private const val MAX_RESTORE_DURATION_MS = 8 * 60 * 1_000L
     }
 }
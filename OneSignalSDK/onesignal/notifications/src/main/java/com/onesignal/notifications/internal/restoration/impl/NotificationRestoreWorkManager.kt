@@ -2,6 +2,7 @@ package com.onesignal.notifications.internal.restoration.impl
 
 import android.content.Context
 import androidx.work.CoroutineWorker
+import androidx.work.Data
 import androidx.work.ExistingWorkPolicy
 import androidx.work.OneTimeWorkRequest
 import androidx.work.WorkerParameters
@@ -62,7 +63,26 @@ internal class NotificationRestoreWorkManager : INotificationRestoreWorkManager
             }
 
             val processor = OneSignal.getService<INotificationRestoreProcessor>()
-            processor.process()
+            val alreadyRestored = inputData.getIntArray(RESTORED_ANDROID_IDS_DATA_PARAM)?.toList() ?: listOf()
+            val restored = processor.process(alreadyRestored)
+
+            if (restored != null) {
+                // Appended, so it runs once this one is done rather than being dropped as a duplicate.
+                val workRequest =
+                    OneTimeWorkRequest.Builder(NotificationRestoreWorker::class.java)
+                        .setInputData(
+                            Data.Builder()
+                                .putIntArray(RESTORED_ANDROID_IDS_DATA_PARAM, restored.toIntArray())
+                                .build(),
+                        )
+                        .build()
+                OSWorkManagerHelper.getInstance(context)
+                    .enqueueUniqueWork(
+                        NOTIFICATION_RESTORE_WORKER_IDENTIFIER,
+                        ExistingWorkPolicy.APPEND_OR_REPLACE,
+                        workRequest,
+                    )
+            }
 
             return Result.success()
         }
@@ -70,5 +90,6 @@ internal class NotificationRestoreWorkManager : INotificationRestoreWorkManager
 
     companion object {
         private val NOTIFICATION_RESTORE_WORKER_IDENTIFIER = NotificationRestoreWorker::class.java.canonicalName
+        private const val RESTORED_ANDROID_IDS_DATA_PARAM = "restored_android_ids"
     }
 }
@@ -0,0 +1,48 @@
+package com.onesignal.notifications.internal.restoration.impl
+
+import com.onesignal.core.internal.time.ITime
+import kotlinx.coroutines.delay
+import kotlin.math.ceil
+
+/**
+ * Paces an operation to [tokensPerSecond] on average, letting up to [capacity] of them through
+ * at once after a pause. Unlike a fixed sleep after each operation, the time an operation itself
+ * takes counts towards the wait before the next one.
+ */
+internal class TokenBucket(
+    private val capacity: Double,
+    private val tokensPerSecond: Double,
+    private val _time: ITime,
+) {
+    private var tokens = capacity
+    private var refilledAt = _time.currentTimeMillis
+
+    /**
+     * Take a token, suspending until one is available.
+     */
+    suspend fun take() {
+        while (true) {
+            val wait = tryTake()
+            if (wait == 0L) return
+            delay(wait)
+        }
+    }
+
+    /**
+     * Take a token if one is available.
+     *
+     * @return 0 if a token was taken, otherwise the time in milliseconds until one is available.
+     */
+    @Synchronized
+    fun tryTake(): Long {
+        val now = _time.currentTimeMillis
+        tokens = minOf(capacity, tokens + (now - refilledAt) * tokensPerSecond / 1000.0)
+        refilledAt = now
+
+        if (tokens >= 1.0) {
+            tokens -= 1.0
+            return 0L
+        }
+        return maxOf(1L, ceil((1.0 - tokens) * 1000.0 / tokensPerSecond).toLong())
+    }
+}
@@ -85,9 +85,9 @@ internal class NotificationSummaryManager(
     }
 
     private suspend fun restoreSummary(group: String) {
-        val notifications = _dataController.listNotificationsForGroup(group)
-        for (notification in notifications)
+        _dataController.forEachNotificationForGroup(group) { notification ->
             _notificationRestoreProcessor.processNotification(notification)
+        }
     }
 
     /**
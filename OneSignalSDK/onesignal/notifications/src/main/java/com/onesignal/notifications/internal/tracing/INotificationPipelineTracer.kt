@@ -0,0 +1,82 @@
+package com.onesignal.notifications.internal.tracing
+
+/**
+ * The stages a pushed notification goes through, from the push receiver to the badge update.
+ * A trace records when each stage was reached, a stage that did not happen is left out.
+ */
+internal enum class NotificationPipelineStage {
+    /** The push receiver handed the bundle to the SDK. */
+    RECEIVED,
+
+    /** The generation worker was enqueued. */
+    ENQUEUED,
+
+    /** The generation worker started, before the SDK was initialized. */
+    WORKER_STARTED,
+
+    /** Processing of the notification data started, with the SDK initialized. */
+    PROCESSING_STARTED,
+
+    /** The notification service extension returned, or timed out. */
+    EXTENSION_DONE,
+
+    /** The foreground will display handlers returned, or timed out. */
+    FOREGROUND_HANDLERS_DONE,
+
+    /** The notification was displayed. */
+    DISPLAYED,
+
+    /** The notification was saved to the database. */
+    SAVED,
+
+    /** The badge count was updated for the saved notification. */
+    BADGE_UPDATED,
+}
+
+/**
+ * Records how long each stage of displaying a pushed notification took, see [NotificationPipelineStage].
+ * Times are taken from a monotonic clock that keeps counting while the device sleeps, so a trace
+ * can be carried over to a process started later, e.g. by WorkManager.
+ */
+internal interface INotificationPipelineTracer {
+    /**
+     * The current time of the clock traces are recorded with, in milliseconds.
+     */
+    val now: Long
+
+    /**
+     * Start the trace of a notification, unless it has one already. A receive time later than
+     * [now], taken before the device restarted, starts no trace.
+     *
+     * @param notificationId The OneSignal id of the notification.
+     * @param receivedAt When the notification was received, see [now].
+     */
+    fun begin(
+        notificationId: String,
+        receivedAt: Long = now,
+    )
+
+    /**
+     * When the trace of a notification started, or null if it has none.
+     */
+    fun receivedAt(notificationId: String): Long?
+
+    /**
+     * Record that a notification reached a stage. Does nothing when the notification has no trace,
+     * e.g. while it is being restored.
+     *
+     * @param notificationId The OneSignal id of the notification.
+     * @param stage The stage reached.
+     * @param at When the stage was reached, see [now].
+     */
+    fun mark(
+        notificationId: String,
+        stage: NotificationPipelineStage,
+        at: Long = now,
+    )
+
+    /**
+     * End the trace of a notification, logging it and adding it to the per-stage histograms.
+     */
+    fun finish(notificationId: String)
+}
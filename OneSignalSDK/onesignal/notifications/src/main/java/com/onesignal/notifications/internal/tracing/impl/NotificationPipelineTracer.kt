@@ -0,0 +1,149 @@
+package com.onesignal.notifications.internal.tracing.impl
+
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.notifications.internal.tracing.INotificationPipelineTracer
+import com.onesignal.notifications.internal.tracing.NotificationPipelineStage
+
+/**
+ * The time spent getting to one [NotificationPipelineStage], over every finished trace.
+ */
+internal class NotificationStageStats {
+    var count = 0L
+        private set
+    var totalMillis = 0L
+        private set
+    var maxMillis = 0L
+        private set
+
+    /**
+     * The number of traces per duration bucket, see [NotificationPipelineTracer.BUCKET_UPPER_BOUNDS_MS].
+     * The last bucket counts everything above the last bound.
+     */
+    val histogram = LongArray(NotificationPipelineTracer.BUCKET_UPPER_BOUNDS_MS.size + 1)
+
+    internal fun add(durationMillis: Long) {
+        count++
+        totalMillis += durationMillis
+        maxMillis = maxOf(maxMillis, durationMillis)
+
+        val bucket = NotificationPipelineTracer.BUCKET_UPPER_BOUNDS_MS.indexOfFirst { durationMillis < it }
+        histogram[if (bucket == -1) histogram.size - 1 else bucket]++
+    }
+
+    override fun toString(): String =
+        "count=$count avg=${if (count == 0L) 0 else totalMillis / count}ms max=${maxMillis}ms histogram=${histogram.joinToString(",")}"
+}
+
+/**
+ * Keeps a trace of each notification on its way through the push pipeline. A stage's duration
+ * is the time since the stage reached before it, so a handler that blocks shows up as the
+ * duration of the stage it returns in, e.g. [NotificationPipelineStage.EXTENSION_DONE].
+ *
+ * A finished trace is logged as debug, or as a warning when processing it took longer than
+ * [SLOW_PROCESSING_THRESHOLD_MS], which remote logging forwards. Processing is timed from
+ * [NotificationPipelineStage.PROCESSING_STARTED], the time before it is spent waiting on
+ * WorkManager and on the notifications received before, which the SDK does not control.
+ *
+ * The per-stage histograms are logged as info every [HISTOGRAM_LOG_INTERVAL] traces, so remote
+ * logging forwards them when its level includes info.
+ *
+ * Only the [MAX_TRACES] most recently started traces are kept, a trace whose worker never runs,
+ * e.g. of a duplicate notification, is eventually dropped.
+ */
+internal class NotificationPipelineTracer(
+    private val _clock: () -> Long,
+) : INotificationPipelineTracer {
+    private val traces =
+        object : LinkedHashMap<String, MutableList<Pair<NotificationPipelineStage, Long>>>() {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, MutableList<Pair<NotificationPipelineStage, Long>>>?) =
+                size > MAX_TRACES
+        }
+    private val stats = HashMap<NotificationPipelineStage, NotificationStageStats>()
+    private val totals = NotificationStageStats()
+
+    override val now: Long
+        get() = _clock()
+
+    override fun begin(
+        notificationId: String,
+        receivedAt: Long,
+    ) {
+        // The clock restarts from zero when the device reboots, a receive time carried over
+        // from before is meaningless.
+        if (receivedAt > _clock()) {
+            Logging.debug("NotificationPipelineTracer: not tracing $notificationId, the device restarted since it was received")
+            return
+        }
+
+        synchronized(traces) {
+            if (traces.containsKey(notificationId)) return
+            traces[notificationId] = mutableListOf(NotificationPipelineStage.RECEIVED to receivedAt)
+        }
+    }
+
+    override fun receivedAt(notificationId: String): Long? = synchronized(traces) { traces[notificationId]?.first()?.second }
+
+    override fun mark(
+        notificationId: String,
+        stage: NotificationPipelineStage,
+        at: Long,
+    ) {
+        synchronized(traces) {
+            traces[notificationId]?.add(stage to at)
+        }
+    }
+
+    override fun finish(notificationId: String) {
+        val marks = synchronized(traces) { traces.remove(notificationId) } ?: return
+
+        val description = StringBuilder()
+        var previous = marks.first().second
+        for ((stage, at) in marks) {
+            val duration = at - previous
+            previous = at
+            if (stage != NotificationPipelineStage.RECEIVED) {
+                synchronized(stats) { stats.getOrPut(stage) { NotificationStageStats() }.add(duration) }
+                description.append(", ${stage.name.lowercase()} +${duration}ms")
+            }
+        }
+
+        val total = marks.last().second - marks.first().second
+        val finished =
+            synchronized(stats) {
+                totals.add(total)
+                totals.count
+            }
+
+        val processingStartedAt = marks.firstOrNull { it.first == NotificationPipelineStage.PROCESSING_STARTED }?.second
+        val processing = if (processingStartedAt == null) 0L else marks.last().second - processingStartedAt
+        val message = "NotificationPipelineTracer: $notificationId took ${total}ms, processing ${processing}ms$description"
+        if (processing >= SLOW_PROCESSING_THRESHOLD_MS) {
+            Logging.warn(message)
+        } else {
+            Logging.debug(message)
+        }
+
+        if (finished % HISTOGRAM_LOG_INTERVAL == 0L) {
+            Logging.info("NotificationPipelineTracer: stage histograms $BUCKET_UPPER_BOUNDS_MS_TEXT ${snapshot()}")
+        }
+    }
+
+    /**
+     * A copy of the stats of the traces finished so far, keyed by stage name, with "total" for
+     * the whole pipeline.
+     */
+    fun snapshot(): Map<String, String> =
+        synchronized(stats) {
+            stats.entries.associate { it.key.name.lowercase() to it.value.toString() } + ("total" to totals.toString())
+        }
+
+    companion object {
+        private const val MAX_TRACES = 64
+        // Processing includes the app's handlers and loading the notification's images.
+        private const val SLOW_PROCESSING_THRESHOLD_MS = 5_000L
+        private const val HISTOGRAM_LOG_INTERVAL = 20L
+
+        val BUCKET_UPPER_BOUNDS_MS = longArrayOf(5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000)
+        private val BUCKET_UPPER_BOUNDS_MS_TEXT = "(buckets <${BUCKET_UPPER_BOUNDS_MS.joinToString(",")}ms)"
+    }
+}
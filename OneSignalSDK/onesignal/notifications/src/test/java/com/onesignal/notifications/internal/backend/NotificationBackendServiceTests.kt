@@ -69,6 +69,36 @@ class NotificationBackendServiceTests : FunSpec({
         exception.statusCode shouldBe 404
     }
 
+    test("updateNotificationsAsReceived sends every notification id in one request") {
+        // Given
+        val spyHttpClient = mockk<IHttpClient>()
+        coEvery { spyHttpClient.post(any(), any()) } returns HttpResponse(202, null)
+
+        val notificationBackendService = NotificationBackendService(spyHttpClient)
+
+        // When
+        notificationBackendService.updateNotificationsAsReceived(
+            "appId",
+            listOf("notificationId1", "notificationId2"),
+            "subscriptionId",
+            IDeviceService.DeviceType.Android,
+        )
+
+        // Then
+        coVerify {
+            spyHttpClient.post(
+                "notifications/report_received",
+                withArg {
+                    it.getString("app_id") shouldBe "appId"
+                    it.getString("player_id") shouldBe "subscriptionId"
+                    it.getInt("device_type") shouldBe IDeviceService.DeviceType.Android.value
+                    it.getJSONArray("notification_ids").getString(0) shouldBe "notificationId1"
+                    it.getJSONArray("notification_ids").getString(1) shouldBe "notificationId2"
+                },
+            )
+        }
+    }
+
     test("updateNotificationAsOpened succeeds when response is successful") {
         // Given
         val spyHttpClient = mockk<IHttpClient>()
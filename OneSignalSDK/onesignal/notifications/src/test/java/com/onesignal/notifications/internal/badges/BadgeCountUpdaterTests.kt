@@ -22,6 +22,7 @@ import io.mockk.mockkStatic
 import io.mockk.unmockkObject
 import io.mockk.unmockkStatic
 import io.mockk.verify
+import kotlinx.coroutines.delay
 
 private class Mocks {
     val applicationService = mockk<IApplicationService>()
@@ -56,13 +57,18 @@ private class Mocks {
         }
     }
 
-    fun badgeCountUpdater(sdkInt: Int) =
-        BadgeCountUpdater.createForTesting(
-            applicationService,
-            queryHelper,
-            databaseProvider,
-            sdkInt,
-        )
+    fun badgeCountUpdater(
+        sdkInt: Int,
+        updateDelayMs: Long = 0L,
+        clock: () -> Long = { 0L },
+    ) = BadgeCountUpdater.createForTesting(
+        applicationService,
+        queryHelper,
+        databaseProvider,
+        sdkInt,
+        updateDelayMs,
+        clock,
+    )
 }
 
 class BadgeCountUpdaterTests : FunSpec({
@@ -112,4 +118,40 @@ class BadgeCountUpdaterTests : FunSpec({
 
         verify(exactly = 1) { ShortcutBadger.applyCountOrThrow(any(), 3) }
     }
+
+    test("a burst of updates is counted once") {
+        val mocks = Mocks()
+        mocks.queryReturnsCount(3)
+        val badgeCountUpdater = mocks.badgeCountUpdater(Build.VERSION_CODES.LOLLIPOP_MR1, updateDelayMs = 50L)
+
+        repeat(5) { badgeCountUpdater.update() }
+        delay(500)
+
+        verify(exactly = 1) { mocks.database.query(any(), any(), any(), any(), any(), any(), any(), any(), any()) }
+        verify(exactly = 1) { ShortcutBadger.applyCountOrThrow(any(), 3) }
+    }
+
+    test("updateCount does not call the launcher again for the same count") {
+        val badgeCountUpdater = Mocks().badgeCountUpdater(Build.VERSION_CODES.O - 1)
+
+        badgeCountUpdater.updateCount(3)
+        badgeCountUpdater.updateCount(3)
+        badgeCountUpdater.updateCount(4)
+
+        verify(exactly = 1) { ShortcutBadger.applyCountOrThrow(any(), 3) }
+        verify(exactly = 1) { ShortcutBadger.applyCountOrThrow(any(), 4) }
+    }
+
+    test("updateCount applies the same count again once the launcher may have cleared it") {
+        var now = 1_000L
+        val badgeCountUpdater = Mocks().badgeCountUpdater(Build.VERSION_CODES.O - 1, clock = { now })
+
+        badgeCountUpdater.updateCount(3)
+        now += 1_000
+        badgeCountUpdater.updateCount(3)
+        now += 10_000
+        badgeCountUpdater.updateCount(3)
+
+        verify(exactly = 2) { ShortcutBadger.applyCountOrThrow(any(), 3) }
+    }
 })
@@ -8,6 +8,7 @@ import com.onesignal.debug.internal.logging.Logging
 import com.onesignal.mocks.MockHelper
 import com.onesignal.notifications.internal.bundle.impl.NotificationBundleProcessor
 import com.onesignal.notifications.internal.generation.INotificationGenerationWorkManager
+import com.onesignal.notifications.internal.tracing.impl.NotificationPipelineTracer
 import io.kotest.core.spec.style.FunSpec
 import io.kotest.matchers.shouldBe
 import io.mockk.every
@@ -44,7 +45,7 @@ class NotificationBundleProcessorTests : FunSpec({
             )
         } returns true
 
-        val processor = NotificationBundleProcessor(workManager, MockHelper.time(1111))
+        val processor = NotificationBundleProcessor(workManager, MockHelper.time(1111), NotificationPipelineTracer { 0L })
         val context = mockk<Context>(relaxed = true)
         processor.processBundleFromReceiver(context, buildOneSignalBundle(pri))
 
@@ -6,21 +6,41 @@ import android.app.NotificationManager
 import android.content.Context
 import androidx.test.core.app.ApplicationProvider
 import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.core.internal.preferences.IPreferencesService
 import com.onesignal.debug.LogLevel
 import com.onesignal.debug.internal.logging.Logging
 import com.onesignal.mocks.AndroidMockHelper
 import com.onesignal.mocks.MockHelper
+import com.onesignal.notifications.internal.channels.impl.NotificationChannelFingerprint
 import com.onesignal.notifications.internal.channels.impl.NotificationChannelManager
 import com.onesignal.notifications.internal.common.NotificationGenerationJob
 import com.onesignal.notifications.shadows.ShadowRoboNotificationManager
 import io.kotest.core.spec.style.FunSpec
 import io.kotest.matchers.shouldBe
 import io.kotest.matchers.shouldNotBe
+import io.mockk.every
+import io.mockk.mockk
 import org.json.JSONArray
 import org.json.JSONObject
 import org.robolectric.annotation.Config
 import java.math.BigInteger
 
+private fun preferences(): IPreferencesService {
+    val values = mutableMapOf<String, String?>()
+    val preferences = mockk<IPreferencesService>()
+    every { preferences.getString(any(), any(), any()) } answers { values[secondArg()] }
+    every { preferences.saveString(any(), any(), any()) } answers { values[secondArg()] = thirdArg() }
+    return preferences
+}
+
+private fun channelList(vararg channels: Pair<String, String>): JSONArray {
+    val list = JSONArray()
+    for ((id, name) in channels) {
+        list.put(JSONObject().put("chnl", JSONObject().put("id", id).put("nm", name)))
+    }
+    return list
+}
+
 @Config(
     packageName = "com.onesignal.example",
     shadows = [ShadowRoboNotificationManager::class],
@@ -36,7 +56,7 @@ class NotificationChannelManagerTests : FunSpec({
         // Given
         val mockTime = MockHelper.time(1111)
 
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
 
         // When
         val response = notificationChannelManager.createNotificationChannel(NotificationGenerationJob(JSONObject(), mockTime))
@@ -56,7 +76,7 @@ class NotificationChannelManagerTests : FunSpec({
         // Given
         val mockTime = MockHelper.time(1111)
 
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
         val payload =
             JSONObject()
                 .put(
@@ -83,7 +103,7 @@ class NotificationChannelManagerTests : FunSpec({
         // Given
         val mockTime = MockHelper.time(1111)
 
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
         val payload =
             JSONObject()
                 .put("pri", 10)
@@ -143,7 +163,7 @@ class NotificationChannelManagerTests : FunSpec({
         // Given
         val mockTime = MockHelper.time(1111)
 
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
         val payload =
             JSONObject()
                 .put("oth_chnl", "existing_id")
@@ -163,7 +183,7 @@ class NotificationChannelManagerTests : FunSpec({
         // Given
         val mockTime = MockHelper.time(1111)
 
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
         val payload =
             JSONObject()
                 .put("ledc", "FFFFFFFFY")
@@ -186,7 +206,7 @@ class NotificationChannelManagerTests : FunSpec({
 
     test("processChannelList with no channel list should keep existing channels") {
         // Given
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
 
         createChannel("local_existing_id", ApplicationProvider.getApplicationContext())
         createChannel("OS_existing_id", ApplicationProvider.getApplicationContext())
@@ -201,7 +221,7 @@ class NotificationChannelManagerTests : FunSpec({
 
     test("processChannelList with existing local channel should not delete local channel") {
         // Given
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
 
         createChannel("local_existing_id", ApplicationProvider.getApplicationContext())
 
@@ -222,7 +242,7 @@ class NotificationChannelManagerTests : FunSpec({
 
     test("processChannelList with existing OS channel should delete old OS channel when it is not in channel list") {
         // Given
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
 
         createChannel("local_existing_id", ApplicationProvider.getApplicationContext())
         createChannel("OS_existing_id", ApplicationProvider.getApplicationContext())
@@ -245,7 +265,7 @@ class NotificationChannelManagerTests : FunSpec({
 
     fun createChannelWithPri(pri: Int): Int {
         val mockTime = MockHelper.time(1111)
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
         val channelId = "test_pri_$pri"
         val payload =
             JSONObject()
@@ -312,7 +332,7 @@ class NotificationChannelManagerTests : FunSpec({
 
     test("processChannelList multilanguage") {
         // Given
-        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext())
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
 
         val payload =
             JSONArray()
@@ -349,6 +369,82 @@ class NotificationChannelManagerTests : FunSpec({
         lastGroup shouldNotBe null
         lastGroup!!.name shouldBe "en_grp_nm"
     }
+
+    test("processChannelList with the channel list last applied should skip it") {
+        // Given
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1", "OS_id2" to "name2"))
+        createChannel("local_existing_id", ApplicationProvider.getApplicationContext())
+
+        // When
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1", "OS_id2" to "name2"))
+
+        // Then
+        // Neither channel created again.
+        notificationChannelManager.skippedNotificationManagerCalls shouldBe 2
+        getChannel("local_existing_id", ApplicationProvider.getApplicationContext()) shouldNotBe null
+    }
+
+    test("processChannelList should create a channel again once it was deleted outside of the SDK") {
+        // Given
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1", "OS_id2" to "name2"))
+        val notificationManager = ApplicationProvider.getApplicationContext<Context>().getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        notificationManager.deleteNotificationChannel("OS_id1")
+
+        // When
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1", "OS_id2" to "name2"))
+
+        // Then
+        getChannel("OS_id1", ApplicationProvider.getApplicationContext())!!.name shouldBe "name1"
+        notificationChannelManager.skippedNotificationManagerCalls shouldBe 1
+    }
+
+    test("processChannelList with the channel list last applied should delete an OS channel it does not have") {
+        // Given
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1"))
+        createChannel("OS_existing_id", ApplicationProvider.getApplicationContext())
+
+        // When
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1"))
+
+        // Then
+        getChannel("OS_existing_id", ApplicationProvider.getApplicationContext()) shouldBe null
+        getChannel("OS_id1", ApplicationProvider.getApplicationContext()) shouldNotBe null
+    }
+
+    test("processChannelList with a changed channel list should only apply the changes") {
+        // Given
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences()))
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1", "OS_id2" to "name2", "OS_id3" to "name3"))
+
+        // When
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1", "OS_id2" to "new name2"))
+
+        // Then
+        notificationChannelManager.skippedNotificationManagerCalls shouldBe 1
+        getChannel("OS_id1", ApplicationProvider.getApplicationContext()) shouldNotBe null
+        getChannel("OS_id2", ApplicationProvider.getApplicationContext())!!.name shouldBe "new name2"
+        getChannel("OS_id3", ApplicationProvider.getApplicationContext()) shouldBe null
+    }
+
+    test("processChannelList should apply a channel again once a notification created it") {
+        // Given
+        val mockTime = MockHelper.time(1111)
+        val preferences = preferences()
+        NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences))
+            .processChannelList(channelList("OS_id1" to "name1"))
+        val notificationChannelManager = NotificationChannelManager(AndroidMockHelper.applicationService(), MockHelper.languageContext(), NotificationChannelFingerprint(preferences))
+        val payload = JSONObject().put("chnl", JSONObject().put("id", "OS_id1").put("nm", "from notification"))
+        notificationChannelManager.createNotificationChannel(NotificationGenerationJob(payload, mockTime))
+
+        // When
+        notificationChannelManager.processChannelList(channelList("OS_id1" to "name1"))
+
+        // Then
+        getChannel("OS_id1", ApplicationProvider.getApplicationContext())!!.name shouldBe "name1"
+    }
 })
 
 fun createChannel(
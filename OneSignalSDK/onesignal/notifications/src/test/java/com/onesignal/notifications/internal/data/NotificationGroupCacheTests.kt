@@ -0,0 +1,65 @@
+package com.onesignal.notifications.internal.data
+
+import com.onesignal.notifications.internal.data.impl.NotificationGroupCache
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+
+private fun child(androidId: Int) = INotificationRepository.NotificationData(androidId, "id$androidId", "{}", 0L, "title", "message")
+
+class NotificationGroupCacheTests : FunSpec({
+    test("a group is kept up to date once read") {
+        // Given
+        val cache = NotificationGroupCache()
+        cache.put("group", listOf(child(2), child(1)), cache.version)
+
+        // When
+        cache.onSaved("group", null, child(3))
+        cache.onSaved("other", null, child(4))
+        cache.onRemoved(1)
+
+        // Then
+        cache.get("group")!!.map { it.androidId } shouldBe listOf(3, 2)
+        // Never read, so not cached by saving into it.
+        cache.get("other") shouldBe null
+    }
+
+    test("a saved notification replaces the one with the same Android id") {
+        // Given
+        val cache = NotificationGroupCache()
+        cache.put("group", listOf(child(2), child(1)), cache.version)
+
+        // When
+        cache.onSaved("group", 1, child(1))
+
+        // Then
+        cache.get("group")!!.map { it.androidId } shouldBe listOf(1, 2)
+    }
+
+    test("a read from the table is not cached when the table changed during it") {
+        // Given
+        val cache = NotificationGroupCache()
+        val readAtVersion = cache.version
+
+        // When
+        cache.onSaved("group", null, child(3))
+        cache.put("group", listOf(child(2)), readAtVersion)
+
+        // Then
+        cache.get("group") shouldBe null
+    }
+
+    test("consuming a whole group leaves it cached as empty, invalidating forgets it") {
+        // Given
+        val cache = NotificationGroupCache()
+        cache.put("group", listOf(child(1)), cache.version)
+        cache.put("other", listOf(child(2)), cache.version)
+
+        // When
+        cache.onGroupRemoved("group")
+        cache.invalidate("other")
+
+        // Then
+        cache.get("group") shouldBe listOf()
+        cache.get("other") shouldBe null
+    }
+})
@@ -0,0 +1,123 @@
+package com.onesignal.notifications.internal.data
+
+import android.provider.BaseColumns
+import com.onesignal.core.internal.database.ICursor
+import com.onesignal.core.internal.database.IDatabase
+import com.onesignal.core.internal.database.IDatabaseProvider
+import com.onesignal.core.internal.database.impl.OneSignalDbContract
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.MockHelper
+import com.onesignal.notifications.internal.data.impl.NotificationRepository
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+
+/**
+ * A notification table of the rows in [rowIds], which answers the paged queries of the
+ * repository, and records the row id each of them continued from.
+ */
+private class PagedNotificationTable(
+    val rowIds: MutableList<Long>,
+) {
+    val queriedBefore = mutableListOf<Long>()
+    val queriedArgs = mutableListOf<List<String>>()
+
+    fun databaseProvider(): IDatabaseProvider {
+        val database = mockk<IDatabase>()
+        every { database.query(any(), any(), any(), any(), any(), any(), any(), any(), any()) } answers {
+            val whereArgs = arg<Array<String>>(3)
+            val beforeRowId = whereArgs.last().toLong()
+            val limit = arg<String>(7).toInt()
+            queriedArgs.add(whereArgs.toList())
+            queriedBefore.add(beforeRowId)
+
+            val page = rowIds.filter { it < beforeRowId }.sortedDescending().take(limit)
+            lastArg<(ICursor) -> Unit>().invoke(cursor(page))
+        }
+
+        val databaseProvider = mockk<IDatabaseProvider>()
+        every { databaseProvider.os } returns database
+        return databaseProvider
+    }
+
+    private fun cursor(page: List<Long>): ICursor {
+        val cursor = mockk<ICursor>()
+        var index = -1
+        every { cursor.count } returns page.size
+        every { cursor.moveToNext() } answers { ++index < page.size }
+        every { cursor.getLong(BaseColumns._ID) } answers { page[index] }
+        every { cursor.getLong(OneSignalDbContract.NotificationTable.COLUMN_NAME_CREATED_TIME) } answers { page[index] }
+        every { cursor.getInt(OneSignalDbContract.NotificationTable.COLUMN_NAME_ANDROID_NOTIFICATION_ID) } answers { page[index].toInt() }
+        every { cursor.getString(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID) } answers { "notification${page[index]}" }
+        every { cursor.getString(OneSignalDbContract.NotificationPayloadTable.COLUMN_NAME_FULL_DATA) } answers { "{}" }
+        every { cursor.getOptString(any()) } returns null
+        return cursor
+    }
+}
+
+private fun repository(table: PagedNotificationTable): NotificationRepository {
+    val queryHelper = mockk<INotificationQueryHelper>()
+    every { queryHelper.recentUninteractedWithNotificationsWhere() } answers { StringBuilder("1") }
+
+    return NotificationRepository(
+        MockHelper.applicationService(),
+        queryHelper,
+        table.databaseProvider(),
+        MockHelper.time(1_000L),
+        mockk(),
+        mockk(),
+        mockk(),
+    )
+}
+
+class NotificationRepositoryTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("outstanding notifications filling their last page exactly are each visited once, new to old") {
+        // Given
+        val table = PagedNotificationTable((1L..6L).toMutableList())
+        val visited = mutableListOf<Int>()
+
+        // When
+        repository(table).forEachNotificationForOutstanding(pageSize = 3) { visited.add(it.androidId) }
+
+        // Then
+        visited shouldBe listOf(6, 5, 4, 3, 2, 1)
+        // Each page continues below the last row of the one before, the empty third ends it.
+        table.queriedBefore shouldBe listOf(Long.MAX_VALUE, 4L, 1L)
+    }
+
+    test("no outstanding notifications visits none") {
+        // Given
+        val table = PagedNotificationTable(mutableListOf())
+        val visited = mutableListOf<Int>()
+
+        // When
+        repository(table).forEachNotificationForOutstanding(pageSize = 3) { visited.add(it.androidId) }
+
+        // Then
+        visited shouldBe listOf()
+        table.queriedBefore shouldBe listOf(Long.MAX_VALUE)
+    }
+
+    test("notifications deleted while visiting a page are neither visited twice nor make others skipped") {
+        // Given
+        val table = PagedNotificationTable((1L..7L).toMutableList())
+        val visited = mutableListOf<Int>()
+
+        // When
+        repository(table).forEachNotificationForGroup("group", pageSize = 3) {
+            visited.add(it.androidId)
+            // The first visit deletes a row of its own page, already read, and one of the next.
+            if (it.androidId == 7) table.rowIds.removeAll(listOf(6L, 3L))
+        }
+
+        // Then
+        visited shouldBe listOf(7, 6, 5, 4, 2, 1)
+        table.queriedArgs.map { it.first() }.distinct() shouldBe listOf("group")
+    }
+})
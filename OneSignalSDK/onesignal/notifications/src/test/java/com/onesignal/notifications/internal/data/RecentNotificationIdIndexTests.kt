@@ -0,0 +1,67 @@
+package com.onesignal.notifications.internal.data
+
+import com.onesignal.core.internal.database.impl.OneSignalDbContract
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.DatabaseMockHelper
+import com.onesignal.notifications.internal.data.impl.RecentNotificationIdIndex
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.verify
+
+class RecentNotificationIdIndexTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("loads the saved ids from the notification table once") {
+        // Given
+        val records = (0 until 100).map { mapOf(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID to "saved-$it") }
+        val mockDatabasePair = DatabaseMockHelper.databaseProvider(OneSignalDbContract.NotificationTable.TABLE_NAME, records)
+        val index = RecentNotificationIdIndex(mockDatabasePair.first)
+
+        // When
+        val savedResults = (0 until 100).map { index.mightBeSaved("saved-$it") }
+        val newResults = (0 until 100).count { index.mightBeSaved("new-$it") }
+
+        // Then
+        savedResults.all { it } shouldBe true
+        newResults shouldBe 0
+        verify(exactly = 1) {
+            mockDatabasePair.second.query(OneSignalDbContract.NotificationTable.TABLE_NAME, any(), any(), any(), any(), any(), any(), any(), any())
+        }
+    }
+
+    test("remembers ids saved after loading") {
+        // Given
+        val records = listOf(mapOf(OneSignalDbContract.NotificationTable.COLUMN_NAME_NOTIFICATION_ID to "saved"))
+        val mockDatabasePair = DatabaseMockHelper.databaseProvider(OneSignalDbContract.NotificationTable.TABLE_NAME, records)
+        val index = RecentNotificationIdIndex(mockDatabasePair.first)
+
+        // When
+        val before = index.mightBeSaved("new")
+        index.onSaved("new")
+        val after = index.mightBeSaved("new")
+
+        // Then
+        before shouldBe false
+        after shouldBe true
+    }
+
+    test("rejects an id that is already being processed until it ends") {
+        // Given
+        val mockDatabasePair = DatabaseMockHelper.databaseProvider(OneSignalDbContract.NotificationTable.TABLE_NAME)
+        val index = RecentNotificationIdIndex(mockDatabasePair.first)
+
+        // When
+        val first = index.beginProcessing("id")
+        val duplicate = index.beginProcessing("id")
+        index.endProcessing("id")
+        val afterEnd = index.beginProcessing("id")
+
+        // Then
+        first shouldBe true
+        duplicate shouldBe false
+        afterEnd shouldBe true
+    }
+})
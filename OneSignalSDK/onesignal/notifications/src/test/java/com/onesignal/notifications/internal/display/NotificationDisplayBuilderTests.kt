@@ -34,6 +34,7 @@ class NotificationDisplayBuilderTests : FunSpec({
         val builder = NotificationDisplayBuilder(
             AndroidMockHelper.applicationService(),
             channelManager,
+            mockk<INotificationImageLoader>(),
         )
 
         val payload = JSONObject()
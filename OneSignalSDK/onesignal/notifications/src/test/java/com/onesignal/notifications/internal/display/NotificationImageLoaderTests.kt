@@ -0,0 +1,162 @@
+package com.onesignal.notifications.internal.display
+
+import android.content.Context
+import android.graphics.BitmapFactory
+import androidx.test.core.app.ApplicationProvider
+import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.AndroidMockHelper
+import com.onesignal.mocks.MockHelper
+import com.onesignal.notifications.internal.display.impl.NotificationImageLoader
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.nulls.shouldBeNull
+import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockkStatic
+import io.mockk.unmockkStatic
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.io.InputStream
+import java.net.HttpURLConnection
+import java.net.URL
+import java.nio.file.Files
+
+private const val IMAGE_URL = "https://example.com/image.png"
+private const val DAY_MS = 24 * 60 * 60 * 1_000L
+
+private class FakeImageConnection(
+    private val body: ByteArray,
+    private val length: Int = body.size,
+) : HttpURLConnection(URL(IMAGE_URL)) {
+    override fun getContentLength(): Int = length
+
+    override fun getInputStream(): InputStream = ByteArrayInputStream(body)
+
+    override fun connect() {}
+
+    override fun disconnect() {}
+
+    override fun usingProxy(): Boolean = false
+}
+
+@RobolectricTest
+class NotificationImageLoaderTests : FunSpec({
+    var connections = 0
+
+    fun imageLoader(
+        now: Long = System.currentTimeMillis(),
+        body: ByteArray = ByteArray(100),
+        length: Int = body.size,
+    ) = NotificationImageLoader(AndroidMockHelper.applicationService(), MockHelper.time(now)) {
+        connections++
+        FakeImageConnection(body, length)
+    }
+
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    beforeTest {
+        connections = 0
+        File(ApplicationProvider.getApplicationContext<Context>().cacheDir, "onesignal").deleteRecursively()
+    }
+
+    test("an image is downloaded once, then loaded from memory and from disk") {
+        // Given
+        val loader = imageLoader()
+
+        // When
+        val downloaded = loader.load(IMAGE_URL, 50, 50)
+        val fromMemory = loader.load(IMAGE_URL, 50, 50)
+        val otherLoader = imageLoader()
+        val fromDisk = otherLoader.load(IMAGE_URL, 50, 50)
+
+        // Then
+        downloaded.shouldNotBeNull()
+        fromMemory shouldBe downloaded
+        fromDisk.shouldNotBeNull()
+        connections shouldBe 1
+        loader.stats.memoryHits shouldBe 1
+        loader.stats.misses shouldBe 1
+        otherLoader.stats.diskHits shouldBe 1
+    }
+
+    test("an image cached on disk past its max age is downloaded again") {
+        // Given
+        val now = System.currentTimeMillis()
+        imageLoader(now).load(IMAGE_URL, 50, 50)
+
+        // When
+        val loader = imageLoader(now + 8 * DAY_MS)
+        val bitmap = loader.load(IMAGE_URL, 50, 50)
+
+        // Then
+        bitmap.shouldNotBeNull()
+        connections shouldBe 2
+        loader.stats.diskHits shouldBe 0
+    }
+
+    test("an image over the byte limit is neither returned nor cached") {
+        // Given
+        // The server does not send a content length, the limit is hit while reading.
+        val loader = imageLoader(body = ByteArray(NotificationImageLoader.MAX_IMAGE_BYTES + 1), length = -1)
+
+        // When
+        val bitmap = loader.load(IMAGE_URL, 50, 50)
+
+        // Then
+        bitmap.shouldBeNull()
+        val cacheDir = File(ApplicationProvider.getApplicationContext<Context>().cacheDir, "onesignal/notification_images")
+        (cacheDir.listFiles()?.size ?: 0) shouldBe 0
+    }
+
+    test("downloaded bytes that do not decode are removed from the disk cache") {
+        // Given
+        mockkStatic(BitmapFactory::class)
+        every { BitmapFactory.decodeByteArray(any(), any(), any(), any()) } returns null
+        val loader = imageLoader()
+
+        // When
+        val first = loader.load(IMAGE_URL, 50, 50)
+        val second = loader.load(IMAGE_URL, 50, 50)
+        unmockkStatic(BitmapFactory::class)
+
+        // Then
+        first.shouldBeNull()
+        second.shouldBeNull()
+        connections shouldBe 2
+        loader.stats.diskHits shouldBe 0
+    }
+
+    test("calculateInSampleSize halves the image while it still covers the slot") {
+        NotificationImageLoader.calculateInSampleSize(4000, 3000, 1080, 540) shouldBe 2
+        NotificationImageLoader.calculateInSampleSize(4000, 3000, 192, 192) shouldBe 8
+        NotificationImageLoader.calculateInSampleSize(4000, 3000, 4000, 3000) shouldBe 1
+    }
+
+    test("calculateInSampleSize does not downsample an image smaller than the slot") {
+        NotificationImageLoader.calculateInSampleSize(100, 100, 192, 192) shouldBe 1
+        NotificationImageLoader.calculateInSampleSize(4000, 3000, 0, 0) shouldBe 1
+    }
+
+    test("trimDiskCache deletes the oldest files until under the limit") {
+        // Given
+        val dir = Files.createTempDirectory("notification_images").toFile()
+        val files =
+            (0 until 4).map {
+                File(dir, "image$it").apply {
+                    writeBytes(ByteArray(100))
+                    setLastModified(1_000_000L + it * 1_000L)
+                }
+            }
+
+        // When
+        NotificationImageLoader.trimDiskCache(dir, 250)
+
+        // Then
+        files.map { it.exists() } shouldBe listOf(false, false, true, true)
+        dir.deleteRecursively()
+    }
+})
@@ -1,6 +1,7 @@
 package com.onesignal.notifications.internal.generation
 
 import android.content.Context
+import android.graphics.Bitmap
 import com.onesignal.common.threading.OneSignalDispatchers
 import com.onesignal.common.threading.suspendifyOnIO
 import com.onesignal.debug.LogLevel
@@ -10,10 +11,14 @@ import com.onesignal.mocks.IOMockHelper
 import com.onesignal.mocks.MockHelper
 import com.onesignal.notifications.INotificationReceivedEvent
 import com.onesignal.notifications.INotificationWillDisplayEvent
+import com.onesignal.notifications.internal.common.NotificationGenerationJob
 import com.onesignal.notifications.internal.data.INotificationRepository
 import com.onesignal.notifications.internal.display.INotificationDisplayer
+import com.onesignal.notifications.internal.display.INotificationImageLoader
+import com.onesignal.notifications.internal.display.NotificationImageSlot
 import com.onesignal.notifications.internal.generation.impl.NotificationGenerationProcessor
 import com.onesignal.notifications.internal.lifecycle.INotificationLifecycleService
+import com.onesignal.notifications.internal.tracing.impl.NotificationPipelineTracer
 import io.kotest.core.spec.style.FunSpec
 import io.kotest.matchers.shouldBe
 import io.mockk.coEvery
@@ -23,6 +28,7 @@ import io.mockk.just
 import io.mockk.mockk
 import io.mockk.mockkStatic
 import io.mockk.runs
+import io.mockk.slot
 import io.mockk.spyk
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
@@ -32,11 +38,14 @@ import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withTimeout
 import org.json.JSONObject
+import java.util.concurrent.CountDownLatch
 
 // Mocks used by every test in this file
 private class Mocks {
     val notificationDisplayer = mockk<INotificationDisplayer>()
 
+    val imageLoader = mockk<INotificationImageLoader>()
+
     val context = mockk<Context>(relaxed = true)
 
     val applicationService =
@@ -85,6 +94,8 @@ private class Mocks {
                 mockk(),
                 notificationLifecycleService,
                 MockHelper.time(1111),
+                imageLoader,
+                NotificationPipelineTracer { 0L },
             ), recordPrivateCalls = true
         )
         every { mock getProperty "EXTERNAL_CALLBACKS_TIMEOUT" } answers { 10L }
@@ -155,6 +166,24 @@ class NotificationGenerationProcessorTests : FunSpec({
         }
     }
 
+    test("processReplacedNotificationData should call the service extension, then save and receive the notification without displaying it") {
+        // Given
+        val mocks = Mocks()
+        coEvery { mocks.notificationLifecycleService.externalRemoteNotificationReceived(any()) } just runs
+
+        // When
+        mocks.notificationGenerationProcessor.processReplacedNotificationData(mocks.context, 1, mocks.notificationPayload, 1111)
+
+        // Then
+        coVerify(exactly = 1) { mocks.notificationLifecycleService.externalRemoteNotificationReceived(any()) }
+        coVerify(exactly = 0) { mocks.notificationLifecycleService.externalNotificationWillShowInForeground(any()) }
+        coVerify(exactly = 0) { mocks.notificationDisplayer.displayNotification(any()) }
+        coVerify(exactly = 1) {
+            mocks.notificationRepository.createNotification("UUID1", null, null, false, true, 1, "test title", "test message", any(), any())
+        }
+        coVerify(exactly = 1) { mocks.notificationLifecycleService.notificationReceived(any()) }
+    }
+
     test("processNotificationData should restore notification correctly") {
         // Given
         val mocks = Mocks()
@@ -355,4 +384,65 @@ class NotificationGenerationProcessorTests : FunSpec({
             mocks.notificationDisplayer.displayNotification(any())
         }
     }
+
+    test("processNotificationData hands the prefetched image to the display") {
+        // Given
+        val mocks = Mocks()
+        val bitmap = mockk<Bitmap>()
+        every { mocks.imageLoader.load("https://example.com/big.png", any(), any()) } returns bitmap
+        val job = slot<NotificationGenerationJob>()
+        coEvery { mocks.notificationDisplayer.displayNotification(capture(job)) } returns true
+        coEvery { mocks.notificationLifecycleService.externalRemoteNotificationReceived(any()) } just runs
+        coEvery { mocks.notificationLifecycleService.externalNotificationWillShowInForeground(any()) } just runs
+        val payload = JSONObject(mocks.notificationPayload.toString()).put("bicon", "https://example.com/big.png")
+
+        // When
+        mocks.notificationGenerationProcessor.processNotificationData(mocks.context, 1, payload, false, 1111)
+
+        // Then
+        job.captured.prefetchedImages shouldBe mapOf(NotificationImageSlot.BIG_PICTURE to bitmap)
+    }
+
+    test("processNotificationData displays without an image that could not be loaded") {
+        // Given
+        val mocks = Mocks()
+        every { mocks.imageLoader.load(any(), any(), any()) } returns null
+        val job = slot<NotificationGenerationJob>()
+        coEvery { mocks.notificationDisplayer.displayNotification(capture(job)) } returns true
+        coEvery { mocks.notificationLifecycleService.externalRemoteNotificationReceived(any()) } just runs
+        coEvery { mocks.notificationLifecycleService.externalNotificationWillShowInForeground(any()) } just runs
+        val payload = JSONObject(mocks.notificationPayload.toString()).put("bicon", "https://example.com/big.png")
+
+        // When
+        mocks.notificationGenerationProcessor.processNotificationData(mocks.context, 1, payload, false, 1111)
+
+        // Then
+        job.captured.prefetchedImages shouldBe mapOf()
+    }
+
+    test("processNotificationData displays without an image still loading at the prefetch deadline") {
+        // Given
+        val mocks = Mocks()
+        every { mocks.notificationGenerationProcessor getProperty "IMAGE_PREFETCH_TIMEOUT" } answers { 10L }
+        val releaseLoad = CountDownLatch(1)
+        every { mocks.imageLoader.load(any(), any(), any()) } answers {
+            releaseLoad.await()
+            mockk<Bitmap>()
+        }
+        val job = slot<NotificationGenerationJob>()
+        coEvery { mocks.notificationDisplayer.displayNotification(capture(job)) } returns true
+        coEvery { mocks.notificationLifecycleService.externalRemoteNotificationReceived(any()) } just runs
+        coEvery { mocks.notificationLifecycleService.externalNotificationWillShowInForeground(any()) } just runs
+        val payload = JSONObject(mocks.notificationPayload.toString()).put("bicon", "https://example.com/big.png")
+
+        // When
+        withTimeout(1_000) {
+            mocks.notificationGenerationProcessor.processNotificationData(mocks.context, 1, payload, false, 1111)
+        }
+        releaseLoad.countDown()
+
+        // Then
+        job.captured.prefetchedImages shouldBe mapOf()
+        coVerify(exactly = 1) { mocks.notificationDisplayer.displayNotification(any()) }
+    }
 })
@@ -0,0 +1,173 @@
+package com.onesignal.notifications.internal.generation
+
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.notifications.internal.common.NotificationPostPacer
+import com.onesignal.notifications.internal.generation.impl.NotificationIngestionQueue
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.yield
+import org.json.JSONObject
+
+private fun time(): ITime {
+    val time = mockk<ITime>()
+    every { time.currentTimeMillis } returns 1_000L
+    return time
+}
+
+private fun queue(time: ITime = time()) = NotificationIngestionQueue(time, mockk<NotificationPostPacer>(relaxed = true))
+
+class NotificationIngestionQueueTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("notifications are processed one at a time in the order received") {
+        // Given
+        val queue = queue()
+        queue.reserve("id1", null)
+        queue.reserve("id2", null)
+        queue.reserve("id3", null)
+        val processed = mutableListOf<String>()
+        var running = 0
+        var maxRunning = 0
+
+        // When
+        coroutineScope {
+            // The workers start in a different order than the notifications were received.
+            for (id in listOf("id3", "id2", "id1")) {
+                launch {
+                    queue.process(id, null) {
+                        running++
+                        maxRunning = maxOf(maxRunning, running)
+                        yield()
+                        processed.add(id)
+                        running--
+                    }
+                }
+                yield()
+            }
+        }
+
+        // Then
+        processed shouldBe listOf("id1", "id2", "id3")
+        maxRunning shouldBe 1
+        queue.depth shouldBe 0
+    }
+
+    test("a worker started before the one of an earlier notification waits for it") {
+        // Given
+        val queue = queue()
+        queue.reserve("id1", null)
+        queue.reserve("id2", null)
+        val processed = mutableListOf<String>()
+
+        // When
+        coroutineScope {
+            launch { queue.process("id2", null) { processed.add("id2") } }
+            // Runs the worker of id2 up to where it waits for its turn.
+            repeat(10) { yield() }
+            processed shouldBe emptyList()
+
+            launch { queue.process("id1", null) { processed.add("id1") } }
+        }
+
+        // Then
+        processed shouldBe listOf("id1", "id2")
+        queue.depth shouldBe 0
+    }
+
+    test("an earlier notification whose worker does not start holds up the ones behind it only for a while") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val queue = queue(time)
+        queue.reserve("id1", null)
+        queue.reserve("id2", null)
+
+        // When
+        now += NotificationIngestionQueue.HEAD_START_WAIT_MS
+        var ran = false
+        val processed = queue.process("id2", null) { ran = true }
+
+        // Then
+        processed shouldBe true
+        ran shouldBe true
+        // id1 keeps its place until its worker starts or its reservation goes stale.
+        queue.depth shouldBe 1
+    }
+
+    test("a notification replaced by a later one with the same collapse key is skipped") {
+        // Given
+        val queue = queue()
+        queue.reserve("id1", "score")
+        queue.reserve("id2", null)
+        queue.reserve("id3", "score")
+        val processed = mutableListOf<String>()
+
+        // When
+        val results =
+            coroutineScope {
+                listOf("id1", "id2", "id3").map { id ->
+                    async { queue.process(id, if (id == "id2") null else "score") { processed.add(id) } }
+                }.awaitAll()
+            }
+
+        // Then
+        results shouldBe listOf(false, true, true)
+        processed shouldBe listOf("id2", "id3")
+    }
+
+    test("a full queue turns further reservations away") {
+        // Given
+        val queue = queue()
+        for (i in 0 until NotificationIngestionQueue.MAX_QUEUE_DEPTH) {
+            queue.reserve("id$i", null)
+        }
+
+        // When
+        val reserved = queue.reserve("late", null)
+
+        // Then
+        reserved shouldBe false
+        queue.depth shouldBe NotificationIngestionQueue.MAX_QUEUE_DEPTH
+    }
+
+    test("a worker waiting for room takes the place of reservations gone stale") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val queue = queue(time)
+        for (i in 0 until NotificationIngestionQueue.MAX_QUEUE_DEPTH) {
+            queue.reserve("id$i", null)
+        }
+
+        // When
+        // None of the reserved notifications' workers started.
+        now += 3 * 60 * 1_000L
+        var ran = false
+        val processed = queue.process("late", null) { ran = true }
+
+        // Then
+        processed shouldBe true
+        ran shouldBe true
+        queue.depth shouldBe 0
+    }
+
+    test("collapse keys are not merged while restoring") {
+        val payload = JSONObject().put("collapse_key", "score")
+
+        NotificationIngestionQueue.collapseKeyOf(payload, false) shouldBe "score"
+        NotificationIngestionQueue.collapseKeyOf(payload, true) shouldBe null
+        NotificationIngestionQueue.collapseKeyOf(JSONObject().put("collapse_key", "do_not_collapse"), false) shouldBe null
+    }
+})
@@ -0,0 +1,170 @@
+package com.onesignal.notifications.internal.receivereceipt
+
+import com.onesignal.common.exceptions.BackendException
+import com.onesignal.core.internal.device.IDeviceService
+import com.onesignal.core.internal.preferences.IPreferencesService
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.MockHelper
+import com.onesignal.notifications.internal.backend.INotificationBackendService
+import com.onesignal.notifications.internal.receivereceipt.impl.PendingReceiveReceipt
+import com.onesignal.notifications.internal.receivereceipt.impl.ReceiveReceiptProcessor
+import com.onesignal.notifications.internal.receivereceipt.impl.ReceiveReceiptQueue
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.every
+import io.mockk.just
+import io.mockk.mockk
+import io.mockk.runs
+
+private fun preferences(): IPreferencesService {
+    val values = mutableMapOf<String, Any?>()
+    val preferences = mockk<IPreferencesService>()
+    every { preferences.getString(any(), any(), any()) } answers { values[secondArg()] as String? }
+    every { preferences.saveString(any(), any(), any()) } answers { values[secondArg()] = thirdArg() }
+    every { preferences.getLong(any(), any(), any()) } answers { values[secondArg()] as Long? ?: thirdArg() }
+    every { preferences.saveLong(any(), any(), any()) } answers { values[secondArg()] = thirdArg() }
+    return preferences
+}
+
+private fun deviceService(): IDeviceService {
+    val deviceService = mockk<IDeviceService>()
+    every { deviceService.deviceType } returns IDeviceService.DeviceType.Android
+    return deviceService
+}
+
+class ReceiveReceiptProcessorTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("queued receipts of the same subscription are sent in one request") {
+        // Given
+        val backend = mockk<INotificationBackendService>()
+        coEvery { backend.updateNotificationsAsReceived(any(), any(), any(), any()) } just runs
+        val preferences = preferences()
+        val queue = ReceiveReceiptQueue(preferences)
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification2"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+        val processor = ReceiveReceiptProcessor(deviceService(), backend, queue, preferences, MockHelper.time(1_000L))
+
+        // When
+        val emptied = processor.sendQueuedReceiveReceipts()
+
+        // Then
+        emptied shouldBe true
+        queue.size shouldBe 0
+        coVerify(exactly = 1) {
+            backend.updateNotificationsAsReceived(
+                "appId",
+                listOf("notification1", "notification2"),
+                "subscriptionId",
+                IDeviceService.DeviceType.Android,
+            )
+        }
+    }
+
+    test("receipts are sent one at a time when the backend does not accept batches") {
+        // Given
+        val backend = mockk<INotificationBackendService>()
+        coEvery { backend.updateNotificationsAsReceived(any(), any(), any(), any()) } throws BackendException(404)
+        coEvery { backend.updateNotificationAsReceived(any(), any(), any(), any()) } just runs
+        val preferences = preferences()
+        val queue = ReceiveReceiptQueue(preferences)
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification2"))
+        val processor = ReceiveReceiptProcessor(deviceService(), backend, queue, preferences, MockHelper.time(1_000L))
+
+        // When
+        processor.sendQueuedReceiveReceipts()
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification3"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification4"))
+        val emptied = processor.sendQueuedReceiveReceipts()
+
+        // Then
+        emptied shouldBe true
+        queue.size shouldBe 0
+        // The batch is only tried once, later receipts go straight to one at a time.
+        coVerify(exactly = 1) { backend.updateNotificationsAsReceived(any(), any(), any(), any()) }
+        coVerify(exactly = 4) { backend.updateNotificationAsReceived("appId", any(), "subscriptionId", any()) }
+    }
+
+    test("receipts are still sent one at a time after the process restarts") {
+        // Given
+        val backend = mockk<INotificationBackendService>()
+        coEvery { backend.updateNotificationsAsReceived(any(), any(), any(), any()) } throws BackendException(404)
+        coEvery { backend.updateNotificationAsReceived(any(), any(), any(), any()) } just runs
+        val preferences = preferences()
+        val queue = ReceiveReceiptQueue(preferences)
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification2"))
+        ReceiveReceiptProcessor(deviceService(), backend, queue, preferences, MockHelper.time(1_000L)).sendQueuedReceiveReceipts()
+
+        // When
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification3"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification4"))
+        val emptied = ReceiveReceiptProcessor(deviceService(), backend, queue, preferences, MockHelper.time(2_000L)).sendQueuedReceiveReceipts()
+
+        // Then
+        emptied shouldBe true
+        coVerify(exactly = 1) { backend.updateNotificationsAsReceived(any(), any(), any(), any()) }
+        coVerify(exactly = 4) { backend.updateNotificationAsReceived("appId", any(), "subscriptionId", any()) }
+    }
+
+    test("a batch turned down as a bad request does not stop later receipts being batched") {
+        // Given
+        val backend = mockk<INotificationBackendService>()
+        coEvery { backend.updateNotificationsAsReceived(any(), any(), any(), any()) } throws BackendException(400) andThen Unit
+        coEvery { backend.updateNotificationAsReceived(any(), any(), any(), any()) } just runs
+        val preferences = preferences()
+        val queue = ReceiveReceiptQueue(preferences)
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification2"))
+        val processor = ReceiveReceiptProcessor(deviceService(), backend, queue, preferences, MockHelper.time(1_000L))
+
+        // When
+        processor.sendQueuedReceiveReceipts()
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification3"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification4"))
+        val emptied = processor.sendQueuedReceiveReceipts()
+
+        // Then
+        emptied shouldBe true
+        queue.size shouldBe 0
+        coVerify(exactly = 2) { backend.updateNotificationsAsReceived(any(), any(), any(), any()) }
+        coVerify(exactly = 0) { backend.updateNotificationAsReceived(any(), any(), any(), any()) }
+    }
+
+    test("receipts stay queued when sending them can be retried") {
+        // Given
+        val backend = mockk<INotificationBackendService>()
+        coEvery { backend.updateNotificationsAsReceived(any(), any(), any(), any()) } throws BackendException(503)
+        val preferences = preferences()
+        val queue = ReceiveReceiptQueue(preferences)
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+        queue.add(PendingReceiveReceipt("appId", "subscriptionId", "notification2"))
+        val processor = ReceiveReceiptProcessor(deviceService(), backend, queue, preferences, MockHelper.time(1_000L))
+
+        // When
+        val emptied = processor.sendQueuedReceiveReceipts()
+
+        // Then
+        emptied shouldBe false
+        queue.peek(10).map { it.notificationId } shouldBe listOf("notification1", "notification2")
+    }
+
+    test("the queue survives being reloaded from the preferences") {
+        // Given
+        val preferences = preferences()
+        ReceiveReceiptQueue(preferences).add(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+
+        // When
+        val receipts = ReceiveReceiptQueue(preferences).peek(10)
+
+        // Then
+        receipts shouldBe listOf(PendingReceiveReceipt("appId", "subscriptionId", "notification1"))
+    }
+})
@@ -0,0 +1,96 @@
+package com.onesignal.notifications.internal.restoration
+
+import br.com.colman.kotest.android.extensions.robolectric.RobolectricTest
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.mocks.AndroidMockHelper
+import com.onesignal.notifications.internal.common.NotificationPostPacer
+import com.onesignal.notifications.internal.data.INotificationRepository
+import com.onesignal.notifications.internal.data.IRecentNotificationIdIndex
+import com.onesignal.notifications.internal.generation.INotificationGenerationProcessor
+import com.onesignal.notifications.internal.restoration.impl.NotificationRestoreProcessor
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.coEvery
+import io.mockk.coVerify
+import io.mockk.every
+import io.mockk.just
+import io.mockk.mockk
+import io.mockk.runs
+
+private fun notification(androidId: Int) =
+    INotificationRepository.NotificationData(androidId, "notification$androidId", "{}", 0L, null, null)
+
+@RobolectricTest
+class NotificationRestoreProcessorTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    fun processor(
+        time: ITime,
+        repository: INotificationRepository,
+        generationProcessor: INotificationGenerationProcessor,
+    ): NotificationRestoreProcessor {
+        val recentNotificationIds = mockk<IRecentNotificationIdIndex>()
+        every { recentNotificationIds.beginProcessing(any()) } returns true
+        every { recentNotificationIds.endProcessing(any()) } just runs
+
+        return NotificationRestoreProcessor(
+            AndroidMockHelper.applicationService(),
+            mockk(),
+            repository,
+            mockk(relaxed = true),
+            recentNotificationIds,
+            mockk<NotificationPostPacer>(relaxed = true),
+            time,
+            lazy { generationProcessor },
+        )
+    }
+
+    test("stops restoring once out of time and returns the ones restored for the follow-up") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val repository = mockk<INotificationRepository>()
+        coEvery { repository.forEachNotificationForOutstanding(any(), any(), any()) } coAnswers {
+            val action = thirdArg<suspend (INotificationRepository.NotificationData) -> Unit>()
+            for (androidId in 1..3) action(notification(androidId))
+        }
+        val generationProcessor = mockk<INotificationGenerationProcessor>()
+        // Each notification takes its generation processor 5 minutes.
+        coEvery { generationProcessor.processNotificationData(any(), any(), any(), any(), any()) } coAnswers {
+            now += 5 * 60 * 1_000L
+        }
+
+        // When
+        val restored = processor(time, repository, generationProcessor).process(listOf(7))
+
+        // Then
+        restored shouldBe listOf(7, 1, 2)
+        coVerify(exactly = 2) { generationProcessor.processNotificationData(any(), any(), any(), any(), any()) }
+        coVerify { repository.forEachNotificationForOutstanding(listOf(7), any(), any()) }
+    }
+
+    test("returns null once every notification is restored") {
+        // Given
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } returns 1_000L
+        val repository = mockk<INotificationRepository>()
+        coEvery { repository.forEachNotificationForOutstanding(any(), any(), any()) } coAnswers {
+            val action = thirdArg<suspend (INotificationRepository.NotificationData) -> Unit>()
+            for (androidId in 1..3) action(notification(androidId))
+        }
+        val generationProcessor = mockk<INotificationGenerationProcessor>()
+        coEvery { generationProcessor.processNotificationData(any(), any(), any(), any(), any()) } just runs
+
+        // When
+        val restored = processor(time, repository, generationProcessor).process()
+
+        // Then
+        restored shouldBe null
+        coVerify(exactly = 3) { generationProcessor.processNotificationData(any(), any(), any(), any(), any()) }
+    }
+})
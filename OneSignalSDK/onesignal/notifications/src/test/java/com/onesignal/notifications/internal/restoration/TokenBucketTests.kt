@@ -0,0 +1,49 @@
+package com.onesignal.notifications.internal.restoration
+
+import com.onesignal.core.internal.time.ITime
+import com.onesignal.notifications.internal.restoration.impl.TokenBucket
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+
+class TokenBucketTests : FunSpec({
+    test("lets a burst through, then paces to the refill rate") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val bucket = TokenBucket(2.0, 4.0, time)
+
+        // When
+        val burst = listOf(bucket.tryTake(), bucket.tryTake())
+        val waitAfterBurst = bucket.tryTake()
+        now += 250
+        val afterRefill = bucket.tryTake()
+
+        // Then
+        burst shouldBe listOf(0L, 0L)
+        waitAfterBurst shouldBe 250L
+        afterRefill shouldBe 0L
+    }
+
+    test("counts the time spent between takes towards the next token") {
+        // Given
+        var now = 1_000L
+        val time = mockk<ITime>()
+        every { time.currentTimeMillis } answers { now }
+        val bucket = TokenBucket(1.0, 4.0, time)
+
+        // When
+        bucket.tryTake()
+        now += 100
+        val wait = bucket.tryTake()
+        now += 10_000
+        val afterIdle = listOf(bucket.tryTake(), bucket.tryTake())
+
+        // Then
+        wait shouldBe 150L
+        // Never holds more than its capacity, however long it was idle.
+        afterIdle shouldBe listOf(0L, 250L)
+    }
+})
@@ -125,10 +125,11 @@ class NotificationSummaryManagerTests : FunSpec({
         // Given
         val mockNotificationRepository = mockk<INotificationRepository>()
         coEvery { mockNotificationRepository.getGroupId(1) } returns "groupId"
-        coEvery { mockNotificationRepository.listNotificationsForGroup("groupId") } returns
-            listOf(
-                INotificationRepository.NotificationData(2, "notificationId2", "{key: \"value2\"}", 1111, "title2", "message2"),
-            )
+        val notification = INotificationRepository.NotificationData(2, "notificationId2", "{key: \"value2\"}", 1111, "title2", "message2")
+        coEvery { mockNotificationRepository.listNotificationsForGroup("groupId") } returns listOf(notification)
+        coEvery { mockNotificationRepository.forEachNotificationForGroup("groupId", any(), any()) } coAnswers {
+            thirdArg<suspend (INotificationRepository.NotificationData) -> Unit>().invoke(notification)
+        }
         coEvery { mockNotificationRepository.getAndroidIdForGroup("groupId", true) } returns 99
         val mockSummaryNotificationDisplayer = mockk<ISummaryNotificationDisplayer>()
         val mockNotificationRestoreProcessor = mockk<INotificationRestoreProcessor>()
@@ -149,7 +150,8 @@ class NotificationSummaryManagerTests : FunSpec({
 
         // Then
         coVerify(exactly = 1) { mockNotificationRepository.getGroupId(1) }
-        coVerify(exactly = 2) { mockNotificationRepository.listNotificationsForGroup("groupId") }
+        coVerify(exactly = 1) { mockNotificationRepository.listNotificationsForGroup("groupId") }
+        coVerify(exactly = 1) { mockNotificationRepository.forEachNotificationForGroup("groupId", any(), any()) }
         coVerify(exactly = 1) { mockNotificationRepository.getAndroidIdForGroup("groupId", true) }
         coVerify(exactly = 1) {
             mockNotificationRestoreProcessor.processNotification(
@@ -0,0 +1,135 @@
+package com.onesignal.notifications.internal.tracing
+
+import com.onesignal.debug.ILogListener
+import com.onesignal.debug.LogLevel
+import com.onesignal.debug.OneSignalLogEvent
+import com.onesignal.debug.internal.logging.Logging
+import com.onesignal.notifications.internal.tracing.impl.NotificationPipelineTracer
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.mockk.every
+import io.mockk.mockk
+
+class NotificationPipelineTracerTests : FunSpec({
+    beforeAny {
+        Logging.logLevel = LogLevel.NONE
+    }
+
+    test("each stage is timed from the stage before it") {
+        // Given
+        var now = 1_000L
+        val tracer = NotificationPipelineTracer { now }
+
+        // When
+        tracer.begin("notificationId")
+        now += 5
+        tracer.mark("notificationId", NotificationPipelineStage.ENQUEUED)
+        now += 300
+        tracer.mark("notificationId", NotificationPipelineStage.EXTENSION_DONE)
+        now += 20
+        tracer.mark("notificationId", NotificationPipelineStage.DISPLAYED)
+        tracer.finish("notificationId")
+
+        // Then
+        val snapshot = tracer.snapshot()
+        snapshot["enqueued"] shouldBe "count=1 avg=5ms max=5ms histogram=0,1,0,0,0,0,0,0,0,0,0,0,0"
+        snapshot["extension_done"] shouldBe "count=1 avg=300ms max=300ms histogram=0,0,0,0,0,0,1,0,0,0,0,0,0"
+        snapshot["displayed"] shouldBe "count=1 avg=20ms max=20ms histogram=0,0,1,0,0,0,0,0,0,0,0,0,0"
+        snapshot["total"] shouldBe "count=1 avg=325ms max=325ms histogram=0,0,0,0,0,0,1,0,0,0,0,0,0"
+    }
+
+    test("notifications without a trace are not recorded") {
+        // Given
+        val tracer = NotificationPipelineTracer { 1_000L }
+
+        // When
+        tracer.mark("restored", NotificationPipelineStage.DISPLAYED)
+        tracer.finish("restored")
+
+        // Then
+        tracer.receivedAt("restored") shouldBe null
+        tracer.snapshot() shouldBe mapOf("total" to "count=0 avg=0ms max=0ms histogram=0,0,0,0,0,0,0,0,0,0,0,0,0")
+    }
+
+    test("a trace carried over from another process keeps its receive time") {
+        // Given
+        var now = 1_000L
+        val tracer = NotificationPipelineTracer { now }
+        tracer.begin("notificationId", 400L)
+
+        // When
+        tracer.begin("notificationId")
+        now += 100
+        tracer.mark("notificationId", NotificationPipelineStage.WORKER_STARTED)
+
+        // Then
+        tracer.receivedAt("notificationId") shouldBe 400L
+        tracer.finish("notificationId")
+        tracer.snapshot()["worker_started"] shouldBe "count=1 avg=700ms max=700ms histogram=0,0,0,0,0,0,0,1,0,0,0,0,0"
+    }
+
+    test("a receive time from before the device restarted starts no trace") {
+        // Given
+        val tracer = NotificationPipelineTracer { 1_000L }
+
+        // When
+        tracer.begin("notificationId", 50_000L)
+
+        // Then
+        tracer.receivedAt("notificationId") shouldBe null
+    }
+
+    test("only a trace slow to process is logged as a warning") {
+        // Given
+        var now = 1_000L
+        val tracer = NotificationPipelineTracer { now }
+        val levels = mutableListOf<LogLevel>()
+        val listener = mockk<ILogListener>()
+        every { listener.onLogEvent(any()) } answers {
+            levels.add(firstArg<OneSignalLogEvent>().level)
+            Unit
+        }
+        Logging.addListener(listener)
+
+        // When
+        // Waiting for the worker to start is not processing.
+        tracer.begin("waited")
+        now += 30_000
+        tracer.mark("waited", NotificationPipelineStage.PROCESSING_STARTED)
+        now += 100
+        tracer.mark("waited", NotificationPipelineStage.DISPLAYED)
+        tracer.finish("waited")
+        tracer.begin("slow")
+        tracer.mark("slow", NotificationPipelineStage.PROCESSING_STARTED)
+        now += 8_000
+        tracer.mark("slow", NotificationPipelineStage.DISPLAYED)
+        tracer.finish("slow")
+        Logging.removeListener(listener)
+
+        // Then
+        levels shouldBe listOf(LogLevel.DEBUG, LogLevel.WARN)
+    }
+
+    test("the stage histograms are logged as info every 20 traces") {
+        // Given
+        val tracer = NotificationPipelineTracer { 1_000L }
+        val histograms = mutableListOf<LogLevel>()
+        val listener = mockk<ILogListener>()
+        every { listener.onLogEvent(any()) } answers {
+            val event = firstArg<OneSignalLogEvent>()
+            if (event.entry.contains("stage histograms")) histograms.add(event.level)
+            Unit
+        }
+        Logging.addListener(listener)
+
+        // When
+        repeat(40) {
+            tracer.begin("notification$it")
+            tracer.finish("notification$it")
+        }
+        Logging.removeListener(listener)
+
+        // Then
+        histograms shouldBe listOf(LogLevel.INFO, LogLevel.INFO)
+    }
+})
@@ -16,6 +16,13 @@ object DatabaseMockHelper {
         records: List<Map<String, Any>>? = null,
     ): Pair<IDatabaseProvider, IDatabase> {
         val mockOneSignalDatabase = spyk<IDatabase>()
+        every { mockOneSignalDatabase.runInTransaction<Any?>(any()) } answers {
+            firstArg<(IDatabase) -> Any?>().invoke(mockOneSignalDatabase)
+        }
+        // Queued writes run right away, as if every operation that follows committed them first.
+        every { mockOneSignalDatabase.enqueueWrite(any(), any(), any()) } answers {
+            thirdArg<(IDatabase) -> Unit>().invoke(mockOneSignalDatabase)
+        }
 
         if (records != null) {
             val mockCursor = cursor(records!!)
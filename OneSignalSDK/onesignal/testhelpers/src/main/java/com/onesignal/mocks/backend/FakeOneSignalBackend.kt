@@ -0,0 +1,618 @@
+package com.onesignal.mocks.backend
+
+import com.onesignal.common.putMap
+import org.json.JSONArray
+import org.json.JSONObject
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.net.SocketException
+import java.util.Collections
+import java.util.UUID
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * An in-process stand-in for the OneSignal backend, so network behavior of the SDK can be
+ * exercised end to end (through the real `HttpClient` and `HttpURLConnection`) without a live
+ * backend.
+ *
+ * It speaks plain HTTP/1.1 on a loopback port and implements the endpoints the SDK calls:
+ * params, users, identity, subscriptions, custom events, outcomes, in-app messages and
+ * notification receipts (single and batched) and opens. User and subscription state is kept in memory so responses
+ * (ids, aliases, tags) are consistent across requests, and every write returns a RYW token.
+ *
+ * Behavior can be adjusted while running:
+ *  - [latencyMs] delays every response.
+ *  - [isOffline] drops every connection as soon as it is accepted.
+ *  - [failNext] / [throttleNext] make the next requests fail with a given status, or with
+ *    429 and a Retry-After header.
+ *
+ * Usage example:
+ *   FakeOneSignalBackend().start().use { backend ->
+ *       // point ConfigModel.apiUrl at backend.baseUrl, then drive the SDK
+ *       backend.awaitIdle(idleMs = 1_000)
+ *       backend.requests.size shouldBe 3
+ *   }
+ */
+class FakeOneSignalBackend : Closeable {
+    /**
+     * A request as received by the backend.
+     */
+    class RecordedRequest(
+        val method: String,
+        val path: String,
+        val headers: Map<String, String>,
+        val body: String,
+        val status: Int,
+        /**
+         * Bytes received for the request, including the request line and headers.
+         */
+        val bytesReceived: Int,
+        /**
+         * Bytes sent for the response, including the status line and headers.
+         */
+        val bytesSent: Int,
+        /**
+         * Time from the request line arriving to the response being flushed.
+         */
+        val durationMs: Long,
+    ) {
+        fun header(name: String): String? = headers[name.lowercase()]
+    }
+
+    private class Response(
+        val status: Int,
+        val body: JSONObject = JSONObject(),
+        val headers: Map<String, String> = emptyMap(),
+    )
+
+    private class User(
+        val identity: MutableMap<String, String>,
+        val tags: MutableMap<String, String> = mutableMapOf(),
+        val properties: JSONObject = JSONObject(),
+        val subscriptionIds: MutableSet<String> = mutableSetOf(),
+    )
+
+    private val serverSocket = ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress())
+    private val executor: ExecutorService = Executors.newCachedThreadPool()
+    private val lock = Any()
+    private val users = mutableListOf<User>()
+    private val subscriptions = mutableMapOf<String, JSONObject>()
+    private val rywCounter = AtomicLong(0)
+    private val inFlight = AtomicInteger(0)
+    private val pendingFailures = AtomicInteger(0)
+
+    @Volatile
+    private var pendingFailureStatus = 0
+
+    @Volatile
+    private var pendingRetryAfter: Int? = null
+
+    @Volatile
+    private var lastActivityAt = System.currentTimeMillis()
+
+    @Volatile
+    private var isRunning = false
+
+    /**
+     * The URL to use as the SDK's `ConfigModel.apiUrl`.
+     */
+    val baseUrl: String = "http://127.0.0.1:${serverSocket.localPort}/api/v1/"
+
+    /**
+     * Every request handled so far, in the order they completed.
+     */
+    val requests: MutableList<RecordedRequest> = Collections.synchronizedList(mutableListOf())
+
+    /**
+     * The number of connections dropped because the backend was [isOffline].
+     */
+    val droppedConnections = AtomicInteger(0)
+
+    /**
+     * Added latency, in milliseconds, before every response is sent.
+     */
+    @Volatile
+    var latencyMs: Long = 0
+
+    /**
+     * When true, new connections are closed immediately without a response, as the SDK would
+     * see when the device has no network.
+     */
+    @Volatile
+    var isOffline: Boolean = false
+
+    /**
+     * The `ryw_delay` included alongside every RYW token, or null to omit it.
+     */
+    @Volatile
+    var rywDelayMs: Long? = null
+
+    /**
+     * The remote params returned from `android_params.js`.
+     */
+    @Volatile
+    var params: JSONObject =
+        JSONObject()
+            .put("android_sender_id", "123456789")
+            .put("enterp", false)
+            .put("jwt_required", false)
+            .put("chnl_lst", JSONArray())
+            .put("outcomes", JSONObject())
+
+    fun start(): FakeOneSignalBackend {
+        isRunning = true
+        executor.execute { acceptLoop() }
+        return this
+    }
+
+    /**
+     * Respond to the next [count] requests with [status] rather than handling them.
+     */
+    fun failNext(
+        count: Int,
+        status: Int,
+    ) {
+        pendingRetryAfter = null
+        pendingFailureStatus = status
+        pendingFailures.set(count)
+    }
+
+    /**
+     * Respond to the next [count] requests with a 429, including a Retry-After header when
+     * [retryAfterSeconds] is provided.
+     */
+    fun throttleNext(
+        count: Int,
+        retryAfterSeconds: Int?,
+    ) {
+        pendingRetryAfter = retryAfterSeconds
+        pendingFailureStatus = HTTP_TOO_MANY_REQUESTS
+        pendingFailures.set(count)
+    }
+
+    /**
+     * Block until no request has been in flight or received for [idleMs], or [timeoutMs]
+     * has elapsed.
+     *
+     * @return true when the backend went idle, false on timeout.
+     */
+    fun awaitIdle(
+        idleMs: Long,
+        timeoutMs: Long = DEFAULT_IDLE_TIMEOUT_MS,
+    ): Boolean {
+        val deadline = System.currentTimeMillis() + timeoutMs
+        while (System.currentTimeMillis() < deadline) {
+            if (inFlight.get() == 0 && System.currentTimeMillis() - lastActivityAt >= idleMs) {
+                return true
+            }
+            Thread.sleep(IDLE_POLL_MS)
+        }
+        return false
+    }
+
+    /**
+     * The requests whose path matches [pathRegex] (relative to [baseUrl]).
+     */
+    fun requestsTo(pathRegex: String): List<RecordedRequest> {
+        val regex = Regex(pathRegex)
+        return synchronized(requests) { requests.filter { regex.matches(it.path) } }
+    }
+
+    /**
+     * The tags the backend holds for the user with the provided alias, or null if there is no
+     * such user.
+     */
+    fun tagsOf(
+        label: String,
+        value: String,
+    ): Map<String, String>? = synchronized(lock) { findUser(label, value)?.tags?.toMap() }
+
+    fun reset() {
+        requests.clear()
+        droppedConnections.set(0)
+        pendingFailures.set(0)
+    }
+
+    override fun close() {
+        isRunning = false
+        try {
+            serverSocket.close()
+        } catch (e: IOException) {
+            // already closed
+        }
+        executor.shutdownNow()
+        executor.awaitTermination(1, TimeUnit.SECONDS)
+    }
+
+    private fun acceptLoop() {
+        while (isRunning) {
+            val socket =
+                try {
+                    serverSocket.accept()
+                } catch (e: SocketException) {
+                    return
+                }
+
+            lastActivityAt = System.currentTimeMillis()
+            if (isOffline) {
+                droppedConnections.incrementAndGet()
+                socket.close()
+                continue
+            }
+
+            executor.execute { serveConnection(socket) }
+        }
+    }
+
+    private fun serveConnection(socket: Socket) {
+        socket.use {
+            val input = BufferedInputStream(socket.getInputStream())
+            val output = socket.getOutputStream()
+            try {
+                // HttpURLConnection keeps connections alive, serve requests until the client closes.
+                while (isRunning && !isOffline) {
+                    val requestLine = readLine(input) ?: return
+                    if (requestLine.isEmpty()) continue
+                    serveRequest(requestLine, input, output)
+                }
+            } catch (e: IOException) {
+                // client went away
+            }
+        }
+    }
+
+    private fun serveRequest(
+        requestLine: String,
+        input: InputStream,
+        output: OutputStream,
+    ) {
+        inFlight.incrementAndGet()
+        try {
+            val startedAt = System.currentTimeMillis()
+            var bytesReceived = requestLine.length + 2
+            val parts = requestLine.split(" ")
+            val method = parts[0]
+            val path = parts[1].removePrefix("/api/v1/")
+
+            val headers = mutableMapOf<String, String>()
+            while (true) {
+                val line = readLine(input) ?: throw IOException("Connection closed in headers")
+                bytesReceived += line.length + 2
+                if (line.isEmpty()) break
+                val separator = line.indexOf(':')
+                if (separator > 0) {
+                    headers[line.substring(0, separator).trim().lowercase()] = line.substring(separator + 1).trim()
+                }
+            }
+
+            val bodyBytes = readBody(input, headers)
+            bytesReceived += bodyBytes.size
+            val body = String(bodyBytes, Charsets.UTF_8)
+
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs)
+            }
+
+            val response = nextFailure() ?: route(method, path, body)
+            val bytesSent = writeResponse(output, response, includeBody = method != "HEAD")
+
+            requests.add(
+                RecordedRequest(
+                    method = method,
+                    path = path,
+                    headers = headers,
+                    body = body,
+                    status = response.status,
+                    bytesReceived = bytesReceived,
+                    bytesSent = bytesSent,
+                    durationMs = System.currentTimeMillis() - startedAt,
+                ),
+            )
+        } finally {
+            lastActivityAt = System.currentTimeMillis()
+            inFlight.decrementAndGet()
+        }
+    }
+
+    private fun nextFailure(): Response? {
+        while (true) {
+            val remaining = pendingFailures.get()
+            if (remaining <= 0) return null
+            if (pendingFailures.compareAndSet(remaining, remaining - 1)) break
+        }
+
+        val retryAfter = pendingRetryAfter
+        val headers = if (retryAfter != null) mapOf("Retry-After" to retryAfter.toString()) else emptyMap()
+        return Response(pendingFailureStatus, JSONObject(), headers)
+    }
+
+    private fun route(
+        method: String,
+        path: String,
+        body: String,
+    ): Response {
+        val json = if (body.isNotEmpty()) JSONObject(body) else JSONObject()
+        val segments = path.substringBefore('?').split("/")
+
+        return synchronized(lock) {
+            when {
+                segments.size == 3 && segments[0] == "apps" && segments[2] == "android_params.js" -> Response(HTTP_OK, params)
+
+                // apps/{appId}/users
+                segments.size == 3 && segments[2] == "users" && method == "POST" -> createUser(json)
+
+                // apps/{appId}/users/by/{label}/{value}[/...]
+                segments.size >= 6 && segments[2] == "users" && segments[3] == "by" -> routeUser(method, segments, json)
+
+                // apps/{appId}/subscriptions/{id}[/...]
+                segments.size >= 4 && segments[2] == "subscriptions" -> routeSubscription(method, segments, json)
+
+                segments.size == 3 && segments[2] == "custom_events" -> Response(HTTP_ACCEPTED)
+                path == "outcomes/measure" -> Response(HTTP_OK)
+                segments[0] == "in_app_messages" && method == "POST" -> Response(HTTP_OK)
+                segments[0] == "in_app_messages" -> Response(HTTP_OK, JSONObject().put("html", "<html></html>"))
+                segments[0] == "notifications" && method == "PUT" -> Response(HTTP_OK, JSONObject().put("success", true))
+
+                // notifications/report_received, the receipts of several notifications at once
+                path == "notifications/report_received" && method == "POST" ->
+                    if (json.has("notification_ids")) Response(HTTP_OK, JSONObject().put("success", true)) else Response(HTTP_BAD_REQUEST)
+                else -> Response(HTTP_NOT_FOUND)
+            }
+        }
+    }
+
+    private fun createUser(json: JSONObject): Response {
+        val identity = mutableMapOf("onesignal_id" to UUID.randomUUID().toString())
+        json.optJSONObject("identity")?.let { requested ->
+            requested.keys().forEach { identity[it] = requested.getString(it) }
+        }
+
+        // creating a user with an existing external_id returns that user, as the backend does.
+        val externalId = identity["external_id"]
+        val user =
+            users.firstOrNull { externalId != null && it.identity["external_id"] == externalId }
+                ?: User(identity).also { users.add(it) }
+        json.optJSONObject("properties")?.let { applyProperties(user, it) }
+
+        val requestedSubscriptions = json.optJSONArray("subscriptions") ?: JSONArray()
+        for (index in 0 until requestedSubscriptions.length()) {
+            val subscription = requestedSubscriptions.getJSONObject(index)
+            val id = subscription.optString("id").ifEmpty { UUID.randomUUID().toString() }
+            subscriptions[id] = JSONObject(subscription.toString()).put("id", id)
+            users.forEach { it.subscriptionIds.remove(id) }
+            user.subscriptionIds.add(id)
+        }
+
+        return Response(HTTP_CREATED, userJson(user).withRyw())
+    }
+
+    private fun routeUser(
+        method: String,
+        segments: List<String>,
+        json: JSONObject,
+    ): Response {
+        val user = findUser(segments[4], segments[5]) ?: return Response(HTTP_NOT_FOUND)
+        val rest = segments.drop(6)
+
+        return when {
+            rest.isEmpty() && method == "GET" -> Response(HTTP_OK, userJson(user))
+            rest.isEmpty() && method == "PATCH" -> {
+                json.optJSONObject("properties")?.let { applyProperties(user, it) }
+                Response(HTTP_ACCEPTED, JSONObject().put("properties", propertiesJson(user)).withRyw())
+            }
+            rest == listOf("identity") && method == "PATCH" -> {
+                json.optJSONObject("identity")?.let { requested ->
+                    requested.keys().forEach { user.identity[it] = requested.getString(it) }
+                }
+                Response(HTTP_OK, JSONObject().put("identity", JSONObject().putMap(user.identity)))
+            }
+            rest.size == 2 && rest[0] == "identity" && method == "DELETE" -> {
+                user.identity.remove(rest[1])
+                Response(HTTP_OK, JSONObject().put("identity", JSONObject().putMap(user.identity)))
+            }
+            rest == listOf("subscriptions") && method == "POST" -> {
+                val subscription = json.optJSONObject("subscription") ?: JSONObject()
+                val id = UUID.randomUUID().toString()
+                subscriptions[id] = JSONObject(subscription.toString()).put("id", id)
+                user.subscriptionIds.add(id)
+                Response(HTTP_CREATED, JSONObject().put("subscription", subscriptions[id]).withRyw())
+            }
+            rest.lastOrNull() == "iams" && method == "GET" -> Response(HTTP_OK, JSONObject().put("in_app_messages", JSONArray()))
+            else -> Response(HTTP_NOT_FOUND)
+        }
+    }
+
+    private fun routeSubscription(
+        method: String,
+        segments: List<String>,
+        json: JSONObject,
+    ): Response {
+        val id = segments[3]
+        val rest = segments.drop(4)
+
+        if (rest.lastOrNull() == "iams" && method == "GET") {
+            return Response(HTTP_OK, JSONObject().put("in_app_messages", JSONArray()))
+        }
+
+        val subscription = subscriptions[id] ?: return Response(HTTP_NOT_FOUND)
+        val owner = users.firstOrNull { it.subscriptionIds.contains(id) }
+
+        return when {
+            rest.isEmpty() && method == "PATCH" -> {
+                val changes = json.optJSONObject("subscription") ?: JSONObject()
+                changes.keys().forEach { subscription.put(it, changes.get(it)) }
+                Response(HTTP_OK, JSONObject().withRyw())
+            }
+            rest.isEmpty() && method == "DELETE" -> {
+                subscriptions.remove(id)
+                owner?.subscriptionIds?.remove(id)
+                Response(HTTP_ACCEPTED)
+            }
+            rest == listOf("owner") && method == "PATCH" -> {
+                val identity = json.optJSONObject("identity") ?: JSONObject()
+                val newOwner =
+                    identity.keys().asSequence().mapNotNull { findUser(it, identity.getString(it)) }.firstOrNull()
+                        ?: return Response(HTTP_NOT_FOUND)
+                owner?.subscriptionIds?.remove(id)
+                newOwner.subscriptionIds.add(id)
+                Response(HTTP_OK, JSONObject().withRyw())
+            }
+            rest == listOf("user", "identity") && method == "GET" && owner != null ->
+                Response(HTTP_OK, JSONObject().put("identity", JSONObject().putMap(owner.identity)))
+            else -> Response(HTTP_NOT_FOUND)
+        }
+    }
+
+    private fun findUser(
+        label: String,
+        value: String,
+    ): User? = users.firstOrNull { it.identity[label] == value }
+
+    private fun applyProperties(
+        user: User,
+        properties: JSONObject,
+    ) {
+        properties.keys().forEach { key ->
+            if (key == "tags") {
+                val tags = properties.getJSONObject(key)
+                tags.keys().forEach { tag ->
+                    val value = tags.optString(tag)
+                    // an empty value is how the SDK removes a tag.
+                    if (value.isEmpty()) user.tags.remove(tag) else user.tags[tag] = value
+                }
+            } else {
+                user.properties.put(key, properties.get(key))
+            }
+        }
+    }
+
+    private fun propertiesJson(user: User): JSONObject = JSONObject(user.properties.toString()).put("tags", JSONObject().putMap(user.tags))
+
+    private fun userJson(user: User): JSONObject {
+        val subscriptionsJson = JSONArray()
+        user.subscriptionIds.mapNotNull { subscriptions[it] }.forEach { subscriptionsJson.put(it) }
+        return JSONObject()
+            .put("identity", JSONObject().putMap(user.identity))
+            .put("properties", propertiesJson(user))
+            .put("subscriptions", subscriptionsJson)
+    }
+
+    private fun JSONObject.withRyw(): JSONObject {
+        put("ryw_token", rywCounter.incrementAndGet().toString())
+        rywDelayMs?.let { put("ryw_delay", it) }
+        return this
+    }
+
+    // A response to a HEAD request has the headers it would have for a GET, but no body.
+    private fun writeResponse(
+        output: OutputStream,
+        response: Response,
+        includeBody: Boolean,
+    ): Int {
+        val body = response.body.toString().toByteArray(Charsets.UTF_8)
+        val head = StringBuilder()
+        head.append("HTTP/1.1 ${response.status} ${reasonPhrase(response.status)}\r\n")
+        head.append("Content-Type: application/json; charset=UTF-8\r\n")
+        head.append("Content-Length: ${body.size}\r\n")
+        response.headers.forEach { (name, value) -> head.append("$name: $value\r\n") }
+        head.append("\r\n")
+
+        val headBytes = head.toString().toByteArray(Charsets.UTF_8)
+        output.write(headBytes)
+        if (includeBody) output.write(body)
+        output.flush()
+        return headBytes.size + if (includeBody) body.size else 0
+    }
+
+    private fun readBody(
+        input: InputStream,
+        headers: Map<String, String>,
+    ): ByteArray {
+        val contentLength = headers["content-length"]?.toIntOrNull()
+        if (contentLength != null) {
+            return readExactly(input, contentLength)
+        }
+
+        if (headers["transfer-encoding"]?.contains("chunked", ignoreCase = true) != true) {
+            return ByteArray(0)
+        }
+
+        val body = ByteArrayOutputStream()
+        while (true) {
+            val sizeLine = readLine(input) ?: throw IOException("Connection closed in chunked body")
+            val size = sizeLine.substringBefore(';').trim().toInt(HEX_RADIX)
+            if (size == 0) {
+                // consume the (empty) trailer section
+                do {
+                    val trailer = readLine(input)
+                } while (!trailer.isNullOrEmpty())
+                return body.toByteArray()
+            }
+            body.write(readExactly(input, size))
+            readLine(input)
+        }
+    }
+
+    private fun readExactly(
+        input: InputStream,
+        length: Int,
+    ): ByteArray {
+        val bytes = ByteArray(length)
+        var offset = 0
+        while (offset < length) {
+            val read = input.read(bytes, offset, length - offset)
+            if (read < 0) throw IOException("Connection closed in body")
+            offset += read
+        }
+        return bytes
+    }
+
+    /**
+     * Read a CRLF terminated line, returning null if the stream ended before any byte was read.
+     */
+    private fun readLine(input: InputStream): String? {
+        val line = ByteArrayOutputStream()
+        while (true) {
+            val byte = input.read()
+            if (byte < 0) return if (line.size() == 0) null else line.toString("UTF-8")
+            if (byte == '\n'.code) break
+            if (byte != '\r'.code) line.write(byte)
+        }
+        return line.toString("UTF-8")
+    }
+
+    private fun reasonPhrase(status: Int): String =
+        when (status) {
+            HTTP_OK -> "OK"
+            HTTP_CREATED -> "Created"
+            HTTP_ACCEPTED -> "Accepted"
+            HTTP_BAD_REQUEST -> "Bad Request"
+            HTTP_NOT_FOUND -> "Not Found"
+            HTTP_TOO_MANY_REQUESTS -> "Too Many Requests"
+            else -> "Status"
+        }
+
+    companion object {
+        private const val BACKLOG = 50
+        private const val HEX_RADIX = 16
+        private const val IDLE_POLL_MS = 25L
+        private const val DEFAULT_IDLE_TIMEOUT_MS = 60_000L
+        private const val HTTP_OK = 200
+        private const val HTTP_CREATED = 201
+        private const val HTTP_ACCEPTED = 202
+        private const val HTTP_BAD_REQUEST = 400
+        private const val HTTP_NOT_FOUND = 404
+        private const val HTTP_TOO_MANY_REQUESTS = 429
+    }
+}